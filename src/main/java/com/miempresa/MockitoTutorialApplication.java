@@ -1,5 +1,6 @@
 package com.miempresa;
 
+import com.miempresa.cli.ExportacionUsuariosCli;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
@@ -7,6 +8,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 public class MockitoTutorialApplication {
 
 	public static void main(String[] args) {
+		ExportacionUsuariosCli.reservarSalidaEstandar(args);
 		SpringApplication.run(MockitoTutorialApplication.class, args);
 	}
 
@@ -0,0 +1,389 @@
+package com.miempresa.auditoria;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.AuditoriaService;
+import com.miempresa.service.TipoOperacion;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decorador de {@link AuditoriaService} que entrega los registros a un único hilo
+ * consumidor a través de un anillo preasignado, al estilo Disruptor: los hilos de
+ * petición no toman cerrojos ni esperan al destino, solo reservan una ranura con
+ * un incremento atómico, copian los campos y la publican.
+ *
+ * El consumidor drena de una vez todas las ranuras publicadas y agrupa las
+ * operaciones consecutivas del mismo tipo en una sola llamada a
+ * {@code registrarOperaciones}, y los eventos consecutivos del mismo tipo en una
+ * a {@code registrarEventos}. Los eventos estructurados llegan al destino con sus
+ * campos, sin componer texto en el hilo de petición. Un registro agrupado
+ * ({@code registrarOperaciones}, {@code registrarEventos}) ocupa una sola ranura.
+ *
+ * El cierre se marca en el mismo contador con el que se reservan las ranuras, así
+ * que un registro o se reserva antes del cierre, y el consumidor lo entrega antes
+ * de terminar, o se rechaza.
+ *
+ * Como el llamador ya no espera a la escritura, lo natural es combinarlo con un
+ * destino en modo {@link ModoDurabilidad#PERIODICO}.
+ */
+public class AuditoriaServiceAnillo implements AuditoriaService, AutoCloseable {
+
+    // Cómo espera el consumidor cuando el anillo está vacío
+    public enum EstrategiaEspera {
+        // Gira sin soltar la CPU: la menor latencia, a cambio de un núcleo ocupado
+        ESPERA_ACTIVA,
+        // Cede la CPU a otros hilos entre comprobaciones
+        CEDER,
+        // Duerme unos microsegundos entre comprobaciones: casi sin consumo en reposo
+        ESTACIONAR
+    }
+
+    private static final long ESPERA_ESTACIONADO_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // Bit de cierre en el contador de reservas; las secuencias nunca llegan a él
+    private static final long CERRADO = 1L << 62;
+
+    // Ranura preasignada; se reutiliza en cada vuelta del anillo
+    private static final class Ranura {
+        boolean evento;
+        String tipoOperacion;
+        String detalles;
+        List<String> loteDetalles;
+        TipoOperacion tipoEvento;
+        Long idUsuario;
+        String nombre;
+        String email;
+        List<Usuario> loteUsuarios;
+
+        int registros() {
+            if (loteDetalles != null) {
+                return loteDetalles.size();
+            }
+            return loteUsuarios != null ? loteUsuarios.size() : 1;
+        }
+
+        void limpiar() {
+            evento = false;
+            tipoOperacion = null;
+            detalles = null;
+            loteDetalles = null;
+            tipoEvento = null;
+            idUsuario = null;
+            nombre = null;
+            email = null;
+            loteUsuarios = null;
+        }
+    }
+
+    private final AuditoriaService destino;
+    private final EstrategiaEspera estrategia;
+    private final Ranura[] ranuras;
+    private final int mascara;
+    // Secuencia publicada en cada ranura: el consumidor solo lee la ranura cuando coincide
+    private final AtomicLongArray publicadas;
+    // Siguiente secuencia a reservar, con el bit CERRADO una vez cerrado
+    private final AtomicLong reservadas = new AtomicLong();
+    private final AtomicLong consumidas = new AtomicLong();
+    private final Thread consumidor;
+
+    private final LongAdder esperasProductor = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    // Solo los escribe el consumidor, para no añadir contención a los productores
+    private volatile long ocupacionMaxima;
+    private volatile long entregados;
+    private volatile long lotesDrenados;
+    private volatile long loteMaximo;
+
+    public AuditoriaServiceAnillo(AuditoriaService destino, int capacidad, EstrategiaEspera estrategia) {
+        if (capacidad < 2 || Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("La capacidad del anillo debe ser una potencia de dos: " + capacidad);
+        }
+        this.destino = destino;
+        this.estrategia = estrategia;
+        this.ranuras = new Ranura[capacidad];
+        for (int i = 0; i < capacidad; i++) {
+            ranuras[i] = new Ranura();
+        }
+        this.mascara = capacidad - 1;
+        this.publicadas = new AtomicLongArray(capacidad);
+        for (int i = 0; i < capacidad; i++) {
+            publicadas.set(i, -1);
+        }
+        // Hilo de plataforma: la espera activa no tiene sentido en un hilo virtual
+        this.consumidor = new Thread(this::consumir, "auditoria-anillo");
+        consumidor.setDaemon(true);
+        consumidor.start();
+    }
+
+    @Override
+    public void registrarOperacion(String tipoOperacion, String detalles) {
+        long secuencia = reservar();
+        Ranura ranura = ranuras[(int) secuencia & mascara];
+        ranura.tipoOperacion = tipoOperacion;
+        ranura.detalles = detalles;
+        publicadas.set((int) secuencia & mascara, secuencia);
+    }
+
+    @Override
+    public void registrarEvento(TipoOperacion tipo, Long idUsuario, String nombre, String email) {
+        long secuencia = reservar();
+        Ranura ranura = ranuras[(int) secuencia & mascara];
+        ranura.evento = true;
+        ranura.tipoEvento = tipo;
+        ranura.idUsuario = idUsuario;
+        ranura.nombre = nombre;
+        ranura.email = email;
+        publicadas.set((int) secuencia & mascara, secuencia);
+    }
+
+    @Override
+    public void registrarOperaciones(String tipoOperacion, List<String> detalles) {
+        if (detalles.isEmpty()) {
+            return;
+        }
+        // Copia que admite detalles nulos, como registrarOperacion
+        List<String> copia = new ArrayList<>(detalles);
+        long secuencia = reservar();
+        Ranura ranura = ranuras[(int) secuencia & mascara];
+        ranura.tipoOperacion = tipoOperacion;
+        ranura.loteDetalles = copia;
+        publicadas.set((int) secuencia & mascara, secuencia);
+    }
+
+    // Los campos se copian ahora, como en registrarEvento: el llamador puede seguir cambiando sus usuarios
+    @Override
+    public void registrarEventos(TipoOperacion tipo, List<Usuario> usuarios) {
+        if (usuarios.isEmpty()) {
+            return;
+        }
+        List<Usuario> copia = new ArrayList<>(usuarios.size());
+        for (Usuario usuario : usuarios) {
+            copia.add(new Usuario(usuario.getId(), usuario.getNombre(), usuario.getEmail()));
+        }
+        long secuencia = reservar();
+        Ranura ranura = ranuras[(int) secuencia & mascara];
+        ranura.evento = true;
+        ranura.tipoEvento = tipo;
+        ranura.loteUsuarios = copia;
+        publicadas.set((int) secuencia & mascara, secuencia);
+    }
+
+    // Veces que un productor encontró el anillo lleno y tuvo que esperar
+    public long getEsperasProductor() {
+        return esperasProductor.sum();
+    }
+
+    // Ranuras ocupadas por registros que el consumidor aún no ha entregado
+    public long getOcupacion() {
+        return Math.min(reservadas() - consumidas.get(), ranuras.length);
+    }
+
+    public long getOcupacionMaxima() {
+        return ocupacionMaxima;
+    }
+
+    public int getCapacidad() {
+        return ranuras.length;
+    }
+
+    // Registros entregados al destino, incluidos los que fallaron
+    public long getEntregados() {
+        return entregados;
+    }
+
+    public long getFallidos() {
+        return fallidos.sum();
+    }
+
+    public long getLotesDrenados() {
+        return lotesDrenados;
+    }
+
+    public long getLoteMaximo() {
+        return loteMaximo;
+    }
+
+    // Deja de aceptar registros y espera a que el consumidor vacíe el anillo
+    public boolean cerrar(long espera, TimeUnit unidad) throws InterruptedException {
+        reservadas.getAndAccumulate(CERRADO, (actual, cerrado) -> actual | cerrado);
+        unidad.timedJoin(consumidor, espera);
+        return !consumidor.isAlive();
+    }
+
+    @Override
+    public void close() {
+        try {
+            cerrar(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long reservar() {
+        long secuencia;
+        do {
+            secuencia = reservadas.get();
+            if (secuencia >= CERRADO) {
+                throw new IllegalStateException("El servicio de auditoría está cerrado");
+            }
+        } while (!reservadas.compareAndSet(secuencia, secuencia + 1));
+        long libre = secuencia - ranuras.length;
+        if (libre >= consumidas.get()) {
+            // Anillo lleno: la ranura aún guarda un registro que el consumidor no ha entregado.
+            // El productor siempre se estaciona; girando le quitaría la CPU al consumidor
+            esperasProductor.increment();
+            while (libre >= consumidas.get()) {
+                LockSupport.parkNanos(1);
+            }
+        }
+        return secuencia;
+    }
+
+    private void consumir() {
+        long siguiente = 0;
+        Agrupador agrupador = new Agrupador();
+        while (true) {
+            long disponible = ultimaPublicada(siguiente);
+            if (disponible < siguiente) {
+                // Con el bit puesto ya no se reserva nada más: lo reservado es todo lo que queda
+                long estado = reservadas.get();
+                if (estado >= CERRADO && estado - CERRADO == siguiente) {
+                    return;
+                }
+                esperar();
+                continue;
+            }
+            long ocupacion = Math.min(reservadas() - siguiente, ranuras.length);
+            if (ocupacion > ocupacionMaxima) {
+                ocupacionMaxima = ocupacion;
+            }
+            long registros = 0;
+            for (long s = siguiente; s <= disponible; s++) {
+                Ranura ranura = ranuras[(int) s & mascara];
+                int deLaRanura = ranura.registros();
+                registros += deLaRanura;
+                try {
+                    agrupador.anadir(ranura);
+                } catch (RuntimeException e) {
+                    // Una ranura que no se puede agrupar no debe matar al consumidor:
+                    // los productores esperarían para siempre con el anillo lleno
+                    fallidos.add(deLaRanura);
+                } finally {
+                    ranura.limpiar();
+                }
+            }
+            try {
+                agrupador.entregar();
+            } catch (RuntimeException e) {
+                fallidos.add(agrupador.descartar());
+            }
+            entregados += registros;
+            long tamanoLote = disponible - siguiente + 1;
+            lotesDrenados++;
+            if (tamanoLote > loteMaximo) {
+                loteMaximo = tamanoLote;
+            }
+            siguiente = disponible + 1;
+            // Un único avance del cursor libera todo el lote para los productores
+            consumidas.set(siguiente);
+        }
+    }
+
+    private long reservadas() {
+        return reservadas.get() & ~CERRADO;
+    }
+
+    // Última secuencia consecutiva ya publicada a partir de desde (desde - 1 si no hay ninguna)
+    private long ultimaPublicada(long desde) {
+        long limite = reservadas();
+        long s = desde;
+        while (s < limite && publicadas.get((int) s & mascara) == s) {
+            s++;
+        }
+        return s - 1;
+    }
+
+    private void entregar(Runnable entrega, int registros) {
+        try {
+            entrega.run();
+        } catch (RuntimeException e) {
+            // Un destino que falla no debe matar al consumidor ni bloquear a los productores
+            fallidos.add(registros);
+        }
+    }
+
+    // Acumula ranuras consecutivas del mismo tipo; solo hay un grupo abierto a la vez
+    private final class Agrupador {
+        private String tipoOperaciones;
+        private final List<String> operaciones = new ArrayList<>();
+        private TipoOperacion tipoEventos;
+        private final List<Usuario> eventos = new ArrayList<>();
+
+        void anadir(Ranura ranura) {
+            if (ranura.evento) {
+                if (!operaciones.isEmpty() || (!eventos.isEmpty() && tipoEventos != ranura.tipoEvento)) {
+                    entregar();
+                }
+                tipoEventos = ranura.tipoEvento;
+                if (ranura.loteUsuarios != null) {
+                    eventos.addAll(ranura.loteUsuarios);
+                } else {
+                    eventos.add(new Usuario(ranura.idUsuario, ranura.nombre, ranura.email));
+                }
+            } else {
+                if (!eventos.isEmpty() || (!operaciones.isEmpty() && !Objects.equals(tipoOperaciones, ranura.tipoOperacion))) {
+                    entregar();
+                }
+                tipoOperaciones = ranura.tipoOperacion;
+                if (ranura.loteDetalles != null) {
+                    operaciones.addAll(ranura.loteDetalles);
+                } else {
+                    operaciones.add(ranura.detalles);
+                }
+            }
+        }
+
+        // Un evento suelto va por registrarEvento, sin crear una lista para el destino
+        void entregar() {
+            if (eventos.size() == 1) {
+                Usuario usuario = eventos.get(0);
+                TipoOperacion tipo = tipoEventos;
+                AuditoriaServiceAnillo.this.entregar(() -> destino.registrarEvento(
+                    tipo, usuario.getId(), usuario.getNombre(), usuario.getEmail()), 1);
+            } else if (!eventos.isEmpty()) {
+                List<Usuario> usuarios = new ArrayList<>(eventos);
+                TipoOperacion tipo = tipoEventos;
+                AuditoriaServiceAnillo.this.entregar(() -> destino.registrarEventos(tipo, usuarios), usuarios.size());
+            }
+            if (!operaciones.isEmpty()) {
+                // Los detalles pueden ser nulos: List.copyOf los rechazaría
+                List<String> detalles = new ArrayList<>(operaciones);
+                String tipo = tipoOperaciones;
+                AuditoriaServiceAnillo.this.entregar(() -> destino.registrarOperaciones(tipo, detalles), detalles.size());
+            }
+            eventos.clear();
+            operaciones.clear();
+        }
+
+        // Vacía el grupo abierto sin entregarlo; devuelve cuántos registros tenía
+        int descartar() {
+            int registros = eventos.size() + operaciones.size();
+            eventos.clear();
+            operaciones.clear();
+            return registros;
+        }
+    }
+
+    private void esperar() {
+        switch (estrategia) {
+            case ESPERA_ACTIVA -> Thread.onSpinWait();
+            case CEDER -> Thread.yield();
+            case ESTACIONAR -> LockSupport.parkNanos(ESPERA_ESTACIONADO_NANOS);
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package com.miempresa.auditoria;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.AuditoriaService;
+import com.miempresa.service.TipoOperacion;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link AuditoriaService} duradero que añade los registros al final de un log
+ * de segmentos mapeados en memoria ({@code auditoria-NNNNNNNNNNNNNNNNNNNN.log}).
+ *
+ * Escribir un registro es solo copiar bytes al mapa bajo un cerrojo corto; lo
+ * caro es la sincronización a disco, que depende del {@link ModoDurabilidad}.
+ * En {@code POR_LOTE} el primer escritor que espera hace de líder y fuerza a
+ * disco todo lo escrito hasta ese momento, así que los escritores concurrentes
+ * comparten una única sincronización (commit en grupo).
+ *
+ * Los registros usan el formato binario de {@link EntradaAuditoria} y cada
+ * segmento mantiene un índice disperso de tiempo y otro por tipo y por email,
+ * de modo que {@link #buscar} y {@link #buscarPorEmail} van directos a los
+ * registros que coinciden. Cuando un segmento se llena se sella con su índice
+ * y se crea el siguiente; {@link #compactar} fusiona los segmentos sellados.
+ */
+public class AuditoriaServiceMapeada implements AuditoriaService, AutoCloseable {
+
+    private static final String PREFIJO = "auditoria-";
+    private static final String EXTENSION = ".log";
+    private static final String TEMPORAL = ".tmp";
+    private static final String PENDIENTE = "compactacion.pendiente";
+    // Última línea de una lista de pasos completa; sin ella la lista no se aplica
+    private static final String FIN_PASOS = "FIN";
+    private static final Duration INTERVALO_POR_DEFECTO = Duration.ofMillis(100);
+
+    private final Path directorio;
+    private final int tamanoSegmento;
+    private final ModoDurabilidad modo;
+    private final ReentrantLock escritura = new ReentrantLock();
+    private final ReentrantLock compactacion = new ReentrantLock();
+    private final ScheduledExecutorService sincronizadorPeriodico;
+
+    // Protegidos por el cerrojo de escritura
+    private SegmentoAuditoria segmento;
+    private long numeroSegmento;
+    private long ultimaMarca;
+    private boolean cerrado;
+    private volatile long escritos;
+    // Segmentos sellados, de solo lectura; la lista se sustituye entera, nunca se modifica
+    private volatile List<SegmentoAuditoria> sellados = List.of();
+
+    // Estado del commit en grupo, protegido por el monitor de grupo
+    private final Object grupo = new Object();
+    private long sincronizados;
+    private boolean sincronizando;
+
+    private final LongAdder registros = new LongAdder();
+    private final LongAdder sincronizaciones = new LongAdder();
+    private final LongAdder segmentosCreados = new LongAdder();
+
+    public AuditoriaServiceMapeada(Path directorio, int tamanoSegmento, ModoDurabilidad modo) {
+        this(directorio, tamanoSegmento, modo, INTERVALO_POR_DEFECTO);
+    }
+
+    public AuditoriaServiceMapeada(Path directorio, int tamanoSegmento, ModoDurabilidad modo, Duration intervalo) {
+        if (tamanoSegmento <= SegmentoAuditoria.CABECERA + 64) {
+            throw new IllegalArgumentException("El tamaño de segmento es demasiado pequeño: " + tamanoSegmento);
+        }
+        if (modo == ModoDurabilidad.PERIODICO && (intervalo.isNegative() || intervalo.isZero())) {
+            throw new IllegalArgumentException("El intervalo de sincronización debe ser positivo");
+        }
+        this.directorio = directorio;
+        this.tamanoSegmento = tamanoSegmento;
+        this.modo = modo;
+        abrirSegmentos();
+
+        if (modo == ModoDurabilidad.PERIODICO) {
+            sincronizadorPeriodico = Executors.newSingleThreadScheduledExecutor(tarea -> {
+                Thread hilo = new Thread(tarea, "auditoria-sincronizacion");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            long nanos = intervalo.toNanos();
+            sincronizadorPeriodico.scheduleWithFixedDelay(this::sincronizarTodo, nanos, nanos, TimeUnit.NANOSECONDS);
+        } else {
+            sincronizadorPeriodico = null;
+        }
+    }
+
+    @Override
+    public void registrarOperacion(String tipoOperacion, String detalles) {
+        escribir(EntradaAuditoria.operacion(tipoOperacion, detalles));
+    }
+
+    // Los campos se guardan tal cual; el texto de detalle solo se compone al leer
+    @Override
+    public void registrarEvento(TipoOperacion tipo, Long idUsuario, String nombre, String email) {
+        escribir(EntradaAuditoria.evento(tipo, idUsuario, nombre, email));
+    }
+
+    // Todo el lote se escribe con una sola toma del cerrojo y espera una sola sincronización
+    @Override
+    public void registrarOperaciones(String tipoOperacion, List<String> detalles) {
+        List<EntradaAuditoria> entradas = new ArrayList<>(detalles.size());
+        for (String detalle : detalles) {
+            entradas.add(EntradaAuditoria.operacion(tipoOperacion, detalle));
+        }
+        escribir(entradas);
+    }
+
+    @Override
+    public void registrarEventos(TipoOperacion tipo, List<Usuario> usuarios) {
+        List<EntradaAuditoria> entradas = new ArrayList<>(usuarios.size());
+        for (Usuario usuario : usuarios) {
+            entradas.add(EntradaAuditoria.evento(tipo, usuario.getId(), usuario.getNombre(), usuario.getEmail()));
+        }
+        escribir(entradas);
+    }
+
+    /**
+     * Registros de un tipo de operación (o de todos, si {@code tipoOperacion} es
+     * null) con marca de tiempo entre {@code desde} y {@code hasta}, ambos incluidos
+     * y en milisegundos desde la época. Se devuelven en orden de escritura.
+     */
+    public List<RegistroAuditoria> buscar(String tipoOperacion, long desde, long hasta) {
+        List<RegistroAuditoria> delActivo = new ArrayList<>();
+        List<SegmentoAuditoria> anteriores;
+        escritura.lock();
+        try {
+            anteriores = sellados;
+            segmento.buscar(tipoOperacion, desde, hasta, delActivo);
+        } finally {
+            escritura.unlock();
+        }
+        List<RegistroAuditoria> resultado = new ArrayList<>();
+        for (SegmentoAuditoria sellado : anteriores) {
+            sellado.buscar(tipoOperacion, desde, hasta, resultado);
+        }
+        resultado.addAll(delActivo);
+        return resultado;
+    }
+
+    // Registros de un email (sin distinguir mayúsculas), opcionalmente de un solo tipo
+    public List<RegistroAuditoria> buscarPorEmail(String email, String tipoOperacion) {
+        String clave = EntradaAuditoria.normalizarEmail(email);
+        if (clave == null) {
+            return List.of();
+        }
+        List<RegistroAuditoria> delActivo = new ArrayList<>();
+        List<SegmentoAuditoria> anteriores;
+        escritura.lock();
+        try {
+            anteriores = sellados;
+            segmento.buscarPorEmail(clave, tipoOperacion, delActivo);
+        } finally {
+            escritura.unlock();
+        }
+        List<RegistroAuditoria> resultado = new ArrayList<>();
+        for (SegmentoAuditoria sellado : anteriores) {
+            sellado.buscarPorEmail(clave, tipoOperacion, resultado);
+        }
+        resultado.addAll(delActivo);
+        return resultado;
+    }
+
+    // Todos los registros del log, de todos los segmentos y en orden de escritura
+    public List<RegistroAuditoria> leerTodos() {
+        List<RegistroAuditoria> delActivo = new ArrayList<>();
+        List<SegmentoAuditoria> anteriores;
+        escritura.lock();
+        try {
+            anteriores = sellados;
+            segmento.leerTodos(delActivo);
+        } finally {
+            escritura.unlock();
+        }
+        List<RegistroAuditoria> todos = new ArrayList<>();
+        for (SegmentoAuditoria sellado : anteriores) {
+            sellado.leerTodos(todos);
+        }
+        todos.addAll(delActivo);
+        return todos;
+    }
+
+    /**
+     * Fusiona los segmentos sellados en segmentos de hasta {@code tamanoMaximo}
+     * bytes, descartando los registros anteriores a {@code descartarAnterioresA}.
+     * Las escrituras y las consultas siguen durante la compactación: solo se leen
+     * segmentos sellados y el cambio final de la lista es atómico.
+     *
+     * Los segmentos nuevos se escriben como temporales; después se anota en
+     * {@code compactacion.pendiente} qué borrar y qué renombrar, de modo que si el
+     * proceso cae a mitad, al reabrir se termina la compactación. La lista de pasos
+     * se escribe aparte, se sincroniza y se mueve de forma atómica a su sitio antes
+     * de tocar ningún original: o está entera en disco o no está.
+     */
+    public ResultadoCompactacion compactar(long descartarAnterioresA, int tamanoMaximo) {
+        if (tamanoMaximo < tamanoSegmento) {
+            throw new IllegalArgumentException("El tamaño máximo no puede ser menor que el de un segmento");
+        }
+        compactacion.lock();
+        try {
+            List<SegmentoAuditoria> origen = sellados;
+            if (origen.isEmpty()) {
+                return new ResultadoCompactacion(0, 0, 0);
+            }
+            // Los segmentos nuevos reutilizan los números de los primeros originales:
+            // nunca salen más segmentos de los que entran y el orden se conserva
+            List<Path> temporales = new ArrayList<>();
+            long descartados = 0;
+            SegmentoAuditoria destino = null;
+            for (SegmentoAuditoria fuente : origen) {
+                for (int p = SegmentoAuditoria.CABECERA; p < fuente.finDatos(); p = fuente.siguiente(p)) {
+                    if (fuente.marcaEn(p) < descartarAnterioresA) {
+                        descartados++;
+                        continue;
+                    }
+                    int longitud = fuente.siguiente(p) - p;
+                    if (destino == null || !destino.cabe(longitud)) {
+                        if (destino != null) {
+                            destino.sellar().close();
+                        }
+                        Path rutaFinal = origen.get(temporales.size()).getRuta();
+                        Path temporal = rutaFinal.resolveSibling(rutaFinal.getFileName() + TEMPORAL);
+                        temporales.add(temporal);
+                        destino = SegmentoAuditoria.crear(temporal, tamanoMaximo);
+                    }
+                    destino.copiar(fuente, p);
+                }
+            }
+            if (destino != null) {
+                destino.sellar().close();
+            }
+
+            List<String> pasos = new ArrayList<>();
+            for (SegmentoAuditoria fuente : origen) {
+                pasos.add("B " + fuente.getRuta().getFileName());
+            }
+            List<Path> finales = new ArrayList<>();
+            for (int i = 0; i < temporales.size(); i++) {
+                Path rutaFinal = origen.get(i).getRuta();
+                finales.add(rutaFinal);
+                pasos.add("R " + temporales.get(i).getFileName() + " " + rutaFinal.getFileName());
+            }
+            pasos.add(FIN_PASOS);
+            Path pendiente = directorio.resolve(PENDIENTE);
+            escribirPendiente(pendiente, pasos);
+            aplicarCompactacion(pendiente);
+
+            List<SegmentoAuditoria> compactados = new ArrayList<>();
+            for (Path rutaFinal : finales) {
+                compactados.add(SegmentoAuditoria.abrirSellado(rutaFinal));
+            }
+            escritura.lock();
+            try {
+                // Los segmentos sellados durante la compactación van detrás de los originales
+                List<SegmentoAuditoria> actuales = sellados;
+                compactados.addAll(actuales.subList(origen.size(), actuales.size()));
+                sellados = List.copyOf(compactados);
+            } finally {
+                escritura.unlock();
+            }
+            return new ResultadoCompactacion(origen.size(), finales.size(), descartados);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo compactar el log de auditoría", e);
+        } finally {
+            compactacion.unlock();
+        }
+    }
+
+    public ModoDurabilidad getModo() {
+        return modo;
+    }
+
+    public long getRegistros() {
+        return registros.sum();
+    }
+
+    public long getSincronizaciones() {
+        return sincronizaciones.sum();
+    }
+
+    public long getSegmentosCreados() {
+        return segmentosCreados.sum();
+    }
+
+    // Segmentos del log, incluido el activo
+    public int getSegmentos() {
+        return sellados.size() + 1;
+    }
+
+    @Override
+    public void close() {
+        if (sincronizadorPeriodico != null) {
+            sincronizadorPeriodico.shutdown();
+        }
+        escritura.lock();
+        try {
+            if (!cerrado) {
+                cerrado = true;
+                segmento.close();
+                sincronizaciones.increment();
+            }
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    private void escribir(EntradaAuditoria entrada) {
+        long secuencia;
+        escritura.lock();
+        try {
+            anadir(entrada);
+            secuencia = escritos;
+        } finally {
+            escritura.unlock();
+        }
+        esperarDurabilidad(secuencia);
+    }
+
+    private void escribir(List<EntradaAuditoria> entradas) {
+        if (entradas.isEmpty()) {
+            return;
+        }
+        long secuencia;
+        escritura.lock();
+        try {
+            for (EntradaAuditoria entrada : entradas) {
+                anadir(entrada);
+            }
+            secuencia = escritos;
+        } finally {
+            escritura.unlock();
+        }
+        esperarDurabilidad(secuencia);
+    }
+
+    private void anadir(EntradaAuditoria entrada) {
+        if (cerrado) {
+            throw new IllegalStateException("El log de auditoría está cerrado");
+        }
+        int necesario = entrada.tamano();
+        if (!segmento.cabe(necesario)) {
+            if (necesario + 4 > tamanoSegmento - SegmentoAuditoria.CABECERA) {
+                throw new IllegalArgumentException("El registro ocupa " + necesario
+                    + " bytes y no cabe en un segmento de " + tamanoSegmento);
+            }
+            rotar();
+        }
+        // Las marcas nunca retroceden aunque lo haga el reloj: los índices dependen de ello
+        ultimaMarca = Math.max(ultimaMarca, System.currentTimeMillis());
+        segmento.anadir(entrada, ultimaMarca);
+        escritos++;
+        registros.increment();
+        if (modo == ModoDurabilidad.POR_REGISTRO) {
+            segmento.sincronizar();
+            sincronizaciones.increment();
+        }
+    }
+
+    // El segmento lleno queda en disco antes de empezar el siguiente, así que el
+    // líder del commit en grupo solo tiene que sincronizar el segmento actual
+    private void rotar() {
+        List<SegmentoAuditoria> nuevos = new ArrayList<>(sellados);
+        nuevos.add(segmento.sellar());
+        sellados = List.copyOf(nuevos);
+        sincronizaciones.increment();
+        numeroSegmento++;
+        segmento = SegmentoAuditoria.crear(rutaSegmento(numeroSegmento), tamanoSegmento);
+        segmentosCreados.increment();
+    }
+
+    private void esperarDurabilidad(long secuencia) {
+        if (modo != ModoDurabilidad.POR_LOTE) {
+            return;
+        }
+        synchronized (grupo) {
+            while (sincronizados < secuencia) {
+                if (!sincronizando) {
+                    sincronizando = true;
+                    break;
+                }
+                try {
+                    grupo.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrumpido esperando la sincronización de auditoría", e);
+                }
+            }
+            if (sincronizados >= secuencia) {
+                return;
+            }
+        }
+        // Somos el líder: sincronizamos todo lo escrito hasta ahora, no solo lo nuestro.
+        // Si la sincronización falla se cede el turno para que otro escritor lo intente
+        long objetivo = 0;
+        try {
+            objetivo = sincronizarTodo();
+        } finally {
+            synchronized (grupo) {
+                sincronizados = Math.max(sincronizados, objetivo);
+                sincronizando = false;
+                grupo.notifyAll();
+            }
+        }
+    }
+
+    private long sincronizarTodo() {
+        SegmentoAuditoria actual;
+        long objetivo;
+        escritura.lock();
+        try {
+            if (cerrado) {
+                return escritos;
+            }
+            actual = segmento;
+            objetivo = escritos;
+        } finally {
+            escritura.unlock();
+        }
+        actual.sincronizar();
+        sincronizaciones.increment();
+        return objetivo;
+    }
+
+    private void abrirSegmentos() {
+        try {
+            Files.createDirectories(directorio);
+            Path pendiente = directorio.resolve(PENDIENTE);
+            if (Files.exists(pendiente)) {
+                aplicarCompactacion(pendiente);
+            }
+            borrarTemporales();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo preparar el directorio de auditoría " + directorio, e);
+        }
+        List<Path> existentes = segmentosExistentes();
+        if (existentes.isEmpty()) {
+            numeroSegmento = 0;
+            segmento = SegmentoAuditoria.crear(rutaSegmento(0), tamanoSegmento);
+            segmentosCreados.increment();
+            return;
+        }
+        List<SegmentoAuditoria> anteriores = new ArrayList<>();
+        for (int i = 0; i < existentes.size() - 1; i++) {
+            anteriores.add(SegmentoAuditoria.abrirSellado(existentes.get(i)));
+        }
+        Path ultimo = existentes.get(existentes.size() - 1);
+        numeroSegmento = numeroDe(ultimo);
+        if (SegmentoAuditoria.estaSellado(ultimo)) {
+            anteriores.add(SegmentoAuditoria.abrirSellado(ultimo));
+            numeroSegmento++;
+            segmento = SegmentoAuditoria.crear(rutaSegmento(numeroSegmento), tamanoSegmento);
+            segmentosCreados.increment();
+        } else {
+            segmento = SegmentoAuditoria.abrirActivo(ultimo);
+        }
+        sellados = List.copyOf(anteriores);
+        for (SegmentoAuditoria existente : anteriores) {
+            ultimaMarca = Math.max(ultimaMarca, existente.getMarcaMaxima());
+        }
+        ultimaMarca = Math.max(ultimaMarca, segmento.getMarcaMaxima());
+    }
+
+    private void escribirPendiente(Path pendiente, List<String> pasos) throws IOException {
+        // Los temporales ya están sellados y sincronizados; falta que lo estén sus entradas en el directorio
+        sincronizarDirectorio();
+        Path temporal = pendiente.resolveSibling(pendiente.getFileName() + TEMPORAL);
+        ByteBuffer contenido = ByteBuffer.wrap((String.join("\n", pasos) + "\n").getBytes(StandardCharsets.UTF_8));
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (contenido.hasRemaining()) {
+                canal.write(contenido);
+            }
+            canal.force(true);
+        }
+        Files.move(temporal, pendiente, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio();
+    }
+
+    // Se puede repetir si el proceso cayó mientras se aplicaba. Los segmentos
+    // compactados llevan el nombre de un original: si su temporal ya no existe, el
+    // renombrado se hizo y el fichero con ese nombre es el compactado, que no se borra
+    private void aplicarCompactacion(Path pendiente) throws IOException {
+        List<String> pasos = Files.readAllLines(pendiente);
+        if (pasos.isEmpty() || !pasos.get(pasos.size() - 1).equals(FIN_PASOS)) {
+            // Lista a medias: no se llegó a borrar ningún original y los temporales se descartan
+            Files.delete(pendiente);
+            sincronizarDirectorio();
+            return;
+        }
+        Set<String> renombrados = new HashSet<>();
+        for (String paso : pasos) {
+            String[] partes = paso.split(" ");
+            if (partes[0].equals("R") && !Files.exists(directorio.resolve(partes[1]))) {
+                renombrados.add(partes[2]);
+            }
+        }
+        for (String paso : pasos) {
+            String[] partes = paso.split(" ");
+            if (partes[0].equals("B") && !renombrados.contains(partes[1])) {
+                Path original = directorio.resolve(partes[1]);
+                Files.deleteIfExists(SegmentoAuditoria.rutaIndice(original));
+                Files.deleteIfExists(original);
+            }
+        }
+        for (String paso : pasos) {
+            String[] partes = paso.split(" ");
+            if (partes[0].equals("R")) {
+                Path temporal = directorio.resolve(partes[1]);
+                Path rutaFinal = directorio.resolve(partes[2]);
+                // Primero el segmento y después su índice: un temporal que ya no existe
+                // marca el renombrado como hecho, y un índice perdido se reconstruye al abrir
+                if (Files.exists(temporal)) {
+                    Files.move(temporal, rutaFinal, StandardCopyOption.ATOMIC_MOVE);
+                }
+                if (Files.exists(SegmentoAuditoria.rutaIndice(temporal))) {
+                    Files.move(SegmentoAuditoria.rutaIndice(temporal), SegmentoAuditoria.rutaIndice(rutaFinal),
+                        StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        }
+        // Los renombrados tienen que estar en disco antes de que desaparezca la lista de pasos
+        sincronizarDirectorio();
+        Files.delete(pendiente);
+        sincronizarDirectorio();
+    }
+
+    private void sincronizarDirectorio() throws IOException {
+        SegmentoAuditoria.sincronizarDirectorio(directorio);
+    }
+
+    private void borrarTemporales() throws IOException {
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            for (Path ruta : ficheros.toList()) {
+                String nombre = ruta.getFileName().toString();
+                if (nombre.endsWith(TEMPORAL) || nombre.endsWith(TEMPORAL + SegmentoAuditoria.EXTENSION_INDICE)) {
+                    Files.delete(ruta);
+                }
+            }
+        }
+    }
+
+    private List<Path> segmentosExistentes() {
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            // El número va con ceros a la izquierda: el orden alfabético es el de creación
+            return ficheros
+                .filter(ruta -> {
+                    String nombre = ruta.getFileName().toString();
+                    return nombre.startsWith(PREFIJO) && nombre.endsWith(EXTENSION);
+                })
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo listar el directorio de auditoría " + directorio, e);
+        }
+    }
+
+    private Path rutaSegmento(long numero) {
+        return directorio.resolve(String.format("%s%020d%s", PREFIJO, numero, EXTENSION));
+    }
+
+    private static long numeroDe(Path ruta) {
+        String nombre = ruta.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+    }
+}
@@ -0,0 +1,191 @@
+package com.miempresa.auditoria;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.TipoOperacion;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Formato binario de un registro del log de auditoría:
+ * {@code [int longitud][int crc][long marcaTiempo][byte clase][byte codigoTipo]}, el
+ * nombre del tipo como {@code [short n][bytes]} solo si no es un {@link TipoOperacion},
+ * y después {@code [long idUsuario][short n][email][short n][nombre][int n][detalles]}.
+ * La longitud cuenta los bytes que vienen detrás de ella y el CRC32 cubre todo lo
+ * que viene detrás del propio CRC.
+ *
+ * Escribir la longitud la última solo ordena las escrituras dentro del proceso: el
+ * sistema lleva a disco las páginas del mapa en cualquier orden, así que tras una
+ * caída puede quedar una longitud válida delante de un cuerpo sin escribir. Un
+ * registro cuyo CRC no cuadra ({@link #valido}) marca el final del log.
+ *
+ * Los eventos estructurados no guardan el texto de detalle: se compone al leer.
+ * Una entrada se codifica fuera del cerrojo de escritura y luego solo se copia.
+ */
+final class EntradaAuditoria {
+
+    private static final byte OPERACION = 0;
+    private static final byte EVENTO = 1;
+    private static final int TIPO_LIBRE = 0xFF;
+    private static final long SIN_ID = Long.MIN_VALUE;
+    private static final int MAXIMO_CORTO = 0xFFFF;
+    // El código de tipo es el ordinal: los tipos nuevos se añaden siempre al final del enum
+    private static final TipoOperacion[] TIPOS = TipoOperacion.values();
+    private static final byte[] VACIO = new byte[0];
+    // Longitud mínima de un registro: CRC, marca, clase, código, id y las tres longitudes
+    private static final int LONGITUD_MINIMA = 4 + 8 + 1 + 1 + 8 + 2 + 2 + 4;
+
+    final String tipoOperacion;
+    // Clave del índice por email (en minúsculas), null si el registro no lleva email
+    final String emailNormalizado;
+    private final byte clase;
+    private final int codigoTipo;
+    private final byte[] tipoLibre;
+    private final long idUsuario;
+    private final byte[] email;
+    private final byte[] nombre;
+    private final byte[] detalles;
+
+    private EntradaAuditoria(String tipoOperacion, byte clase, int codigoTipo, long idUsuario,
+                             String email, String nombre, String detalles) {
+        this.tipoOperacion = tipoOperacion;
+        this.clase = clase;
+        this.codigoTipo = codigoTipo;
+        this.tipoLibre = codigoTipo == TIPO_LIBRE ? corto(tipoOperacion) : null;
+        this.idUsuario = idUsuario;
+        this.email = corto(email);
+        this.nombre = corto(nombre);
+        this.detalles = detalles == null ? VACIO : detalles.getBytes(StandardCharsets.UTF_8);
+        this.emailNormalizado = normalizarEmail(email);
+    }
+
+    static EntradaAuditoria operacion(String tipoOperacion, String detalles) {
+        String tipo = tipoOperacion == null ? "" : tipoOperacion;
+        return new EntradaAuditoria(tipo, OPERACION, codigoDe(tipo), SIN_ID, null, null, detalles);
+    }
+
+    static EntradaAuditoria evento(TipoOperacion tipo, Long idUsuario, String nombre, String email) {
+        return new EntradaAuditoria(tipo.name(), EVENTO, tipo.ordinal(),
+            idUsuario == null ? SIN_ID : idUsuario, email, nombre, null);
+    }
+
+    static String normalizarEmail(String email) {
+        return Usuario.normalizarEmail(email);
+    }
+
+    int tamano() {
+        int tipo = tipoLibre == null ? 0 : 2 + tipoLibre.length;
+        return 4 + 4 + 8 + 1 + 1 + tipo + 8 + 2 + email.length + 2 + nombre.length + 4 + detalles.length;
+    }
+
+    void escribir(ByteBuffer destino, int posicion, long marcaTiempo) {
+        int p = posicion + 8;
+        destino.putLong(p, marcaTiempo);
+        destino.put(p + 8, clase);
+        destino.put(p + 9, (byte) codigoTipo);
+        p += 10;
+        if (tipoLibre != null) {
+            p = ponerCorto(destino, p, tipoLibre);
+        }
+        destino.putLong(p, idUsuario);
+        p = ponerCorto(destino, p + 8, email);
+        p = ponerCorto(destino, p, nombre);
+        destino.putInt(p, detalles.length);
+        destino.put(p + 4, detalles);
+        destino.putInt(posicion + 4, crc(destino, posicion, tamano() - 4));
+        // La longitud se escribe la última: un lector nunca ve un registro a medias
+        destino.putInt(posicion, tamano() - 4);
+    }
+
+    // Si en la posición empieza un registro completo: longitud dentro del buffer y CRC correcto
+    static boolean valido(ByteBuffer origen, int posicion) {
+        if (posicion + 4 > origen.capacity()) {
+            return false;
+        }
+        int longitud = origen.getInt(posicion);
+        if (longitud < LONGITUD_MINIMA || longitud > origen.capacity() - posicion - 4) {
+            return false;
+        }
+        return origen.getInt(posicion + 4) == crc(origen, posicion, longitud);
+    }
+
+    static long marcaEn(ByteBuffer origen, int posicion) {
+        return origen.getLong(posicion + 8);
+    }
+
+    static int siguiente(ByteBuffer origen, int posicion) {
+        return posicion + 4 + origen.getInt(posicion);
+    }
+
+    static RegistroAuditoria leer(ByteBuffer origen, int posicion) {
+        long marca = origen.getLong(posicion + 8);
+        byte clase = origen.get(posicion + 16);
+        int codigo = origen.get(posicion + 17) & 0xFF;
+        int p = posicion + 18;
+        String tipo;
+        if (codigo == TIPO_LIBRE) {
+            tipo = leerCorto(origen, p);
+            p += 2 + (origen.getShort(p) & 0xFFFF);
+        } else {
+            tipo = TIPOS[codigo].name();
+        }
+        long id = origen.getLong(p);
+        p += 8;
+        String email = leerCorto(origen, p);
+        p += 2 + (origen.getShort(p) & 0xFFFF);
+        String nombre = leerCorto(origen, p);
+        p += 2 + (origen.getShort(p) & 0xFFFF);
+        byte[] bytesDetalles = new byte[origen.getInt(p)];
+        origen.get(p + 4, bytesDetalles);
+
+        if (clase == EVENTO) {
+            return new RegistroAuditoria(marca, tipo, id == SIN_ID ? null : id, nombre, email,
+                TIPOS[codigo].detalles(nombre, email));
+        }
+        return new RegistroAuditoria(marca, tipo, null, null, null,
+            new String(bytesDetalles, StandardCharsets.UTF_8));
+    }
+
+    // CRC32 de los bytes que siguen al CRC en un registro de la longitud dada
+    private static int crc(ByteBuffer origen, int posicion, int longitud) {
+        CRC32 crc = new CRC32();
+        crc.update(origen.slice(posicion + 8, longitud - 4));
+        return (int) crc.getValue();
+    }
+
+    private static int codigoDe(String tipo) {
+        for (TipoOperacion conocido : TIPOS) {
+            if (conocido.name().equals(tipo)) {
+                return conocido.ordinal();
+            }
+        }
+        return TIPO_LIBRE;
+    }
+
+    private static byte[] corto(String texto) {
+        if (texto == null) {
+            return VACIO;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAXIMO_CORTO) {
+            throw new IllegalArgumentException("Campo de auditoría demasiado largo: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int ponerCorto(ByteBuffer destino, int p, byte[] bytes) {
+        destino.putShort(p, (short) bytes.length);
+        destino.put(p + 2, bytes);
+        return p + 2 + bytes.length;
+    }
+
+    private static String leerCorto(ByteBuffer origen, int p) {
+        int longitud = origen.getShort(p) & 0xFFFF;
+        if (longitud == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        origen.get(p + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
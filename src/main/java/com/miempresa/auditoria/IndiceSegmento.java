@@ -0,0 +1,201 @@
+package com.miempresa.auditoria;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Índices de un segmento de auditoría: un índice disperso de tiempo (una
+ * muestra cada {@link #INTERVALO_MUESTRA} registros), las posiciones de los
+ * registros de cada tipo de operación y las de cada email.
+ *
+ * Las posiciones de cada lista están en orden de escritura y, como las marcas de
+ * tiempo del log nunca retroceden, también en orden de tiempo: una consulta por
+ * rango busca el inicio con una búsqueda binaria y recorre solo lo que coincide.
+ *
+ * Mientras el segmento está activo el índice vive en memoria; al sellarlo se
+ * guarda en un fichero {@code .idx} junto al segmento. El fichero se escribe
+ * aparte y se renombra al terminar, así que un {@code .idx} nunca queda a medias.
+ */
+final class IndiceSegmento {
+
+    static final int INTERVALO_MUESTRA = 64;
+    private static final int MAGICO = 0x49445831;   // "IDX1"
+
+    // Lista de posiciones que crece sin cajas de Integer
+    static final class Posiciones {
+        private int[] valores = new int[8];
+        private int tamano;
+
+        void anadir(int posicion) {
+            if (tamano == valores.length) {
+                valores = Arrays.copyOf(valores, tamano * 2);
+            }
+            valores[tamano++] = posicion;
+        }
+
+        int get(int i) {
+            return valores[i];
+        }
+
+        int tamano() {
+            return tamano;
+        }
+    }
+
+    private long marcaMinima = Long.MAX_VALUE;
+    private long marcaMaxima = Long.MIN_VALUE;
+    private int registros;
+    private long[] marcasMuestra = new long[16];
+    private int[] posicionesMuestra = new int[16];
+    private int muestras;
+    private final Map<String, Posiciones> porTipo = new HashMap<>();
+    private final Map<String, Posiciones> porEmail = new HashMap<>();
+
+    void anotar(int posicion, long marcaTiempo, String tipoOperacion, String emailNormalizado) {
+        if (registros % INTERVALO_MUESTRA == 0) {
+            if (muestras == marcasMuestra.length) {
+                marcasMuestra = Arrays.copyOf(marcasMuestra, muestras * 2);
+                posicionesMuestra = Arrays.copyOf(posicionesMuestra, muestras * 2);
+            }
+            marcasMuestra[muestras] = marcaTiempo;
+            posicionesMuestra[muestras] = posicion;
+            muestras++;
+        }
+        registros++;
+        marcaMinima = Math.min(marcaMinima, marcaTiempo);
+        marcaMaxima = Math.max(marcaMaxima, marcaTiempo);
+        porTipo.computeIfAbsent(tipoOperacion, t -> new Posiciones()).anadir(posicion);
+        if (emailNormalizado != null) {
+            porEmail.computeIfAbsent(emailNormalizado, e -> new Posiciones()).anadir(posicion);
+        }
+    }
+
+    boolean solapa(long desde, long hasta) {
+        return registros > 0 && marcaMinima <= hasta && marcaMaxima >= desde;
+    }
+
+    // Posición desde la que empezar a recorrer para no saltarse registros con marca >= desde
+    int posicionInicial(long desde, int porDefecto) {
+        int bajo = 0;
+        int alto = muestras - 1;
+        int encontrada = -1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (marcasMuestra[medio] < desde) {
+                encontrada = medio;
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return encontrada < 0 ? porDefecto : posicionesMuestra[encontrada];
+    }
+
+    Posiciones delTipo(String tipoOperacion) {
+        return porTipo.get(tipoOperacion);
+    }
+
+    Posiciones delEmail(String emailNormalizado) {
+        return porEmail.get(emailNormalizado);
+    }
+
+    int getRegistros() {
+        return registros;
+    }
+
+    // Long.MIN_VALUE si el segmento está vacío
+    long getMarcaMaxima() {
+        return marcaMaxima;
+    }
+
+    void guardar(Path ruta) {
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        try (OutputStream fichero = Files.newOutputStream(temporal);
+             DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(fichero))) {
+            salida.writeInt(MAGICO);
+            salida.writeLong(marcaMinima);
+            salida.writeLong(marcaMaxima);
+            salida.writeInt(registros);
+            salida.writeInt(muestras);
+            for (int i = 0; i < muestras; i++) {
+                salida.writeLong(marcasMuestra[i]);
+                salida.writeInt(posicionesMuestra[i]);
+            }
+            guardarMapa(salida, porTipo);
+            guardarMapa(salida, porEmail);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo guardar el índice " + ruta, e);
+        }
+        try {
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                canal.force(true);
+            }
+            Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            SegmentoAuditoria.sincronizarDirectorio(ruta.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo sincronizar el índice " + ruta, e);
+        }
+    }
+
+    static IndiceSegmento cargar(Path ruta) {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(ruta)))) {
+            if (entrada.readInt() != MAGICO) {
+                throw new IllegalStateException("El fichero " + ruta + " no es un índice de auditoría válido");
+            }
+            IndiceSegmento indice = new IndiceSegmento();
+            indice.marcaMinima = entrada.readLong();
+            indice.marcaMaxima = entrada.readLong();
+            indice.registros = entrada.readInt();
+            indice.muestras = entrada.readInt();
+            indice.marcasMuestra = new long[Math.max(indice.muestras, 1)];
+            indice.posicionesMuestra = new int[Math.max(indice.muestras, 1)];
+            for (int i = 0; i < indice.muestras; i++) {
+                indice.marcasMuestra[i] = entrada.readLong();
+                indice.posicionesMuestra[i] = entrada.readInt();
+            }
+            cargarMapa(entrada, indice.porTipo);
+            cargarMapa(entrada, indice.porEmail);
+            return indice;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el índice " + ruta, e);
+        }
+    }
+
+    private static void guardarMapa(DataOutputStream salida, Map<String, Posiciones> mapa) throws IOException {
+        salida.writeInt(mapa.size());
+        for (Map.Entry<String, Posiciones> entrada : mapa.entrySet()) {
+            salida.writeUTF(entrada.getKey());
+            Posiciones posiciones = entrada.getValue();
+            salida.writeInt(posiciones.tamano());
+            for (int i = 0; i < posiciones.tamano(); i++) {
+                salida.writeInt(posiciones.get(i));
+            }
+        }
+    }
+
+    private static void cargarMapa(DataInputStream entrada, Map<String, Posiciones> mapa) throws IOException {
+        int claves = entrada.readInt();
+        for (int c = 0; c < claves; c++) {
+            String clave = entrada.readUTF();
+            int tamano = entrada.readInt();
+            Posiciones posiciones = new Posiciones();
+            for (int i = 0; i < tamano; i++) {
+                posiciones.anadir(entrada.readInt());
+            }
+            mapa.put(clave, posiciones);
+        }
+    }
+}
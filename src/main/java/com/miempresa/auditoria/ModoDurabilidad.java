@@ -0,0 +1,15 @@
+package com.miempresa.auditoria;
+
+/**
+ * Cuándo se fuerza a disco lo escrito en el log de auditoría.
+ */
+public enum ModoDurabilidad {
+    // Cada registro se sincroniza antes de volver al llamador (lo más lento)
+    POR_REGISTRO,
+    // Commit en grupo: el llamador espera a que su registro esté en disco, pero
+    // todos los que esperan a la vez comparten una única sincronización
+    POR_LOTE,
+    // Un hilo de fondo sincroniza cada cierto intervalo; el llamador no espera
+    // y un corte de luz puede perder el último intervalo
+    PERIODICO
+}
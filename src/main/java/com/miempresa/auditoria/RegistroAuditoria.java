@@ -0,0 +1,10 @@
+package com.miempresa.auditoria;
+
+/**
+ * Un registro leído del log de auditoría. En los eventos estructurados el
+ * detalle se compone al leer a partir del tipo, el nombre y el email; en las
+ * operaciones libres {@code idUsuario}, {@code nombre} y {@code email} son null.
+ */
+public record RegistroAuditoria(long marcaTiempo, String tipoOperacion, Long idUsuario,
+                                String nombre, String email, String detalles) {
+}
@@ -0,0 +1,7 @@
+package com.miempresa.auditoria;
+
+/**
+ * Resultado de compactar los segmentos sellados del log de auditoría.
+ */
+public record ResultadoCompactacion(int segmentosAntes, int segmentosDespues, long registrosDescartados) {
+}
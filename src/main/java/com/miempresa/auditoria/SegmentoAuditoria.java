@@ -0,0 +1,305 @@
+package com.miempresa.auditoria;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Un fichero de segmento del log de auditoría, mapeado en memoria, con sus índices.
+ *
+ * Formato: cabecera de 8 bytes (número mágico y versión) seguida de registros en
+ * el formato de {@link EntradaAuditoria}. El resto del fichero queda a cero, así
+ * que una longitud 0 marca el final de lo escrito; al reabrir, también el primer
+ * registro incompleto o con el CRC mal, que es lo que deja una caída a mitad.
+ *
+ * Un segmento activo tiene tamaño fijo y admite escrituras, que serializa el
+ * llamador; {@link #sincronizar()} puede ejecutarse en paralelo con ellas. Al
+ * sellarlo se recorta al tamaño usado, se guarda su índice en un fichero
+ * {@code .idx} y se vuelve a abrir solo para lectura.
+ */
+final class SegmentoAuditoria implements AutoCloseable {
+
+    static final int MAGICO = 0x41554431;   // "AUD1"
+    static final int VERSION = 3;
+    static final int CABECERA = 8;
+    static final String EXTENSION_INDICE = ".idx";
+
+    private final Path ruta;
+    private final FileChannel canal;
+    private final MappedByteBuffer mapa;
+    private final IndiceSegmento indice;
+    private volatile int posicion;
+    private int posicionSincronizada;
+
+    private SegmentoAuditoria(Path ruta, FileChannel canal, MappedByteBuffer mapa,
+                              IndiceSegmento indice, int posicion) {
+        this.ruta = ruta;
+        this.canal = canal;
+        this.mapa = mapa;
+        this.indice = indice;
+        this.posicion = posicion;
+        this.posicionSincronizada = posicion;
+    }
+
+    static SegmentoAuditoria crear(Path ruta, int tamano) {
+        try {
+            FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamano);
+            mapa.putInt(0, MAGICO);
+            mapa.putInt(4, VERSION);
+            return new SegmentoAuditoria(ruta, canal, mapa, new IndiceSegmento(), CABECERA);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el segmento " + ruta, e);
+        }
+    }
+
+    // Reabre el segmento activo para seguir escribiendo detrás del último registro
+    static SegmentoAuditoria abrirActivo(Path ruta) {
+        try {
+            FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, canal.size());
+            comprobarCabecera(ruta, mapa);
+            IndiceSegmento indice = new IndiceSegmento();
+            int fin = reconstruir(mapa, indice);
+            borrarCola(mapa, fin);
+            return new SegmentoAuditoria(ruta, canal, mapa, indice, fin);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el segmento " + ruta, e);
+        }
+    }
+
+    // Abre un segmento sellado solo para lectura; si falta su índice o no se puede
+    // leer (por ejemplo, uno escrito por una versión anterior que cayó a mitad) lo reconstruye
+    static SegmentoAuditoria abrirSellado(Path ruta) {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            comprobarCabecera(ruta, mapa);
+            Path rutaIndice = rutaIndice(ruta);
+            IndiceSegmento indice = Files.exists(rutaIndice) ? cargarIndice(rutaIndice) : null;
+            int fin;
+            if (indice != null) {
+                fin = buscarFinal(mapa);
+            } else {
+                indice = new IndiceSegmento();
+                fin = reconstruir(mapa, indice);
+                indice.guardar(rutaIndice);
+            }
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return new SegmentoAuditoria(ruta, null, mapa, indice, fin);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el segmento " + ruta, e);
+        }
+    }
+
+    // null si el índice está truncado o no es válido
+    private static IndiceSegmento cargarIndice(Path rutaIndice) {
+        try {
+            return IndiceSegmento.cargar(rutaIndice);
+        } catch (UncheckedIOException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    static boolean estaSellado(Path ruta) {
+        return Files.exists(rutaIndice(ruta));
+    }
+
+    static Path rutaIndice(Path ruta) {
+        return ruta.resolveSibling(ruta.getFileName() + EXTENSION_INDICE);
+    }
+
+    // Fuerza a disco las entradas del directorio (altas, bajas y renombrados de ficheros)
+    static void sincronizarDirectorio(Path directorio) throws IOException {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        }
+    }
+
+    boolean cabe(int bytes) {
+        // Se reservan 4 bytes para que siempre quede una longitud 0 de fin
+        return canal != null && posicion + bytes + 4 <= mapa.capacity();
+    }
+
+    void anadir(EntradaAuditoria entrada, long marcaTiempo) {
+        int p = posicion;
+        entrada.escribir(mapa, p, marcaTiempo);
+        indice.anotar(p, marcaTiempo, entrada.tipoOperacion, entrada.emailNormalizado);
+        posicion = p + entrada.tamano();
+    }
+
+    // Copia un registro tal cual desde otro segmento (para la compactación)
+    void copiar(SegmentoAuditoria origen, int desde) {
+        int longitud = origen.siguiente(desde) - desde;
+        RegistroAuditoria registro = EntradaAuditoria.leer(origen.mapa, desde);
+        int p = posicion;
+        mapa.put(p, origen.mapa, desde, longitud);
+        indice.anotar(p, registro.marcaTiempo(), registro.tipoOperacion(),
+            EntradaAuditoria.normalizarEmail(registro.email()));
+        posicion = p + longitud;
+    }
+
+    // Fuerza a disco lo escrito desde la última sincronización
+    synchronized void sincronizar() {
+        int hasta = posicion;
+        if (canal != null && hasta > posicionSincronizada) {
+            mapa.force(posicionSincronizada, hasta - posicionSincronizada);
+            posicionSincronizada = hasta;
+        }
+    }
+
+    // Deja el segmento en disco con su índice y devuelve su versión de solo lectura
+    SegmentoAuditoria sellar() {
+        sincronizar();
+        indice.guardar(rutaIndice(ruta));
+        try {
+            canal.truncate(posicion);
+            canal.force(true);
+            canal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo sellar el segmento " + ruta, e);
+        }
+        return abrirSellado(ruta);
+    }
+
+    // Registros de un tipo (o de todos si es null) con marca de tiempo en [desde, hasta]
+    void buscar(String tipoOperacion, long desde, long hasta, List<RegistroAuditoria> resultado) {
+        if (!indice.solapa(desde, hasta)) {
+            return;
+        }
+        if (tipoOperacion == null) {
+            int fin = posicion;
+            for (int p = indice.posicionInicial(desde, CABECERA); p < fin; p = siguiente(p)) {
+                long marca = marcaEn(p);
+                if (marca > hasta) {
+                    break;
+                }
+                if (marca >= desde) {
+                    resultado.add(EntradaAuditoria.leer(mapa, p));
+                }
+            }
+            return;
+        }
+        IndiceSegmento.Posiciones posiciones = indice.delTipo(tipoOperacion);
+        if (posiciones == null) {
+            return;
+        }
+        for (int i = primeraDesde(posiciones, desde); i < posiciones.tamano(); i++) {
+            int p = posiciones.get(i);
+            if (marcaEn(p) > hasta) {
+                break;
+            }
+            resultado.add(EntradaAuditoria.leer(mapa, p));
+        }
+    }
+
+    // Registros de un email, opcionalmente filtrados por tipo
+    void buscarPorEmail(String emailNormalizado, String tipoOperacion, List<RegistroAuditoria> resultado) {
+        IndiceSegmento.Posiciones posiciones = indice.delEmail(emailNormalizado);
+        if (posiciones == null) {
+            return;
+        }
+        for (int i = 0; i < posiciones.tamano(); i++) {
+            RegistroAuditoria registro = EntradaAuditoria.leer(mapa, posiciones.get(i));
+            if (tipoOperacion == null || tipoOperacion.equals(registro.tipoOperacion())) {
+                resultado.add(registro);
+            }
+        }
+    }
+
+    void leerTodos(List<RegistroAuditoria> resultado) {
+        int fin = posicion;
+        for (int p = CABECERA; p < fin; p = siguiente(p)) {
+            resultado.add(EntradaAuditoria.leer(mapa, p));
+        }
+    }
+
+    int finDatos() {
+        return posicion;
+    }
+
+    int siguiente(int p) {
+        return EntradaAuditoria.siguiente(mapa, p);
+    }
+
+    long marcaEn(int p) {
+        return EntradaAuditoria.marcaEn(mapa, p);
+    }
+
+    int getRegistros() {
+        return indice.getRegistros();
+    }
+
+    long getMarcaMaxima() {
+        return indice.getMarcaMaxima();
+    }
+
+    Path getRuta() {
+        return ruta;
+    }
+
+    @Override
+    public void close() {
+        if (canal == null) {
+            return;
+        }
+        sincronizar();
+        try {
+            canal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo cerrar el segmento " + ruta, e);
+        }
+    }
+
+    private int primeraDesde(IndiceSegmento.Posiciones posiciones, long desde) {
+        int bajo = 0;
+        int alto = posiciones.tamano();
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (marcaEn(posiciones.get(medio)) < desde) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private static void comprobarCabecera(Path ruta, MappedByteBuffer mapa) {
+        if (mapa.capacity() < CABECERA || mapa.getInt(0) != MAGICO || mapa.getInt(4) != VERSION) {
+            throw new IllegalStateException("El fichero " + ruta + " no es un segmento de auditoría válido");
+        }
+    }
+
+    private static int reconstruir(MappedByteBuffer mapa, IndiceSegmento indice) {
+        int fin = buscarFinal(mapa);
+        for (int p = CABECERA; p < fin; p = EntradaAuditoria.siguiente(mapa, p)) {
+            RegistroAuditoria registro = EntradaAuditoria.leer(mapa, p);
+            indice.anotar(p, registro.marcaTiempo(), registro.tipoOperacion(),
+                EntradaAuditoria.normalizarEmail(registro.email()));
+        }
+        return fin;
+    }
+
+    // Pone a cero lo que quede detrás del último registro válido: si no, un registro
+    // entero que siguiera a uno cortado podría reaparecer detrás del siguiente que se escriba
+    private static void borrarCola(MappedByteBuffer mapa, int desde) {
+        byte[] ceros = new byte[Math.min(64 * 1024, mapa.capacity() - desde)];
+        for (int p = desde; p < mapa.capacity(); p += ceros.length) {
+            mapa.put(p, ceros, 0, Math.min(ceros.length, mapa.capacity() - p));
+        }
+    }
+
+    private static int buscarFinal(MappedByteBuffer mapa) {
+        int p = CABECERA;
+        while (EntradaAuditoria.valido(mapa, p)) {
+            p = EntradaAuditoria.siguiente(mapa, p);
+        }
+        return p;
+    }
+}
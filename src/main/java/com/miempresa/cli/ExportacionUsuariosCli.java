@@ -0,0 +1,86 @@
+package com.miempresa.cli;
+
+import com.miempresa.service.UsuarioService;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Modo de línea de comandos para exportar usuarios: arrancada con
+ * {@code --exportar-usuarios=<fichero>}, la aplicación escribe todos los usuarios
+ * como NDJSON (comprimido si el fichero acaba en {@code .gz}; {@code -} para la
+ * salida estándar) y termina. Para no levantar además el servidor web, añadir
+ * {@code --spring.main.web-application-type=none}.
+ *
+ * Con {@code -} la salida estándar queda solo para el NDJSON: {@link #reservarSalidaEstandar}
+ * se llama desde {@code main} antes de arrancar Spring y desvía a la salida de error
+ * todo lo demás (el banner, el log de consola y cualquier otro {@code System.out}).
+ * Si la aplicación se arranca de otra forma, añadir {@code --spring.main.banner-mode=off}
+ * y {@code --logging.threshold.console=OFF}, o el log se mezcla con los datos.
+ */
+@Component
+public class ExportacionUsuariosCli implements ApplicationRunner {
+
+    static final String OPCION = "exportar-usuarios";
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    // Salida estándar original, reservada para los datos al exportar a "-"
+    static volatile PrintStream salidaDatos;
+
+    private final UsuarioService usuarioService;
+    private final ApplicationContext contexto;
+
+    public ExportacionUsuariosCli(UsuarioService usuarioService, ApplicationContext contexto) {
+        this.usuarioService = usuarioService;
+        this.contexto = contexto;
+    }
+
+    // Tiene que ejecutarse antes de que Spring imprima el banner y configure el log
+    public static void reservarSalidaEstandar(String[] argumentos) {
+        for (String argumento : argumentos) {
+            if (argumento.equals("--" + OPCION) || argumento.equals("--" + OPCION + "=-")) {
+                salidaDatos = System.out;
+                System.setOut(System.err);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments argumentos) throws IOException {
+        if (!argumentos.containsOption(OPCION)) {
+            return;
+        }
+        List<String> valores = argumentos.getOptionValues(OPCION);
+        String destino = valores.isEmpty() ? "-" : valores.get(0);
+        long inicio = System.nanoTime();
+        long exportados = exportar(destino);
+        // Por la salida de error: la estándar puede ser la propia exportación
+        System.err.printf("Exportados %d usuarios a %s en %d ms%n", exportados, destino,
+            (System.nanoTime() - inicio) / 1_000_000);
+        System.exit(SpringApplication.exit(contexto));
+    }
+
+    long exportar(String destino) throws IOException {
+        if ("-".equals(destino)) {
+            PrintStream salida = salidaDatos != null ? salidaDatos : System.out;
+            long exportados = usuarioService.exportarUsuarios(salida);
+            salida.flush();
+            return exportados;
+        }
+        Path ruta = Path.of(destino);
+        OutputStream fichero = Files.newOutputStream(ruta);
+        try (OutputStream salida = destino.endsWith(".gz") ? new GZIPOutputStream(fichero, TAMANO_BUFFER) : fichero) {
+            return usuarioService.exportarUsuarios(salida);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.miempresa.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos con cubetas log-lineales, al estilo de
+ * HdrHistogram: cada potencia de dos se parte en {@value #SUBCUBETAS_MITAD}
+ * cubetas iguales, así que cualquier percentil sale con un error relativo por
+ * debajo del 1,6 %, desde nanosegundos hasta {@code 2^47} ns (unas 39 horas; los
+ * valores mayores cuentan en la última cubeta).
+ *
+ * {@link #registrar(long)} no reserva memoria ni toma cerrojos: un incremento
+ * atómico en la cubeta más la suma y el máximo. Las lecturas son aproximadas
+ * mientras se sigue registrando, lo normal en una métrica.
+ */
+public final class HistogramaLatencia {
+
+    private static final int BITS_PRECISION = 7;
+    private static final int SUBCUBETAS = 1 << BITS_PRECISION;          // 128
+    private static final int SUBCUBETAS_MITAD = SUBCUBETAS >> 1;        // 64
+    private static final int EXPONENTE_MAXIMO = 40;
+    private static final int CUBETAS = SUBCUBETAS + EXPONENTE_MAXIMO * SUBCUBETAS_MITAD;
+    private static final long VALOR_MAXIMO = ((long) SUBCUBETAS << EXPONENTE_MAXIMO) - 1;
+
+    // Resumen en microsegundos para publicar
+    public record Resumen(long cuenta, double mediaMicros, double p50Micros, double p90Micros,
+                          double p99Micros, double p999Micros, double maximoMicros) {
+    }
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    public void registrar(long nanos) {
+        long valor = Math.min(Math.max(nanos, 0), VALOR_MAXIMO);
+        cuentas.incrementAndGet(indice(valor));
+        total.increment();
+        suma.add(valor);
+        long actual = maximo.get();
+        while (valor > actual && !maximo.compareAndSet(actual, valor)) {
+            actual = maximo.get();
+        }
+    }
+
+    public long getCuenta() {
+        return total.sum();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getMedia() {
+        long cuenta = total.sum();
+        return cuenta == 0 ? 0 : suma.sum() / (double) cuenta;
+    }
+
+    /**
+     * Latencia en nanosegundos por debajo de la cual queda el porcentaje dado de
+     * registros (0-100). Devuelve el punto medio de la cubeta, nunca más que el máximo.
+     */
+    public long percentil(double porcentaje) {
+        if (porcentaje < 0 || porcentaje > 100) {
+            throw new IllegalArgumentException("El percentil debe estar entre 0 y 100: " + porcentaje);
+        }
+        long cuenta = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            cuenta += cuentas.get(i);
+        }
+        if (cuenta == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(cuenta * porcentaje / 100));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(puntoMedio(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    public Resumen resumen() {
+        return new Resumen(getCuenta(), getMedia() / 1000, percentil(50) / 1000.0, percentil(90) / 1000.0,
+            percentil(99) / 1000.0, percentil(99.9) / 1000.0, getMaximo() / 1000.0);
+    }
+
+    // Las primeras SUBCUBETAS cubetas son exactas (0..127 ns); después cada
+    // potencia de dos ocupa SUBCUBETAS_MITAD cubetas de anchura 2^exponente
+    static int indice(long valor) {
+        int exponente = Math.max(0, 64 - Long.numberOfLeadingZeros(valor) - BITS_PRECISION);
+        int sub = (int) (valor >>> exponente);
+        return exponente == 0 ? sub : SUBCUBETAS + (exponente - 1) * SUBCUBETAS_MITAD + (sub - SUBCUBETAS_MITAD);
+    }
+
+    static long puntoMedio(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = (indice - SUBCUBETAS) / SUBCUBETAS_MITAD + 1;
+        long sub = (indice - SUBCUBETAS) % SUBCUBETAS_MITAD + SUBCUBETAS_MITAD;
+        return (sub << exponente) + (1L << (exponente - 1));
+    }
+}
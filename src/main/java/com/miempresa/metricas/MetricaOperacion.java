@@ -0,0 +1,55 @@
+package com.miempresa.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias y errores de una operación. Se obtiene una vez de
+ * {@link RegistroMetricas#operacion(String)} y se guarda en un campo; medir una
+ * llamada es leer el reloj antes y pasar esa lectura a {@link #registrarDesde(long)}:
+ * sin reservar memoria ni tomar cerrojos.
+ */
+public final class MetricaOperacion {
+
+    // llamadas cuenta también las que fallaron; porSegundo es la media desde el arranque
+    public record Resumen(long llamadas, long errores, double porSegundo, HistogramaLatencia.Resumen latencia) {
+    }
+
+    private final String nombre;
+    private final HistogramaLatencia histograma = new HistogramaLatencia();
+    private final LongAdder errores = new LongAdder();
+
+    MetricaOperacion(String nombre) {
+        this.nombre = nombre;
+    }
+
+    // inicioNanos es una lectura de System.nanoTime() tomada al empezar la llamada
+    public void registrarDesde(long inicioNanos) {
+        histograma.registrar(System.nanoTime() - inicioNanos);
+    }
+
+    public void anotarError() {
+        errores.increment();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public long getLlamadas() {
+        return histograma.getCuenta();
+    }
+
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    public HistogramaLatencia getHistograma() {
+        return histograma;
+    }
+
+    Resumen resumen(long nanosTranscurridos) {
+        HistogramaLatencia.Resumen latencia = histograma.resumen();
+        double porSegundo = nanosTranscurridos <= 0 ? 0 : latencia.cuenta() * 1e9 / nanosTranscurridos;
+        return new Resumen(latencia.cuenta(), errores.sum(), porSegundo, latencia);
+    }
+}
@@ -0,0 +1,31 @@
+package com.miempresa.metricas;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Métricas por operación, con nombres como {@code "UsuarioService.crearUsuario"}
+ * o {@code "UsuarioRepository.save"}. Los decoradores medidos piden sus
+ * {@link MetricaOperacion} al construirse, así que en cada llamada no se busca
+ * nada por nombre. Dos decoradores que pidan el mismo nombre comparten métrica.
+ */
+public final class RegistroMetricas {
+
+    private final Map<String, MetricaOperacion> operaciones = new ConcurrentHashMap<>();
+    private final long inicio = System.nanoTime();
+
+    public MetricaOperacion operacion(String nombre) {
+        return operaciones.computeIfAbsent(nombre, MetricaOperacion::new);
+    }
+
+    // Ordenado por nombre de operación
+    public Map<String, MetricaOperacion.Resumen> resumen() {
+        long transcurrido = System.nanoTime() - inicio;
+        Map<String, MetricaOperacion.Resumen> resumen = new TreeMap<>();
+        for (MetricaOperacion operacion : operaciones.values()) {
+            resumen.put(operacion.getNombre(), operacion.resumen(transcurrido));
+        }
+        return resumen;
+    }
+}
@@ -0,0 +1,36 @@
+package com.miempresa.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dominios de email compartidos: todos los {@link UsuarioCompacto} de
+ * "gmail.com" apuntan al mismo String en lugar de llevar cada uno su copia.
+ * Los dominios se guardan tal como llegan, sin normalizar. La tabla se limita a
+ * {@value #LIMITE} dominios; pasado el límite los nuevos no se comparten, pero se
+ * guardan igual.
+ */
+public final class DominiosEmail {
+
+    static final int LIMITE = 100_000;
+
+    private static final ConcurrentHashMap<String, String> DOMINIOS = new ConcurrentHashMap<>();
+
+    private DominiosEmail() {
+    }
+
+    public static String compartir(String dominio) {
+        String compartido = DOMINIOS.get(dominio);
+        if (compartido != null) {
+            return compartido;
+        }
+        if (DOMINIOS.size() >= LIMITE) {
+            return dominio;
+        }
+        compartido = DOMINIOS.putIfAbsent(dominio, dominio);
+        return compartido != null ? compartido : dominio;
+    }
+
+    public static int tamano() {
+        return DOMINIOS.size();
+    }
+}
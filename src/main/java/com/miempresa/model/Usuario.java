@@ -1,16 +1,41 @@
 package com.miempresa.model;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.util.Locale;
+
+@Entity
+// Índice único: la base de datos rechaza dos usuarios con el mismo email aunque
+// las dos altas pasen a la vez la comprobación previa de existsByEmail
+@Table(name = "usuarios", indexes = @Index(name = Usuario.INDICE_EMAIL, columnList = "email_normalizado", unique = true))
 public class Usuario {
+
+	public static final String INDICE_EMAIL = "idx_usuarios_email";
 	
+	// Id asignado por el repositorio (GeneradorIds) antes de guardar: los inserts
+	// no esperan a la base de datos y pueden ir en lotes JDBC
+	@Id
 	private Long id;
     private String nombre;
     private String email;
+    // Clave de búsqueda por email: se mantiene junto al email para que el índice
+    // no tenga que normalizar en cada consulta
+    @Column(name = "email_normalizado")
+    private String emailNormalizado;
     private boolean activo;
     // Constructor, getters y setters
+    protected Usuario() {
+        // Requerido por JPA
+    }
+
     public Usuario(Long id, String nombre, String email) {
         this.id = id;
         this.nombre = nombre;
         this.email = email;
+        this.emailNormalizado = normalizarEmail(email);
         this.activo = true;
     }
 	public Long getId() {
@@ -30,6 +55,10 @@ public class Usuario {
 	}
 	public void setEmail(String email) {
 		this.email = email;
+		this.emailNormalizado = normalizarEmail(email);
+	}
+	public String getEmailNormalizado() {
+		return emailNormalizado;
 	}
     
 	 public boolean isActivo() {
@@ -38,6 +67,15 @@ public class Usuario {
 	 public void setActivo(boolean activo) { 
 		 this.activo = activo; 
 	}
+
+	// Los emails se comparan sin espacios alrededor y sin distinguir mayúsculas
+	public static String normalizarEmail(String email) {
+		if (email == null) {
+			return null;
+		}
+		String recortado = email.trim();
+		return recortado.isEmpty() ? null : recortado.toLowerCase(Locale.ROOT);
+	}
     
 
 }
@@ -0,0 +1,128 @@
+package com.miempresa.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Representación inmutable y compacta de un usuario, para tener millones en el
+ * heap. El id es un {@code long} primitivo; el nombre y la parte local del email
+ * se guardan como bytes UTF-8, sin el objeto String que los envuelve; el dominio
+ * del email se comparte entre todos los usuarios a través de {@link DominiosEmail}.
+ * El email normalizado no se guarda: se calcula al pedirlo.
+ *
+ * Los getters de texto crean un String en cada llamada. El código que trabaja con
+ * el {@link Usuario} mutable convierte con {@link #aUsuario()} y {@link #de(Usuario)};
+ * los cambios se hacen con los métodos {@code con...}, que devuelven otra instancia.
+ */
+public final class UsuarioCompacto {
+
+    private final long id;
+    private final byte[] nombre;          // null si no hay nombre
+    private final byte[] localEmail;      // antes de la última '@', o el email entero si no tiene
+    private final String dominioEmail;    // compartido; null si el email no tiene '@'
+    private final boolean activo;
+
+    public UsuarioCompacto(long id, String nombre, String email, boolean activo) {
+        this.id = id;
+        this.nombre = bytes(nombre);
+        int arroba = email == null ? -1 : email.lastIndexOf('@');
+        this.localEmail = bytes(arroba < 0 ? email : email.substring(0, arroba));
+        this.dominioEmail = arroba < 0 ? null : DominiosEmail.compartir(email.substring(arroba + 1));
+        this.activo = activo;
+    }
+
+    private UsuarioCompacto(long id, byte[] nombre, byte[] localEmail, String dominioEmail, boolean activo) {
+        this.id = id;
+        this.nombre = nombre;
+        this.localEmail = localEmail;
+        this.dominioEmail = dominioEmail;
+        this.activo = activo;
+    }
+
+    // Adaptador desde el Usuario mutable; el id tiene que estar ya asignado
+    public static UsuarioCompacto de(Usuario usuario) {
+        if (usuario.getId() == null) {
+            throw new IllegalArgumentException("El usuario no tiene id");
+        }
+        return new UsuarioCompacto(usuario.getId(), usuario.getNombre(), usuario.getEmail(), usuario.isActivo());
+    }
+
+    // Copia mutable para el código que usa getters y setters de Usuario
+    public Usuario aUsuario() {
+        Usuario usuario = new Usuario(id, getNombre(), getEmail());
+        usuario.setActivo(activo);
+        return usuario;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return texto(nombre);
+    }
+
+    public String getEmail() {
+        if (localEmail == null) {
+            return null;
+        }
+        String local = texto(localEmail);
+        return dominioEmail == null ? local : local + '@' + dominioEmail;
+    }
+
+    public String getDominioEmail() {
+        return dominioEmail;
+    }
+
+    public String getEmailNormalizado() {
+        return Usuario.normalizarEmail(getEmail());
+    }
+
+    public boolean isActivo() {
+        return activo;
+    }
+
+    public UsuarioCompacto conActivo(boolean activo) {
+        return activo == this.activo ? this : new UsuarioCompacto(id, nombre, localEmail, dominioEmail, activo);
+    }
+
+    public UsuarioCompacto conNombre(String nombre) {
+        return new UsuarioCompacto(id, bytes(nombre), localEmail, dominioEmail, activo);
+    }
+
+    public UsuarioCompacto conEmail(String email) {
+        return new UsuarioCompacto(id, getNombre(), email, activo);
+    }
+
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) {
+            return true;
+        }
+        if (!(otro instanceof UsuarioCompacto u)) {
+            return false;
+        }
+        return id == u.id && activo == u.activo && Arrays.equals(nombre, u.nombre)
+            && Arrays.equals(localEmail, u.localEmail) && Objects.equals(dominioEmail, u.dominioEmail);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "UsuarioCompacto[id=" + id + ", nombre=" + getNombre() + ", email=" + getEmail()
+            + ", activo=" + activo + "]";
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto == null ? null : texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,710 @@
+package com.miempresa.repository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Conjunto de ids comprimido al estilo Roaring. Cada id se parte en sus 48 bits
+ * altos, que eligen un contenedor, y sus 16 bits bajos, que se guardan dentro de
+ * él. Un contenedor con hasta {@value #LIMITE_ARRAY} valores es un array ordenado
+ * de {@code char} (2 bytes por id); por encima pasa a ser un mapa de 65536 bits,
+ * que a esa densidad ocupa menos (8 KB fijos). Una clave con un solo valor no
+ * crea contenedor: el valor va en línea junto a la clave, unos 14 bytes por id en
+ * lugar de los ~60 de un contenedor propio. La cardinalidad se mantiene en cada
+ * cambio, así que contar es O(1).
+ *
+ * Las operaciones de conjunto ({@link #and}, {@link #or}, {@link #andNot}) recorren
+ * los contenedores de los dos bitmaps a la vez y combinan solo los que comparten
+ * clave, palabra a palabra cuando ambos son mapas. Los ids densos (por ejemplo los
+ * de una importación con ids explícitos) comprimen mejor que los del
+ * {@link GeneradorIds}, que a poco ritmo de altas dan una clave por milisegundo:
+ * esos son justo los que quedan en línea.
+ *
+ * No es seguro para hilos.
+ */
+public final class BitmapCompacto {
+
+    static final int LIMITE_ARRAY = 4096;
+    // Cabecera de un objeto más la de su array de valores (JVM de 64 bits con oops comprimidas)
+    private static final int CABECERAS_CONTENEDOR = 32;
+
+    private long[] claves;
+    // null en las claves con un único valor, que está en "unicos"
+    private Contenedor[] contenedores;
+    private char[] unicos;
+    private int numero;          // claves en uso, ordenadas
+    private long cardinalidad;
+
+    public BitmapCompacto() {
+        this(4);
+    }
+
+    private BitmapCompacto(int capacidad) {
+        this.claves = new long[capacidad];
+        this.contenedores = new Contenedor[capacidad];
+        this.unicos = new char[capacidad];
+    }
+
+    public static BitmapCompacto de(long... ids) {
+        BitmapCompacto bitmap = new BitmapCompacto();
+        for (long id : ids) {
+            bitmap.agregar(id);
+        }
+        return bitmap;
+    }
+
+    // Unión de muchos bitmaps por parejas: O(C log k) en lugar de O(C k)
+    public static BitmapCompacto unionDe(List<BitmapCompacto> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return new BitmapCompacto();
+        }
+        BitmapCompacto[] nivel = bitmaps.toArray(new BitmapCompacto[0]);
+        int n = nivel.length;
+        if (n == 1) {
+            return nivel[0].copia();
+        }
+        while (n > 1) {
+            int mitad = (n + 1) / 2;
+            for (int i = 0; i < n / 2; i++) {
+                nivel[i] = nivel[2 * i].or(nivel[2 * i + 1]);
+            }
+            if ((n & 1) == 1) {
+                nivel[mitad - 1] = nivel[n - 1];
+            }
+            n = mitad;
+        }
+        return nivel[0];
+    }
+
+    // Devuelve true si el id no estaba
+    public boolean agregar(long id) {
+        long alto = id >> 16;
+        char bajo = (char) id;
+        int i = buscarClave(alto);
+        if (i < 0) {
+            insertarUnico(-i - 1, alto, bajo);
+            cardinalidad++;
+            return true;
+        }
+        Contenedor contenedor = contenedores[i];
+        if (contenedor == null) {
+            if (unicos[i] == bajo) {
+                return false;
+            }
+            contenedores[i] = ContenedorArray.deDos(unicos[i], bajo);
+            cardinalidad++;
+            return true;
+        }
+        int antes = contenedor.cardinalidad();
+        contenedor = contenedor.agregar(bajo);
+        contenedores[i] = contenedor;
+        if (contenedor.cardinalidad() == antes) {
+            return false;
+        }
+        cardinalidad++;
+        return true;
+    }
+
+    // Devuelve true si el id estaba
+    public boolean quitar(long id) {
+        int i = buscarClave(id >> 16);
+        if (i < 0) {
+            return false;
+        }
+        Contenedor contenedor = contenedores[i];
+        if (contenedor == null) {
+            if (unicos[i] != (char) id) {
+                return false;
+            }
+            cardinalidad--;
+            borrar(i);
+            return true;
+        }
+        int antes = contenedor.cardinalidad();
+        contenedor = contenedor.quitar((int) id & 0xFFFF);
+        if (contenedor.cardinalidad() == antes) {
+            return false;
+        }
+        cardinalidad--;
+        if (contenedor.cardinalidad() == 1) {
+            unicos[i] = (char) contenedor.siguiente(0);
+            contenedores[i] = null;
+        } else {
+            contenedores[i] = contenedor;
+        }
+        return true;
+    }
+
+    public boolean contiene(long id) {
+        int i = buscarClave(id >> 16);
+        return i >= 0 && contieneEn(i, (int) id & 0xFFFF);
+    }
+
+    public long cardinalidad() {
+        return cardinalidad;
+    }
+
+    public boolean estaVacio() {
+        return cardinalidad == 0;
+    }
+
+    public BitmapCompacto and(BitmapCompacto otro) {
+        BitmapCompacto resultado = new BitmapCompacto(Math.max(1, Math.min(numero, otro.numero)));
+        int i = 0;
+        int j = 0;
+        while (i < numero && j < otro.numero) {
+            long a = claves[i];
+            long b = otro.claves[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                if (contenedores[i] == null) {
+                    if (otro.contieneEn(j, unicos[i])) {
+                        resultado.anadirUnico(a, unicos[i]);
+                    }
+                } else if (otro.contenedores[j] == null) {
+                    if (contenedores[i].contiene(otro.unicos[j])) {
+                        resultado.anadirUnico(a, otro.unicos[j]);
+                    }
+                } else {
+                    resultado.anadirAlFinal(a, interseccion(contenedores[i], otro.contenedores[j]));
+                }
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    public BitmapCompacto or(BitmapCompacto otro) {
+        BitmapCompacto resultado = new BitmapCompacto(Math.max(1, numero + otro.numero));
+        int i = 0;
+        int j = 0;
+        while (i < numero || j < otro.numero) {
+            if (j == otro.numero || (i < numero && claves[i] < otro.claves[j])) {
+                resultado.anadirCopia(this, i++);
+            } else if (i == numero || otro.claves[j] < claves[i]) {
+                resultado.anadirCopia(otro, j++);
+            } else if (contenedores[i] == null) {
+                resultado.anadirCopia(otro, j++);
+                resultado.agregarAlUltimo(unicos[i++]);
+            } else if (otro.contenedores[j] == null) {
+                resultado.anadirCopia(this, i++);
+                resultado.agregarAlUltimo(otro.unicos[j++]);
+            } else {
+                resultado.anadirAlFinal(claves[i], union(contenedores[i++], otro.contenedores[j++]));
+            }
+        }
+        return resultado;
+    }
+
+    // Ids de este bitmap que no están en el otro
+    public BitmapCompacto andNot(BitmapCompacto otro) {
+        BitmapCompacto resultado = new BitmapCompacto(Math.max(1, numero));
+        int j = 0;
+        for (int i = 0; i < numero; i++) {
+            long clave = claves[i];
+            while (j < otro.numero && otro.claves[j] < clave) {
+                j++;
+            }
+            if (j == otro.numero || otro.claves[j] != clave) {
+                resultado.anadirCopia(this, i);
+            } else if (contenedores[i] == null) {
+                if (!otro.contieneEn(j, unicos[i])) {
+                    resultado.anadirUnico(clave, unicos[i]);
+                }
+            } else if (otro.contenedores[j] == null) {
+                resultado.anadirAlFinal(clave, contenedores[i].copia().quitar(otro.unicos[j]));
+            } else {
+                resultado.anadirAlFinal(clave, diferencia(contenedores[i], otro.contenedores[j]));
+            }
+        }
+        return resultado;
+    }
+
+    public BitmapCompacto copia() {
+        BitmapCompacto resultado = new BitmapCompacto(Math.max(1, numero));
+        for (int i = 0; i < numero; i++) {
+            resultado.anadirCopia(this, i);
+        }
+        return resultado;
+    }
+
+    // Recorre los ids en orden ascendente sin crear objetos por id
+    public void paraCada(LongConsumer accion) {
+        for (int i = 0; i < numero; i++) {
+            if (contenedores[i] == null) {
+                accion.accept((claves[i] << 16) | unicos[i]);
+            } else {
+                contenedores[i].paraCada(claves[i] << 16, accion);
+            }
+        }
+    }
+
+    public PrimitiveIterator.OfLong iterador() {
+        return new Iterador();
+    }
+
+    public long[] aArray() {
+        if (cardinalidad > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Demasiados ids para un array: " + cardinalidad);
+        }
+        long[] ids = new long[(int) cardinalidad];
+        int[] posicion = new int[1];
+        paraCada(id -> ids[posicion[0]++] = id);
+        return ids;
+    }
+
+    // Memoria aproximada: arrays de claves y contenedores con sus cabeceras
+    public long tamanoEnBytes() {
+        long bytes = (long) claves.length * (Long.BYTES + 4 + Character.BYTES);
+        for (int i = 0; i < numero; i++) {
+            if (contenedores[i] != null) {
+                bytes += CABECERAS_CONTENEDOR + contenedores[i].tamanoEnBytes();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BitmapCompacto[cardinalidad=" + cardinalidad + ", claves=" + numero + "]";
+    }
+
+    private int buscarClave(long alto) {
+        // Los ids crecientes casi siempre caen en el último contenedor
+        if (numero > 0 && claves[numero - 1] == alto) {
+            return numero - 1;
+        }
+        return Arrays.binarySearch(claves, 0, numero, alto);
+    }
+
+    private boolean contieneEn(int i, int valor) {
+        Contenedor contenedor = contenedores[i];
+        return contenedor == null ? unicos[i] == valor : contenedor.contiene(valor);
+    }
+
+    private void insertar(int i, long clave, Contenedor contenedor, char unico) {
+        if (numero == claves.length) {
+            int capacidad = numero * 2;
+            claves = Arrays.copyOf(claves, capacidad);
+            contenedores = Arrays.copyOf(contenedores, capacidad);
+            unicos = Arrays.copyOf(unicos, capacidad);
+        }
+        System.arraycopy(claves, i, claves, i + 1, numero - i);
+        System.arraycopy(contenedores, i, contenedores, i + 1, numero - i);
+        System.arraycopy(unicos, i, unicos, i + 1, numero - i);
+        claves[i] = clave;
+        contenedores[i] = contenedor;
+        unicos[i] = unico;
+        numero++;
+    }
+
+    private void insertarUnico(int i, long clave, char valor) {
+        insertar(i, clave, null, valor);
+    }
+
+    private void borrar(int i) {
+        System.arraycopy(claves, i + 1, claves, i, numero - i - 1);
+        System.arraycopy(contenedores, i + 1, contenedores, i, numero - i - 1);
+        System.arraycopy(unicos, i + 1, unicos, i, numero - i - 1);
+        contenedores[--numero] = null;
+    }
+
+    // Para construir resultados en orden: se descartan los contenedores vacíos y
+    // los de un solo valor quedan en línea
+    private void anadirAlFinal(long clave, Contenedor contenedor) {
+        int n = contenedor.cardinalidad();
+        if (n == 1) {
+            anadirUnico(clave, (char) contenedor.siguiente(0));
+        } else if (n > 0) {
+            insertar(numero, clave, contenedor, (char) 0);
+            cardinalidad += n;
+        }
+    }
+
+    private void anadirUnico(long clave, char valor) {
+        insertarUnico(numero, clave, valor);
+        cardinalidad++;
+    }
+
+    // Añade al final la clave i de "origen" con una copia de sus valores
+    private void anadirCopia(BitmapCompacto origen, int i) {
+        Contenedor contenedor = origen.contenedores[i];
+        if (contenedor == null) {
+            anadirUnico(origen.claves[i], origen.unicos[i]);
+        } else {
+            insertar(numero, origen.claves[i], contenedor.copia(), (char) 0);
+            cardinalidad += contenedor.cardinalidad();
+        }
+    }
+
+    // Añade un valor a la última clave, que se acaba de copiar con anadirCopia
+    private void agregarAlUltimo(char valor) {
+        int i = numero - 1;
+        Contenedor contenedor = contenedores[i];
+        if (contenedor == null) {
+            if (unicos[i] != valor) {
+                contenedores[i] = ContenedorArray.deDos(unicos[i], valor);
+                cardinalidad++;
+            }
+            return;
+        }
+        int antes = contenedor.cardinalidad();
+        contenedores[i] = contenedor.agregar(valor);
+        cardinalidad += contenedores[i].cardinalidad() - antes;
+    }
+
+    private static Contenedor interseccion(Contenedor a, Contenedor b) {
+        if (a instanceof ContenedorArray array) {
+            return array.filtrar(b, true);
+        }
+        if (b instanceof ContenedorArray array) {
+            return array.filtrar(a, true);
+        }
+        return ((ContenedorMapa) a).combinar((ContenedorMapa) b, Operacion.AND);
+    }
+
+    private static Contenedor union(Contenedor a, Contenedor b) {
+        if (a instanceof ContenedorArray x && b instanceof ContenedorArray y) {
+            return x.unir(y);
+        }
+        if (a instanceof ContenedorMapa x && b instanceof ContenedorMapa y) {
+            return x.combinar(y, Operacion.OR);
+        }
+        ContenedorMapa mapa = (ContenedorMapa) (a instanceof ContenedorMapa ? a : b).copia();
+        ((ContenedorArray) (a instanceof ContenedorArray ? a : b)).paraCada(0, v -> mapa.agregar((int) v));
+        return mapa;
+    }
+
+    private static Contenedor diferencia(Contenedor a, Contenedor b) {
+        if (a instanceof ContenedorArray array) {
+            return array.filtrar(b, false);
+        }
+        ContenedorMapa mapa = (ContenedorMapa) a;
+        if (b instanceof ContenedorMapa otro) {
+            return mapa.combinar(otro, Operacion.AND_NOT);
+        }
+        ContenedorMapa copia = (ContenedorMapa) mapa.copia();
+        ((ContenedorArray) b).paraCada(0, v -> copia.quitarSinCompactar((int) v));
+        return copia.compactar();
+    }
+
+    private enum Operacion { AND, OR, AND_NOT }
+
+    private abstract static class Contenedor {
+        abstract int cardinalidad();
+
+        abstract boolean contiene(int valor);
+
+        // Ambos pueden devolver un contenedor de otro tipo si cruzan LIMITE_ARRAY
+        abstract Contenedor agregar(int valor);
+
+        abstract Contenedor quitar(int valor);
+
+        // Menor valor >= desde, o -1 si no hay
+        abstract int siguiente(int desde);
+
+        abstract Contenedor copia();
+
+        abstract void paraCada(long base, LongConsumer accion);
+
+        abstract long tamanoEnBytes();
+    }
+
+    private static final class ContenedorArray extends Contenedor {
+        char[] valores;
+        int tamano;
+
+        ContenedorArray(int capacidad) {
+            this.valores = new char[capacidad];
+        }
+
+        ContenedorArray(char[] valores, int tamano) {
+            this.valores = valores;
+            this.tamano = tamano;
+        }
+
+        // Para cuando una clave en línea recibe su segundo valor
+        static ContenedorArray deDos(char a, char b) {
+            char[] valores = new char[4];
+            valores[0] = (char) Math.min(a, b);
+            valores[1] = (char) Math.max(a, b);
+            return new ContenedorArray(valores, 2);
+        }
+
+        @Override
+        int cardinalidad() {
+            return tamano;
+        }
+
+        @Override
+        boolean contiene(int valor) {
+            return Arrays.binarySearch(valores, 0, tamano, (char) valor) >= 0;
+        }
+
+        @Override
+        Contenedor agregar(int valor) {
+            int i = Arrays.binarySearch(valores, 0, tamano, (char) valor);
+            if (i >= 0) {
+                return this;
+            }
+            if (tamano == LIMITE_ARRAY) {
+                ContenedorMapa mapa = aMapa();
+                mapa.agregar(valor);
+                return mapa;
+            }
+            i = -i - 1;
+            if (tamano == valores.length) {
+                valores = Arrays.copyOf(valores, Math.min(LIMITE_ARRAY, Math.max(4, tamano * 2)));
+            }
+            System.arraycopy(valores, i, valores, i + 1, tamano - i);
+            valores[i] = (char) valor;
+            tamano++;
+            return this;
+        }
+
+        @Override
+        Contenedor quitar(int valor) {
+            int i = Arrays.binarySearch(valores, 0, tamano, (char) valor);
+            if (i >= 0) {
+                System.arraycopy(valores, i + 1, valores, i, tamano - i - 1);
+                tamano--;
+                // Se devuelve memoria cuando sobran tres cuartos del array
+                if (valores.length > 16 && tamano <= valores.length / 4) {
+                    valores = Arrays.copyOf(valores, valores.length / 2);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int siguiente(int desde) {
+            if (desde > 0xFFFF) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(valores, 0, tamano, (char) desde);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < tamano ? valores[i] : -1;
+        }
+
+        @Override
+        Contenedor copia() {
+            return new ContenedorArray(Arrays.copyOf(valores, Math.max(1, tamano)), tamano);
+        }
+
+        @Override
+        void paraCada(long base, LongConsumer accion) {
+            for (int i = 0; i < tamano; i++) {
+                accion.accept(base | valores[i]);
+            }
+        }
+
+        @Override
+        long tamanoEnBytes() {
+            return (long) valores.length * Character.BYTES;
+        }
+
+        // Valores de este contenedor que están (mantener) o no están en el otro
+        ContenedorArray filtrar(Contenedor otro, boolean mantener) {
+            char[] resultado = new char[Math.max(1, tamano)];
+            int n = 0;
+            for (int i = 0; i < tamano; i++) {
+                if (otro.contiene(valores[i]) == mantener) {
+                    resultado[n++] = valores[i];
+                }
+            }
+            return new ContenedorArray(resultado, n);
+        }
+
+        // Mezcla de dos arrays ordenados
+        Contenedor unir(ContenedorArray otro) {
+            char[] resultado = new char[tamano + otro.tamano];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < tamano && j < otro.tamano) {
+                char a = valores[i];
+                char b = otro.valores[j];
+                if (a <= b) {
+                    resultado[n++] = a;
+                    i++;
+                    if (a == b) {
+                        j++;
+                    }
+                } else {
+                    resultado[n++] = b;
+                    j++;
+                }
+            }
+            while (i < tamano) {
+                resultado[n++] = valores[i++];
+            }
+            while (j < otro.tamano) {
+                resultado[n++] = otro.valores[j++];
+            }
+            ContenedorArray union = new ContenedorArray(resultado, n);
+            return n > LIMITE_ARRAY ? union.aMapa() : union;
+        }
+
+        ContenedorMapa aMapa() {
+            ContenedorMapa mapa = new ContenedorMapa();
+            for (int i = 0; i < tamano; i++) {
+                mapa.agregar(valores[i]);
+            }
+            return mapa;
+        }
+    }
+
+    private static final class ContenedorMapa extends Contenedor {
+        final long[] palabras = new long[1024];
+        int tamano;
+
+        @Override
+        int cardinalidad() {
+            return tamano;
+        }
+
+        @Override
+        boolean contiene(int valor) {
+            return (palabras[valor >>> 6] & (1L << valor)) != 0;
+        }
+
+        @Override
+        Contenedor agregar(int valor) {
+            long anterior = palabras[valor >>> 6];
+            long nueva = anterior | (1L << valor);
+            if (nueva != anterior) {
+                palabras[valor >>> 6] = nueva;
+                tamano++;
+            }
+            return this;
+        }
+
+        @Override
+        Contenedor quitar(int valor) {
+            quitarSinCompactar(valor);
+            return compactar();
+        }
+
+        void quitarSinCompactar(int valor) {
+            long anterior = palabras[valor >>> 6];
+            long nueva = anterior & ~(1L << valor);
+            if (nueva != anterior) {
+                palabras[valor >>> 6] = nueva;
+                tamano--;
+            }
+        }
+
+        @Override
+        int siguiente(int desde) {
+            if (desde > 0xFFFF) {
+                return -1;
+            }
+            int i = desde >>> 6;
+            long palabra = palabras[i] & (-1L << desde);
+            while (palabra == 0) {
+                if (++i == palabras.length) {
+                    return -1;
+                }
+                palabra = palabras[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(palabra);
+        }
+
+        @Override
+        Contenedor copia() {
+            ContenedorMapa copia = new ContenedorMapa();
+            System.arraycopy(palabras, 0, copia.palabras, 0, palabras.length);
+            copia.tamano = tamano;
+            return copia;
+        }
+
+        @Override
+        void paraCada(long base, LongConsumer accion) {
+            for (int i = 0; i < palabras.length; i++) {
+                long palabra = palabras[i];
+                while (palabra != 0) {
+                    accion.accept(base | ((long) i << 6) | Long.numberOfTrailingZeros(palabra));
+                    palabra &= palabra - 1;
+                }
+            }
+        }
+
+        @Override
+        long tamanoEnBytes() {
+            return (long) palabras.length * Long.BYTES;
+        }
+
+        Contenedor combinar(ContenedorMapa otro, Operacion operacion) {
+            ContenedorMapa resultado = new ContenedorMapa();
+            int total = 0;
+            for (int i = 0; i < palabras.length; i++) {
+                long palabra = switch (operacion) {
+                    case AND -> palabras[i] & otro.palabras[i];
+                    case OR -> palabras[i] | otro.palabras[i];
+                    case AND_NOT -> palabras[i] & ~otro.palabras[i];
+                };
+                resultado.palabras[i] = palabra;
+                total += Long.bitCount(palabra);
+            }
+            resultado.tamano = total;
+            return resultado.compactar();
+        }
+
+        // Vuelve a array cuando la densidad ya no compensa el mapa
+        Contenedor compactar() {
+            if (tamano > LIMITE_ARRAY) {
+                return this;
+            }
+            char[] valores = new char[Math.max(1, tamano)];
+            int[] n = new int[1];
+            paraCada(0, v -> valores[n[0]++] = (char) v);
+            return new ContenedorArray(valores, tamano);
+        }
+    }
+
+    private final class Iterador implements PrimitiveIterator.OfLong {
+        private int contenedor;
+        private int valor = siguienteDesde(0, 0);
+
+        @Override
+        public boolean hasNext() {
+            return valor >= 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (valor < 0) {
+                throw new NoSuchElementException();
+            }
+            long id = (claves[contenedor] << 16) | valor;
+            valor = siguienteDesde(contenedor, valor + 1);
+            return id;
+        }
+
+        // Avanza "contenedor" hasta el primero con un valor >= desde
+        private int siguienteDesde(int desdeContenedor, int desde) {
+            contenedor = desdeContenedor;
+            while (contenedor < numero) {
+                Contenedor actual = contenedores[contenedor];
+                int siguiente = actual != null
+                    ? actual.siguiente(desde)
+                    : (unicos[contenedor] >= desde ? unicos[contenedor] : -1);
+                if (siguiente >= 0) {
+                    return siguiente;
+                }
+                contenedor++;
+                desde = 0;
+            }
+            return -1;
+        }
+    }
+}
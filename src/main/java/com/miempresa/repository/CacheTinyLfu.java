@@ -0,0 +1,256 @@
+package com.miempresa.repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Caché acotada con política W-TinyLFU simplificada: una ventana LRU pequeña
+ * recibe las entradas nuevas y, al desbordarse, su víctima solo entra en la zona
+ * principal (LRU segmentada: periodo de prueba + protegida) si un sketch de
+ * frecuencias indica que se usa más que la víctima de la zona principal.
+ * Así un recorrido de ids únicos no expulsa a los usuarios que se leen a menudo.
+ *
+ * Las lecturas no toman el cerrojo: los valores se sirven desde un
+ * {@code ConcurrentHashMap} y cada acceso se anota en un buffer con pérdidas,
+ * repartido en franjas por hilo. El cerrojo solo se toma para aplicar esos accesos
+ * a la política (cuando una franja se llena, y sin esperar si otro hilo ya lo
+ * hace) y en las escrituras, que aplican antes los accesos pendientes. Si una
+ * franja está llena el acceso se descarta: solo se pierde precisión en el orden
+ * LRU y en el sketch, nunca un valor.
+ */
+final class CacheTinyLfu<V> {
+
+    private static final int FRANJAS = 16;
+    private static final int TAMANO_FRANJA = 32;
+    // Los contadores de franja se separan 16 ints (64 bytes) para no compartir línea de caché
+    private static final int RELLENO = 16;
+    private static final long VACIO = Long.MIN_VALUE;
+
+    private final int maxVentana;
+    private final int maxProtegida;
+    private final int maxPrincipal;
+
+    private final ConcurrentHashMap<Long, V> datos = new ConcurrentHashMap<>();
+    private final AtomicLongArray lecturas = new AtomicLongArray(FRANJAS * TAMANO_FRANJA);
+    private final AtomicIntegerArray pendientes = new AtomicIntegerArray(FRANJAS * RELLENO);
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    // Protegidos por el cerrojo
+    private final LinkedHashMap<Long, V> ventana = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, V> prueba = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, V> protegida = new LinkedHashMap<>(16, 0.75f, true);
+    private final SketchFrecuencia sketch;
+
+    private volatile long desalojos;
+
+    CacheTinyLfu(int capacidad) {
+        if (capacidad < 2) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser al menos 2");
+        }
+        this.maxVentana = Math.max(1, capacidad / 100);
+        this.maxPrincipal = capacidad - maxVentana;
+        this.maxProtegida = (int) (maxPrincipal * 0.8);
+        this.sketch = new SketchFrecuencia(capacidad);
+        for (int i = 0; i < lecturas.length(); i++) {
+            lecturas.set(i, VACIO);
+        }
+    }
+
+    V obtener(long clave) {
+        V valor = datos.get(clave);
+        anotarLectura(clave);
+        return valor;
+    }
+
+    void poner(long clave, V valor) {
+        cerrojo.lock();
+        try {
+            drenarLecturas();
+            ponerBloqueado(clave, valor);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // "vigente" se comprueba bajo el mismo cerrojo que las escrituras en la caché
+    void ponerSiAusente(long clave, V valor, BooleanSupplier vigente) {
+        cerrojo.lock();
+        try {
+            drenarLecturas();
+            if (vigente.getAsBoolean() && !datos.containsKey(clave)) {
+                ponerBloqueado(clave, valor);
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    void invalidar(long clave) {
+        cerrojo.lock();
+        try {
+            if (ventana.remove(clave) == null && prueba.remove(clave) == null) {
+                protegida.remove(clave);
+            }
+            datos.remove(clave);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    int tamano() {
+        return datos.size();
+    }
+
+    long getDesalojos() {
+        return desalojos;
+    }
+
+    private void ponerBloqueado(long clave, V valor) {
+        datos.put(clave, valor);
+        if (ventana.containsKey(clave)) {
+            ventana.put(clave, valor);
+        } else if (protegida.containsKey(clave)) {
+            protegida.put(clave, valor);
+        } else if (prueba.containsKey(clave)) {
+            prueba.put(clave, valor);
+        } else {
+            ventana.put(clave, valor);
+            if (ventana.size() > maxVentana) {
+                admitir(extraerMasAntigua(ventana));
+            }
+        }
+    }
+
+    private void anotarLectura(long clave) {
+        int franja = System.identityHashCode(Thread.currentThread()) & (FRANJAS - 1);
+        int n = pendientes.getAndIncrement(franja * RELLENO);
+        if (n < TAMANO_FRANJA) {
+            lecturas.set(franja * TAMANO_FRANJA + n, clave);
+        }
+        if (n + 1 >= TAMANO_FRANJA && cerrojo.tryLock()) {
+            try {
+                drenarLecturas();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    // Bajo el cerrojo. Un acceso cuya posición se reservó pero aún no se escribió
+    // sigue VACIO y se aplica en el siguiente drenaje, o se pierde
+    private void drenarLecturas() {
+        for (int franja = 0; franja < FRANJAS; franja++) {
+            int n = Math.min(pendientes.getAndSet(franja * RELLENO, 0), TAMANO_FRANJA);
+            for (int i = 0; i < n; i++) {
+                long clave = lecturas.getAndSet(franja * TAMANO_FRANJA + i, VACIO);
+                if (clave != VACIO) {
+                    aplicarAcceso(clave);
+                }
+            }
+        }
+    }
+
+    private void aplicarAcceso(long clave) {
+        sketch.incrementar(clave);
+        if (ventana.get(clave) != null || protegida.get(clave) != null) {
+            return;
+        }
+        V valor = prueba.remove(clave);
+        if (valor != null) {
+            // Segundo acceso en periodo de prueba: pasa a la zona protegida
+            protegida.put(clave, valor);
+            if (protegida.size() > maxProtegida) {
+                Map.Entry<Long, V> degradada = extraerMasAntigua(protegida);
+                prueba.put(degradada.getKey(), degradada.getValue());
+            }
+        }
+    }
+
+    private void admitir(Map.Entry<Long, V> candidata) {
+        if (prueba.size() + protegida.size() < maxPrincipal) {
+            prueba.put(candidata.getKey(), candidata.getValue());
+            return;
+        }
+        LinkedHashMap<Long, V> zonaVictima = prueba.isEmpty() ? protegida : prueba;
+        Long victima = zonaVictima.keySet().iterator().next();
+        desalojos++;
+        if (sketch.frecuencia(candidata.getKey()) > sketch.frecuencia(victima)) {
+            zonaVictima.remove(victima);
+            datos.remove(victima);
+            prueba.put(candidata.getKey(), candidata.getValue());
+        } else {
+            datos.remove(candidata.getKey());
+        }
+    }
+
+    private static <V> Map.Entry<Long, V> extraerMasAntigua(LinkedHashMap<Long, V> zona) {
+        Iterator<Map.Entry<Long, V>> it = zona.entrySet().iterator();
+        Map.Entry<Long, V> masAntigua = it.next();
+        Map.Entry<Long, V> copia = Map.entry(masAntigua.getKey(), masAntigua.getValue());
+        it.remove();
+        return copia;
+    }
+
+    /**
+     * Count-min sketch con contadores de 4 bits (16 por long) y envejecimiento:
+     * cada 10 x capacidad incrementos se dividen todos los contadores a la mitad.
+     */
+    static final class SketchFrecuencia {
+
+        private static final long[] SEMILLAS = {
+            0x97cb3127L, 0xab7a5173L, 0xc2b2ae35L, 0x27d4eb2fL
+        };
+
+        private final long[] tabla;
+        private final int mascara;
+        private final int tamanoMuestra;
+        private int adiciones;
+
+        SketchFrecuencia(int capacidad) {
+            int n = Integer.highestOneBit(Math.max(capacidad, 8) - 1) << 1;
+            this.tabla = new long[n];
+            this.mascara = n - 1;
+            this.tamanoMuestra = 10 * capacidad;
+        }
+
+        int frecuencia(long clave) {
+            int minimo = 15;
+            for (int i = 0; i < 4; i++) {
+                long h = UsuarioRepositoryEnMemoria.mezclar(clave + SEMILLAS[i]);
+                int desplazamiento = ((int) h & 15) << 2;
+                int contador = (int) ((tabla[(int) (h >>> 32) & mascara] >>> desplazamiento) & 15);
+                minimo = Math.min(minimo, contador);
+            }
+            return minimo;
+        }
+
+        void incrementar(long clave) {
+            boolean incrementado = false;
+            for (int i = 0; i < 4; i++) {
+                long h = UsuarioRepositoryEnMemoria.mezclar(clave + SEMILLAS[i]);
+                int desplazamiento = ((int) h & 15) << 2;
+                int indice = (int) (h >>> 32) & mascara;
+                if (((tabla[indice] >>> desplazamiento) & 15) != 15) {
+                    tabla[indice] += 1L << desplazamiento;
+                    incrementado = true;
+                }
+            }
+            if (incrementado && ++adiciones >= tamanoMuestra) {
+                envejecer();
+            }
+        }
+
+        private void envejecer() {
+            for (int i = 0; i < tabla.length; i++) {
+                tabla[i] = (tabla[i] >>> 1) & 0x7777777777777777L;
+            }
+            adiciones >>>= 1;
+        }
+    }
+}
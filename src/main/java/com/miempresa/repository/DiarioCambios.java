@@ -0,0 +1,195 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Un fichero del registro de cambios (WAL) de {@link UsuarioRepositoryPersistente}.
+ *
+ * Cada registro es [longitud del cuerpo: int][CRC32 del cuerpo: int][cuerpo], y el
+ * cuerpo [secuencia: long][tipo: byte] seguido del usuario en el formato de
+ * {@link FormatoUsuario} (guardado) o de su id (borrado). Un registro incompleto o
+ * con el CRC mal es lo que deja una escritura cortada por una caída: marca el
+ * final del fichero y al reproducirlo se recorta.
+ *
+ * Las escrituras las serializa el llamador; {@link #sincronizar()} puede ir en
+ * paralelo con ellas.
+ */
+final class DiarioCambios implements AutoCloseable {
+
+    static final byte GUARDAR = 1;
+    static final byte BORRAR = 2;
+
+    private static final int CABECERA_REGISTRO = 2 * Integer.BYTES;
+    private static final int CABECERA_CUERPO = Long.BYTES + 1;
+
+    // Quien aplica los cambios al reproducir el fichero
+    interface Receptor {
+        void guardar(Usuario usuario);
+
+        void borrar(long id);
+    }
+
+    private final Path ruta;
+    private final FileChannel canal;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    private DiarioCambios(Path ruta, FileChannel canal) {
+        this.ruta = ruta;
+        this.canal = canal;
+    }
+
+    // Si ya existe un fichero con ese nombre no contiene cambios válidos (se acaba
+    // de reproducir todo hasta la secuencia anterior), así que se vacía
+    static DiarioCambios crear(Path ruta) {
+        try {
+            return new DiarioCambios(ruta, FileChannel.open(ruta, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el registro de cambios " + ruta, e);
+        }
+    }
+
+    void guardar(long secuencia, Usuario usuario) {
+        byte[] nombre = FormatoUsuario.utf8(usuario.getNombre());
+        byte[] email = FormatoUsuario.utf8(usuario.getEmail());
+        ByteBuffer cuerpo = preparar(CABECERA_CUERPO + FormatoUsuario.tamano(nombre, email), secuencia, GUARDAR);
+        FormatoUsuario.escribir(cuerpo, usuario.getId(), usuario.isActivo(), nombre, email);
+        escribir();
+    }
+
+    void borrar(long secuencia, long id) {
+        preparar(CABECERA_CUERPO + Long.BYTES, secuencia, BORRAR).putLong(id);
+        escribir();
+    }
+
+    // Fuerza a disco lo escrito; si el fichero ya está cerrado, ya se forzó al cerrarlo
+    synchronized void sincronizar() {
+        try {
+            if (canal.isOpen()) {
+                canal.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo sincronizar el registro de cambios " + ruta, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (canal.isOpen()) {
+                canal.force(false);
+                canal.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo cerrar el registro de cambios " + ruta, e);
+        }
+    }
+
+    /**
+     * Aplica al receptor los cambios con secuencia mayor que {@code desde} y
+     * devuelve la última secuencia leída (o {@code desde} si no había ninguna
+     * posterior). Si el fichero acaba en un registro dañado, se recorta ahí; si
+     * falta algún cambio intermedio no se puede recuperar y se lanza una excepción.
+     */
+    static long reproducir(Path ruta, long desde, Receptor receptor, long[] aplicados) {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tamano = canal.size();
+            if (tamano > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Registro de cambios demasiado grande: " + ruta);
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+            CRC32 crc = new CRC32();
+            long ultima = desde;
+            int posicion = 0;
+            while (true) {
+                int fin = registroValido(mapa, posicion, crc);
+                if (fin < 0) {
+                    break;
+                }
+                ByteBuffer cuerpo = mapa.slice(posicion + CABECERA_REGISTRO, fin - posicion - CABECERA_REGISTRO);
+                long secuencia = cuerpo.getLong();
+                byte tipo = cuerpo.get();
+                if (secuencia > ultima + 1) {
+                    throw new IllegalStateException("Faltan cambios entre " + ultima + " y " + secuencia
+                        + " en " + ruta);
+                }
+                if (secuencia > ultima) {
+                    if (tipo == GUARDAR) {
+                        receptor.guardar(FormatoUsuario.leer(cuerpo));
+                    } else {
+                        receptor.borrar(cuerpo.getLong());
+                    }
+                    ultima = secuencia;
+                    aplicados[0]++;
+                }
+                posicion = fin;
+            }
+            if (posicion < tamano) {
+                canal.truncate(posicion);
+                canal.force(false);
+            }
+            return ultima;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el registro de cambios " + ruta, e);
+        }
+    }
+
+    // Fin del registro que empieza en "posicion", o -1 si no hay uno completo y correcto
+    private static int registroValido(MappedByteBuffer mapa, int posicion, CRC32 crc) {
+        try {
+            if (mapa.limit() - posicion < CABECERA_REGISTRO) {
+                return -1;
+            }
+            int longitud = mapa.getInt(posicion);
+            int esperado = mapa.getInt(posicion + Integer.BYTES);
+            int inicio = posicion + CABECERA_REGISTRO;
+            if (longitud < CABECERA_CUERPO || longitud > mapa.limit() - inicio) {
+                return -1;
+            }
+            crc.reset();
+            crc.update(mapa.slice(inicio, longitud));
+            byte tipo = mapa.get(inicio + Long.BYTES);
+            return (int) crc.getValue() == esperado && (tipo == GUARDAR || tipo == BORRAR) ? inicio + longitud : -1;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private ByteBuffer preparar(int longitudCuerpo, long secuencia, byte tipo) {
+        int total = CABECERA_REGISTRO + longitudCuerpo;
+        if (buffer.capacity() < total) {
+            buffer = ByteBuffer.allocate(Math.max(total, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        buffer.putInt(longitudCuerpo);
+        buffer.putInt(0);   // CRC, se rellena al escribir
+        buffer.putLong(secuencia);
+        buffer.put(tipo);
+        return buffer;
+    }
+
+    private void escribir() {
+        int total = buffer.position();
+        crc.reset();
+        crc.update(buffer.array(), CABECERA_REGISTRO, total - CABECERA_REGISTRO);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el registro de cambios " + ruta, e);
+        }
+    }
+}
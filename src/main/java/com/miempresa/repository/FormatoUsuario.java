@@ -0,0 +1,63 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato binario de un usuario, compartido por el registro de cambios y las
+ * instantáneas: [id: long][activo: byte][nombre][email], cada texto como
+ * [longitud: int][UTF-8], con longitud -1 para null.
+ */
+final class FormatoUsuario {
+
+    static final int TAMANO_FIJO = Long.BYTES + 1 + 2 * Integer.BYTES;
+
+    private FormatoUsuario() {
+    }
+
+    static byte[] utf8(String texto) {
+        return texto == null ? null : texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int tamano(byte[] nombre, byte[] email) {
+        return TAMANO_FIJO + (nombre == null ? 0 : nombre.length) + (email == null ? 0 : email.length);
+    }
+
+    static void escribir(ByteBuffer destino, long id, boolean activo, byte[] nombre, byte[] email) {
+        destino.putLong(id);
+        destino.put((byte) (activo ? 1 : 0));
+        escribirTexto(destino, nombre);
+        escribirTexto(destino, email);
+    }
+
+    // Lee desde la posición actual del buffer y la deja detrás del usuario
+    static Usuario leer(ByteBuffer origen) {
+        long id = origen.getLong();
+        boolean activo = origen.get() != 0;
+        String nombre = leerTexto(origen);
+        String email = leerTexto(origen);
+        Usuario usuario = new Usuario(id, nombre, email);
+        usuario.setActivo(activo);
+        return usuario;
+    }
+
+    private static void escribirTexto(ByteBuffer destino, byte[] texto) {
+        if (texto == null) {
+            destino.putInt(-1);
+        } else {
+            destino.putInt(texto.length);
+            destino.put(texto);
+        }
+    }
+
+    private static String leerTexto(ByteBuffer origen) {
+        int longitud = origen.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        origen.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
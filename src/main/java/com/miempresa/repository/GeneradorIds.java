@@ -0,0 +1,108 @@
+package com.miempresa.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generador de ids de 64 bits al estilo Snowflake:
+ * {@code [41 bits de milisegundos desde EPOCA][10 bits de nodo][12 bits de secuencia]}.
+ * Los ids crecen con el tiempo y cada instancia de la aplicación usa su propio
+ * nodo ({@code usuarios.ids.nodo}), así que dos instancias nunca generan el mismo.
+ *
+ * Sin cerrojos: el último id emitido vive en un {@link AtomicLong} y cada id nuevo
+ * se publica con un CAS. El siguiente id siempre es mayor que el anterior: si el
+ * reloj retrocede, o si se agotan los 4096 ids de un milisegundo, se sigue
+ * contando sobre el último milisegundo emitido (y el siguiente) hasta que el reloj
+ * real lo alcanza, en lugar de repetir ids o bloquear al llamador.
+ */
+@Component
+public class GeneradorIds {
+
+    // 2024-01-01T00:00:00Z: con 41 bits de milisegundos hay ids hasta 2093
+    public static final long EPOCA = 1_704_067_200_000L;
+    public static final int BITS_NODO = 10;
+    public static final int BITS_SECUENCIA = 12;
+    public static final int NODO_MAXIMO = (1 << BITS_NODO) - 1;
+
+    private static final long SECUENCIA_MAXIMA = (1L << BITS_SECUENCIA) - 1;
+    private static final int DESPLAZAMIENTO_TIEMPO = BITS_NODO + BITS_SECUENCIA;
+
+    private final long nodo;
+    private final LongSupplier reloj;
+    private final AtomicLong ultimo = new AtomicLong();
+
+    @Autowired
+    public GeneradorIds(@Value("${usuarios.ids.nodo:0}") int nodo) {
+        this(nodo, System::currentTimeMillis);
+    }
+
+    // El reloj devuelve milisegundos de época Unix; se puede sustituir en las pruebas
+    public GeneradorIds(int nodo, LongSupplier reloj) {
+        if (nodo < 0 || nodo > NODO_MAXIMO) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + NODO_MAXIMO);
+        }
+        this.nodo = nodo;
+        this.reloj = reloj;
+    }
+
+    public long siguiente() {
+        while (true) {
+            long anterior = ultimo.get();
+            long ahora = reloj.getAsLong() - EPOCA;
+            long candidato = siguienteA(anterior, ahora);
+            if (ultimo.compareAndSet(anterior, candidato)) {
+                return candidato;
+            }
+        }
+    }
+
+    // Garantiza que los ids que se generen después sean mayores que "id", p. ej.
+    // tras guardar usuarios con un id asignado desde fuera
+    public void avanzarHasta(long id) {
+        long anterior;
+        while (id > (anterior = ultimo.get())) {
+            if (ultimo.compareAndSet(anterior, id)) {
+                return;
+            }
+        }
+    }
+
+    public int getNodo() {
+        return (int) nodo;
+    }
+
+    public static long marcaTiempo(long id) {
+        return (id >>> DESPLAZAMIENTO_TIEMPO) + EPOCA;
+    }
+
+    public static int nodo(long id) {
+        return (int) (id >>> BITS_SECUENCIA) & NODO_MAXIMO;
+    }
+
+    public static int secuencia(long id) {
+        return (int) (id & SECUENCIA_MAXIMA);
+    }
+
+    private long siguienteA(long anterior, long ahora) {
+        long milisAnterior = anterior >>> DESPLAZAMIENTO_TIEMPO;
+        if (ahora > milisAnterior) {
+            return componer(ahora, 0);
+        }
+        // Reloj atrasado o milisegundo agotado: se sigue a partir del último id
+        if (nodo(anterior) == nodo && secuencia(anterior) < SECUENCIA_MAXIMA) {
+            return anterior + 1;
+        }
+        if (nodo(anterior) < nodo) {
+            // Viene de avanzarHasta con otro nodo: basta con subir los bits de nodo
+            return componer(milisAnterior, 0);
+        }
+        return componer(milisAnterior + 1, 0);
+    }
+
+    private long componer(long milis, long secuencia) {
+        return (milis << DESPLAZAMIENTO_TIEMPO) | (nodo << BITS_SECUENCIA) | secuencia;
+    }
+}
@@ -0,0 +1,148 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Instantánea binaria de todos los usuarios de {@link UsuarioRepositoryPersistente}:
+ * [MAGICO: int][VERSION: int][secuencia: long][usuarios: long], los usuarios
+ * seguidos en el formato de {@link FormatoUsuario} y MAGICO otra vez al final.
+ * La secuencia es la del último cambio incluido: al arrancar solo se reproducen
+ * los cambios posteriores.
+ *
+ * Se lee mapeando el fichero en ventanas, sin copiarlo a un buffer intermedio;
+ * una instantánea sin la marca final no se terminó de escribir y se rechaza.
+ */
+final class InstantaneaUsuarios {
+
+    static final int MAGICO = 0x55534e31;   // "USN1"
+    static final int VERSION = 1;
+    static final int CABECERA = 2 * Integer.BYTES + 2 * Long.BYTES;
+
+    private static final int TAMANO_BUFFER = 1 << 20;
+    private static final long VENTANA = 1L << 28;
+
+    // Lo que dice la cabecera de una instantánea
+    record Cabecera(long secuencia, long usuarios) {
+    }
+
+    private InstantaneaUsuarios() {
+    }
+
+    static void escribir(Path ruta, long secuencia, Collection<Usuario> usuarios) {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUFFER);
+            buffer.putInt(MAGICO).putInt(VERSION).putLong(secuencia).putLong(usuarios.size());
+            for (Usuario usuario : usuarios) {
+                byte[] nombre = FormatoUsuario.utf8(usuario.getNombre());
+                byte[] email = FormatoUsuario.utf8(usuario.getEmail());
+                int tamano = FormatoUsuario.tamano(nombre, email);
+                if (buffer.remaining() < tamano) {
+                    volcar(canal, buffer);
+                    if (buffer.capacity() < tamano) {
+                        buffer = ByteBuffer.allocate(tamano);
+                    }
+                }
+                FormatoUsuario.escribir(buffer, usuario.getId(), usuario.isActivo(), nombre, email);
+            }
+            if (buffer.remaining() < Integer.BYTES) {
+                volcar(canal, buffer);
+            }
+            buffer.putInt(MAGICO);
+            volcar(canal, buffer);
+            canal.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir la instantánea " + ruta, e);
+        }
+    }
+
+    static Cabecera leerCabecera(Path ruta) {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            while (cabecera.hasRemaining() && canal.read(cabecera) >= 0) {
+                // leer hasta completar la cabecera o llegar al final
+            }
+            return comprobarCabecera(ruta, cabecera.flip());
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer la instantánea " + ruta, e);
+        }
+    }
+
+    // Pasa cada usuario al consumidor y devuelve la cabecera
+    static Cabecera cargar(Path ruta, Consumer<Usuario> consumidor) {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamanoFichero = canal.size();
+            MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(tamanoFichero, VENTANA));
+            Cabecera cabecera = comprobarCabecera(ruta, ventana);
+            long inicioVentana = 0;
+            for (long i = 0; i < cabecera.usuarios(); i++) {
+                int tamano = tamanoSiguiente(ventana);
+                if (tamano < 0) {
+                    // El usuario queda partido entre esta ventana y la siguiente
+                    inicioVentana += ventana.position();
+                    ventana = canal.map(FileChannel.MapMode.READ_ONLY, inicioVentana,
+                        Math.min(tamanoFichero - inicioVentana, VENTANA));
+                    if (tamanoSiguiente(ventana) < 0) {
+                        throw new IllegalStateException("Instantánea incompleta: " + ruta);
+                    }
+                }
+                consumidor.accept(FormatoUsuario.leer(ventana));
+            }
+            if (ventana.remaining() < Integer.BYTES) {
+                inicioVentana += ventana.position();
+                ventana = canal.map(FileChannel.MapMode.READ_ONLY, inicioVentana, tamanoFichero - inicioVentana);
+            }
+            if (ventana.remaining() < Integer.BYTES || ventana.getInt() != MAGICO) {
+                throw new IllegalStateException("Instantánea incompleta: " + ruta);
+            }
+            return cabecera;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer la instantánea " + ruta, e);
+        }
+    }
+
+    private static Cabecera comprobarCabecera(Path ruta, ByteBuffer buffer) {
+        if (buffer.remaining() < CABECERA || buffer.getInt() != MAGICO) {
+            throw new IllegalStateException("No es una instantánea de usuarios: " + ruta);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Versión de instantánea no soportada (" + version + "): " + ruta);
+        }
+        return new Cabecera(buffer.getLong(), buffer.getLong());
+    }
+
+    // Bytes del usuario que empieza en la posición actual, o -1 si no está entero en la ventana
+    private static int tamanoSiguiente(ByteBuffer ventana) {
+        int posicion = ventana.position();
+        int restante = ventana.remaining();
+        int textos = posicion + Long.BYTES + 1;
+        if (restante < FormatoUsuario.TAMANO_FIJO) {
+            return -1;
+        }
+        int nombre = Math.max(ventana.getInt(textos), 0);
+        if (restante < FormatoUsuario.TAMANO_FIJO + nombre) {
+            return -1;
+        }
+        int email = Math.max(ventana.getInt(textos + Integer.BYTES + nombre), 0);
+        int tamano = FormatoUsuario.TAMANO_FIJO + nombre + email;
+        return restante < tamano ? -1 : tamano;
+    }
+
+    private static void volcar(FileChannel canal, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+}
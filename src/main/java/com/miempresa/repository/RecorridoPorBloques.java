@@ -0,0 +1,52 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Recorre un repositorio página a página con {@link UsuarioRepository#findPage}.
+ * Solo mantiene en memoria el bloque actual, así que el consumo no depende del
+ * número total de usuarios.
+ */
+final class RecorridoPorBloques extends Spliterators.AbstractSpliterator<Usuario> {
+
+    private final UsuarioRepository repositorio;
+    private final int tamanoBloque;
+    private Long cursor;
+    private Iterator<Usuario> bloque = Collections.emptyIterator();
+    private boolean agotado;
+
+    RecorridoPorBloques(UsuarioRepository repositorio, int tamanoBloque) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        if (tamanoBloque < 1) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser positivo");
+        }
+        this.repositorio = repositorio;
+        this.tamanoBloque = tamanoBloque;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Usuario> accion) {
+        if (!bloque.hasNext()) {
+            if (agotado) {
+                return false;
+            }
+            List<Usuario> pagina = repositorio.findPage(cursor, tamanoBloque);
+            if (pagina.size() < tamanoBloque) {
+                agotado = true;
+            }
+            if (pagina.isEmpty()) {
+                return false;
+            }
+            cursor = pagina.get(pagina.size() - 1).getId();
+            bloque = pagina.iterator();
+        }
+        accion.accept(bloque.next());
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.miempresa.repository;
+
+import java.util.Arrays;
+
+/**
+ * Selecciona los "limite" ids más pequeños mayores que un cursor con un montículo
+ * de máximos acotado: un recorrido O(n log limite) sin copiar la tabla entera.
+ * Lo usan los repositorios en memoria, cuyas tablas hash no guardan orden.
+ */
+final class SeleccionIds {
+
+    private final long[] monticulo;
+    private final Long cursor;
+    private int tamano;
+
+    SeleccionIds(Long cursor, int limite) {
+        if (limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser positivo");
+        }
+        this.cursor = cursor;
+        this.monticulo = new long[limite];
+    }
+
+    void ofrecer(long id) {
+        if (cursor != null && id <= cursor) {
+            return;
+        }
+        if (tamano < monticulo.length) {
+            monticulo[tamano] = id;
+            subir(tamano++);
+        } else if (id < monticulo[0]) {
+            monticulo[0] = id;
+            bajar(0);
+        }
+    }
+
+    long[] ordenados() {
+        long[] resultado = Arrays.copyOf(monticulo, tamano);
+        Arrays.sort(resultado);
+        return resultado;
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (monticulo[padre] >= monticulo[i]) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int izquierdo = 2 * i + 1;
+            if (izquierdo >= tamano) {
+                return;
+            }
+            int mayor = izquierdo + 1 < tamano && monticulo[izquierdo + 1] > monticulo[izquierdo]
+                ? izquierdo + 1 : izquierdo;
+            if (monticulo[i] >= monticulo[mayor]) {
+                return;
+            }
+            intercambiar(i, mayor);
+            i = mayor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        long t = monticulo[a];
+        monticulo[a] = monticulo[b];
+        monticulo[b] = t;
+    }
+}
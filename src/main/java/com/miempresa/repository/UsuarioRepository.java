@@ -1,15 +1,90 @@
 package com.miempresa.repository;
 
 import com.miempresa.model.Usuario;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface UsuarioRepository {
-	
+
+	 int TAMANO_BLOQUE_RECUENTO = 1000;
+
 	 Optional<Usuario> findById(Long id);
 	 List<Usuario> findAll();
 	 Usuario save(Usuario usuario);
 	 void delete(Long id);
 	 boolean existsById(Long id);
 
+	 // Búsqueda por email sin distinguir mayúsculas ni espacios alrededor
+	 // (ver Usuario.normalizarEmail). Si varios usuarios comparten email devuelve uno
+	 Optional<Usuario> findByEmail(String email);
+
+	 default boolean existsByEmail(String email) {
+		 return findByEmail(email).isPresent();
+	 }
+
+	 // Paginación por cursor (keyset): hasta "limite" usuarios con id mayor que
+	 // despuesDeId, ordenados por id. Con despuesDeId nulo se empieza por el principio
+	 List<Usuario> findPage(Long despuesDeId, int limite);
+
+	 // Recorrido perezoso de todos los usuarios, pidiendo al almacén bloques de
+	 // tamanoBloque. Hay que cerrar el Stream (try-with-resources) al terminar
+	 default Stream<Usuario> streamAll(int tamanoBloque) {
+		 return StreamSupport.stream(new RecorridoPorBloques(this, tamanoBloque), false);
+	 }
+
+	 // Recuentos por estado. Por defecto recorren el almacén; los repositorios en
+	 // memoria los responden en O(1) con un BitmapCompacto de ids activos
+	 default long countActivos() {
+		 try (Stream<Usuario> usuarios = streamAll(TAMANO_BLOQUE_RECUENTO)) {
+			 return usuarios.filter(Usuario::isActivo).count();
+		 }
+	 }
+
+	 default long countInactivos() {
+		 try (Stream<Usuario> usuarios = streamAll(TAMANO_BLOQUE_RECUENTO)) {
+			 return usuarios.filter(u -> !u.isActivo()).count();
+		 }
+	 }
+
+	 // Ids de los usuarios activos según su último save. Es una copia: se puede
+	 // combinar con otros bitmaps (and, or, andNot) sin afectar al repositorio
+	 default BitmapCompacto idsActivos() {
+		 BitmapCompacto activos = new BitmapCompacto();
+		 try (Stream<Usuario> usuarios = streamAll(TAMANO_BLOQUE_RECUENTO)) {
+			 usuarios.filter(Usuario::isActivo).forEach(u -> activos.agregar(u.getId()));
+		 }
+		 return activos;
+	 }
+
+	 // Lectura por lotes de ids;los que no existen se omiten. Las implementaciones
+	 // con almacenamiento externo lo sobrescriben para hacer una sola consulta
+	 default List<Usuario> findAllById(List<Long> ids) {
+		 List<Usuario> encontrados = new ArrayList<>(ids.size());
+		 for (Long id : ids) {
+			 findById(id).ifPresent(encontrados::add);
+		 }
+		 return encontrados;
+	 }
+
+	 // Versión de los datos: crece con cada save o delete que cambia el almacén, así
+	 // que dos lecturas con la misma versión ven los mismos usuarios. Sirve para
+	 // invalidar cachés derivadas leyendo la versión antes que los datos. -1 si el
+	 // repositorio no la lleva; entonces no hay que cachear nada derivado de él
+	 default long version() {
+		 return -1;
+	 }
+
+	 // Guardado masivo: las implementaciones con almacenamiento externo lo sobrescriben
+	 // para agrupar escrituras en lugar de hacer un viaje por usuario
+	 default List<Usuario> saveAll(List<Usuario> usuarios) {
+		 List<Usuario> guardados = new ArrayList<>(usuarios.size());
+		 for (Usuario usuario : usuarios) {
+			 guardados.add(save(usuario));
+		 }
+		 return guardados;
+	 }
+
 }
@@ -0,0 +1,190 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Decorador de {@link UsuarioRepository} que sirve {@code findById} y
+ * {@code existsById} desde una caché acotada ({@link CacheTinyLfu}). También
+ * recuerda los ids que no existen, para que los fallos repetidos no vuelvan al
+ * almacén. Las escrituras pasan siempre al repositorio decorado y actualizan la caché.
+ *
+ * Cada escritura sube la versión de la franja de su id antes de tocar la caché, y
+ * una lectura que fue al almacén solo guarda lo leído si la versión de su franja
+ * no cambió mientras tanto: así un valor leído antes de una escritura concurrente
+ * no vuelve a la caché aunque la entrada de esa escritura ya se haya desalojado.
+ */
+public class UsuarioRepositoryConCache implements UsuarioRepository {
+
+    // Marca de "no encontrado" guardada en la caché
+    private static final Usuario AUSENTE = new Usuario(null, null, null);
+
+    private static final int FRANJAS = 64;
+
+    private final UsuarioRepository delegado;
+    private final CacheTinyLfu<Usuario> cache;
+    private final AtomicLongArray versiones = new AtomicLongArray(FRANJAS);
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    public UsuarioRepositoryConCache(UsuarioRepository delegado, int capacidad) {
+        this.delegado = delegado;
+        this.cache = new CacheTinyLfu<>(capacidad);
+    }
+
+    @Override
+    public Optional<Usuario> findById(Long id) {
+        Usuario usuario = obtener(id);
+        return usuario == AUSENTE ? Optional.empty() : Optional.of(usuario);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return obtener(id) != AUSENTE;
+    }
+
+    // Las búsquedas por email no pasan por la caché: el índice del almacén ya es O(1)
+    @Override
+    public Optional<Usuario> findByEmail(String email) {
+        return delegado.findByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return delegado.existsByEmail(email);
+    }
+
+    @Override
+    public long countActivos() {
+        return delegado.countActivos();
+    }
+
+    @Override
+    public long countInactivos() {
+        return delegado.countInactivos();
+    }
+
+    @Override
+    public BitmapCompacto idsActivos() {
+        return delegado.idsActivos();
+    }
+
+    @Override
+    public List<Usuario> findAll() {
+        return delegado.findAll();
+    }
+
+    @Override
+    public List<Usuario> findPage(Long despuesDeId, int limite) {
+        return delegado.findPage(despuesDeId, limite);
+    }
+
+    @Override
+    public Stream<Usuario> streamAll(int tamanoBloque) {
+        return delegado.streamAll(tamanoBloque);
+    }
+
+    @Override
+    public Usuario save(Usuario usuario) {
+        Usuario guardado;
+        try {
+            guardado = delegado.save(usuario);
+        } catch (RuntimeException e) {
+            olvidar(usuario.getId());
+            throw e;
+        }
+        anotarEscritura(guardado.getId());
+        cache.poner(guardado.getId(), guardado);
+        return guardado;
+    }
+
+    @Override
+    public List<Usuario> saveAll(List<Usuario> usuarios) {
+        List<Usuario> guardados;
+        try {
+            guardados = delegado.saveAll(usuarios);
+        } catch (RuntimeException e) {
+            // Parte del lote puede haberse guardado: se olvidan todos sus ids
+            for (Usuario usuario : usuarios) {
+                olvidar(usuario.getId());
+            }
+            throw e;
+        }
+        for (Usuario guardado : guardados) {
+            anotarEscritura(guardado.getId());
+            cache.poner(guardado.getId(), guardado);
+        }
+        return guardados;
+    }
+
+    @Override
+    public void delete(Long id) {
+        try {
+            delegado.delete(id);
+        } catch (RuntimeException e) {
+            // Si el borrado falla no sabemos el estado real: mejor olvidar el id
+            olvidar(id);
+            throw e;
+        }
+        anotarEscritura(id);
+        cache.poner(id, AUSENTE);
+    }
+
+    @Override
+    public long version() {
+        return delegado.version();
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getDesalojos() {
+        return cache.getDesalojos();
+    }
+
+    public int getTamanoCache() {
+        return cache.tamano();
+    }
+
+    private Usuario obtener(long id) {
+        Usuario usuario = cache.obtener(id);
+        if (usuario != null) {
+            aciertos.increment();
+            return usuario;
+        }
+        fallos.increment();
+        int franja = franja(id);
+        long version = versiones.get(franja);
+        usuario = delegado.findById(id).orElse(AUSENTE);
+        // Si entretanto hubo una escritura en la franja, lo leído puede ser anterior a ella
+        cache.ponerSiAusente(id, usuario, () -> versiones.get(franja) == version);
+        return usuario;
+    }
+
+    private void anotarEscritura(long id) {
+        versiones.incrementAndGet(franja(id));
+    }
+
+    // Un usuario sin id (alta fallida antes de asignarlo) no puede estar en la caché
+    private void olvidar(Long id) {
+        if (id != null) {
+            anotarEscritura(id);
+            cache.invalidar(id);
+        }
+    }
+
+    // Los bits altos de una multiplicación de Fibonacci: los ids del GeneradorIds
+    // comparten los bits bajos (secuencia casi siempre a cero) y no sirven solos
+    private static int franja(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - Integer.numberOfTrailingZeros(FRANJAS)));
+    }
+}
@@ -0,0 +1,418 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio en memoria seguro para hilos. Las lecturas ({@code findById},
+ * {@code existsById}) no toman ningún cerrojo; las escrituras solo bloquean el
+ * segmento al que pertenece el id, así que hilos que guardan usuarios distintos
+ * rara vez compiten entre sí.
+ *
+ * Cada segmento es una tabla de direccionamiento abierto como la de
+ * {@link UsuarioRepositoryEnMemoria}. Una ranura, una vez asignada a un id, no
+ * cambia de clave hasta la siguiente redimensión (los borrados dejan una lápida),
+ * de modo que un lector que ve el valor publicado ve también su clave.
+ *
+ * El índice por email (email normalizado -> id) envuelve cada escritura: el
+ * cerrojo del segmento se toma dentro de la actualización atómica de la clave del
+ * email, nunca al revés, así que dos altas con el mismo email no pueden pasar a la
+ * vez. Si un usuario ya guardado cambia de email en el sitio, su clave anterior no
+ * se conoce y queda una entrada obsoleta; por eso cada entrada se contrasta con el
+ * email actual del usuario antes de usarla.
+ * Los ids nuevos salen de un {@link GeneradorIds}, que tampoco usa cerrojos.
+ *
+ * Cada segmento lleva además un {@link BitmapCompacto} con sus ids activos,
+ * protegido por su propio cerrojo; los recuentos suman los contadores de los
+ * segmentos sin bloquear y {@link #idsActivos()} une las copias de cada uno.
+ */
+public class UsuarioRepositoryConcurrente implements UsuarioRepository {
+
+    public static final int SEGMENTOS_POR_DEFECTO = 64;
+
+    private static final float FACTOR_CARGA = 0.6f;
+    private static final Usuario BORRADO = new Usuario(null, null, null);
+
+    private final Segmento[] segmentos;
+    private final int desplazamientoSegmento;
+    private final GeneradorIds generadorIds;
+    private final ConcurrentHashMap<String, Long> duenosEmail = new ConcurrentHashMap<>();
+
+    public UsuarioRepositoryConcurrente() {
+        this(SEGMENTOS_POR_DEFECTO);
+    }
+
+    public UsuarioRepositoryConcurrente(int numeroSegmentos) {
+        this(numeroSegmentos, new GeneradorIds(0));
+    }
+
+    public UsuarioRepositoryConcurrente(int numeroSegmentos, GeneradorIds generadorIds) {
+        if (numeroSegmentos < 1) {
+            throw new IllegalArgumentException("El número de segmentos debe ser positivo");
+        }
+        int n = Integer.highestOneBit(numeroSegmentos);
+        if (n < numeroSegmentos) {
+            n <<= 1;
+        }
+        this.generadorIds = generadorIds;
+        this.segmentos = new Segmento[n];
+        for (int i = 0; i < n; i++) {
+            segmentos[i] = new Segmento();
+        }
+        // El segmento se elige con los bits altos del hash y la ranura con los bajos
+        this.desplazamientoSegmento = 64 - Integer.numberOfTrailingZeros(n);
+    }
+
+    @Override
+    public Optional<Usuario> findById(Long id) {
+        return Optional.ofNullable(buscar(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return buscar(id) != null;
+    }
+
+    @Override
+    public Optional<Usuario> findByEmail(String email) {
+        String clave = Usuario.normalizarEmail(email);
+        Long dueno = clave == null ? null : duenosEmail.get(clave);
+        if (dueno == null) {
+            return Optional.empty();
+        }
+        Usuario usuario = buscar(dueno);
+        return coincide(usuario, clave) ? Optional.of(usuario) : Optional.empty();
+    }
+
+    @Override
+    public List<Usuario> findAll() {
+        List<Usuario> resultado = new ArrayList<>();
+        for (Segmento segmento : segmentos) {
+            Tabla tabla = segmento.tabla;
+            for (int i = 0; i < tabla.valores.length(); i++) {
+                Usuario u = tabla.valores.get(i);
+                if (u != null && u != BORRADO) {
+                    resultado.add(u);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public List<Usuario> findPage(Long despuesDeId, int limite) {
+        SeleccionIds seleccion = new SeleccionIds(despuesDeId, limite);
+        for (Segmento segmento : segmentos) {
+            Tabla tabla = segmento.tabla;
+            for (int i = 0; i < tabla.claves.length; i++) {
+                Usuario u = tabla.valores.get(i);
+                if (u != null && u != BORRADO) {
+                    seleccion.ofrecer(tabla.claves[i]);
+                }
+            }
+        }
+        List<Usuario> pagina = new ArrayList<>();
+        for (long id : seleccion.ordenados()) {
+            Usuario u = buscar(id);
+            if (u != null) {   // borrado entre la selección y la lectura
+                pagina.add(u);
+            }
+        }
+        return pagina;
+    }
+
+    // Recorrido débilmente consistente, como los iteradores de ConcurrentHashMap:
+    // no bloquea a los escritores ni ve dos veces el mismo usuario, pero puede no
+    // reflejar cambios hechos durante el recorrido. No sigue el orden por id
+    @Override
+    public Stream<Usuario> streamAll(int tamanoBloque) {
+        return Arrays.stream(segmentos).flatMap(segmento -> {
+            Tabla tabla = segmento.tabla;
+            return IntStream.range(0, tabla.claves.length)
+                .mapToObj(tabla.valores::get)
+                .filter(u -> u != null && u != BORRADO);
+        });
+    }
+
+    // Como size(), suma contadores de segmento: débilmente consistente con escrituras en curso
+    @Override
+    public long countActivos() {
+        long total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.numeroActivos;
+        }
+        return total;
+    }
+
+    @Override
+    public long countInactivos() {
+        long total = 0;
+        for (Segmento segmento : segmentos) {
+            // Las dos lecturas no son atómicas: un alta a medias no debe restar
+            total += Math.max(0, segmento.vivos - segmento.numeroActivos);
+        }
+        return total;
+    }
+
+    // Cada segmento se copia bajo su cerrojo, así que la unión no es una foto
+    // atómica del repositorio entero
+    @Override
+    public BitmapCompacto idsActivos() {
+        List<BitmapCompacto> copias = new ArrayList<>(segmentos.length);
+        for (Segmento segmento : segmentos) {
+            copias.add(segmento.copiarActivos());
+        }
+        return BitmapCompacto.unionDe(copias);
+    }
+
+    @Override
+    public Usuario save(Usuario usuario) {
+        boolean nuevo = usuario.getId() == null;
+        long id = nuevo ? generadorIds.siguiente() : usuario.getId();
+        if (!nuevo) {
+            generadorIds.avanzarHasta(id);
+        }
+        long hash = mezclar(id);
+        Segmento segmento = segmentoDe(hash);
+        String clave = usuario.getEmailNormalizado();
+        Usuario anterior;
+        if (clave == null) {
+            anterior = publicar(segmento, id, hash, usuario, nuevo);
+        } else {
+            Usuario[] previo = new Usuario[1];
+            duenosEmail.compute(clave, (k, dueno) -> {
+                if (dueno != null && dueno != id && coincide(buscar(dueno), k)) {
+                    throw new IllegalArgumentException("Email ya registrado: " + usuario.getEmail());
+                }
+                previo[0] = publicar(segmento, id, hash, usuario, nuevo);
+                return id;
+            });
+            anterior = previo[0];
+        }
+        if (anterior != null) {
+            olvidarEmail(anterior.getEmailNormalizado(), id);
+        }
+        return usuario;
+    }
+
+    @Override
+    public void delete(Long id) {
+        eliminar(id);
+    }
+
+    public Usuario buscar(long id) {
+        long hash = mezclar(id);
+        return segmentoDe(hash).tabla.buscar(id, hash);
+    }
+
+    public boolean contiene(long id) {
+        return buscar(id) != null;
+    }
+
+    public boolean eliminar(long id) {
+        long hash = mezclar(id);
+        Usuario borrado = segmentoDe(hash).eliminar(id, hash);
+        if (borrado == null) {
+            return false;
+        }
+        olvidarEmail(borrado.getEmailNormalizado(), id);
+        return true;
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.vivos;
+        }
+        return total;
+    }
+
+    // Suma sin cerrojos de los cambios de cada segmento: cada sumando solo crece y se
+    // incrementa después de publicar la escritura, así que una escritura terminada
+    // antes de la llamada siempre cuenta
+    @Override
+    public long version() {
+        long total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.cambios;
+        }
+        return total;
+    }
+
+    public int getNumeroSegmentos() {
+        return segmentos.length;
+    }
+
+    // El id solo se asigna si el guardado no se rechaza por email duplicado, y antes
+    // de publicar el usuario: ningún lector lo ve sin id. Devuelve el usuario anterior
+    private static Usuario publicar(Segmento segmento, long id, long hash, Usuario usuario, boolean nuevo) {
+        if (nuevo) {
+            usuario.setId(id);
+        }
+        return segmento.guardar(id, hash, usuario);
+    }
+
+    // Quita la entrada de "clave" si apunta a "id" y ese usuario ya no tiene ese email
+    private void olvidarEmail(String clave, long id) {
+        if (clave != null) {
+            duenosEmail.computeIfPresent(clave,
+                (k, dueno) -> dueno == id && !coincide(buscar(id), k) ? null : dueno);
+        }
+    }
+
+    private static boolean coincide(Usuario usuario, String clave) {
+        return UsuarioRepositoryEnMemoria.coincide(usuario, clave);
+    }
+
+    private Segmento segmentoDe(long hash) {
+        return segmentos.length == 1 ? segmentos[0] : segmentos[(int) (hash >>> desplazamientoSegmento)];
+    }
+
+    private static long mezclar(long clave) {
+        return UsuarioRepositoryEnMemoria.mezclar(clave);
+    }
+
+    private static final class Tabla {
+        final long[] claves;
+        final AtomicReferenceArray<Usuario> valores;   // null = libre, BORRADO = lápida
+        final int umbral;
+        int ocupadas;   // vivas + lápidas, solo se modifica bajo el cerrojo
+
+        Tabla(int capacidad) {
+            this.claves = new long[capacidad];
+            this.valores = new AtomicReferenceArray<>(capacidad);
+            this.umbral = (int) (capacidad * FACTOR_CARGA);
+        }
+
+        Usuario buscar(long id, long hash) {
+            int mascara = claves.length - 1;
+            int i = (int) hash & mascara;
+            Usuario u;
+            // La lectura volátil del valor publica la clave escrita antes por el escritor
+            while ((u = valores.get(i)) != null) {
+                if (claves[i] == id) {
+                    return u == BORRADO ? null : u;
+                }
+                i = (i + 1) & mascara;
+            }
+            return null;
+        }
+    }
+
+    private static final class Segmento {
+        final ReentrantLock cerrojo = new ReentrantLock();
+        volatile Tabla tabla = new Tabla(16);
+        volatile int vivos;
+        final BitmapCompacto activos = new BitmapCompacto();   // bajo el cerrojo
+        volatile int numeroActivos;
+        volatile long cambios;   // solo crece, bajo el cerrojo
+
+        // Devuelve el usuario que ocupaba el id, o null si es un alta
+        Usuario guardar(long id, long hash, Usuario usuario) {
+            cerrojo.lock();
+            try {
+                marcarActivo(id, usuario.isActivo());
+                Tabla t = tabla;
+                int mascara = t.claves.length - 1;
+                int i = (int) hash & mascara;
+                Usuario actual;
+                while ((actual = t.valores.get(i)) != null) {
+                    if (t.claves[i] == id) {
+                        if (actual == BORRADO) {
+                            vivos++;
+                        }
+                        t.valores.set(i, usuario);
+                        cambios++;
+                        return actual == BORRADO ? null : actual;
+                    }
+                    i = (i + 1) & mascara;
+                }
+                t.claves[i] = id;
+                t.valores.set(i, usuario);
+                vivos++;
+                if (++t.ocupadas > t.umbral) {
+                    redimensionar(t);
+                }
+                cambios++;
+                return null;
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+
+        // Devuelve el usuario borrado, o null si el id no existía
+        Usuario eliminar(long id, long hash) {
+            cerrojo.lock();
+            try {
+                Tabla t = tabla;
+                int mascara = t.claves.length - 1;
+                int i = (int) hash & mascara;
+                Usuario actual;
+                while ((actual = t.valores.get(i)) != null) {
+                    if (t.claves[i] == id) {
+                        if (actual == BORRADO) {
+                            return null;
+                        }
+                        t.valores.set(i, BORRADO);
+                        vivos--;
+                        marcarActivo(id, false);
+                        cambios++;
+                        return actual;
+                    }
+                    i = (i + 1) & mascara;
+                }
+                return null;
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+
+        BitmapCompacto copiarActivos() {
+            cerrojo.lock();
+            try {
+                return activos.copia();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+
+        private void marcarActivo(long id, boolean activo) {
+            if (activo ? activos.agregar(id) : activos.quitar(id)) {
+                numeroActivos = (int) activos.cardinalidad();
+            }
+        }
+
+        // Se copia a una tabla nueva (sin lápidas) y se publica de golpe;
+        // los lectores que aún usan la anterior ven una foto coherente
+        private void redimensionar(Tabla anterior) {
+            int capacidad = anterior.claves.length;
+            if (vivos > anterior.umbral / 2) {
+                capacidad <<= 1;
+            }
+            Tabla nueva = new Tabla(capacidad);
+            int mascara = capacidad - 1;
+            for (int j = 0; j < anterior.claves.length; j++) {
+                Usuario u = anterior.valores.get(j);
+                if (u != null && u != BORRADO) {
+                    long clave = anterior.claves[j];
+                    int i = (int) mezclar(clave) & mascara;
+                    while (nueva.valores.get(i) != null) {
+                        i = (i + 1) & mascara;
+                    }
+                    nueva.claves[i] = clave;
+                    nueva.valores.set(i, u);
+                    nueva.ocupadas++;
+                }
+            }
+            tabla = nueva;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio en memoria sobre una tabla hash de direccionamiento abierto
+ * {@code long -> Usuario}. Las claves se guardan como {@code long} primitivos,
+ * así que buscar, guardar o borrar no crea objetos {@code Long} ni entradas de mapa.
+ * Un índice secundario por email, otra tabla de direccionamiento abierto con los
+ * ids también primitivos, resuelve {@code findByEmail} sin recorrer la tabla y
+ * rechaza guardar un email que ya tiene otro usuario.
+ * Los usuarios sin id reciben uno de un {@link GeneradorIds}. Un
+ * {@link BitmapCompacto} con los ids activos, al día en cada save y delete,
+ * responde los recuentos por estado sin recorrer la tabla.
+ *
+ * No es seguro para hilos: para acceso concurrente usar {@link UsuarioRepositoryConcurrente}.
+ */
+public class UsuarioRepositoryEnMemoria implements UsuarioRepository {
+
+    private static final int CAPACIDAD_INICIAL = 16;
+    private static final float FACTOR_CARGA = 0.6f;
+
+    private long[] claves;
+    private Usuario[] valores;   // null = ranura libre
+    private int tamano;
+    private int umbral;
+    private final GeneradorIds generadorIds;
+    private final IndiceEmails emails;
+    private final BitmapCompacto activos = new BitmapCompacto();
+    private long version;
+
+    public UsuarioRepositoryEnMemoria() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    public UsuarioRepositoryEnMemoria(int capacidadEsperada) {
+        this(capacidadEsperada, new GeneradorIds(0));
+    }
+
+    public UsuarioRepositoryEnMemoria(int capacidadEsperada, GeneradorIds generadorIds) {
+        this.generadorIds = generadorIds;
+        int capacidad = capacidadPara(capacidadEsperada);
+        this.claves = new long[capacidad];
+        this.valores = new Usuario[capacidad];
+        this.umbral = (int) (capacidad * FACTOR_CARGA);
+        // Con la misma capacidad que la tabla el índice tampoco se redimensiona al cargar
+        this.emails = new IndiceEmails(capacidad);
+    }
+
+    @Override
+    public Optional<Usuario> findById(Long id) {
+        return Optional.ofNullable(buscar(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return buscar(id) != null;
+    }
+
+    @Override
+    public Optional<Usuario> findByEmail(String email) {
+        String clave = Usuario.normalizarEmail(email);
+        int ranura = clave == null ? -1 : emails.ranura(clave);
+        if (ranura < 0) {
+            return Optional.empty();
+        }
+        Usuario usuario = buscar(emails.id(ranura));
+        return coincide(usuario, clave) ? Optional.of(usuario) : Optional.empty();
+    }
+
+    @Override
+    public List<Usuario> findAll() {
+        List<Usuario> resultado = new ArrayList<>(tamano);
+        for (Usuario u : valores) {
+            if (u != null) {
+                resultado.add(u);
+            }
+        }
+        return resultado;
+    }
+
+    // La tabla no guarda orden: cada página es un recorrido completo O(n log limite)
+    @Override
+    public List<Usuario> findPage(Long despuesDeId, int limite) {
+        SeleccionIds seleccion = new SeleccionIds(despuesDeId, limite);
+        for (int i = 0; i < valores.length; i++) {
+            if (valores[i] != null) {
+                seleccion.ofrecer(claves[i]);
+            }
+        }
+        long[] ids = seleccion.ordenados();
+        List<Usuario> pagina = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            pagina.add(buscar(id));
+        }
+        return pagina;
+    }
+
+    // Recorre las ranuras directamente (O(n) en total, sin orden por id). Guardar
+    // usuarios ya existentes durante el recorrido es seguro; altas y bajas no
+    @Override
+    public Stream<Usuario> streamAll(int tamanoBloque) {
+        return Arrays.stream(valores).filter(Objects::nonNull);
+    }
+
+    @Override
+    public long countActivos() {
+        return activos.cardinalidad();
+    }
+
+    @Override
+    public long countInactivos() {
+        return tamano - activos.cardinalidad();
+    }
+
+    @Override
+    public BitmapCompacto idsActivos() {
+        return activos.copia();
+    }
+
+    @Override
+    public Usuario save(Usuario usuario) {
+        boolean nuevo = usuario.getId() == null;
+        long id = nuevo ? generadorIds.siguiente() : usuario.getId();
+        String clave = usuario.getEmailNormalizado();
+        if (clave != null) {
+            int ranura = emails.ranura(clave);
+            if (ranura >= 0 && emails.id(ranura) != id && coincide(buscar(emails.id(ranura)), clave)) {
+                throw new IllegalArgumentException("Email ya registrado: " + usuario.getEmail());
+            }
+        }
+        Usuario anterior = guardar(id, usuario);
+        if (clave != null) {
+            emails.poner(clave, id);
+        }
+        if (anterior != null) {
+            olvidarEmail(anterior.getEmailNormalizado(), id);
+        }
+        // El id solo se asigna si el guardado no se rechaza por email duplicado
+        if (nuevo) {
+            usuario.setId(id);
+        } else {
+            generadorIds.avanzarHasta(id);
+        }
+        version++;
+        return usuario;
+    }
+
+    @Override
+    public void delete(Long id) {
+        eliminar(id);
+    }
+
+    // Variantes con clave primitiva para el camino caliente (sin Optional ni boxing)
+
+    public Usuario buscar(long id) {
+        int mascara = valores.length - 1;
+        int i = indice(id, mascara);
+        Usuario u;
+        while ((u = valores[i]) != null) {
+            if (claves[i] == id) {
+                return u;
+            }
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    public boolean contiene(long id) {
+        return buscar(id) != null;
+    }
+
+    public boolean eliminar(long id) {
+        int mascara = valores.length - 1;
+        int i = indice(id, mascara);
+        while (valores[i] != null) {
+            if (claves[i] == id) {
+                Usuario borrado = valores[i];
+                desplazarHaciaAtras(i, mascara);
+                tamano--;
+                activos.quitar(id);
+                olvidarEmail(borrado.getEmailNormalizado(), id);
+                version++;
+                return true;
+            }
+            i = (i + 1) & mascara;
+        }
+        return false;
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    // Devuelve el usuario que ocupaba el id, o null si es un alta
+    private Usuario guardar(long id, Usuario usuario) {
+        if (usuario.isActivo()) {
+            activos.agregar(id);
+        } else {
+            activos.quitar(id);
+        }
+        int mascara = valores.length - 1;
+        int i = indice(id, mascara);
+        while (valores[i] != null) {
+            if (claves[i] == id) {
+                Usuario anterior = valores[i];
+                valores[i] = usuario;
+                return anterior;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = id;
+        valores[i] = usuario;
+        if (++tamano > umbral) {
+            redimensionar();
+        }
+        return null;
+    }
+
+    // Quita la entrada de "clave" si apunta a "id" y ese usuario ya no tiene ese email.
+    // Si un usuario cambia de email en el sitio su clave anterior no se conoce y queda
+    // una entrada obsoleta; por eso cada entrada se contrasta con el email actual
+    private void olvidarEmail(String clave, long id) {
+        if (clave != null) {
+            int ranura = emails.ranura(clave);
+            if (ranura >= 0 && emails.id(ranura) == id && !coincide(buscar(id), clave)) {
+                emails.quitar(ranura);
+            }
+        }
+    }
+
+    static boolean coincide(Usuario usuario, String clave) {
+        return usuario != null && clave.equals(usuario.getEmailNormalizado());
+    }
+
+    // Borrado sin lápidas: se recolocan las entradas siguientes del mismo grupo
+    private void desplazarHaciaAtras(int hueco, int mascara) {
+        int i = (hueco + 1) & mascara;
+        while (valores[i] != null) {
+            int ideal = indice(claves[i], mascara);
+            // La entrada puede ocupar el hueco si su posición ideal no está entre (hueco, i]
+            if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+                claves[hueco] = claves[i];
+                valores[hueco] = valores[i];
+                hueco = i;
+            }
+            i = (i + 1) & mascara;
+        }
+        valores[hueco] = null;
+    }
+
+    private void redimensionar() {
+        long[] clavesAnteriores = claves;
+        Usuario[] valoresAnteriores = valores;
+        int capacidad = valoresAnteriores.length << 1;
+        claves = new long[capacidad];
+        valores = new Usuario[capacidad];
+        umbral = (int) (capacidad * FACTOR_CARGA);
+        int mascara = capacidad - 1;
+        for (int j = 0; j < valoresAnteriores.length; j++) {
+            if (valoresAnteriores[j] != null) {
+                int i = indice(clavesAnteriores[j], mascara);
+                while (valores[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                claves[i] = clavesAnteriores[j];
+                valores[i] = valoresAnteriores[j];
+            }
+        }
+    }
+
+    static int indice(long clave, int mascara) {
+        return (int) mezclar(clave) & mascara;
+    }
+
+    // Mezcla de bits (finalizador de MurmurHash3) para repartir ids consecutivos
+    static long mezclar(long clave) {
+        long h = clave;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static int capacidadPara(int esperados) {
+        int minimo = (int) Math.ceil(Math.max(esperados, 2) / (double) FACTOR_CARGA);
+        int capacidad = Integer.highestOneBit(minimo);
+        return capacidad < minimo ? capacidad << 1 : capacidad;
+    }
+
+    // Índice email normalizado -> id con la misma disposición que la tabla principal:
+    // claves y ids en arrays paralelos, sin entradas de mapa ni ids en caja
+    private static final class IndiceEmails {
+        private String[] claves;   // null = ranura libre
+        private long[] ids;
+        private int tamano;
+        private int umbral;
+
+        IndiceEmails(int capacidad) {
+            this.claves = new String[capacidad];
+            this.ids = new long[capacidad];
+            this.umbral = (int) (capacidad * FACTOR_CARGA);
+        }
+
+        // Ranura de la clave, o -1 si no está
+        int ranura(String clave) {
+            int mascara = claves.length - 1;
+            int i = indice(clave.hashCode(), mascara);
+            String actual;
+            while ((actual = claves[i]) != null) {
+                if (actual.equals(clave)) {
+                    return i;
+                }
+                i = (i + 1) & mascara;
+            }
+            return -1;
+        }
+
+        long id(int ranura) {
+            return ids[ranura];
+        }
+
+        void poner(String clave, long id) {
+            int mascara = claves.length - 1;
+            int i = indice(clave.hashCode(), mascara);
+            String actual;
+            while ((actual = claves[i]) != null) {
+                if (actual.equals(clave)) {
+                    ids[i] = id;
+                    return;
+                }
+                i = (i + 1) & mascara;
+            }
+            claves[i] = clave;
+            ids[i] = id;
+            if (++tamano > umbral) {
+                redimensionar();
+            }
+        }
+
+        void quitar(int hueco) {
+            int mascara = claves.length - 1;
+            int i = (hueco + 1) & mascara;
+            while (claves[i] != null) {
+                int ideal = indice(claves[i].hashCode(), mascara);
+                if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+                    claves[hueco] = claves[i];
+                    ids[hueco] = ids[i];
+                    hueco = i;
+                }
+                i = (i + 1) & mascara;
+            }
+            claves[hueco] = null;
+            tamano--;
+        }
+
+        private void redimensionar() {
+            String[] clavesAnteriores = claves;
+            long[] idsAnteriores = ids;
+            int capacidad = clavesAnteriores.length << 1;
+            claves = new String[capacidad];
+            ids = new long[capacidad];
+            umbral = (int) (capacidad * FACTOR_CARGA);
+            int mascara = capacidad - 1;
+            for (int j = 0; j < clavesAnteriores.length; j++) {
+                if (clavesAnteriores[j] != null) {
+                    int i = indice(clavesAnteriores[j].hashCode(), mascara);
+                    while (claves[i] != null) {
+                        i = (i + 1) & mascara;
+                    }
+                    claves[i] = clavesAnteriores[j];
+                    ids[i] = idsAnteriores[j];
+                }
+            }
+        }
+    }
+}
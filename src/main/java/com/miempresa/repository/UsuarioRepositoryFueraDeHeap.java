@@ -0,0 +1,617 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio por columnas fuera del heap, pensado para decenas de millones de
+ * usuarios. Cada usuario es una fila: su id en una columna de {@code long}, una
+ * referencia a su nombre y email (UTF-8, cada uno con su longitud delante) en una
+ * arena de texto por bloques, el hash de su email normalizado y dos bits (vivo y
+ * activo). Todo está en buffers directos, así que el recolector ve unos pocos
+ * objetos por repositorio y no tiene nada que marcar por usuario.
+ *
+ * Dos tablas de direccionamiento abierto, también fuera del heap, llevan de id a
+ * fila y de email normalizado a fila. Solo guardan el número de fila (4 bytes) y
+ * comparan contra las columnas. {@code findById} devuelve una vista ligera de
+ * {@link Usuario} que lee de las columnas; si se modifica, copia sus datos al heap
+ * y deja de leer del almacén hasta que se guarda con {@code save}.
+ *
+ * Las filas borradas y los textos reemplazados no se reaprovechan (ver
+ * {@link #getBytesTextoMuertos()}). La memoria directa está limitada por
+ * {@code -XX:MaxDirectMemorySize}. No es seguro para hilos.
+ */
+public class UsuarioRepositoryFueraDeHeap implements UsuarioRepository {
+
+    // La columna de ids se indexa con int en bytes: fila * 8 < 2^31
+    static final int MAXIMO_FILAS = Integer.MAX_VALUE / Long.BYTES;
+
+    private static final int CAPACIDAD_INICIAL = 1024;
+    private static final int BLOQUE_TEXTO_INICIAL = 1 << 16;
+    private static final int BLOQUE_TEXTO_MAXIMO = 1 << 24;
+    private static final float FACTOR_CARGA = 0.6f;
+
+    private ByteBuffer ids;            // long por fila
+    private ByteBuffer textos;         // long por fila: (bloque << 32) | posición en la arena
+    private ByteBuffer hashesEmail;    // int por fila: hashCode del email normalizado
+    private ByteBuffer vivos;          // un bit por fila
+    private ByteBuffer activos;        // un bit por fila, siempre 0 en filas borradas
+    private int capacidadFilas;
+    private int filas;                 // filas usadas, vivas o borradas
+    private int tamano;                // filas vivas
+    private int numeroActivos;
+    private long version;
+
+    private final List<ByteBuffer> arena = new ArrayList<>();
+    private int posicionArena;         // dentro del último bloque
+    private long bytesTexto;           // escritos en la arena, vivos o no
+    private long bytesTextoMuertos;
+    private byte[] auxiliar = new byte[256];
+
+    private final TablaFilas porId = new TablaFilas(this::hashIdDeFila);
+    private final TablaFilas porEmail = new TablaFilas(this::hashEmailDeFila);
+    private final GeneradorIds generadorIds;
+
+    public UsuarioRepositoryFueraDeHeap() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    public UsuarioRepositoryFueraDeHeap(int capacidadEsperada) {
+        this(capacidadEsperada, new GeneradorIds(0));
+    }
+
+    public UsuarioRepositoryFueraDeHeap(int capacidadEsperada, GeneradorIds generadorIds) {
+        if (capacidadEsperada < 1 || capacidadEsperada > MAXIMO_FILAS) {
+            throw new IllegalArgumentException("Capacidad fuera de rango: " + capacidadEsperada);
+        }
+        this.generadorIds = generadorIds;
+        this.capacidadFilas = capacidadEsperada;
+        this.ids = directo((long) capacidadEsperada * Long.BYTES);
+        this.textos = directo((long) capacidadEsperada * Long.BYTES);
+        this.hashesEmail = directo((long) capacidadEsperada * Integer.BYTES);
+        this.vivos = directo(bytesBitset(capacidadEsperada));
+        this.activos = directo(bytesBitset(capacidadEsperada));
+        this.arena.add(directo(BLOQUE_TEXTO_INICIAL));
+        porId.iniciar(capacidadEsperada);
+        porEmail.iniciar(capacidadEsperada);
+    }
+
+    @Override
+    public Optional<Usuario> findById(Long id) {
+        int fila = filaDeId(id);
+        return fila < 0 ? Optional.empty() : Optional.of(new Vista(fila));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return filaDeId(id) >= 0;
+    }
+
+    @Override
+    public Optional<Usuario> findByEmail(String email) {
+        String clave = Usuario.normalizarEmail(email);
+        int fila = clave == null ? -1 : filaDeEmail(clave);
+        return fila < 0 ? Optional.empty() : Optional.of(new Vista(fila));
+    }
+
+    // Crea una vista por usuario: para recorridos grandes usar streamAll
+    @Override
+    public List<Usuario> findAll() {
+        List<Usuario> resultado = new ArrayList<>(tamano);
+        for (int fila = 0; fila < filas; fila++) {
+            if (bit(vivos, fila)) {
+                resultado.add(new Vista(fila));
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public List<Usuario> findPage(Long despuesDeId, int limite) {
+        SeleccionIds seleccion = new SeleccionIds(despuesDeId, limite);
+        for (int fila = 0; fila < filas; fila++) {
+            if (bit(vivos, fila)) {
+                seleccion.ofrecer(id(fila));
+            }
+        }
+        long[] seleccionados = seleccion.ordenados();
+        List<Usuario> pagina = new ArrayList<>(seleccionados.length);
+        for (long id : seleccionados) {
+            pagina.add(new Vista(filaDeId(id)));
+        }
+        return pagina;
+    }
+
+    // Recorre las filas en orden de alta, una vista por usuario y sin orden por id
+    @Override
+    public Stream<Usuario> streamAll(int tamanoBloque) {
+        return IntStream.range(0, filas).filter(fila -> bit(vivos, fila)).mapToObj(Vista::new);
+    }
+
+    @Override
+    public Usuario save(Usuario usuario) {
+        if (usuario instanceof Vista vista && vista.esDe(this) && !vista.desacoplada && bit(vivos, vista.fila)) {
+            return usuario;   // una vista sin modificar ya está al día
+        }
+        boolean nuevo = usuario.getId() == null;
+        long id = nuevo ? generadorIds.siguiente() : usuario.getId();
+        String nombre = usuario.getNombre();
+        String email = usuario.getEmail();
+        String clave = Usuario.normalizarEmail(email);
+        int fila = filaDeId(id);
+        if (clave != null) {
+            int dueno = filaDeEmail(clave);
+            if (dueno >= 0 && dueno != fila) {
+                throw new IllegalArgumentException("Email ya registrado: " + email);
+            }
+        }
+        long texto = escribirTexto(nombre, email);
+        if (fila < 0) {
+            fila = nuevaFila(id);
+            porId.insertar(mezclar(id), fila);
+            tamano++;
+        } else {
+            porEmail.quitarFila(hashEmailDeFila(fila), fila);
+            bytesTextoMuertos += longitudTexto(textos.getLong(fila << 3));
+        }
+        textos.putLong(fila << 3, texto);
+        if (clave != null) {
+            hashesEmail.putInt(fila << 2, clave.hashCode());
+            porEmail.insertar(hashEmailDeFila(fila), fila);
+        }
+        marcarActivo(fila, usuario.isActivo());
+        version++;
+        // El id solo se asigna si el guardado no se rechaza por email duplicado
+        if (nuevo) {
+            usuario.setId(id);
+        } else {
+            generadorIds.avanzarHasta(id);
+        }
+        return usuario;
+    }
+
+    @Override
+    public void delete(Long id) {
+        eliminar(id);
+    }
+
+    @Override
+    public long countActivos() {
+        return numeroActivos;
+    }
+
+    @Override
+    public long countInactivos() {
+        return tamano - numeroActivos;
+    }
+
+    // Se recorre el bitset de activos palabra a palabra, sin crear vistas
+    @Override
+    public BitmapCompacto idsActivos() {
+        BitmapCompacto resultado = new BitmapCompacto();
+        for (int palabra = 0; palabra << 6 < filas; palabra++) {
+            long bits = activos.getLong(palabra << 3);
+            while (bits != 0) {
+                resultado.agregar(id((palabra << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return resultado;
+    }
+
+    public boolean eliminar(long id) {
+        int fila = filaDeId(id);
+        if (fila < 0) {
+            return false;
+        }
+        porId.quitarFila(mezclar(id), fila);
+        porEmail.quitarFila(hashEmailDeFila(fila), fila);
+        marcarActivo(fila, false);
+        ponerBit(vivos, fila, false);
+        bytesTextoMuertos += longitudTexto(textos.getLong(fila << 3));
+        tamano--;
+        version++;
+        return true;
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    // Bytes reservados fuera del heap: columnas, tablas y arena, holgura incluida
+    public long getBytesFueraDeHeap() {
+        long bytes = (long) ids.capacity() + textos.capacity() + hashesEmail.capacity()
+            + vivos.capacity() + activos.capacity() + porId.bytes() + porEmail.bytes();
+        for (ByteBuffer bloque : arena) {
+            bytes += bloque.capacity();
+        }
+        return bytes;
+    }
+
+    // Bytes ocupados por las filas usadas, las tablas y el texto escrito, sin la
+    // holgura de las columnas ni el final libre de la arena
+    public long getBytesUsados() {
+        long porFila = Long.BYTES + Long.BYTES + Integer.BYTES;
+        return filas * porFila + 2 * bytesBitset(filas) + porId.bytes() + porEmail.bytes() + bytesTexto;
+    }
+
+    public double getBytesPorUsuario() {
+        return tamano == 0 ? 0 : getBytesUsados() / (double) tamano;
+    }
+
+    // Texto de usuarios borrados o de nombres y emails reemplazados
+    public long getBytesTextoMuertos() {
+        return bytesTextoMuertos;
+    }
+
+    private long id(int fila) {
+        return ids.getLong(fila << 3);
+    }
+
+    private int filaDeId(long id) {
+        TablaFilas tabla = porId;
+        int ranura = tabla.ranura(mezclar(id));
+        int fila;
+        while ((fila = tabla.fila(ranura)) >= 0) {
+            if (id(fila) == id) {
+                return fila;
+            }
+            ranura = tabla.siguiente(ranura);
+        }
+        return -1;
+    }
+
+    private int filaDeEmail(String clave) {
+        int hash = clave.hashCode();
+        TablaFilas tabla = porEmail;
+        int ranura = tabla.ranura(mezclar(hash));
+        int fila;
+        while ((fila = tabla.fila(ranura)) >= 0) {
+            if (hashesEmail.getInt(fila << 2) == hash && clave.equals(Usuario.normalizarEmail(leerEmail(fila)))) {
+                return fila;
+            }
+            ranura = tabla.siguiente(ranura);
+        }
+        return -1;
+    }
+
+    private long hashIdDeFila(int fila) {
+        return mezclar(id(fila));
+    }
+
+    private long hashEmailDeFila(int fila) {
+        return mezclar(hashesEmail.getInt(fila << 2));
+    }
+
+    private int nuevaFila(long id) {
+        if (filas == capacidadFilas) {
+            crecer();
+        }
+        int fila = filas++;
+        ids.putLong(fila << 3, id);
+        ponerBit(vivos, fila, true);
+        return fila;
+    }
+
+    private void crecer() {
+        if (capacidadFilas == MAXIMO_FILAS) {
+            throw new IllegalStateException("Se ha alcanzado el máximo de " + MAXIMO_FILAS + " filas");
+        }
+        int capacidad = (int) Math.min(MAXIMO_FILAS, (long) capacidadFilas * 2);
+        ids = ampliar(ids, (long) capacidad * Long.BYTES);
+        textos = ampliar(textos, (long) capacidad * Long.BYTES);
+        hashesEmail = ampliar(hashesEmail, (long) capacidad * Integer.BYTES);
+        vivos = ampliar(vivos, bytesBitset(capacidad));
+        activos = ampliar(activos, bytesBitset(capacidad));
+        capacidadFilas = capacidad;
+    }
+
+    private void marcarActivo(int fila, boolean activo) {
+        if (bit(activos, fila) != activo) {
+            ponerBit(activos, fila, activo);
+            numeroActivos += activo ? 1 : -1;
+        }
+    }
+
+    // Registro de texto: [longitud + 1][nombre][longitud + 1][email], longitudes en
+    // varint y 0 para null. Un registro nunca cruza el final de un bloque
+    private long escribirTexto(String nombre, String email) {
+        byte[] bytesNombre = nombre == null ? null : nombre.getBytes(StandardCharsets.UTF_8);
+        byte[] bytesEmail = email == null ? null : email.getBytes(StandardCharsets.UTF_8);
+        int longitud = longitudCampo(bytesNombre) + longitudCampo(bytesEmail);
+        ByteBuffer bloque = arena.get(arena.size() - 1);
+        if (posicionArena + longitud > bloque.capacity()) {
+            int capacidad = Math.max(Math.min(bloque.capacity() * 2, BLOQUE_TEXTO_MAXIMO), longitud);
+            bloque = directo(capacidad);
+            arena.add(bloque);
+            posicionArena = 0;
+        }
+        long referencia = ((long) (arena.size() - 1) << 32) | posicionArena;
+        posicionArena = escribirCampo(bloque, escribirCampo(bloque, posicionArena, bytesNombre), bytesEmail);
+        bytesTexto += longitud;
+        return referencia;
+    }
+
+    private String leerNombre(int fila) {
+        long referencia = textos.getLong(fila << 3);
+        return leerCampo(arena.get((int) (referencia >>> 32)), (int) referencia);
+    }
+
+    private String leerEmail(int fila) {
+        long referencia = textos.getLong(fila << 3);
+        ByteBuffer bloque = arena.get((int) (referencia >>> 32));
+        return leerCampo(bloque, saltarCampo(bloque, (int) referencia));
+    }
+
+    private int longitudTexto(long referencia) {
+        ByteBuffer bloque = arena.get((int) (referencia >>> 32));
+        int inicio = (int) referencia;
+        return saltarCampo(bloque, saltarCampo(bloque, inicio)) - inicio;
+    }
+
+    private String leerCampo(ByteBuffer bloque, int posicion) {
+        int prefijo = leerVarint(bloque, posicion);
+        if (prefijo == 0) {
+            return null;
+        }
+        int longitud = prefijo - 1;
+        if (auxiliar.length < longitud) {
+            auxiliar = new byte[Math.max(longitud, auxiliar.length * 2)];
+        }
+        bloque.get(posicion + longitudVarint(prefijo), auxiliar, 0, longitud);
+        return new String(auxiliar, 0, longitud, StandardCharsets.UTF_8);
+    }
+
+    private static int saltarCampo(ByteBuffer bloque, int posicion) {
+        int prefijo = leerVarint(bloque, posicion);
+        return posicion + longitudVarint(prefijo) + Math.max(0, prefijo - 1);
+    }
+
+    private static int escribirCampo(ByteBuffer bloque, int posicion, byte[] bytes) {
+        int prefijo = bytes == null ? 0 : bytes.length + 1;
+        while ((prefijo & ~0x7F) != 0) {
+            bloque.put(posicion++, (byte) ((prefijo & 0x7F) | 0x80));
+            prefijo >>>= 7;
+        }
+        bloque.put(posicion++, (byte) prefijo);
+        if (bytes != null) {
+            bloque.put(posicion, bytes);
+            posicion += bytes.length;
+        }
+        return posicion;
+    }
+
+    private static int longitudCampo(byte[] bytes) {
+        int prefijo = bytes == null ? 0 : bytes.length + 1;
+        return longitudVarint(prefijo) + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static int leerVarint(ByteBuffer bloque, int posicion) {
+        int valor = 0;
+        for (int desplazamiento = 0; ; desplazamiento += 7) {
+            byte b = bloque.get(posicion++);
+            valor |= (b & 0x7F) << desplazamiento;
+            if (b >= 0) {
+                return valor;
+            }
+        }
+    }
+
+    private static int longitudVarint(int valor) {
+        return valor < (1 << 7) ? 1 : valor < (1 << 14) ? 2 : valor < (1 << 21) ? 3 : valor < (1 << 28) ? 4 : 5;
+    }
+
+    private static boolean bit(ByteBuffer bitset, int fila) {
+        return (bitset.getLong((fila >>> 6) << 3) & (1L << fila)) != 0;
+    }
+
+    private static void ponerBit(ByteBuffer bitset, int fila, boolean valor) {
+        int indice = (fila >>> 6) << 3;
+        long palabra = bitset.getLong(indice);
+        bitset.putLong(indice, valor ? palabra | (1L << fila) : palabra & ~(1L << fila));
+    }
+
+    private static long bytesBitset(int filas) {
+        return (((long) filas + 63) >>> 6) * Long.BYTES;
+    }
+
+    private static ByteBuffer directo(long bytes) {
+        return ByteBuffer.allocateDirect(Math.toIntExact(bytes)).order(ByteOrder.nativeOrder());
+    }
+
+    // El buffer anterior se libera cuando el recolector recoge su objeto ByteBuffer
+    private static ByteBuffer ampliar(ByteBuffer anterior, long bytes) {
+        ByteBuffer nuevo = directo(bytes);
+        nuevo.put(0, anterior, 0, anterior.capacity());
+        return nuevo;
+    }
+
+    private static long mezclar(long clave) {
+        return UsuarioRepositoryEnMemoria.mezclar(clave);
+    }
+
+    /**
+     * Tabla de direccionamiento abierto de números de fila (fila + 1, 0 = libre).
+     * No guarda claves: el hash de cada fila se recalcula desde las columnas.
+     */
+    private static final class TablaFilas {
+        private final IntToLongFunction hashDeFila;
+        private ByteBuffer ranuras;
+        private int mascara;
+        private int ocupadas;
+        private int umbral;
+
+        TablaFilas(IntToLongFunction hashDeFila) {
+            this.hashDeFila = hashDeFila;
+        }
+
+        void iniciar(int esperadas) {
+            int capacidad = UsuarioRepositoryEnMemoria.capacidadPara(esperadas);
+            ranuras = directo((long) capacidad * Integer.BYTES);
+            mascara = capacidad - 1;
+            umbral = (int) (capacidad * FACTOR_CARGA);
+            ocupadas = 0;
+        }
+
+        int ranura(long hash) {
+            return (int) hash & mascara;
+        }
+
+        int siguiente(int ranura) {
+            return (ranura + 1) & mascara;
+        }
+
+        // Fila guardada en la ranura, o -1 si está libre
+        int fila(int ranura) {
+            return ranuras.getInt(ranura << 2) - 1;
+        }
+
+        void insertar(long hash, int fila) {
+            if (ocupadas + 1 > umbral) {
+                redimensionar();
+            }
+            int ranura = ranura(hash);
+            while (fila(ranura) >= 0) {
+                ranura = siguiente(ranura);
+            }
+            ranuras.putInt(ranura << 2, fila + 1);
+            ocupadas++;
+        }
+
+        // Borrado sin lápidas, como en UsuarioRepositoryEnMemoria
+        void quitarFila(long hash, int fila) {
+            int hueco = ranura(hash);
+            int actual;
+            while ((actual = fila(hueco)) != fila) {
+                if (actual < 0) {
+                    return;
+                }
+                hueco = siguiente(hueco);
+            }
+            int i = siguiente(hueco);
+            while ((actual = fila(i)) >= 0) {
+                int ideal = ranura(hashDeFila.applyAsLong(actual));
+                if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+                    ranuras.putInt(hueco << 2, actual + 1);
+                    hueco = i;
+                }
+                i = siguiente(i);
+            }
+            ranuras.putInt(hueco << 2, 0);
+            ocupadas--;
+        }
+
+        long bytes() {
+            return ranuras.capacity();
+        }
+
+        private void redimensionar() {
+            ByteBuffer anteriores = ranuras;
+            int capacidadAnterior = anteriores.capacity() / Integer.BYTES;
+            int capacidad = capacidadAnterior << 1;
+            ranuras = directo((long) capacidad * Integer.BYTES);
+            mascara = capacidad - 1;
+            umbral = (int) (capacidad * FACTOR_CARGA);
+            for (int j = 0; j < capacidadAnterior; j++) {
+                int fila = anteriores.getInt(j << 2) - 1;
+                if (fila >= 0) {
+                    int ranura = ranura(hashDeFila.applyAsLong(fila));
+                    while (fila(ranura) >= 0) {
+                        ranura = siguiente(ranura);
+                    }
+                    ranuras.putInt(ranura << 2, fila + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Vista de una fila: los getters leen de las columnas. El primer setter copia
+     * los datos a los campos heredados y a partir de ahí se comporta como un
+     * {@link Usuario} normal, hasta que se guarde.
+     */
+    private final class Vista extends Usuario {
+        private final int fila;
+        private boolean desacoplada;
+
+        Vista(int fila) {
+            this.fila = fila;
+        }
+
+        boolean esDe(UsuarioRepositoryFueraDeHeap repositorio) {
+            return repositorio == UsuarioRepositoryFueraDeHeap.this;
+        }
+
+        @Override
+        public Long getId() {
+            return desacoplada ? super.getId() : id(fila);
+        }
+
+        @Override
+        public String getNombre() {
+            return desacoplada ? super.getNombre() : leerNombre(fila);
+        }
+
+        @Override
+        public String getEmail() {
+            return desacoplada ? super.getEmail() : leerEmail(fila);
+        }
+
+        @Override
+        public String getEmailNormalizado() {
+            return desacoplada ? super.getEmailNormalizado() : Usuario.normalizarEmail(leerEmail(fila));
+        }
+
+        @Override
+        public boolean isActivo() {
+            return desacoplada ? super.isActivo() : bit(activos, fila);
+        }
+
+        @Override
+        public void setId(Long id) {
+            desacoplar();
+            super.setId(id);
+        }
+
+        @Override
+        public void setNombre(String nombre) {
+            desacoplar();
+            super.setNombre(nombre);
+        }
+
+        @Override
+        public void setEmail(String email) {
+            desacoplar();
+            super.setEmail(email);
+        }
+
+        @Override
+        public void setActivo(boolean activo) {
+            desacoplar();
+            super.setActivo(activo);
+        }
+
+        private void desacoplar() {
+            if (!desacoplada) {
+                super.setId(id(fila));
+                super.setNombre(leerNombre(fila));
+                super.setEmail(leerEmail(fila));
+                super.setActivo(bit(activos, fila));
+                desacoplada = true;
+            }
+        }
+    }
+}
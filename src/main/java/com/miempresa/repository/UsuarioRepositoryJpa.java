@@ -0,0 +1,260 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Repositorio JPA sobre la base de datos embebida. Los ids los asigna la
+ * aplicación con un {@link GeneradorIds} antes del insert, así que Hibernate no
+ * necesita ningún viaje a la base de datos para obtenerlos y puede enviar los
+ * inserts en lotes JDBC ({@code hibernate.jdbc.batch_size}).
+ *
+ * Un email repetido lo rechaza el índice único de la tabla al volcar los inserts,
+ * con la misma IllegalArgumentException que los repositorios en memoria, aunque
+ * dos altas concurrentes hayan pasado antes {@code existsByEmail}.
+ *
+ * La {@link #version()} solo cuenta las escrituras hechas a través de este
+ * repositorio, no las que lleguen a la base de datos por otro camino.
+ */
+@Repository
+@Transactional
+public class UsuarioRepositoryJpa implements UsuarioRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int tamanoLote;
+    private final GeneradorIds generadorIds;
+    private final AtomicLong version = new AtomicLong();
+
+    public UsuarioRepositoryJpa(@Value("${usuarios.jpa.tamano-lote:50}") int tamanoLote,
+                                GeneradorIds generadorIds) {
+        if (tamanoLote < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo");
+        }
+        this.tamanoLote = tamanoLote;
+        this.generadorIds = generadorIds;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Usuario> findById(Long id) {
+        return Optional.ofNullable(entityManager.find(Usuario.class, id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Usuario> findAll() {
+        return entityManager.createQuery("select u from Usuario u", Usuario.class).getResultList();
+    }
+
+    // Consulta por rango sobre la clave primaria: el coste de cada página no
+    // depende de cuántas se hayan leído antes, a diferencia de OFFSET
+    @Override
+    @Transactional(readOnly = true)
+    public List<Usuario> findPage(Long despuesDeId, int limite) {
+        if (limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser positivo");
+        }
+        TypedQuery<Usuario> consulta = despuesDeId == null
+            ? entityManager.createQuery("select u from Usuario u order by u.id", Usuario.class)
+            : entityManager.createQuery("select u from Usuario u where u.id > :cursor order by u.id", Usuario.class)
+                .setParameter("cursor", despuesDeId);
+        return consulta.setMaxResults(limite).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Usuario> findAllById(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery("select u from Usuario u where u.id in :ids", Usuario.class)
+            .setParameter("ids", ids)
+            .getResultList();
+    }
+
+    @Override
+    public Usuario save(Usuario usuario) {
+        anotarCambio();
+        Usuario guardado = guardar(usuario);
+        volcar();
+        return guardado;
+    }
+
+    // Guarda en una sola transacción; cada tamanoLote filas se vuelca el lote JDBC
+    // y se limpia el contexto de persistencia para que no crezca con el lote completo
+    @Override
+    public List<Usuario> saveAll(List<Usuario> usuarios) {
+        anotarCambio();
+        List<Usuario> guardados = new ArrayList<>(usuarios.size());
+        int pendientes = 0;
+        for (Usuario usuario : usuarios) {
+            guardados.add(guardar(usuario));
+            if (++pendientes == tamanoLote) {
+                volcar();
+                entityManager.clear();
+                pendientes = 0;
+            }
+        }
+        volcar();
+        entityManager.clear();
+        return guardados;
+    }
+
+    @Override
+    public void delete(Long id) {
+        Usuario usuario = entityManager.find(Usuario.class, id);
+        if (usuario != null) {
+            entityManager.remove(usuario);
+            anotarCambio();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean existsById(Long id) {
+        return !entityManager.createQuery("select u.id from Usuario u where u.id = :id", Long.class)
+            .setParameter("id", id)
+            .setMaxResults(1)
+            .getResultList()
+            .isEmpty();
+    }
+
+    // Consulta sobre la columna email_normalizado, que tiene índice propio
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Usuario> findByEmail(String email) {
+        String clave = Usuario.normalizarEmail(email);
+        if (clave == null) {
+            return Optional.empty();
+        }
+        return entityManager.createQuery("select u from Usuario u where u.emailNormalizado = :email", Usuario.class)
+            .setParameter("email", clave)
+            .setMaxResults(1)
+            .getResultList()
+            .stream()
+            .findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean existsByEmail(String email) {
+        String clave = Usuario.normalizarEmail(email);
+        return clave != null && !entityManager
+            .createQuery("select u.id from Usuario u where u.emailNormalizado = :email", Long.class)
+            .setParameter("email", clave)
+            .setMaxResults(1)
+            .getResultList()
+            .isEmpty();
+    }
+
+    // Recuentos e ids por estado con consultas de agregado o de solo ids, sin
+    // cargar ninguna entidad Usuario
+    @Override
+    @Transactional(readOnly = true)
+    public long countActivos() {
+        return contarPorEstado(true);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countInactivos() {
+        return contarPorEstado(false);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BitmapCompacto idsActivos() {
+        BitmapCompacto activos = new BitmapCompacto();
+        try (Stream<Long> ids = entityManager
+                .createQuery("select u.id from Usuario u where u.activo = true order by u.id", Long.class)
+                .getResultStream()) {
+            ids.forEach(activos::agregar);
+        }
+        return activos;
+    }
+
+    // Un contador en memoria: no hace falta abrir una transacción para leerlo
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long version() {
+        return version.get();
+    }
+
+    public int getTamanoLote() {
+        return tamanoLote;
+    }
+
+    private long contarPorEstado(boolean activo) {
+        return entityManager.createQuery("select count(u) from Usuario u where u.activo = :activo", Long.class)
+            .setParameter("activo", activo)
+            .getSingleResult();
+    }
+
+    private Usuario guardar(Usuario usuario) {
+        if (usuario.getId() == null) {
+            usuario.setId(generadorIds.siguiente());
+            entityManager.persist(usuario);
+            return usuario;
+        }
+        generadorIds.avanzarHasta(usuario.getId());
+        return entityManager.merge(usuario);
+    }
+
+    // Envía los inserts pendientes. La violación del índice único de email se
+    // traduce aquí: al commit llegaría como un error genérico de persistencia
+    private void volcar() {
+        try {
+            entityManager.flush();
+        } catch (PersistenceException e) {
+            if (esEmailDuplicado(e)) {
+                throw new IllegalArgumentException("Email ya registrado", e);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean esEmailDuplicado(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException violacion) {
+                String restriccion = violacion.getConstraintName() != null
+                    ? violacion.getConstraintName() : String.valueOf(violacion.getMessage());
+                return restriccion.toLowerCase(Locale.ROOT).contains(Usuario.INDICE_EMAIL);
+            }
+        }
+        return false;
+    }
+
+    // La versión sube al terminar la transacción (con commit o rollback), no antes:
+    // si subiera antes, un lector podría leer la versión nueva con los datos viejos
+    // y cachearlos como actuales
+    private void anotarCambio() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                version.incrementAndGet();
+            }
+        });
+    }
+}
@@ -0,0 +1,233 @@
+package com.miempresa.repository;
+
+import com.miempresa.metricas.MetricaOperacion;
+import com.miempresa.metricas.RegistroMetricas;
+import com.miempresa.model.Usuario;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Decorador de {@link UsuarioRepository} que mide cada llamada al repositorio
+ * decorado en una métrica {@code "UsuarioRepository.<método>"}. Sobrescribe
+ * también los métodos por defecto, para que lleguen a las versiones optimizadas
+ * del decorado y no se recompongan aquí con findById o streamAll.
+ *
+ * No se miden {@code streamAll}, que solo crea el recorrido perezoso, ni
+ * {@code version}, que es leer un contador.
+ */
+public class UsuarioRepositoryMedido implements UsuarioRepository {
+
+    private static final String PREFIJO = "UsuarioRepository.";
+
+    private final UsuarioRepository delegado;
+    private final MetricaOperacion findById;
+    private final MetricaOperacion findAll;
+    private final MetricaOperacion save;
+    private final MetricaOperacion delete;
+    private final MetricaOperacion existsById;
+    private final MetricaOperacion findByEmail;
+    private final MetricaOperacion existsByEmail;
+    private final MetricaOperacion findPage;
+    private final MetricaOperacion countActivos;
+    private final MetricaOperacion countInactivos;
+    private final MetricaOperacion idsActivos;
+    private final MetricaOperacion findAllById;
+    private final MetricaOperacion saveAll;
+
+    public UsuarioRepositoryMedido(UsuarioRepository delegado, RegistroMetricas metricas) {
+        this.delegado = delegado;
+        this.findById = metricas.operacion(PREFIJO + "findById");
+        this.findAll = metricas.operacion(PREFIJO + "findAll");
+        this.save = metricas.operacion(PREFIJO + "save");
+        this.delete = metricas.operacion(PREFIJO + "delete");
+        this.existsById = metricas.operacion(PREFIJO + "existsById");
+        this.findByEmail = metricas.operacion(PREFIJO + "findByEmail");
+        this.existsByEmail = metricas.operacion(PREFIJO + "existsByEmail");
+        this.findPage = metricas.operacion(PREFIJO + "findPage");
+        this.countActivos = metricas.operacion(PREFIJO + "countActivos");
+        this.countInactivos = metricas.operacion(PREFIJO + "countInactivos");
+        this.idsActivos = metricas.operacion(PREFIJO + "idsActivos");
+        this.findAllById = metricas.operacion(PREFIJO + "findAllById");
+        this.saveAll = metricas.operacion(PREFIJO + "saveAll");
+    }
+
+    @Override
+    public Optional<Usuario> findById(Long id) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.findById(id);
+        } catch (RuntimeException e) {
+            findById.anotarError();
+            throw e;
+        } finally {
+            findById.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public List<Usuario> findAll() {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.findAll();
+        } catch (RuntimeException e) {
+            findAll.anotarError();
+            throw e;
+        } finally {
+            findAll.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public Usuario save(Usuario usuario) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.save(usuario);
+        } catch (RuntimeException e) {
+            save.anotarError();
+            throw e;
+        } finally {
+            save.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void delete(Long id) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.delete(id);
+        } catch (RuntimeException e) {
+            delete.anotarError();
+            throw e;
+        } finally {
+            delete.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.existsById(id);
+        } catch (RuntimeException e) {
+            existsById.anotarError();
+            throw e;
+        } finally {
+            existsById.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public Optional<Usuario> findByEmail(String email) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.findByEmail(email);
+        } catch (RuntimeException e) {
+            findByEmail.anotarError();
+            throw e;
+        } finally {
+            findByEmail.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.existsByEmail(email);
+        } catch (RuntimeException e) {
+            existsByEmail.anotarError();
+            throw e;
+        } finally {
+            existsByEmail.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public List<Usuario> findPage(Long despuesDeId, int limite) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.findPage(despuesDeId, limite);
+        } catch (RuntimeException e) {
+            findPage.anotarError();
+            throw e;
+        } finally {
+            findPage.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public Stream<Usuario> streamAll(int tamanoBloque) {
+        return delegado.streamAll(tamanoBloque);
+    }
+
+    @Override
+    public long countActivos() {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.countActivos();
+        } catch (RuntimeException e) {
+            countActivos.anotarError();
+            throw e;
+        } finally {
+            countActivos.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public long countInactivos() {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.countInactivos();
+        } catch (RuntimeException e) {
+            countInactivos.anotarError();
+            throw e;
+        } finally {
+            countInactivos.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public BitmapCompacto idsActivos() {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.idsActivos();
+        } catch (RuntimeException e) {
+            idsActivos.anotarError();
+            throw e;
+        } finally {
+            idsActivos.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public List<Usuario> findAllById(List<Long> ids) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.findAllById(ids);
+        } catch (RuntimeException e) {
+            findAllById.anotarError();
+            throw e;
+        } finally {
+            findAllById.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public long version() {
+        return delegado.version();
+    }
+
+    @Override
+    public List<Usuario> saveAll(List<Usuario> usuarios) {
+        long inicio = System.nanoTime();
+        try {
+            return delegado.saveAll(usuarios);
+        } catch (RuntimeException e) {
+            saveAll.anotarError();
+            throw e;
+        } finally {
+            saveAll.registrarDesde(inicio);
+        }
+    }
+}
@@ -0,0 +1,615 @@
+package com.miempresa.repository;
+
+import com.miempresa.auditoria.ModoDurabilidad;
+import com.miempresa.model.Usuario;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio en memoria que sobrevive a reinicios: cada save y delete se anota
+ * en un registro de cambios ({@code cambios-NNNNNNNNNNNNNNNNNNNN.wal}) antes de
+ * volver al llamador, y cada {@code cambiosPorInstantanea} cambios se escribe en
+ * segundo plano una instantánea binaria de todos los usuarios
+ * ({@code instantanea-NNNNNNNNNNNNNNNNNNNN.snap}). Al arrancar se mapea la última
+ * instantánea y solo se reproducen los cambios posteriores, así que el tiempo de
+ * arranque depende del número de usuarios y no de la historia acumulada.
+ *
+ * Cuándo se fuerza a disco el registro de cambios lo decide el
+ * {@link ModoDurabilidad}, como en la auditoría: en {@code POR_LOTE} los
+ * escritores que esperan a la vez comparten una única sincronización.
+ *
+ * Los usuarios se guardan en un repositorio en memoria (por defecto
+ * {@link UsuarioRepositoryEnMemoria}) como copias: los objetos guardados no salen
+ * nunca de aquí y las lecturas devuelven copias, de modo que la instantánea puede
+ * recorrerlos sin bloquear a los escritores. Ese repositorio tiene que conservar
+ * las instancias que recibe en save. Las escrituras se serializan con un cerrojo;
+ * las lecturas van directas al repositorio en memoria y son tan seguras entre
+ * hilos como él.
+ *
+ * Cada cambio se anota en el registro antes de aplicarlo en memoria, así que lo
+ * que ven los lectores ya está en el registro. Por eso los ids nuevos se asignan
+ * aquí y el email duplicado se rechaza antes de anotar nada. Si no se puede
+ * escribir en el registro de cambios el repositorio deja de aceptar escrituras:
+ * ya no se sabe qué llegó a disco.
+ */
+public class UsuarioRepositoryPersistente implements UsuarioRepository, AutoCloseable {
+
+    public static final long CAMBIOS_POR_INSTANTANEA = 1_000_000;
+
+    private static final String PREFIJO_DIARIO = "cambios-";
+    private static final String EXTENSION_DIARIO = ".wal";
+    private static final String PREFIJO_INSTANTANEA = "instantanea-";
+    private static final String EXTENSION_INSTANTANEA = ".snap";
+    private static final String TEMPORAL = ".tmp";
+    private static final Duration INTERVALO_SINCRONIZACION = Duration.ofMillis(100);
+
+    private final Path directorio;
+    private final ModoDurabilidad modo;
+    private final long cambiosPorInstantanea;
+    private final UsuarioRepository memoria;
+    private final GeneradorIds generadorIds = new GeneradorIds(0);
+    private final ReentrantLock escritura = new ReentrantLock();
+    private final ReentrantLock instantanea = new ReentrantLock();
+    private final ScheduledExecutorService sincronizadorPeriodico;
+    private final ExecutorService instantaneasEnFondo;
+    private final AtomicBoolean instantaneaPendiente = new AtomicBoolean();
+
+    // Protegidos por el cerrojo de escritura
+    private DiarioCambios diario;
+    private volatile long secuencia;
+    private volatile boolean cerrado;
+    private volatile RuntimeException averia;
+
+    private volatile long secuenciaInstantanea;
+
+    // Commit en grupo (POR_LOTE)
+    private final Object grupo = new Object();
+    private long sincronizados;
+    private boolean sincronizando;
+
+    private final long registrosReproducidos;
+    private final Duration tiempoRecuperacion;
+    private final LongAdder sincronizaciones = new LongAdder();
+    private final LongAdder instantaneas = new LongAdder();
+    private final LongAdder fallosInstantanea = new LongAdder();
+
+    public UsuarioRepositoryPersistente(Path directorio, ModoDurabilidad modo) {
+        this(directorio, modo, CAMBIOS_POR_INSTANTANEA, UsuarioRepositoryEnMemoria::new);
+    }
+
+    /**
+     * @param crearMemoria crea el repositorio en memoria a partir del número de
+     *                     usuarios de la instantánea, para dimensionarlo de una vez
+     */
+    public UsuarioRepositoryPersistente(Path directorio, ModoDurabilidad modo, long cambiosPorInstantanea,
+                                        IntFunction<UsuarioRepository> crearMemoria) {
+        if (cambiosPorInstantanea < 1) {
+            throw new IllegalArgumentException("cambiosPorInstantanea debe ser positivo");
+        }
+        this.directorio = directorio;
+        this.modo = modo;
+        this.cambiosPorInstantanea = cambiosPorInstantanea;
+
+        long inicio = System.nanoTime();
+        prepararDirectorio();
+        List<Path> instantaneasExistentes = ficheros(PREFIJO_INSTANTANEA, EXTENSION_INSTANTANEA);
+        Path ultima = instantaneasExistentes.isEmpty() ? null
+            : instantaneasExistentes.get(instantaneasExistentes.size() - 1);
+        long usuarios = ultima == null ? 0 : InstantaneaUsuarios.leerCabecera(ultima).usuarios();
+        this.memoria = crearMemoria.apply((int) Math.min(usuarios, Integer.MAX_VALUE / 2));
+        DiarioCambios.Receptor receptor = receptor(memoria, generadorIds);
+        long leida = ultima == null ? 0 : InstantaneaUsuarios.cargar(ultima, receptor::guardar).secuencia();
+        this.secuenciaInstantanea = leida;
+
+        long[] aplicados = {0};
+        for (Path ruta : ficheros(PREFIJO_DIARIO, EXTENSION_DIARIO)) {
+            leida = DiarioCambios.reproducir(ruta, leida, receptor, aplicados);
+        }
+        this.secuencia = leida;
+        this.sincronizados = leida;
+        this.registrosReproducidos = aplicados[0];
+        borrarDiariosSinCambios();
+        this.diario = DiarioCambios.crear(rutaDiario(leida + 1));
+        this.tiempoRecuperacion = Duration.ofNanos(System.nanoTime() - inicio);
+
+        this.instantaneasEnFondo = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "usuarios-instantanea");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        if (modo == ModoDurabilidad.PERIODICO) {
+            sincronizadorPeriodico = Executors.newSingleThreadScheduledExecutor(tarea -> {
+                Thread hilo = new Thread(tarea, "usuarios-sincronizacion");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            long intervalo = INTERVALO_SINCRONIZACION.toMillis();
+            sincronizadorPeriodico.scheduleAtFixedRate(this::sincronizarPeriodicamente,
+                intervalo, intervalo, TimeUnit.MILLISECONDS);
+        } else {
+            sincronizadorPeriodico = null;
+        }
+    }
+
+    @Override
+    public Optional<Usuario> findById(Long id) {
+        return memoria.findById(id).map(UsuarioRepositoryPersistente::copiar);
+    }
+
+    @Override
+    public List<Usuario> findAll() {
+        return copiar(memoria.findAll());
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return memoria.existsById(id);
+    }
+
+    @Override
+    public Optional<Usuario> findByEmail(String email) {
+        return memoria.findByEmail(email).map(UsuarioRepositoryPersistente::copiar);
+    }
+
+    @Override
+    public List<Usuario> findPage(Long despuesDeId, int limite) {
+        return copiar(memoria.findPage(despuesDeId, limite));
+    }
+
+    @Override
+    public List<Usuario> findAllById(List<Long> ids) {
+        return copiar(memoria.findAllById(ids));
+    }
+
+    @Override
+    public Stream<Usuario> streamAll(int tamanoBloque) {
+        return memoria.streamAll(tamanoBloque).map(UsuarioRepositoryPersistente::copiar);
+    }
+
+    @Override
+    public long countActivos() {
+        return memoria.countActivos();
+    }
+
+    @Override
+    public long countInactivos() {
+        return memoria.countInactivos();
+    }
+
+    @Override
+    public BitmapCompacto idsActivos() {
+        return memoria.idsActivos();
+    }
+
+    // Como en el repositorio en memoria, el id asignado queda en el usuario recibido
+    @Override
+    public Usuario save(Usuario usuario) {
+        long hasta;
+        escritura.lock();
+        try {
+            hasta = guardar(usuario);
+        } finally {
+            escritura.unlock();
+        }
+        despuesDeEscribir(hasta);
+        return usuario;
+    }
+
+    // Un solo paso por el cerrojo y una sola espera de durabilidad para todo el lote
+    @Override
+    public List<Usuario> saveAll(List<Usuario> usuarios) {
+        long hasta;
+        escritura.lock();
+        try {
+            for (Usuario usuario : usuarios) {
+                guardar(usuario);
+            }
+            hasta = secuencia;
+        } finally {
+            escritura.unlock();
+        }
+        despuesDeEscribir(hasta);
+        return new ArrayList<>(usuarios);
+    }
+
+    @Override
+    public void delete(Long id) {
+        long hasta;
+        escritura.lock();
+        try {
+            comprobarEscribible();
+            if (id == null || !memoria.existsById(id)) {
+                return;
+            }
+            try {
+                diario.borrar(secuencia + 1, id);
+            } catch (RuntimeException e) {
+                throw averiar(e);
+            }
+            memoria.delete(id);
+            hasta = anotado();
+        } finally {
+            escritura.unlock();
+        }
+        despuesDeEscribir(hasta);
+    }
+
+    /**
+     * Escribe una instantánea con todos los cambios hechos hasta ahora y borra los
+     * ficheros que deja obsoletos. Los escritores solo esperan mientras se copian
+     * las referencias de los usuarios y se abre el siguiente registro de cambios.
+     */
+    public void tomarInstantanea() {
+        instantanea.lock();
+        try {
+            long hasta;
+            List<Usuario> usuarios;
+            escritura.lock();
+            try {
+                comprobarEscribible();
+                hasta = secuencia;
+                if (hasta == secuenciaInstantanea) {
+                    return;
+                }
+                usuarios = memoria.findAll();
+                // Cerrar fuerza a disco el registro anterior entero
+                try {
+                    diario.close();
+                    diario = DiarioCambios.crear(rutaDiario(hasta + 1));
+                } catch (RuntimeException e) {
+                    throw averiar(e);
+                }
+            } finally {
+                escritura.unlock();
+            }
+            marcarSincronizado(hasta);
+
+            Path destino = rutaInstantanea(hasta);
+            Path temporal = destino.resolveSibling(destino.getFileName() + TEMPORAL);
+            InstantaneaUsuarios.escribir(temporal, hasta, usuarios);
+            try {
+                Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+                // El renombrado tiene que estar en disco antes de borrar los registros que sustituye
+                sincronizarDirectorio();
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo publicar la instantánea " + destino, e);
+            }
+            secuenciaInstantanea = hasta;
+            instantaneas.increment();
+            borrarAnteriores(hasta);
+        } finally {
+            instantanea.unlock();
+        }
+    }
+
+    // Secuencia del último cambio anotado
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    // Cada cambio anotado tiene su número de secuencia, que ya sirve de versión
+    @Override
+    public long version() {
+        return secuencia;
+    }
+
+    // Secuencia del último cambio incluido en una instantánea
+    public long getSecuenciaInstantanea() {
+        return secuenciaInstantanea;
+    }
+
+    // Cambios del registro aplicados al arrancar, además de la instantánea
+    public long getRegistrosReproducidos() {
+        return registrosReproducidos;
+    }
+
+    // Lo que tardó el constructor en cargar la instantánea y reproducir los cambios
+    public Duration getTiempoRecuperacion() {
+        return tiempoRecuperacion;
+    }
+
+    public long getSincronizaciones() {
+        return sincronizaciones.sum();
+    }
+
+    public long getInstantaneas() {
+        return instantaneas.sum();
+    }
+
+    public long getFallosInstantanea() {
+        return fallosInstantanea.sum();
+    }
+
+    @Override
+    public void close() {
+        if (sincronizadorPeriodico != null) {
+            sincronizadorPeriodico.shutdown();
+        }
+        instantaneasEnFondo.shutdown();
+        // Espera a que termine una instantánea en curso antes de cerrar el registro
+        instantanea.lock();
+        try {
+            escritura.lock();
+            try {
+                if (!cerrado) {
+                    cerrado = true;
+                    diario.close();
+                    sincronizaciones.increment();
+                }
+            } finally {
+                escritura.unlock();
+            }
+        } finally {
+            instantanea.unlock();
+        }
+        marcarSincronizado(secuencia);
+    }
+
+    private long guardar(Usuario usuario) {
+        comprobarEscribible();
+        Usuario copia = copiar(usuario);
+        if (copia.getId() == null) {
+            copia.setId(generadorIds.siguiente());
+        } else {
+            generadorIds.avanzarHasta(copia.getId());
+        }
+        // Las escrituras van en serie: si ahora está libre, lo seguirá al aplicar el cambio
+        Optional<Usuario> dueno = memoria.findByEmail(copia.getEmail());
+        if (dueno.isPresent() && !dueno.get().getId().equals(copia.getId())) {
+            throw new IllegalArgumentException("Email ya registrado: " + copia.getEmail());
+        }
+        try {
+            diario.guardar(secuencia + 1, copia);
+        } catch (RuntimeException e) {
+            throw averiar(e);
+        }
+        try {
+            memoria.save(copia);
+        } catch (RuntimeException e) {
+            // Ya está en el registro: la memoria no coincidiría con lo que se reproduciría al reabrir
+            throw averiar(e);
+        }
+        usuario.setId(copia.getId());
+        return anotado();
+    }
+
+    // Aplica la instantánea y el registro al arrancar; los ids nuevos siguen después de los recuperados
+    private static DiarioCambios.Receptor receptor(UsuarioRepository memoria, GeneradorIds generadorIds) {
+        return new DiarioCambios.Receptor() {
+            @Override
+            public void guardar(Usuario usuario) {
+                memoria.save(usuario);
+                generadorIds.avanzarHasta(usuario.getId());
+            }
+
+            @Override
+            public void borrar(long id) {
+                memoria.delete(id);
+            }
+        };
+    }
+
+    private long anotado() {
+        secuencia++;
+        if (modo == ModoDurabilidad.POR_REGISTRO) {
+            try {
+                diario.sincronizar();
+            } catch (RuntimeException e) {
+                throw averiar(e);
+            }
+            sincronizaciones.increment();
+        }
+        return secuencia;
+    }
+
+    private void sincronizarDirectorio() throws IOException {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        }
+    }
+
+    private void comprobarEscribible() {
+        if (cerrado) {
+            throw new IllegalStateException("El repositorio está cerrado");
+        }
+        if (averia != null) {
+            throw new IllegalStateException("El registro de cambios falló; el repositorio ya no acepta escrituras",
+                averia);
+        }
+    }
+
+    private RuntimeException averiar(RuntimeException e) {
+        averia = e;
+        return e;
+    }
+
+    private void despuesDeEscribir(long hasta) {
+        esperarDurabilidad(hasta);
+        if (hasta - secuenciaInstantanea >= cambiosPorInstantanea && instantaneaPendiente.compareAndSet(false, true)) {
+            instantaneasEnFondo.execute(() -> {
+                try {
+                    if (!cerrado) {
+                        tomarInstantanea();
+                    }
+                } catch (RuntimeException e) {
+                    // El registro de cambios sigue completo: se reintentará tras los siguientes cambios
+                    fallosInstantanea.increment();
+                } finally {
+                    instantaneaPendiente.set(false);
+                }
+            });
+        }
+    }
+
+    private void esperarDurabilidad(long hasta) {
+        if (modo != ModoDurabilidad.POR_LOTE) {
+            return;
+        }
+        synchronized (grupo) {
+            while (sincronizados < hasta) {
+                if (!sincronizando) {
+                    sincronizando = true;
+                    break;
+                }
+                try {
+                    grupo.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrumpido esperando la sincronización del registro de cambios", e);
+                }
+            }
+            if (sincronizados >= hasta) {
+                return;
+            }
+        }
+        // Somos el líder: sincronizamos todo lo escrito hasta ahora, no solo lo nuestro
+        long objetivo = 0;
+        try {
+            objetivo = sincronizarTodo();
+        } finally {
+            synchronized (grupo) {
+                sincronizados = Math.max(sincronizados, objetivo);
+                sincronizando = false;
+                grupo.notifyAll();
+            }
+        }
+    }
+
+    // Un registro rotado ya se forzó al cerrarlo, así que basta con el actual
+    private long sincronizarTodo() {
+        DiarioCambios actual;
+        long objetivo;
+        escritura.lock();
+        try {
+            actual = diario;
+            objetivo = secuencia;
+        } finally {
+            escritura.unlock();
+        }
+        try {
+            actual.sincronizar();
+        } catch (RuntimeException e) {
+            throw averiar(e);
+        }
+        sincronizaciones.increment();
+        return objetivo;
+    }
+
+    private void sincronizarPeriodicamente() {
+        try {
+            marcarSincronizado(sincronizarTodo());
+        } catch (RuntimeException e) {
+            // averiar ya ha dejado el repositorio sin escrituras
+        }
+    }
+
+    private void marcarSincronizado(long hasta) {
+        synchronized (grupo) {
+            sincronizados = Math.max(sincronizados, hasta);
+            grupo.notifyAll();
+        }
+    }
+
+    private static Usuario copiar(Usuario usuario) {
+        Usuario copia = new Usuario(usuario.getId(), usuario.getNombre(), usuario.getEmail());
+        copia.setActivo(usuario.isActivo());
+        return copia;
+    }
+
+    private static List<Usuario> copiar(List<Usuario> usuarios) {
+        List<Usuario> copias = new ArrayList<>(usuarios.size());
+        for (Usuario usuario : usuarios) {
+            copias.add(copiar(usuario));
+        }
+        return copias;
+    }
+
+    private void prepararDirectorio() {
+        try {
+            Files.createDirectories(directorio);
+            // Restos de una instantánea que no llegó a publicarse
+            try (Stream<Path> temporales = Files.list(directorio)) {
+                for (Path temporal : temporales.filter(p -> p.getFileName().toString().endsWith(TEMPORAL)).toList()) {
+                    Files.deleteIfExists(temporal);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo preparar el directorio " + directorio, e);
+        }
+    }
+
+    // Un registro que empieza después del último cambio reproducido no aporta nada
+    private void borrarDiariosSinCambios() {
+        for (Path ruta : ficheros(PREFIJO_DIARIO, EXTENSION_DIARIO)) {
+            if (numero(ruta, PREFIJO_DIARIO, EXTENSION_DIARIO) > secuencia) {
+                borrar(ruta);
+            }
+        }
+    }
+
+    // Tras publicar la instantánea "hasta", los registros anteriores y las
+    // instantáneas más antiguas ya no hacen falta para arrancar
+    private void borrarAnteriores(long hasta) {
+        for (Path ruta : ficheros(PREFIJO_DIARIO, EXTENSION_DIARIO)) {
+            if (numero(ruta, PREFIJO_DIARIO, EXTENSION_DIARIO) <= hasta) {
+                borrar(ruta);
+            }
+        }
+        for (Path ruta : ficheros(PREFIJO_INSTANTANEA, EXTENSION_INSTANTANEA)) {
+            if (numero(ruta, PREFIJO_INSTANTANEA, EXTENSION_INSTANTANEA) < hasta) {
+                borrar(ruta);
+            }
+        }
+    }
+
+    private static void borrar(Path ruta) {
+        try {
+            Files.deleteIfExists(ruta);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo borrar " + ruta, e);
+        }
+    }
+
+    // Ordenados por número: el nombre lleva el número con ceros a la izquierda
+    private List<Path> ficheros(String prefijo, String extension) {
+        try (Stream<Path> rutas = Files.list(directorio)) {
+            return rutas.filter(p -> {
+                String nombre = p.getFileName().toString();
+                return nombre.startsWith(prefijo) && nombre.endsWith(extension);
+            }).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo listar " + directorio, e);
+        }
+    }
+
+    private static long numero(Path ruta, String prefijo, String extension) {
+        String nombre = ruta.getFileName().toString();
+        return Long.parseLong(nombre.substring(prefijo.length(), nombre.length() - extension.length()));
+    }
+
+    private Path rutaDiario(long primeraSecuencia) {
+        return directorio.resolve(String.format("%s%020d%s", PREFIJO_DIARIO, primeraSecuencia, EXTENSION_DIARIO));
+    }
+
+    private Path rutaInstantanea(long hasta) {
+        return directorio.resolve(String.format("%s%020d%s", PREFIJO_INSTANTANEA, hasta, EXTENSION_INSTANTANEA));
+    }
+}
@@ -1,6 +1,33 @@
 package com.miempresa.service;
 
+import com.miempresa.model.Usuario;
+import java.util.ArrayList;
+import java.util.List;
+
 public interface AuditoriaService {
 	void registrarOperacion(String tipoOperacion, String detalles);
 
+	// Registro agrupado de varias operaciones del mismo tipo
+	default void registrarOperaciones(String tipoOperacion, List<String> detalles) {
+		for (String detalle : detalles) {
+			registrarOperacion(tipoOperacion, detalle);
+		}
+	}
+
+	// Evento estructurado: los campos viajan sin componer y el texto de detalle solo
+	// se construye aquí, en el adaptador hacia registrarOperacion. Un destino que
+	// indexe por campos o que descarte el evento puede sobrescribirlo y no compone nada
+	default void registrarEvento(TipoOperacion tipo, Long idUsuario, String nombre, String email) {
+		registrarOperacion(tipo.name(), tipo.detalles(nombre, email));
+	}
+
+	// Eventos agrupados del mismo tipo, uno por usuario
+	default void registrarEventos(TipoOperacion tipo, List<Usuario> usuarios) {
+		List<String> detalles = new ArrayList<>(usuarios.size());
+		for (Usuario usuario : usuarios) {
+			detalles.add(tipo.detalles(usuario.getNombre(), usuario.getEmail()));
+		}
+		registrarOperaciones(tipo.name(), detalles);
+	}
+
 }
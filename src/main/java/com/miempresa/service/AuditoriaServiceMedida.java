@@ -0,0 +1,82 @@
+package com.miempresa.service;
+
+import com.miempresa.metricas.MetricaOperacion;
+import com.miempresa.metricas.RegistroMetricas;
+import com.miempresa.model.Usuario;
+import java.util.List;
+
+/**
+ * Decorador de {@link AuditoriaService} que mide cada registro en una métrica
+ * {@code "AuditoriaService.<método>"}. Los eventos estructurados y agrupados
+ * van directos a los del decorado, sin componer aquí el texto de detalle.
+ */
+public class AuditoriaServiceMedida implements AuditoriaService {
+
+    private static final String PREFIJO = "AuditoriaService.";
+
+    private final AuditoriaService delegado;
+    private final MetricaOperacion operacion;
+    private final MetricaOperacion operaciones;
+    private final MetricaOperacion evento;
+    private final MetricaOperacion eventos;
+
+    public AuditoriaServiceMedida(AuditoriaService delegado, RegistroMetricas metricas) {
+        this.delegado = delegado;
+        this.operacion = metricas.operacion(PREFIJO + "registrarOperacion");
+        this.operaciones = metricas.operacion(PREFIJO + "registrarOperaciones");
+        this.evento = metricas.operacion(PREFIJO + "registrarEvento");
+        this.eventos = metricas.operacion(PREFIJO + "registrarEventos");
+    }
+
+    @Override
+    public void registrarOperacion(String tipoOperacion, String detalles) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.registrarOperacion(tipoOperacion, detalles);
+        } catch (RuntimeException e) {
+            operacion.anotarError();
+            throw e;
+        } finally {
+            operacion.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void registrarOperaciones(String tipoOperacion, List<String> detalles) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.registrarOperaciones(tipoOperacion, detalles);
+        } catch (RuntimeException e) {
+            operaciones.anotarError();
+            throw e;
+        } finally {
+            operaciones.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void registrarEvento(TipoOperacion tipo, Long idUsuario, String nombre, String email) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.registrarEvento(tipo, idUsuario, nombre, email);
+        } catch (RuntimeException e) {
+            evento.anotarError();
+            throw e;
+        } finally {
+            evento.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void registrarEventos(TipoOperacion tipo, List<Usuario> usuarios) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.registrarEventos(tipo, usuarios);
+        } catch (RuntimeException e) {
+            eventos.anotarError();
+            throw e;
+        } finally {
+            eventos.registrarDesde(inicio);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.miempresa.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Desactivación de muchos usuarios en tramos de tamaño fijo. Cada tramo es una
+ * unidad completa: una lectura por lotes, un {@code saveAll}, un envío agrupado
+ * de notificaciones y una entrada de auditoría agrupada. Entre tramos no se
+ * guarda nada más que la posición y los contadores, así que ninguna llamada
+ * retiene cerrojos ni usuarios del conjunto entero.
+ *
+ * Si el proceso se interrumpe, {@link ProgresoDesactivacion#procesados()} indica
+ * desde dónde reanudar con {@link UsuarioService#reanudarDesactivacion}. Repetir
+ * un tramo es inofensivo: los usuarios que ya están inactivos se saltan sin
+ * volver a notificarlos.
+ */
+public class DesactivacionMasiva {
+
+    // Resultado de un tramo, lo rellena UsuarioService
+    record Tramo(int desactivados, int yaInactivos, int noEncontrados) {
+    }
+
+    private final UsuarioService usuarioService;
+    private final long[] ids;
+    private final int tamanoTramo;
+    private int posicion;
+    private int desactivados;
+    private int yaInactivos;
+    private int noEncontrados;
+    private volatile boolean cancelada;
+
+    DesactivacionMasiva(UsuarioService usuarioService, long[] ids, int desde, int tamanoTramo) {
+        if (tamanoTramo < 1) {
+            throw new IllegalArgumentException("El tamaño de tramo debe ser positivo");
+        }
+        if (desde < 0 || desde > ids.length) {
+            throw new IllegalArgumentException("Posición de reanudación fuera de rango: " + desde);
+        }
+        this.usuarioService = usuarioService;
+        this.ids = ids.clone();
+        this.tamanoTramo = tamanoTramo;
+        this.posicion = desde;
+    }
+
+    // Procesa el siguiente tramo; devuelve true si quedan más
+    public synchronized boolean procesarTramo() {
+        if (posicion < ids.length) {
+            int hasta = Math.min(posicion + tamanoTramo, ids.length);
+            Tramo tramo = usuarioService.desactivarTramo(ids, posicion, hasta);
+            desactivados += tramo.desactivados();
+            yaInactivos += tramo.yaInactivos();
+            noEncontrados += tramo.noEncontrados();
+            posicion = hasta;
+        }
+        return posicion < ids.length;
+    }
+
+    // Procesa todos los tramos pendientes en el hilo actual
+    public ProgresoDesactivacion procesarTodo() {
+        while (!cancelada && procesarTramo()) {
+            // un tramo por vuelta
+        }
+        return getProgreso();
+    }
+
+    // Procesa los tramos en segundo plano, uno por tarea del ejecutor, para no
+    // ocupar un hilo durante toda la desactivación. alAvanzar recibe el progreso
+    // tras cada tramo
+    public CompletableFuture<ProgresoDesactivacion> ejecutar(Executor ejecutor,
+                                                             Consumer<ProgresoDesactivacion> alAvanzar) {
+        CompletableFuture<ProgresoDesactivacion> resultado = new CompletableFuture<>();
+        ejecutor.execute(() -> siguienteTramo(ejecutor, alAvanzar, resultado));
+        return resultado;
+    }
+
+    // Detiene el proceso al terminar el tramo en curso; se puede reanudar después
+    public void cancelar() {
+        cancelada = true;
+    }
+
+    public synchronized ProgresoDesactivacion getProgreso() {
+        return new ProgresoDesactivacion(ids.length, posicion, desactivados, yaInactivos, noEncontrados);
+    }
+
+    private void siguienteTramo(Executor ejecutor, Consumer<ProgresoDesactivacion> alAvanzar,
+                                CompletableFuture<ProgresoDesactivacion> resultado) {
+        try {
+            boolean quedan = !cancelada && procesarTramo();
+            alAvanzar.accept(getProgreso());
+            if (quedan && !cancelada) {
+                ejecutor.execute(() -> siguienteTramo(ejecutor, alAvanzar, resultado));
+            } else {
+                resultado.complete(getProgreso());
+            }
+        } catch (RuntimeException e) {
+            resultado.completeExceptionally(e);
+        }
+    }
+}
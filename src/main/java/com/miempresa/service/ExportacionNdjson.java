@@ -0,0 +1,84 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Escribe usuarios como NDJSON (un objeto JSON por línea):
+ * {@code {"id":1,"nombre":"Ana","email":"ana@ejemplo.com","activo":true}}.
+ *
+ * Consume el Stream a medida que escribe, sin acumular usuarios, y vuelca la
+ * salida cada {@value #USUARIOS_POR_VOLCADO} usuarios para que el receptor
+ * empiece a recibir datos enseguida. Con un {@code GZIPOutputStream} creado con
+ * {@code syncFlush} cada volcado sale también comprimido.
+ */
+public final class ExportacionNdjson {
+
+    static final int USUARIOS_POR_VOLCADO = 1000;
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private ExportacionNdjson() {
+    }
+
+    // Devuelve los usuarios escritos. No cierra la salida: es del llamador
+    public static long escribir(Stream<Usuario> usuarios, OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        StringBuilder linea = new StringBuilder(256);
+        long escritos = 0;
+        Iterator<Usuario> iterador = usuarios.iterator();
+        while (iterador.hasNext()) {
+            linea.setLength(0);
+            anadir(linea, iterador.next());
+            escritor.append(linea);
+            if (++escritos % USUARIOS_POR_VOLCADO == 0) {
+                escritor.flush();
+            }
+        }
+        escritor.flush();
+        return escritos;
+    }
+
+    static void anadir(StringBuilder linea, Usuario usuario) {
+        linea.append("{\"id\":").append(usuario.getId());
+        linea.append(",\"nombre\":");
+        texto(linea, usuario.getNombre());
+        linea.append(",\"email\":");
+        texto(linea, usuario.getEmail());
+        linea.append(",\"activo\":").append(usuario.isActivo()).append("}\n");
+    }
+
+    private static void texto(StringBuilder linea, String valor) {
+        if (valor == null) {
+            linea.append("null");
+            return;
+        }
+        linea.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> linea.append("\\\"");
+                case '\\' -> linea.append("\\\\");
+                case '\n' -> linea.append("\\n");
+                case '\r' -> linea.append("\\r");
+                case '\t' -> linea.append("\\t");
+                default -> {
+                    // El resto de caracteres de control, y los separadores de línea
+                    // Unicode que algunos lectores de NDJSON tratan como saltos
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        linea.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        linea.append(c);
+                    }
+                }
+            }
+        }
+        linea.append('"');
+    }
+}
@@ -0,0 +1,240 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Conversión de una línea de CSV o NDJSON en un {@link Usuario} sin id. Un error
+ * de formato se lanza como {@link IllegalArgumentException} con el motivo que
+ * acaba en el fichero de rechazos. Sin estado: se llama desde varios hilos a la vez.
+ */
+final class FilasImportacion {
+
+    // Posición de cada columna en el CSV según la cabecera; activo es -1 si no está
+    record Columnas(int nombre, int email, int activo, int total) {
+    }
+
+    private FilasImportacion() {
+    }
+
+    static Columnas cabeceraCsv(String linea) {
+        List<String> campos = camposCsv(linea);
+        int nombre = -1, email = -1, activo = -1;
+        for (int i = 0; i < campos.size(); i++) {
+            switch (campos.get(i).strip().toLowerCase(Locale.ROOT)) {
+                case "nombre" -> nombre = i;
+                case "email" -> email = i;
+                case "activo" -> activo = i;
+                default -> {
+                    // Columnas desconocidas (un id exportado, por ejemplo) se ignoran
+                }
+            }
+        }
+        if (nombre < 0 || email < 0) {
+            throw new IllegalArgumentException("La cabecera CSV debe tener las columnas nombre y email: " + linea);
+        }
+        return new Columnas(nombre, email, activo, campos.size());
+    }
+
+    static Usuario desdeCsv(String linea, Columnas columnas) {
+        List<String> campos = camposCsv(linea);
+        if (campos.size() != columnas.total()) {
+            throw new IllegalArgumentException("Se esperaban " + columnas.total()
+                + " columnas y hay " + campos.size());
+        }
+        Usuario usuario = new Usuario(null, campos.get(columnas.nombre()).strip(),
+            campos.get(columnas.email()).strip());
+        if (columnas.activo() >= 0) {
+            usuario.setActivo(activoCsv(campos.get(columnas.activo()).strip()));
+        }
+        return usuario;
+    }
+
+    // Campos separados por comas; entre comillas dobles pueden llevar comas y "" es una comilla
+    static List<String> camposCsv(String linea) {
+        List<String> campos = new ArrayList<>(4);
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreComillas = false;
+                }
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '"' && campo.isEmpty()) {
+                entreComillas = true;
+            } else {
+                campo.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    private static boolean activoCsv(String valor) {
+        return switch (valor.toLowerCase(Locale.ROOT)) {
+            case "", "true", "1", "si", "sí" -> true;
+            case "false", "0", "no" -> false;
+            default -> throw new IllegalArgumentException("Valor de activo no válido: " + valor);
+        };
+    }
+
+    // Objeto JSON plano: se leen nombre, email y activo y se ignora el resto de
+    // claves (el id de una exportación, por ejemplo). Sin objetos ni listas anidados
+    static Usuario desdeNdjson(String linea) {
+        LectorJson lector = new LectorJson(linea);
+        String nombre = null;
+        String email = null;
+        boolean activo = true;
+        lector.esperar('{');
+        if (!lector.consumir('}')) {
+            do {
+                String clave = lector.cadena();
+                lector.esperar(':');
+                switch (clave) {
+                    case "nombre" -> nombre = lector.cadenaONulo();
+                    case "email" -> email = lector.cadenaONulo();
+                    case "activo" -> activo = lector.booleano();
+                    default -> lector.saltarValor();
+                }
+            } while (lector.consumir(','));
+            lector.esperar('}');
+        }
+        lector.esperarFin();
+        Usuario usuario = new Usuario(null, nombre, email);
+        usuario.setActivo(activo);
+        return usuario;
+    }
+
+    private static final class LectorJson {
+        private final String texto;
+        private int posicion;
+
+        LectorJson(String texto) {
+            this.texto = texto;
+        }
+
+        void esperar(char c) {
+            if (!consumir(c)) {
+                throw error("se esperaba '" + c + "'");
+            }
+        }
+
+        boolean consumir(char c) {
+            saltarEspacios();
+            if (posicion < texto.length() && texto.charAt(posicion) == c) {
+                posicion++;
+                return true;
+            }
+            return false;
+        }
+
+        void esperarFin() {
+            saltarEspacios();
+            if (posicion < texto.length()) {
+                throw error("contenido tras el objeto");
+            }
+        }
+
+        String cadenaONulo() {
+            return consumirPalabra("null") ? null : cadena();
+        }
+
+        boolean booleano() {
+            if (consumirPalabra("true")) {
+                return true;
+            }
+            if (consumirPalabra("false")) {
+                return false;
+            }
+            throw error("se esperaba true o false");
+        }
+
+        void saltarValor() {
+            saltarEspacios();
+            if (posicion < texto.length() && texto.charAt(posicion) == '"') {
+                cadena();
+            } else if (!consumirPalabra("null") && !consumirPalabra("true") && !consumirPalabra("false")) {
+                int inicio = posicion;
+                while (posicion < texto.length() && "+-.eE0123456789".indexOf(texto.charAt(posicion)) >= 0) {
+                    posicion++;
+                }
+                if (posicion == inicio) {
+                    throw error("valor no soportado");
+                }
+            }
+        }
+
+        String cadena() {
+            esperar('"');
+            StringBuilder cadena = new StringBuilder();
+            while (posicion < texto.length()) {
+                char c = texto.charAt(posicion++);
+                if (c == '"') {
+                    return cadena.toString();
+                }
+                if (c != '\\') {
+                    cadena.append(c);
+                    continue;
+                }
+                if (posicion >= texto.length()) {
+                    break;
+                }
+                char escape = texto.charAt(posicion++);
+                switch (escape) {
+                    case '"', '\\', '/' -> cadena.append(escape);
+                    case 'b' -> cadena.append('\b');
+                    case 'f' -> cadena.append('\f');
+                    case 'n' -> cadena.append('\n');
+                    case 'r' -> cadena.append('\r');
+                    case 't' -> cadena.append('\t');
+                    case 'u' -> {
+                        if (posicion + 4 > texto.length()) {
+                            throw error("escape \\u incompleto");
+                        }
+                        try {
+                            cadena.append((char) Integer.parseInt(texto, posicion, posicion + 4, 16));
+                        } catch (NumberFormatException e) {
+                            throw error("escape \\u no válido");
+                        }
+                        posicion += 4;
+                    }
+                    default -> throw error("escape no válido");
+                }
+            }
+            throw error("cadena sin cerrar");
+        }
+
+        private boolean consumirPalabra(String palabra) {
+            saltarEspacios();
+            if (texto.startsWith(palabra, posicion)) {
+                posicion += palabra.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void saltarEspacios() {
+            while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+                posicion++;
+            }
+        }
+
+        private IllegalArgumentException error(String detalle) {
+            return new IllegalArgumentException("JSON no válido en la posición " + posicion + ": " + detalle);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.miempresa.service;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formatos de fichero que acepta {@link ImportadorUsuarios}, una fila por línea.
+ */
+public enum FormatoImportacion {
+    // Cabecera con las columnas "nombre" y "email" (y "activo", opcional) en
+    // cualquier orden; campos entre comillas dobles con "" para una comilla.
+    // Un campo no puede contener saltos de línea
+    CSV,
+    // Un objeto JSON plano por línea, como los de la exportación NDJSON
+    NDJSON;
+
+    // Por la extensión, sin contar un ".gz" final
+    public static FormatoImportacion deFichero(Path fichero) {
+        String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".gz")) {
+            nombre = nombre.substring(0, nombre.length() - 3);
+        }
+        if (nombre.endsWith(".csv")) {
+            return CSV;
+        }
+        if (nombre.endsWith(".ndjson") || nombre.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Formato de importación desconocido: " + fichero.getFileName());
+    }
+}
@@ -0,0 +1,249 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Alta masiva de usuarios desde un fichero CSV o NDJSON sin cargarlo entero en
+ * memoria. El fichero se lee por trozos de líneas; el análisis y la validación de
+ * cada trozo se reparten en un {@link ForkJoinPool} mientras el trozo anterior se
+ * guarda con {@link UsuarioService#crearUsuariosEnLote}, que agrupa el
+ * {@code saveAll}, las notificaciones y la auditoría. Como mucho hay dos trozos en
+ * memoria a la vez.
+ *
+ * Las filas que no se pueden importar (formato, email inválido o ya registrado)
+ * van al fichero de rechazos como CSV {@code linea,motivo,fila}, en el orden del
+ * fichero de entrada. Los trozos se guardan en orden, así que de dos filas con el
+ * mismo email se importa la primera.
+ */
+public class ImportadorUsuarios {
+
+    public static final int TAMANO_TROZO_POR_DEFECTO = 10_000;
+    // Por debajo de este número de filas una tarea analiza sin dividirse más
+    static final int FILAS_POR_TAREA = 1_000;
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final UsuarioService usuarioService;
+    private final ForkJoinPool pool;
+    private final int tamanoTrozo;
+
+    public ImportadorUsuarios(UsuarioService usuarioService) {
+        this(usuarioService, ForkJoinPool.commonPool(), TAMANO_TROZO_POR_DEFECTO);
+    }
+
+    public ImportadorUsuarios(UsuarioService usuarioService, ForkJoinPool pool, int tamanoTrozo) {
+        if (tamanoTrozo < 1) {
+            throw new IllegalArgumentException("El tamaño de trozo debe ser positivo");
+        }
+        this.usuarioService = usuarioService;
+        this.pool = pool;
+        this.tamanoTrozo = tamanoTrozo;
+    }
+
+    // Formato por la extensión del fichero; si acaba en .gz se descomprime al leer
+    public ProgresoImportacion importar(Path fichero, Path rechazos,
+                                        Consumer<ProgresoImportacion> alAvanzar) throws IOException {
+        FormatoImportacion formato = FormatoImportacion.deFichero(fichero);
+        InputStream bytes = Files.newInputStream(fichero);
+        if (fichero.getFileName().toString().endsWith(".gz")) {
+            bytes = new GZIPInputStream(bytes, TAMANO_BUFFER);
+        }
+        try (BufferedReader entrada = new BufferedReader(new InputStreamReader(bytes, StandardCharsets.UTF_8), TAMANO_BUFFER);
+             Writer salidaRechazos = Files.newBufferedWriter(rechazos, StandardCharsets.UTF_8)) {
+            return importar(entrada, formato, salidaRechazos, alAvanzar);
+        }
+    }
+
+    // alAvanzar recibe el progreso tras guardar cada trozo, desde el hilo que importa.
+    // No cierra ni la entrada ni la salida de rechazos
+    public ProgresoImportacion importar(BufferedReader entrada, FormatoImportacion formato, Writer rechazos,
+                                        Consumer<ProgresoImportacion> alAvanzar) throws IOException {
+        long inicio = System.nanoTime();
+        Contadores contadores = new Contadores();
+        rechazos.write("linea,motivo,fila\n");
+
+        FilasImportacion.Columnas columnas = null;
+        long numeroLinea = 0;
+        if (formato == FormatoImportacion.CSV) {
+            String cabecera = entrada.readLine();
+            if (cabecera == null) {
+                return contadores.progreso(inicio);
+            }
+            columnas = FilasImportacion.cabeceraCsv(cabecera);
+            numeroLinea = 1;
+        }
+
+        Trozo pendiente = null;
+        try {
+            while (true) {
+                Trozo trozo = leerTrozo(entrada, numeroLinea);
+                if (trozo != null) {
+                    numeroLinea = trozo.numeros[trozo.filas - 1];
+                    trozo.analisis = pool.submit(new Analizar(trozo, formato, columnas, 0, trozo.filas));
+                }
+                // Este trozo se analiza en el pool mientras se guarda el anterior
+                if (pendiente != null) {
+                    guardar(pendiente, rechazos, contadores);
+                    alAvanzar.accept(contadores.progreso(inicio));
+                }
+                if (trozo == null) {
+                    break;
+                }
+                pendiente = trozo;
+            }
+        } finally {
+            if (pendiente != null && !pendiente.analisis.isDone()) {
+                pendiente.analisis.cancel(false);
+            }
+        }
+        rechazos.flush();
+        return contadores.progreso(inicio);
+    }
+
+    // Hasta tamanoTrozo líneas no vacías con su número de línea; null al final del fichero
+    private Trozo leerTrozo(BufferedReader entrada, long ultimaLinea) throws IOException {
+        String[] lineas = new String[tamanoTrozo];
+        long[] numeros = new long[tamanoTrozo];
+        int filas = 0;
+        long numero = ultimaLinea;
+        String linea;
+        while (filas < tamanoTrozo && (linea = entrada.readLine()) != null) {
+            numero++;
+            if (!linea.isBlank()) {
+                lineas[filas] = linea;
+                numeros[filas] = numero;
+                filas++;
+            }
+        }
+        return filas == 0 ? null : new Trozo(lineas, numeros, filas);
+    }
+
+    private void guardar(Trozo trozo, Writer rechazos, Contadores contadores) throws IOException {
+        trozo.analisis.join();
+        List<Usuario> validos = new ArrayList<>(trozo.filas);
+        int[] posiciones = new int[trozo.filas];
+        for (int i = 0; i < trozo.filas; i++) {
+            if (trozo.usuarios[i] != null) {
+                posiciones[validos.size()] = i;
+                validos.add(trozo.usuarios[i]);
+            }
+        }
+        if (!validos.isEmpty()) {
+            ResultadoLote resultado = usuarioService.crearUsuariosEnLote(validos);
+            for (ResultadoLote.Fallo fallo : resultado.fallos()) {
+                trozo.motivos[posiciones[fallo.indice()]] = fallo.motivo();
+            }
+            contadores.importadas += resultado.procesados().size();
+        }
+        for (int i = 0; i < trozo.filas; i++) {
+            if (trozo.motivos[i] != null) {
+                escribirRechazo(rechazos, trozo.numeros[i], trozo.motivos[i], trozo.lineas[i]);
+                contadores.rechazadas++;
+            }
+        }
+        contadores.filas += trozo.filas;
+    }
+
+    private static void escribirRechazo(Writer rechazos, long linea, String motivo, String fila) throws IOException {
+        rechazos.write(Long.toString(linea));
+        rechazos.write(',');
+        escribirCampo(rechazos, motivo);
+        rechazos.write(',');
+        escribirCampo(rechazos, fila);
+        rechazos.write('\n');
+    }
+
+    private static void escribirCampo(Writer salida, String campo) throws IOException {
+        salida.write('"');
+        salida.write(campo == null ? "" : campo.replace("\"", "\"\""));
+        salida.write('"');
+    }
+
+    // Líneas de un trozo y, tras el análisis, el usuario o el motivo de rechazo de cada una
+    private static final class Trozo {
+        final String[] lineas;
+        final long[] numeros;
+        final int filas;
+        final Usuario[] usuarios;
+        final String[] motivos;
+        ForkJoinTask<?> analisis;
+
+        Trozo(String[] lineas, long[] numeros, int filas) {
+            this.lineas = lineas;
+            this.numeros = numeros;
+            this.filas = filas;
+            this.usuarios = new Usuario[filas];
+            this.motivos = new String[filas];
+        }
+    }
+
+    // Analiza y valida las filas [desde, hasta) de un trozo, partiéndolas en mitades
+    // hasta FILAS_POR_TAREA. Cada fila la escribe una sola tarea. Nunca se serializa:
+    // ForkJoinTask es Serializable solo por herencia
+    @SuppressWarnings("serial")
+    private static final class Analizar extends RecursiveAction {
+        private final Trozo trozo;
+        private final FormatoImportacion formato;
+        private final FilasImportacion.Columnas columnas;
+        private final int desde;
+        private final int hasta;
+
+        Analizar(Trozo trozo, FormatoImportacion formato, FilasImportacion.Columnas columnas, int desde, int hasta) {
+            this.trozo = trozo;
+            this.formato = formato;
+            this.columnas = columnas;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde > FILAS_POR_TAREA) {
+                int mitad = (desde + hasta) >>> 1;
+                invokeAll(new Analizar(trozo, formato, columnas, desde, mitad),
+                    new Analizar(trozo, formato, columnas, mitad, hasta));
+                return;
+            }
+            for (int i = desde; i < hasta; i++) {
+                try {
+                    Usuario usuario = formato == FormatoImportacion.CSV
+                        ? FilasImportacion.desdeCsv(trozo.lineas[i], columnas)
+                        : FilasImportacion.desdeNdjson(trozo.lineas[i]);
+                    if (ValidadorEmail.esValido(usuario.getEmail())) {
+                        trozo.usuarios[i] = usuario;
+                    } else {
+                        trozo.motivos[i] = "Email inválido";
+                    }
+                } catch (IllegalArgumentException e) {
+                    trozo.motivos[i] = e.getMessage();
+                }
+            }
+        }
+    }
+
+    private static final class Contadores {
+        long filas;
+        long importadas;
+        long rechazadas;
+
+        ProgresoImportacion progreso(long inicio) {
+            return new ProgresoImportacion(filas, importadas, rechazadas,
+                Duration.ofNanos(System.nanoTime() - inicio));
+        }
+    }
+}
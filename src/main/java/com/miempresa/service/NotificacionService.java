@@ -1,10 +1,24 @@
 package com.miempresa.service;
 
 import com.miempresa.model.Usuario;
+import java.util.List;
 
 public interface NotificacionService {
 	
 	void enviarNotificacionRegistro(Usuario usuario);
     void enviarNotificacionDesactivacion(Usuario usuario);
 
+    // Envío agrupado para altas masivas; los backends que acepten lotes lo sobrescriben
+    default void enviarNotificacionesRegistro(List<Usuario> usuarios) {
+        for (Usuario usuario : usuarios) {
+            enviarNotificacionRegistro(usuario);
+        }
+    }
+
+    default void enviarNotificacionesDesactivacion(List<Usuario> usuarios) {
+        for (Usuario usuario : usuarios) {
+            enviarNotificacionDesactivacion(usuario);
+        }
+    }
+
 }
@@ -0,0 +1,194 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorador de {@link NotificacionService} que agrupa notificaciones: las acumula
+ * por dominio del destinatario (o por destinatario) y las entrega al backend con
+ * una sola llamada por lote, cuando el lote alcanza {@code tamanoMaximoLote} o
+ * cuando pasa {@code ventana} desde la primera notificación del lote, lo que
+ * ocurra antes. Así un alta o baja masiva no choca con los límites de envío
+ * del backend.
+ *
+ * El envío por tamaño lo hace el hilo que completa el lote; para que el
+ * llamador nunca espere al backend se puede envolver en
+ * {@link NotificacionServiceAsincrona}.
+ */
+public class NotificacionServiceAgrupada implements NotificacionService, AutoCloseable {
+
+    public enum Agrupacion {
+        POR_DOMINIO,
+        POR_DESTINATARIO
+    }
+
+    private enum Tipo {
+        REGISTRO,
+        DESACTIVACION
+    }
+
+    private record ClaveLote(Tipo tipo, String destino) {
+    }
+
+    private final NotificacionService backend;
+    private final Agrupacion agrupacion;
+    private final int tamanoMaximoLote;
+    private final long ventanaNanos;
+    private final ScheduledExecutorService temporizador;
+    private final Map<ClaveLote, List<Usuario>> pendientes = new HashMap<>();
+    private boolean cerrado;
+
+    private final LongAdder lotesEnviados = new LongAdder();
+    private final LongAdder notificacionesEnviadas = new LongAdder();
+    private final LongAdder lotesFallidos = new LongAdder();
+
+    public NotificacionServiceAgrupada(NotificacionService backend, Agrupacion agrupacion,
+                                       int tamanoMaximoLote, Duration ventana) {
+        if (tamanoMaximoLote < 1 || ventana.isNegative() || ventana.isZero()) {
+            throw new IllegalArgumentException("El tamaño de lote y la ventana deben ser positivos");
+        }
+        this.backend = backend;
+        this.agrupacion = agrupacion;
+        this.tamanoMaximoLote = tamanoMaximoLote;
+        this.ventanaNanos = ventana.toNanos();
+        this.temporizador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "notificacion-agrupada");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @Override
+    public void enviarNotificacionRegistro(Usuario usuario) {
+        acumular(Tipo.REGISTRO, usuario);
+    }
+
+    @Override
+    public void enviarNotificacionDesactivacion(Usuario usuario) {
+        acumular(Tipo.DESACTIVACION, usuario);
+    }
+
+    @Override
+    public void enviarNotificacionesRegistro(List<Usuario> usuarios) {
+        for (Usuario usuario : usuarios) {
+            acumular(Tipo.REGISTRO, usuario);
+        }
+    }
+
+    @Override
+    public void enviarNotificacionesDesactivacion(List<Usuario> usuarios) {
+        for (Usuario usuario : usuarios) {
+            acumular(Tipo.DESACTIVACION, usuario);
+        }
+    }
+
+    // Entrega ya todos los lotes pendientes
+    public void vaciar() {
+        Map<ClaveLote, List<Usuario>> lotes;
+        synchronized (this) {
+            lotes = new HashMap<>(pendientes);
+            pendientes.clear();
+        }
+        lotes.forEach(this::entregar);
+    }
+
+    public synchronized int getPendientes() {
+        int total = 0;
+        for (List<Usuario> lote : pendientes.values()) {
+            total += lote.size();
+        }
+        return total;
+    }
+
+    public long getLotesEnviados() {
+        return lotesEnviados.sum();
+    }
+
+    public long getNotificacionesEnviadas() {
+        return notificacionesEnviadas.sum();
+    }
+
+    public long getLotesFallidos() {
+        return lotesFallidos.sum();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            cerrado = true;
+        }
+        vaciar();
+        temporizador.shutdown();
+    }
+
+    private void acumular(Tipo tipo, Usuario usuario) {
+        ClaveLote clave = new ClaveLote(tipo, destinoDe(usuario));
+        List<Usuario> completo = null;
+        synchronized (this) {
+            if (cerrado) {
+                throw new IllegalStateException("El servicio de notificaciones está cerrado");
+            }
+            List<Usuario> lote = pendientes.get(clave);
+            if (lote == null) {
+                lote = new ArrayList<>();
+                pendientes.put(clave, lote);
+                programarVencimiento(clave, lote);
+            }
+            lote.add(usuario);
+            if (lote.size() >= tamanoMaximoLote) {
+                pendientes.remove(clave);
+                completo = lote;
+            }
+        }
+        if (completo != null) {
+            entregar(clave, completo);
+        }
+    }
+
+    private void programarVencimiento(ClaveLote clave, List<Usuario> lote) {
+        temporizador.schedule(() -> {
+            boolean vencido;
+            synchronized (this) {
+                // Puede que el lote ya se enviara por tamaño y haya otro nuevo con la misma clave
+                vencido = pendientes.get(clave) == lote;
+                if (vencido) {
+                    pendientes.remove(clave);
+                }
+            }
+            if (vencido) {
+                entregar(clave, lote);
+            }
+        }, ventanaNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void entregar(ClaveLote clave, List<Usuario> lote) {
+        try {
+            if (clave.tipo() == Tipo.REGISTRO) {
+                backend.enviarNotificacionesRegistro(lote);
+            } else {
+                backend.enviarNotificacionesDesactivacion(lote);
+            }
+            lotesEnviados.increment();
+            notificacionesEnviadas.add(lote.size());
+        } catch (RuntimeException e) {
+            lotesFallidos.increment();
+        }
+    }
+
+    private String destinoDe(Usuario usuario) {
+        String email = usuario.getEmail() == null ? "" : usuario.getEmail().toLowerCase(Locale.ROOT);
+        if (agrupacion == Agrupacion.POR_DESTINATARIO) {
+            return email;
+        }
+        return email.substring(email.lastIndexOf('@') + 1);
+    }
+}
@@ -0,0 +1,218 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorador asíncrono de {@link NotificacionService}: las llamadas solo encolan
+ * el envío en una cola acotada y vuelven enseguida; varios hilos virtuales la
+ * vacían llamando al servicio real. Así un backend lento no añade su latencia
+ * a {@code crearUsuario}.
+ *
+ * Cuando la cola está llena se aplica la {@link PoliticaSaturacion} configurada.
+ *
+ * Un envío que se encola mientras se cierra el servicio puede llegar cuando los
+ * consumidores ya han terminado; por eso tras encolarlo se vuelve a mirar si se
+ * cerró y, si nadie lo ha recogido, se retira y se rechaza.
+ */
+public class NotificacionServiceAsincrona implements NotificacionService, AutoCloseable {
+
+    public enum PoliticaSaturacion {
+        // El llamador espera a que haya hueco en la cola
+        BLOQUEAR,
+        // La notificación se pierde y se cuenta como descartada
+        DESCARTAR,
+        // El propio llamador hace el envío (frena al productor de forma natural)
+        EJECUTAR_EN_LLAMADOR
+    }
+
+    private static final long ESPERA_SONDEO_MS = 100;
+
+    private final NotificacionService delegado;
+    private final BlockingQueue<Runnable> cola;
+    private final PoliticaSaturacion politica;
+    private final List<Thread> consumidores;
+    private volatile boolean cerrado;
+
+    private final LongAdder encoladas = new LongAdder();
+    private final LongAdder enviadas = new LongAdder();
+    private final LongAdder fallidas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder ejecutadasEnLlamador = new LongAdder();
+    private final AtomicInteger profundidadMaxima = new AtomicInteger();
+
+    public NotificacionServiceAsincrona(NotificacionService delegado, int capacidadCola,
+                                        int concurrencia, PoliticaSaturacion politica) {
+        this(delegado, capacidadCola, concurrencia, politica,
+            Thread.ofVirtual().name("notificacion-", 0).factory());
+    }
+
+    NotificacionServiceAsincrona(NotificacionService delegado, int capacidadCola, int concurrencia,
+                                 PoliticaSaturacion politica, ThreadFactory fabricaHilos) {
+        if (capacidadCola < 1 || concurrencia < 1) {
+            throw new IllegalArgumentException("La capacidad de la cola y la concurrencia deben ser positivas");
+        }
+        this.delegado = delegado;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        this.politica = politica;
+        this.consumidores = new ArrayList<>(concurrencia);
+        for (int i = 0; i < concurrencia; i++) {
+            Thread hilo = fabricaHilos.newThread(this::consumir);
+            consumidores.add(hilo);
+            hilo.start();
+        }
+    }
+
+    @Override
+    public void enviarNotificacionRegistro(Usuario usuario) {
+        encolar(() -> delegado.enviarNotificacionRegistro(usuario));
+    }
+
+    @Override
+    public void enviarNotificacionDesactivacion(Usuario usuario) {
+        encolar(() -> delegado.enviarNotificacionDesactivacion(usuario));
+    }
+
+    // Cada lote viaja como una sola tarea para conservar la llamada agrupada al backend
+    @Override
+    public void enviarNotificacionesRegistro(List<Usuario> usuarios) {
+        List<Usuario> copia = List.copyOf(usuarios);
+        encolar(() -> delegado.enviarNotificacionesRegistro(copia));
+    }
+
+    @Override
+    public void enviarNotificacionesDesactivacion(List<Usuario> usuarios) {
+        List<Usuario> copia = List.copyOf(usuarios);
+        encolar(() -> delegado.enviarNotificacionesDesactivacion(copia));
+    }
+
+    public int getProfundidadCola() {
+        return cola.size();
+    }
+
+    public int getProfundidadMaxima() {
+        return profundidadMaxima.get();
+    }
+
+    public long getEncoladas() {
+        return encoladas.sum();
+    }
+
+    public long getEnviadas() {
+        return enviadas.sum();
+    }
+
+    public long getFallidas() {
+        return fallidas.sum();
+    }
+
+    public long getDescartadas() {
+        return descartadas.sum();
+    }
+
+    public long getEjecutadasEnLlamador() {
+        return ejecutadasEnLlamador.sum();
+    }
+
+    // Deja de aceptar envíos y espera a que los consumidores vacíen la cola
+    public boolean cerrar(long espera, TimeUnit unidad) throws InterruptedException {
+        cerrado = true;
+        long limite = System.nanoTime() + unidad.toNanos(espera);
+        for (Thread hilo : consumidores) {
+            long restante = limite - System.nanoTime();
+            if (restante > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(hilo, restante);
+            }
+            if (hilo.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            cerrar(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void encolar(Runnable envio) {
+        comprobarAbierto();
+        if (!cola.offer(envio)) {
+            switch (politica) {
+                case BLOQUEAR -> {
+                    // Por tramos: tras el cierre la cola puede no volver a vaciarse nunca
+                    try {
+                        while (!cola.offer(envio, ESPERA_SONDEO_MS, TimeUnit.MILLISECONDS)) {
+                            comprobarAbierto();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrumpido esperando hueco en la cola de notificaciones", e);
+                    }
+                }
+                case DESCARTAR -> {
+                    descartadas.increment();
+                    return;
+                }
+                case EJECUTAR_EN_LLAMADOR -> {
+                    ejecutadasEnLlamador.increment();
+                    ejecutar(envio);
+                    return;
+                }
+            }
+        }
+        if (cerrado && cola.remove(envio)) {
+            throw new IllegalStateException("El servicio de notificaciones está cerrado");
+        }
+        encoladas.increment();
+        profundidadMaxima.accumulateAndGet(cola.size(), Math::max);
+    }
+
+    private void comprobarAbierto() {
+        if (cerrado) {
+            throw new IllegalStateException("El servicio de notificaciones está cerrado");
+        }
+    }
+
+    private void consumir() {
+        while (true) {
+            Runnable envio;
+            try {
+                envio = cola.poll(ESPERA_SONDEO_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (envio != null) {
+                ejecutar(envio);
+            } else if (cerrado) {
+                // Un envío aceptado justo antes del cierre puede entrar después del último
+                // sondeo: se vacía la cola antes de salir para no dejarlo sin consumidor
+                while ((envio = cola.poll()) != null) {
+                    ejecutar(envio);
+                }
+                return;
+            }
+        }
+    }
+
+    private void ejecutar(Runnable envio) {
+        try {
+            envio.run();
+            enviadas.increment();
+        } catch (RuntimeException e) {
+            // Un envío fallido no debe matar al consumidor ni llegar al llamador
+            fallidas.increment();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.miempresa.service;
+
+import com.miempresa.metricas.MetricaOperacion;
+import com.miempresa.metricas.RegistroMetricas;
+import com.miempresa.model.Usuario;
+import java.util.List;
+
+/**
+ * Decorador de {@link NotificacionService} que mide cada envío en una métrica
+ * {@code "NotificacionService.<método>"}. Los envíos agrupados van directos a los
+ * del decorado, que pueden tener su propia versión por lotes.
+ */
+public class NotificacionServiceMedida implements NotificacionService {
+
+    private static final String PREFIJO = "NotificacionService.";
+
+    private final NotificacionService delegado;
+    private final MetricaOperacion registro;
+    private final MetricaOperacion desactivacion;
+    private final MetricaOperacion registros;
+    private final MetricaOperacion desactivaciones;
+
+    public NotificacionServiceMedida(NotificacionService delegado, RegistroMetricas metricas) {
+        this.delegado = delegado;
+        this.registro = metricas.operacion(PREFIJO + "enviarNotificacionRegistro");
+        this.desactivacion = metricas.operacion(PREFIJO + "enviarNotificacionDesactivacion");
+        this.registros = metricas.operacion(PREFIJO + "enviarNotificacionesRegistro");
+        this.desactivaciones = metricas.operacion(PREFIJO + "enviarNotificacionesDesactivacion");
+    }
+
+    @Override
+    public void enviarNotificacionRegistro(Usuario usuario) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.enviarNotificacionRegistro(usuario);
+        } catch (RuntimeException e) {
+            registro.anotarError();
+            throw e;
+        } finally {
+            registro.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void enviarNotificacionDesactivacion(Usuario usuario) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.enviarNotificacionDesactivacion(usuario);
+        } catch (RuntimeException e) {
+            desactivacion.anotarError();
+            throw e;
+        } finally {
+            desactivacion.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void enviarNotificacionesRegistro(List<Usuario> usuarios) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.enviarNotificacionesRegistro(usuarios);
+        } catch (RuntimeException e) {
+            registros.anotarError();
+            throw e;
+        } finally {
+            registros.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void enviarNotificacionesDesactivacion(List<Usuario> usuarios) {
+        long inicio = System.nanoTime();
+        try {
+            delegado.enviarNotificacionesDesactivacion(usuarios);
+        } catch (RuntimeException e) {
+            desactivaciones.anotarError();
+            throw e;
+        } finally {
+            desactivaciones.registrarDesde(inicio);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.miempresa.service;
+
+/**
+ * Estado de una {@link DesactivacionMasiva}. {@code procesados} es también la
+ * posición desde la que reanudar: los ids anteriores ya están desactivados,
+ * notificados y auditados.
+ */
+public record ProgresoDesactivacion(int total, int procesados, int desactivados,
+                                    int yaInactivos, int noEncontrados) {
+
+    public boolean terminada() {
+        return procesados == total;
+    }
+
+    public double porcentaje() {
+        return total == 0 ? 100.0 : procesados * 100.0 / total;
+    }
+}
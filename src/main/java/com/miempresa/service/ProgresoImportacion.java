@@ -0,0 +1,15 @@
+package com.miempresa.service;
+
+import java.time.Duration;
+
+/**
+ * Estado de una importación de {@link ImportadorUsuarios}. {@code filas} son las
+ * filas leídas hasta ahora; cada una acaba importada o rechazada.
+ */
+public record ProgresoImportacion(long filas, long importadas, long rechazadas, Duration transcurrido) {
+
+    public double filasPorSegundo() {
+        long nanos = transcurrido.toNanos();
+        return nanos == 0 ? 0 : filas * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,19 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import java.util.List;
+
+/**
+ * Resultado de una operación por lotes: los usuarios procesados y, para los que
+ * fallaron, su posición en el lote de entrada y el motivo. Un fallo individual
+ * no aborta el resto del lote.
+ */
+public record ResultadoLote(List<Usuario> procesados, List<Fallo> fallos) {
+
+    public record Fallo(int indice, Usuario usuario, String motivo) {
+    }
+
+    public boolean tieneFallos() {
+        return !fallos.isEmpty();
+    }
+}
@@ -0,0 +1,21 @@
+package com.miempresa.service;
+
+/**
+ * Tipos de operación auditados sobre un usuario. Cada tipo sabe componer su
+ * texto de detalle, pero solo se compone cuando un destino de auditoría lo pide.
+ */
+public enum TipoOperacion {
+    CREAR_USUARIO("Usuario creado: "),
+    DESACTIVAR_USUARIO("Usuario desactivado: ");
+
+    private final String prefijoDetalle;
+
+    TipoOperacion(String prefijoDetalle) {
+        this.prefijoDetalle = prefijoDetalle;
+    }
+
+    // Texto de detalle con el formato de siempre: "Usuario creado: nombre (email)"
+    public String detalles(String nombre, String email) {
+        return prefijoDetalle + nombre + " (" + email + ")";
+    }
+}
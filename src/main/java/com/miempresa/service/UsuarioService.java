@@ -1,11 +1,22 @@
 package com.miempresa.service;
 
 import com.miempresa.model.Usuario;
+import com.miempresa.repository.BitmapCompacto;
 import com.miempresa.repository.UsuarioRepository;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public class UsuarioService {
+    public static final int LIMITE_MAXIMO_PAGINA = 1000;
+    static final int TAMANO_BLOQUE_RECORRIDO = 1000;
+
     private final UsuarioRepository usuarioRepository;
     private final NotificacionService notificacionService;
     private final AuditoriaService auditoriaService;   // ← nueva dependencia
@@ -19,32 +30,199 @@ public class UsuarioService {
     }
 
     public Usuario crearUsuario(Usuario usuario) {
-        if (usuario.getEmail() == null || !usuario.getEmail().contains("@")) {
+        if (!ValidadorEmail.esValido(usuario.getEmail())) {
             throw new IllegalArgumentException("Email inválido");
         }
+        // Consulta al índice por email del repositorio, sin recorrer los usuarios
+        if (usuarioRepository.existsByEmail(usuario.getEmail())) {
+            throw new IllegalArgumentException("Email ya registrado");
+        }
         Usuario usuarioGuardado = usuarioRepository.save(usuario);
         notificacionService.enviarNotificacionRegistro(usuario);
-        auditoriaService.registrarOperacion(
-            "CREAR_USUARIO",
-            "Usuario creado: " + usuario.getNombre() + " (" + usuario.getEmail() + ")"
-        );
+        auditoriaService.registrarEvento(TipoOperacion.CREAR_USUARIO,
+            usuario.getId(), usuario.getNombre(), usuario.getEmail());
         return usuarioGuardado;
     }
 
-	public Optional<Usuario> obtenerUsuario(long l) {
-		return null;
-		// TODO Auto-generated method stub
-		
+    // Alta masiva: valida todo el lote antes de tocar el repositorio, guarda los
+    // válidos con una sola llamada a saveAll y agrupa notificaciones y auditoría.
+    // Los fallos se informan por usuario en el resultado, sin abortar el lote
+    public ResultadoLote crearUsuariosEnLote(List<Usuario> usuarios) {
+        List<ResultadoLote.Fallo> fallos = new ArrayList<>();
+        List<Usuario> validos = new ArrayList<>(usuarios.size());
+        List<Integer> indicesValidos = new ArrayList<>(usuarios.size());
+        Set<String> emailsDelLote = new HashSet<>();
+        for (int i = 0; i < usuarios.size(); i++) {
+            Usuario usuario = usuarios.get(i);
+            if (usuario == null || !ValidadorEmail.esValido(usuario.getEmail())) {
+                fallos.add(new ResultadoLote.Fallo(i, usuario, "Email inválido"));
+            } else if (!emailsDelLote.add(Usuario.normalizarEmail(usuario.getEmail()))) {
+                fallos.add(new ResultadoLote.Fallo(i, usuario, "Email duplicado en el lote"));
+            } else if (usuarioRepository.existsByEmail(usuario.getEmail())) {
+                fallos.add(new ResultadoLote.Fallo(i, usuario, "Email ya registrado"));
+            } else {
+                validos.add(usuario);
+                indicesValidos.add(i);
+            }
+        }
+        if (validos.isEmpty()) {
+            return new ResultadoLote(List.of(), fallos);
+        }
+
+        List<Usuario> guardados = guardarLote(validos, indicesValidos, fallos);
+        if (!guardados.isEmpty()) {
+            try {
+                notificacionService.enviarNotificacionesRegistro(guardados);
+            } catch (RuntimeException e) {
+                // Los usuarios ya están guardados: el fallo de envío se informa, no se deshace el alta
+                auditoriaService.registrarOperacion("ERROR",
+                    "Error al enviar notificaciones del lote: " + e.getMessage());
+            }
+            auditoriaService.registrarEventos(TipoOperacion.CREAR_USUARIO, guardados);
+        }
+        fallos.sort(Comparator.comparingInt(ResultadoLote.Fallo::indice));
+        return new ResultadoLote(guardados, fallos);
+    }
+
+    // Intenta un único saveAll; si el repositorio lo rechaza, reintenta uno a uno
+    // para aislar a los usuarios que fallan sin perder al resto
+    private List<Usuario> guardarLote(List<Usuario> validos, List<Integer> indices,
+                                      List<ResultadoLote.Fallo> fallos) {
+        try {
+            return usuarioRepository.saveAll(validos);
+        } catch (RuntimeException errorLote) {
+            List<Usuario> guardados = new ArrayList<>(validos.size());
+            for (int j = 0; j < validos.size(); j++) {
+                try {
+                    guardados.add(usuarioRepository.save(validos.get(j)));
+                } catch (RuntimeException e) {
+                    fallos.add(new ResultadoLote.Fallo(indices.get(j), validos.get(j), e.getMessage()));
+                }
+            }
+            return guardados;
+        }
+    }
+
+	public Optional<Usuario> obtenerUsuario(long id) {
+		return usuarioRepository.findById(id);
+	}
+
+	// Si el usuario no existe no se hace nada. Para muchos usuarios a la vez
+	// usar desactivarUsuarios, que agrupa escrituras y notificaciones
+	public void desactivarUsuario(long id) {
+		Optional<Usuario> encontrado = usuarioRepository.findById(id);
+		if (encontrado.isEmpty()) {
+			return;
+		}
+		Usuario usuario = encontrado.get();
+		boolean estabaActivo = usuario.isActivo();
+		usuario.setActivo(false);
+		try {
+			usuarioRepository.save(usuario);
+		} catch (RuntimeException e) {
+			// Como en desactivarTramo: puede ser la instancia que guarda el repositorio
+			usuario.setActivo(estabaActivo);
+			throw e;
+		}
+		notificacionService.enviarNotificacionDesactivacion(usuario);
+		auditoriaService.registrarEvento(TipoOperacion.DESACTIVAR_USUARIO,
+			usuario.getId(), usuario.getNombre(), usuario.getEmail());
+	}
+
+	// Desactivación masiva por tramos: no hace nada hasta que se procesan los
+	// tramos (procesarTramo, procesarTodo o ejecutar en segundo plano)
+	public DesactivacionMasiva desactivarUsuarios(long[] ids, int tamanoTramo) {
+		return new DesactivacionMasiva(this, ids, 0, tamanoTramo);
 	}
 
-	public void desactivarUsuario(long l) {
-		// TODO Auto-generated method stub
-		
+	// Continúa una desactivación interrumpida a partir de ProgresoDesactivacion.procesados()
+	public DesactivacionMasiva reanudarDesactivacion(long[] ids, int desde, int tamanoTramo) {
+		return new DesactivacionMasiva(this, ids, desde, tamanoTramo);
 	}
 
+	// Solo se recorren los candidatos que siguen activos: la intersección con el
+	// bitmap del repositorio descarta inactivos e inexistentes sin cargar usuarios
+	public DesactivacionMasiva desactivarUsuarios(BitmapCompacto candidatos, int tamanoTramo) {
+		BitmapCompacto pendientes = candidatos.and(usuarioRepository.idsActivos());
+		return new DesactivacionMasiva(this, pendientes.aArray(), 0, tamanoTramo);
+	}
+
+	public long contarUsuariosActivos() {
+		return usuarioRepository.countActivos();
+	}
+
+	public long contarUsuariosInactivos() {
+		return usuarioRepository.countInactivos();
+	}
+
+	DesactivacionMasiva.Tramo desactivarTramo(long[] ids, int desde, int hasta) {
+		List<Long> idsTramo = new ArrayList<>(hasta - desde);
+		for (int i = desde; i < hasta; i++) {
+			idsTramo.add(ids[i]);
+		}
+		List<Usuario> encontrados = usuarioRepository.findAllById(idsTramo);
+		List<Usuario> desactivados = new ArrayList<>(encontrados.size());
+		for (Usuario usuario : encontrados) {
+			if (usuario.isActivo()) {
+				usuario.setActivo(false);
+				desactivados.add(usuario);
+			}
+		}
+		if (!desactivados.isEmpty()) {
+			try {
+				usuarioRepository.saveAll(desactivados);
+			} catch (RuntimeException e) {
+				// Los usuarios pueden ser las instancias que guarda el repositorio:
+				// si el tramo no se guarda no deben quedar desactivados solo en memoria
+				for (Usuario usuario : desactivados) {
+					usuario.setActivo(true);
+				}
+				throw e;
+			}
+			try {
+				notificacionService.enviarNotificacionesDesactivacion(desactivados);
+			} catch (RuntimeException e) {
+				// Como en el alta masiva: los usuarios ya están desactivados, el fallo solo se audita
+				auditoriaService.registrarOperacion("ERROR",
+					"Error al enviar notificaciones de desactivación: " + e.getMessage());
+			}
+			auditoriaService.registrarEventos(TipoOperacion.DESACTIVAR_USUARIO, desactivados);
+		}
+		return new DesactivacionMasiva.Tramo(desactivados.size(),
+			encontrados.size() - desactivados.size(), idsTramo.size() - encontrados.size());
+	}
+
+	// Carga la lista completa en memoria: para listados grandes usar
+	// obtenerUsuariosPaginados o recorrerUsuarios
 	public List<Usuario> obtenerTodosLosUsuarios() {
-		// TODO Auto-generated method stub
-		return null;
+		return usuarioRepository.findAll();
+	}
+
+	// Paginación por cursor: pasar como despuesDeId el id del último usuario de la página anterior
+	public List<Usuario> obtenerUsuariosPaginados(Long despuesDeId, int limite) {
+		if (limite < 1 || limite > LIMITE_MAXIMO_PAGINA) {
+			throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO_PAGINA);
+		}
+		return usuarioRepository.findPage(despuesDeId, limite);
+	}
+
+	// Versión del repositorio (ver UsuarioRepository.version): si no cambia entre dos
+	// llamadas, lo leído entre ellas sigue al día. -1 si el repositorio no la lleva
+	public long versionUsuarios() {
+		return usuarioRepository.version();
+	}
+
+	// Recorrido perezoso por bloques; el llamador debe cerrar el Stream
+	public Stream<Usuario> recorrerUsuarios() {
+		return usuarioRepository.streamAll(TAMANO_BLOQUE_RECORRIDO);
+	}
+
+	// Exportación NDJSON con memoria constante: va del recorrido por bloques a la
+	// salida sin cargar la lista completa. Devuelve los usuarios exportados
+	public long exportarUsuarios(OutputStream salida) throws IOException {
+		try (Stream<Usuario> usuarios = recorrerUsuarios()) {
+			return ExportacionNdjson.escribir(usuarios, salida);
+		}
 	}
 
     // … tus otros métodos también deberán aceptar auditoriaService si lo usan
@@ -0,0 +1,121 @@
+package com.miempresa.service;
+
+import com.miempresa.metricas.MetricaOperacion;
+import com.miempresa.metricas.RegistroMetricas;
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.UsuarioRepository;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link UsuarioService} que mide sus operaciones principales en métricas
+ * {@code "UsuarioService.<método>"}: tiempo total de la llamada y errores. Para
+ * ver cuánto de ese tiempo se va en cada colaborador, construirlo con los
+ * decoradores medidos ({@code UsuarioRepositoryMedido},
+ * {@link NotificacionServiceMedida}, {@link AuditoriaServiceMedida}) sobre el
+ * mismo {@link RegistroMetricas}.
+ */
+public class UsuarioServiceMedido extends UsuarioService {
+
+    private static final String PREFIJO = "UsuarioService.";
+
+    private final MetricaOperacion crearUsuario;
+    private final MetricaOperacion crearUsuariosEnLote;
+    private final MetricaOperacion obtenerUsuario;
+    private final MetricaOperacion desactivarUsuario;
+    private final MetricaOperacion obtenerTodosLosUsuarios;
+    private final MetricaOperacion obtenerUsuariosPaginados;
+
+    public UsuarioServiceMedido(UsuarioRepository usuarioRepository,
+                                NotificacionService notificacionService,
+                                AuditoriaService auditoriaService,
+                                RegistroMetricas metricas) {
+        super(usuarioRepository, notificacionService, auditoriaService);
+        this.crearUsuario = metricas.operacion(PREFIJO + "crearUsuario");
+        this.crearUsuariosEnLote = metricas.operacion(PREFIJO + "crearUsuariosEnLote");
+        this.obtenerUsuario = metricas.operacion(PREFIJO + "obtenerUsuario");
+        this.desactivarUsuario = metricas.operacion(PREFIJO + "desactivarUsuario");
+        this.obtenerTodosLosUsuarios = metricas.operacion(PREFIJO + "obtenerTodosLosUsuarios");
+        this.obtenerUsuariosPaginados = metricas.operacion(PREFIJO + "obtenerUsuariosPaginados");
+    }
+
+    // Un alta rechazada (email inválido o repetido) cuenta como error
+    @Override
+    public Usuario crearUsuario(Usuario usuario) {
+        long inicio = System.nanoTime();
+        try {
+            return super.crearUsuario(usuario);
+        } catch (RuntimeException e) {
+            crearUsuario.anotarError();
+            throw e;
+        } finally {
+            crearUsuario.registrarDesde(inicio);
+        }
+    }
+
+    // Los fallos individuales del lote van en el resultado; solo cuenta como error una excepción
+    @Override
+    public ResultadoLote crearUsuariosEnLote(List<Usuario> usuarios) {
+        long inicio = System.nanoTime();
+        try {
+            return super.crearUsuariosEnLote(usuarios);
+        } catch (RuntimeException e) {
+            crearUsuariosEnLote.anotarError();
+            throw e;
+        } finally {
+            crearUsuariosEnLote.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public Optional<Usuario> obtenerUsuario(long id) {
+        long inicio = System.nanoTime();
+        try {
+            return super.obtenerUsuario(id);
+        } catch (RuntimeException e) {
+            obtenerUsuario.anotarError();
+            throw e;
+        } finally {
+            obtenerUsuario.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void desactivarUsuario(long id) {
+        long inicio = System.nanoTime();
+        try {
+            super.desactivarUsuario(id);
+        } catch (RuntimeException e) {
+            desactivarUsuario.anotarError();
+            throw e;
+        } finally {
+            desactivarUsuario.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public List<Usuario> obtenerTodosLosUsuarios() {
+        long inicio = System.nanoTime();
+        try {
+            return super.obtenerTodosLosUsuarios();
+        } catch (RuntimeException e) {
+            obtenerTodosLosUsuarios.anotarError();
+            throw e;
+        } finally {
+            obtenerTodosLosUsuarios.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public List<Usuario> obtenerUsuariosPaginados(Long despuesDeId, int limite) {
+        long inicio = System.nanoTime();
+        try {
+            return super.obtenerUsuariosPaginados(despuesDeId, limite);
+        } catch (RuntimeException e) {
+            obtenerUsuariosPaginados.anotarError();
+            throw e;
+        } finally {
+            obtenerUsuariosPaginados.registrarDesde(inicio);
+        }
+    }
+}
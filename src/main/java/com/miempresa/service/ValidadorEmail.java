@@ -0,0 +1,119 @@
+package com.miempresa.service;
+
+/**
+ * Validación de emails para el alta de usuarios, en una sola pasada sobre los
+ * caracteres, sin expresiones regulares y sin reservar memoria.
+ *
+ * Reglas (subconjunto ASCII de RFC 5321/5322, sin comillas ni literales IP):
+ * <ul>
+ *   <li>como mucho {@value #LONGITUD_MAXIMA} caracteres y una sola {@code @};</li>
+ *   <li>parte local de 1 a {@value #LONGITUD_MAXIMA_LOCAL} caracteres: letras,
+ *       dígitos y {@code !#$%&'*+/=?^_`{|}~-}, con puntos solo entre caracteres;</li>
+ *   <li>dominio de al menos dos etiquetas separadas por puntos, cada una de 1 a
+ *       {@value #LONGITUD_MAXIMA_ETIQUETA} letras, dígitos o guiones, sin guion
+ *       al principio ni al final;</li>
+ *   <li>la última etiqueta (el TLD) tiene al menos dos caracteres y solo letras.</li>
+ * </ul>
+ */
+public final class ValidadorEmail {
+
+    public static final int LONGITUD_MAXIMA = 254;
+    public static final int LONGITUD_MAXIMA_LOCAL = 64;
+    public static final int LONGITUD_MAXIMA_ETIQUETA = 63;
+
+    // Clase de cada carácter ASCII; cualquier otro carácter es OTRO
+    private static final byte OTRO = 0;
+    private static final byte LETRA = 1;
+    private static final byte DIGITO = 2;
+    private static final byte GUION = 3;
+    private static final byte SIMBOLO = 4;   // solo válido en la parte local
+    private static final byte PUNTO = 5;
+    private static final byte ARROBA = 6;
+    private static final byte[] CLASES = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASES[c] = LETRA;
+            CLASES[Character.toUpperCase(c)] = LETRA;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASES[c] = DIGITO;
+        }
+        for (char c : "!#$%&'*+/=?^_`{|}~".toCharArray()) {
+            CLASES[c] = SIMBOLO;
+        }
+        CLASES['-'] = GUION;
+        CLASES['.'] = PUNTO;
+        CLASES['@'] = ARROBA;
+    }
+
+    private ValidadorEmail() {
+    }
+
+    public static boolean esValido(CharSequence email) {
+        if (email == null) {
+            return false;
+        }
+        int n = email.length();
+        if (n > LONGITUD_MAXIMA) {
+            return false;
+        }
+
+        // Parte local: hasta la arroba, sin puntos al principio, al final ni seguidos
+        int i = 0;
+        boolean trasPunto = true;
+        for (; i < n; i++) {
+            int clase = clase(email.charAt(i));
+            if (clase == ARROBA) {
+                break;
+            }
+            if (clase == PUNTO) {
+                if (trasPunto) {
+                    return false;
+                }
+                trasPunto = true;
+            } else if (clase == OTRO) {
+                return false;
+            } else {
+                trasPunto = false;
+            }
+        }
+        if (i == n || trasPunto || i > LONGITUD_MAXIMA_LOCAL) {
+            return false;
+        }
+
+        // Dominio: cada punto cierra una etiqueta; la que queda al final es el TLD
+        int inicioEtiqueta = ++i;
+        int etiquetas = 0;
+        int anterior = PUNTO;
+        boolean soloLetras = true;
+        for (; i < n; i++) {
+            int clase = clase(email.charAt(i));
+            if (clase == PUNTO) {
+                int longitud = i - inicioEtiqueta;
+                if (longitud == 0 || longitud > LONGITUD_MAXIMA_ETIQUETA || anterior == GUION) {
+                    return false;
+                }
+                etiquetas++;
+                inicioEtiqueta = i + 1;
+                soloLetras = true;
+            } else if (clase == DIGITO) {
+                soloLetras = false;
+            } else if (clase == GUION) {
+                if (anterior == PUNTO) {
+                    return false;
+                }
+                soloLetras = false;
+            } else if (clase != LETRA) {
+                return false;
+            }
+            anterior = clase;
+        }
+        int longitudTld = n - inicioEtiqueta;
+        return etiquetas > 0 && soloLetras && longitudTld >= 2 && longitudTld <= LONGITUD_MAXIMA_ETIQUETA;
+    }
+
+    private static int clase(char c) {
+        return c < 128 ? CLASES[c] : OTRO;
+    }
+}
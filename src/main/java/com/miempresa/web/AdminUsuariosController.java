@@ -0,0 +1,34 @@
+package com.miempresa.web;
+
+import com.miempresa.service.UsuarioService;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Listado de usuarios de la consola de administración, paginado por cursor
+ * ({@code ?despuesDeId=&limite=}) como la API: cada página cuesta lo mismo sea
+ * cual sea su posición. La tabla sale de {@link CachePaginasUsuarios}.
+ */
+@Controller
+public class AdminUsuariosController {
+
+    static final int TAMANO_PAGINA_POR_DEFECTO = 50;
+
+    private final CachePaginasUsuarios paginas;
+
+    public AdminUsuariosController(CachePaginasUsuarios paginas) {
+        this.paginas = paginas;
+    }
+
+    @GetMapping("/admin/usuarios")
+    public String listar(@RequestParam(required = false) Long despuesDeId,
+                         @RequestParam(defaultValue = "" + TAMANO_PAGINA_POR_DEFECTO) int limite,
+                         Model model) {
+        // En la consola un límite fuera de rango se ajusta en lugar de dar error
+        int limiteAjustado = Math.max(1, Math.min(limite, UsuarioService.LIMITE_MAXIMO_PAGINA));
+        model.addAttribute("tabla", paginas.tabla(despuesDeId, limiteAjustado));
+        return "usuarios/lista";
+    }
+}
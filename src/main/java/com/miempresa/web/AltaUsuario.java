@@ -0,0 +1,8 @@
+package com.miempresa.web;
+
+/**
+ * Cuerpo de {@code POST /usuarios}. El id lo asigna el repositorio y todo usuario
+ * nuevo empieza activo, así que el cliente solo envía nombre y email.
+ */
+public record AltaUsuario(String nombre, String email) {
+}
@@ -0,0 +1,104 @@
+package com.miempresa.web;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.UsuarioService;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+/**
+ * Tablas de usuarios ya renderizadas para la consola de administración, una por
+ * página (cursor y límite), en una caché LRU acotada. Cada tabla guarda la
+ * versión del repositorio con la que se leyó y solo se sirve mientras esa
+ * versión siga vigente: cualquier alta, cambio o borrado la invalida.
+ *
+ * La versión se lee antes que la página, así que una escritura que llegue en
+ * medio deja la tabla con una versión ya vieja y la siguiente petición la vuelve
+ * a renderizar. Las tablas son iguales para todos los operadores; no deben
+ * llevar nada propio de la petición.
+ */
+public class CachePaginasUsuarios {
+
+    static final String PLANTILLA = "usuarios/tabla";
+
+    record Clave(Long despuesDeId, int limite) {
+    }
+
+    private record Tabla(long version, String html) {
+    }
+
+    private final UsuarioService usuarioService;
+    private final ITemplateEngine motor;
+    private final Map<Clave, Tabla> tablas;
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    public CachePaginasUsuarios(UsuarioService usuarioService, ITemplateEngine motor, int capacidad) {
+        if (capacidad < 1) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser positiva");
+        }
+        this.usuarioService = usuarioService;
+        this.motor = motor;
+        this.tablas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Clave, Tabla> masAntigua) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    // HTML de la tabla con los usuarios de id mayor que despuesDeId y los enlaces de paginación
+    public String tabla(Long despuesDeId, int limite) {
+        Clave clave = new Clave(despuesDeId, limite);
+        long version = usuarioService.versionUsuarios();
+        if (version >= 0) {
+            Tabla tabla;
+            synchronized (tablas) {
+                tabla = tablas.get(clave);
+            }
+            if (tabla != null && tabla.version() == version) {
+                aciertos.increment();
+                return tabla.html();
+            }
+        }
+        fallos.increment();
+        String html = renderizar(usuarioService.obtenerUsuariosPaginados(despuesDeId, limite), despuesDeId, limite);
+        if (version >= 0) {
+            synchronized (tablas) {
+                // Otro operador puede haberla renderizado ya con una versión más nueva
+                Tabla actual = tablas.get(clave);
+                if (actual == null || actual.version() < version) {
+                    tablas.put(clave, new Tabla(version, html));
+                }
+            }
+        }
+        return html;
+    }
+
+    private String renderizar(List<Usuario> usuarios, Long despuesDeId, int limite) {
+        Context contexto = new Context();
+        contexto.setVariable("usuarios", usuarios);
+        contexto.setVariable("despuesDeId", despuesDeId);
+        contexto.setVariable("limite", limite);
+        // Página llena: puede haber más. El cursor es el último id mostrado
+        contexto.setVariable("siguiente", usuarios.size() == limite ? usuarios.get(limite - 1).getId() : null);
+        return motor.process(PLANTILLA, contexto);
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public int getTamano() {
+        synchronized (tablas) {
+            return tablas.size();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.miempresa.web;
+
+import com.miempresa.auditoria.AuditoriaServiceAnillo;
+import com.miempresa.auditoria.AuditoriaServiceMapeada;
+import com.miempresa.auditoria.ModoDurabilidad;
+import com.miempresa.metricas.RegistroMetricas;
+import com.miempresa.repository.UsuarioRepository;
+import com.miempresa.repository.UsuarioRepositoryMedido;
+import com.miempresa.service.AuditoriaService;
+import com.miempresa.service.AuditoriaServiceMedida;
+import com.miempresa.service.NotificacionService;
+import com.miempresa.service.NotificacionServiceImpl;
+import com.miempresa.service.NotificacionServiceMedida;
+import com.miempresa.service.UsuarioService;
+import com.miempresa.service.UsuarioServiceMedido;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.thymeleaf.ITemplateEngine;
+
+/**
+ * Piezas de la API de usuarios: el servicio con sus colaboradores (medidos en
+ * {@link RegistroMetricas}, ver {@code /metricas}), el límite de
+ * peticiones concurrentes sobre {@code /usuarios}, la medición de latencias y la
+ * caché de páginas de la consola de administración.
+ * Que las peticiones vayan en hilos virtuales lo decide
+ * {@code spring.threads.virtual.enabled} (ver application.properties).
+ */
+@Configuration
+public class ConfiguracionUsuarios implements WebMvcConfigurer {
+
+    @Bean
+    public RegistroMetricas registroMetricas() {
+        return new RegistroMetricas();
+    }
+
+    // Solo se decoran las dependencias del servicio: los beans de repositorio,
+    // notificación y auditoría siguen siendo los originales
+    @Bean
+    public UsuarioService usuarioService(UsuarioRepository usuarioRepository,
+                                         NotificacionService notificacionService,
+                                         AuditoriaService auditoriaService,
+                                         RegistroMetricas metricas) {
+        return new UsuarioServiceMedido(new UsuarioRepositoryMedido(usuarioRepository, metricas),
+            new NotificacionServiceMedida(notificacionService, metricas),
+            new AuditoriaServiceMedida(auditoriaService, metricas), metricas);
+    }
+
+    @Bean
+    public NotificacionService notificacionService() {
+        return new NotificacionServiceImpl();
+    }
+
+    @Bean
+    public AuditoriaServiceMapeada auditoriaServiceMapeada(
+            @Value("${usuarios.auditoria.directorio:datos/auditoria}") Path directorio,
+            @Value("${usuarios.auditoria.tamano-segmento:67108864}") int tamanoSegmento,
+            @Value("${usuarios.auditoria.modo:PERIODICO}") ModoDurabilidad modo) {
+        return new AuditoriaServiceMapeada(directorio, tamanoSegmento, modo);
+    }
+
+    // Las peticiones solo publican en el anillo; la escritura en disco va en su propio hilo
+    @Bean
+    @Primary
+    public AuditoriaServiceAnillo auditoriaService(AuditoriaServiceMapeada destino,
+            @Value("${usuarios.auditoria.capacidad-anillo:8192}") int capacidad) {
+        return new AuditoriaServiceAnillo(destino, capacidad, AuditoriaServiceAnillo.EstrategiaEspera.ESTACIONAR);
+    }
+
+    @Bean
+    public LimiteConcurrencia limiteConcurrencia(@Value("${usuarios.web.max-concurrentes:512}") int maximo,
+                                                 @Value("${usuarios.web.espera-maxima:50ms}") Duration esperaMaxima) {
+        return new LimiteConcurrencia(maximo, esperaMaxima);
+    }
+
+    // Solo sobre la API: /latencias tiene que seguir respondiendo con el servidor saturado
+    @Bean
+    public FilterRegistrationBean<LimiteConcurrencia> registroLimiteConcurrencia(LimiteConcurrencia limite) {
+        FilterRegistrationBean<LimiteConcurrencia> registro = new FilterRegistrationBean<>(limite);
+        registro.addUrlPatterns("/usuarios", "/usuarios/*");
+        return registro;
+    }
+
+    @Bean
+    public CachePaginasUsuarios cachePaginasUsuarios(UsuarioService usuarioService, ITemplateEngine motor,
+            @Value("${usuarios.admin.paginas-en-cache:1024}") int capacidad) {
+        return new CachePaginasUsuarios(usuarioService, motor, capacidad);
+    }
+
+    @Bean
+    public LatenciasPorEndpoint latenciasPorEndpoint() {
+        return new LatenciasPorEndpoint();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(latenciasPorEndpoint());
+    }
+}
@@ -0,0 +1,31 @@
+package com.miempresa.web;
+
+import com.miempresa.metricas.HistogramaLatencia;
+import java.util.Map;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Latencias por endpoint (en microsegundos) y estado del límite de concurrencia.
+ */
+@RestController
+public class LatenciasController {
+
+    // Lo que devuelve GET /latencias
+    public record Latencias(Map<String, HistogramaLatencia.Resumen> endpoints, int maximoConcurrentes,
+                            int enCurso, long rechazadas) {
+    }
+
+    private final LatenciasPorEndpoint latencias;
+    private final LimiteConcurrencia limite;
+
+    public LatenciasController(LatenciasPorEndpoint latencias, LimiteConcurrencia limite) {
+        this.latencias = latencias;
+        this.limite = limite;
+    }
+
+    @GetMapping("/latencias")
+    public Latencias latencias() {
+        return new Latencias(latencias.resumen(), limite.getMaximo(), limite.getEnCurso(), limite.getRechazadas());
+    }
+}
@@ -0,0 +1,61 @@
+package com.miempresa.web;
+
+import com.miempresa.metricas.HistogramaLatencia;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Mide cada petición atendida por un controlador, desde que el
+ * DispatcherServlet elige el método hasta que termina la respuesta, y la anota
+ * en un {@link HistogramaLatencia} por endpoint ("GET /usuarios/{id}"). Las
+ * peticiones rechazadas antes de llegar aquí las cuenta {@link LimiteConcurrencia}.
+ */
+public class LatenciasPorEndpoint implements HandlerInterceptor {
+
+    private static final String INICIO = LatenciasPorEndpoint.class.getName() + ".inicio";
+
+    // Un endpoint por método de controlador: la clave no se construye en cada petición
+    private record Endpoint(String nombre, HistogramaLatencia histograma) {
+    }
+
+    private final Map<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(INICIO, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(handler instanceof HandlerMethod metodo) || !(request.getAttribute(INICIO) instanceof Long inicio)) {
+            return;
+        }
+        long nanos = System.nanoTime() - inicio;
+        Endpoint endpoint = endpoints.get(metodo.getMethod());
+        if (endpoint == null) {
+            Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String nombre = request.getMethod() + " " + (patron != null ? patron : request.getRequestURI());
+            endpoint = endpoints.computeIfAbsent(metodo.getMethod(),
+                m -> new Endpoint(nombre, new HistogramaLatencia()));
+        }
+        endpoint.histograma().registrar(nanos);
+    }
+
+    // Ordenado por nombre de endpoint
+    public Map<String, HistogramaLatencia.Resumen> resumen() {
+        Map<String, HistogramaLatencia.Resumen> resumen = new TreeMap<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            resumen.put(endpoint.nombre(), endpoint.histograma().resumen());
+        }
+        return resumen;
+    }
+}
@@ -0,0 +1,77 @@
+package com.miempresa.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Limita las peticiones atendidas a la vez. Con hilos virtuales Tomcat ya no
+ * tiene un máximo de hilos que haga de tope, y sin límite una sobrecarga se
+ * convierte en colas cada vez más largas dentro de la aplicación (conexiones a
+ * la base de datos, cerrojos). Aquí una petición espera como mucho
+ * {@code esperaMaxima} a que quede un hueco; si no, recibe un 503 con
+ * {@code Retry-After} y la latencia de las que sí entran se mantiene acotada.
+ */
+public class LimiteConcurrencia extends OncePerRequestFilter {
+
+    private final int maximo;
+    private final long esperaMaximaNanos;
+    private final Semaphore permisos;
+    private final LongAdder rechazadas = new LongAdder();
+
+    public LimiteConcurrencia(int maximo, Duration esperaMaxima) {
+        if (maximo < 1) {
+            throw new IllegalArgumentException("El máximo de peticiones concurrentes debe ser positivo");
+        }
+        if (esperaMaxima.isNegative()) {
+            throw new IllegalArgumentException("La espera máxima no puede ser negativa");
+        }
+        this.maximo = maximo;
+        this.esperaMaximaNanos = esperaMaxima.toNanos();
+        this.permisos = new Semaphore(maximo);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain cadena)
+            throws ServletException, IOException {
+        boolean concedido;
+        try {
+            concedido = permisos.tryAcquire(esperaMaximaNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            concedido = false;
+        }
+        if (!concedido) {
+            rechazadas.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Servidor ocupado");
+            return;
+        }
+        try {
+            cadena.doFilter(request, response);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+
+    public int getEnCurso() {
+        return maximo - permisos.availablePermits();
+    }
+
+    public long getRechazadas() {
+        return rechazadas.sum();
+    }
+}
@@ -0,0 +1,26 @@
+package com.miempresa.web;
+
+import com.miempresa.metricas.MetricaOperacion;
+import com.miempresa.metricas.RegistroMetricas;
+import java.util.Map;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Llamadas, errores, llamadas por segundo y latencias (en microsegundos) de cada
+ * operación del servicio de usuarios y de sus colaboradores.
+ */
+@RestController
+public class MetricasController {
+
+    private final RegistroMetricas metricas;
+
+    public MetricasController(RegistroMetricas metricas) {
+        this.metricas = metricas;
+    }
+
+    @GetMapping("/metricas")
+    public Map<String, MetricaOperacion.Resumen> metricas() {
+        return metricas.resumen();
+    }
+}
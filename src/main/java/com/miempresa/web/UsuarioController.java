@@ -0,0 +1,90 @@
+package com.miempresa.web;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.UsuarioService;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * API REST de usuarios sobre {@link UsuarioService}. El listado va por cursor:
+ * el cliente pide la página siguiente con el id del último usuario recibido.
+ */
+@RestController
+@RequestMapping("/usuarios")
+public class UsuarioController {
+
+    static final int LIMITE_POR_DEFECTO = 100;
+    private static final int TAMANO_BUFFER_GZIP = 64 * 1024;
+
+    private final UsuarioService usuarioService;
+
+    public UsuarioController(UsuarioService usuarioService) {
+        this.usuarioService = usuarioService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Usuario> crear(@RequestBody AltaUsuario alta) {
+        Usuario creado = usuarioService.crearUsuario(new Usuario(null, alta.nombre(), alta.email()));
+        return ResponseEntity.created(URI.create("/usuarios/" + creado.getId())).body(creado);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Usuario> obtener(@PathVariable long id) {
+        return ResponseEntity.of(usuarioService.obtenerUsuario(id));
+    }
+
+    @PostMapping("/{id}/desactivar")
+    public ResponseEntity<Void> desactivar(@PathVariable long id) {
+        if (usuarioService.obtenerUsuario(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        usuarioService.desactivarUsuario(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping
+    public List<Usuario> listar(@RequestParam(required = false) Long despuesDeId,
+                                @RequestParam(defaultValue = "" + LIMITE_POR_DEFECTO) int limite) {
+        return usuarioService.obtenerUsuariosPaginados(despuesDeId, limite);
+    }
+
+    // Todos los usuarios como NDJSON, en streaming desde el recorrido por bloques.
+    // El gzip usa syncFlush para que cada volcado llegue ya al cliente
+    @GetMapping(value = "/exportacion", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportar(@RequestParam(defaultValue = "false") boolean gzip, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        try (OutputStream salida = gzip
+                ? new GZIPOutputStream(response.getOutputStream(), TAMANO_BUFFER_GZIP, true)
+                : response.getOutputStream()) {
+            usuarioService.exportarUsuarios(salida);
+        }
+    }
+
+    // Email inválido o repetido, límite de página fuera de rango
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ProblemDetail peticionIncorrecta(IllegalArgumentException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+}
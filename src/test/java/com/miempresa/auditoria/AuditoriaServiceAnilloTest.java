@@ -0,0 +1,277 @@
+package com.miempresa.auditoria;
+
+import com.miempresa.auditoria.AuditoriaServiceAnillo.EstrategiaEspera;
+import com.miempresa.model.Usuario;
+import com.miempresa.service.AuditoriaService;
+import com.miempresa.service.TipoOperacion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditoriaServiceAnilloTest {
+
+    // Destino que guarda lo recibido; solo lo usa el hilo consumidor del anillo
+    private static class DestinoRegistrador implements AuditoriaService {
+        final List<String> detalles = new ArrayList<>();
+        final List<Integer> tamanosDeGrupo = new ArrayList<>();
+        final List<String> eventos = new ArrayList<>();
+        final List<Integer> tamanosDeEventos = new ArrayList<>();
+        final CountDownLatch dentro = new CountDownLatch(1);
+        volatile CountDownLatch liberar = new CountDownLatch(0);
+
+        @Override
+        public void registrarOperacion(String tipoOperacion, String detalle) {
+            registrarOperaciones(tipoOperacion, List.of(detalle));
+        }
+
+        @Override
+        public void registrarOperaciones(String tipoOperacion, List<String> lote) {
+            dentro.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            tamanosDeGrupo.add(lote.size());
+            for (String detalle : lote) {
+                detalles.add(tipoOperacion + ":" + detalle);
+            }
+        }
+
+        @Override
+        public void registrarEvento(TipoOperacion tipo, Long idUsuario, String nombre, String email) {
+            tamanosDeEventos.add(1);
+            eventos.add(tipo + ":" + idUsuario + ":" + email);
+        }
+
+        @Override
+        public void registrarEventos(TipoOperacion tipo, List<Usuario> usuarios) {
+            tamanosDeEventos.add(usuarios.size());
+            for (Usuario usuario : usuarios) {
+                eventos.add(tipo + ":" + usuario.getId() + ":" + usuario.getEmail());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(EstrategiaEspera.class)
+    void deberiaEntregarTodoConSesentaYCuatroProductores(EstrategiaEspera estrategia) throws Exception {
+        // Arrange
+        int hilos = 64;
+        int porHilo = 2_000;
+        DestinoRegistrador destino = new DestinoRegistrador();
+        AuditoriaServiceAnillo anillo = new AuditoriaServiceAnillo(destino, 1024, estrategia);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(ejecutor.submit(() -> {
+                salida.await();
+                for (int i = 0; i < porHilo; i++) {
+                    anillo.registrarOperacion("CREAR_USUARIO", hilo + "-" + i);
+                }
+                return null;
+            }));
+        }
+
+        // Act
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        assertTrue(anillo.cerrar(30, TimeUnit.SECONDS));
+        ejecutor.shutdown();
+
+        // Assert: todo entregado y, dentro de cada productor, en orden
+        long total = (long) hilos * porHilo;
+        assertEquals(total, destino.detalles.size());
+        assertEquals(total, anillo.getEntregados());
+        int[] ultimoPorHilo = new int[hilos];
+        java.util.Arrays.fill(ultimoPorHilo, -1);
+        for (String detalle : destino.detalles) {
+            String[] partes = detalle.substring("CREAR_USUARIO:".length()).split("-");
+            int hilo = Integer.parseInt(partes[0]);
+            int i = Integer.parseInt(partes[1]);
+            assertEquals(ultimoPorHilo[hilo] + 1, i);
+            ultimoPorHilo[hilo] = i;
+        }
+        assertTrue(anillo.getOcupacionMaxima() <= anillo.getCapacidad());
+    }
+
+    @Test
+    void deberiaAgruparOperacionesConsecutivasDelMismoTipo() throws Exception {
+        // Arrange: el consumidor se queda bloqueado con el primer registro
+        DestinoRegistrador destino = new DestinoRegistrador();
+        destino.liberar = new CountDownLatch(1);
+        AuditoriaServiceAnillo anillo = new AuditoriaServiceAnillo(destino, 64, EstrategiaEspera.ESTACIONAR);
+        anillo.registrarOperacion("CREAR_USUARIO", "primero");
+        assertTrue(destino.dentro.await(5, TimeUnit.SECONDS));
+
+        // Act: mientras tanto se acumulan tres altas y dos errores
+        for (int i = 0; i < 3; i++) {
+            anillo.registrarOperacion("CREAR_USUARIO", "alta " + i);
+        }
+        anillo.registrarOperacion("ERROR", "fallo 1");
+        anillo.registrarOperacion("ERROR", "fallo 2");
+        destino.liberar.countDown();
+        assertTrue(anillo.cerrar(5, TimeUnit.SECONDS));
+
+        // Assert: un grupo por tipo consecutivo, en el orden de llegada
+        assertEquals(List.of(1, 3, 2), destino.tamanosDeGrupo);
+        assertEquals("ERROR:fallo 2", destino.detalles.get(5));
+        assertEquals(2, anillo.getLotesDrenados());
+        assertEquals(5, anillo.getLoteMaximo());
+    }
+
+    @Test
+    void deberiaContarLasEsperasCuandoElAnilloSeLlena() throws Exception {
+        // Arrange
+        DestinoRegistrador destino = new DestinoRegistrador();
+        destino.liberar = new CountDownLatch(1);
+        AuditoriaServiceAnillo anillo = new AuditoriaServiceAnillo(destino, 4, EstrategiaEspera.ESTACIONAR);
+        anillo.registrarOperacion("CREAR_USUARIO", "0");
+        assertTrue(destino.dentro.await(5, TimeUnit.SECONDS));
+
+        // Act: la ranura 0 sigue ocupada, así que caben 3 más y el cuarto espera
+        Thread productor = new Thread(() -> {
+            for (int i = 1; i <= 5; i++) {
+                anillo.registrarOperacion("CREAR_USUARIO", String.valueOf(i));
+            }
+        });
+        productor.start();
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (anillo.getEsperasProductor() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+
+        // Assert
+        assertEquals(1, anillo.getEsperasProductor());
+        assertEquals(4, anillo.getOcupacion());
+        destino.liberar.countDown();
+        productor.join(5_000);
+        assertTrue(anillo.cerrar(5, TimeUnit.SECONDS));
+        assertEquals(6, destino.detalles.size());
+    }
+
+    @Test
+    void losEventosDeberianLlegarConSusCamposSinComponerTexto() throws Exception {
+        DestinoRegistrador destino = new DestinoRegistrador();
+        AuditoriaServiceAnillo anillo = new AuditoriaServiceAnillo(destino, 16, EstrategiaEspera.CEDER);
+
+        anillo.registrarEvento(TipoOperacion.CREAR_USUARIO, 7L, "Elena Martínez", "elena@ejemplo.com");
+        assertTrue(anillo.cerrar(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("CREAR_USUARIO:7:elena@ejemplo.com"), destino.eventos);
+        assertTrue(destino.detalles.isEmpty());
+    }
+
+    @Test
+    void deberiaAgruparEventosConsecutivosDelMismoTipo() throws Exception {
+        // Arrange: el consumidor se queda bloqueado con la primera operación
+        DestinoRegistrador destino = new DestinoRegistrador();
+        destino.liberar = new CountDownLatch(1);
+        AuditoriaServiceAnillo anillo = new AuditoriaServiceAnillo(destino, 64, EstrategiaEspera.ESTACIONAR);
+        anillo.registrarOperacion("ERROR", "primero");
+        assertTrue(destino.dentro.await(5, TimeUnit.SECONDS));
+
+        // Act: dos altas sueltas, un lote de altas (una sola ranura) y una baja
+        anillo.registrarEvento(TipoOperacion.CREAR_USUARIO, 1L, "Ana", "ana@ejemplo.com");
+        anillo.registrarEvento(TipoOperacion.CREAR_USUARIO, 2L, "Luis", "luis@ejemplo.com");
+        Usuario marta = new Usuario(3L, "Marta", "marta@ejemplo.com");
+        anillo.registrarEventos(TipoOperacion.CREAR_USUARIO,
+            List.of(marta, new Usuario(4L, "Pablo", "pablo@ejemplo.com")));
+        marta.setEmail("otra@ejemplo.com");
+        anillo.registrarEvento(TipoOperacion.DESACTIVAR_USUARIO, 1L, "Ana", "ana@ejemplo.com");
+        destino.liberar.countDown();
+        assertTrue(anillo.cerrar(5, TimeUnit.SECONDS));
+
+        // Assert: un lote de cuatro altas con los datos del momento del registro, y la baja suelta
+        assertEquals(List.of(4, 1), destino.tamanosDeEventos);
+        assertEquals("CREAR_USUARIO:3:marta@ejemplo.com", destino.eventos.get(2));
+        assertEquals("DESACTIVAR_USUARIO:1:ana@ejemplo.com", destino.eventos.get(4));
+        assertEquals(4, anillo.getLoteMaximo());
+        assertEquals(6, anillo.getEntregados());
+    }
+
+    @Test
+    void cadaRegistroConcurrenteConElCierreDeberiaEntregarseORechazarse() throws Exception {
+        for (int vuelta = 0; vuelta < 50; vuelta++) {
+            // Arrange
+            DestinoRegistrador destino = new DestinoRegistrador();
+            AuditoriaServiceAnillo anillo = new AuditoriaServiceAnillo(destino, 8, EstrategiaEspera.CEDER);
+            ExecutorService ejecutor = Executors.newFixedThreadPool(4);
+            AtomicLong aceptados = new AtomicLong();
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < 4; h++) {
+                tareas.add(ejecutor.submit(() -> {
+                    try {
+                        while (true) {
+                            anillo.registrarOperacion("CREAR_USUARIO", "x");
+                            aceptados.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        return null;
+                    }
+                }));
+            }
+
+            // Act
+            Thread.sleep(1);
+            assertTrue(anillo.cerrar(5, TimeUnit.SECONDS));
+
+            // Assert: ningún productor queda colgado y no se pierde nada aceptado
+            for (Future<?> tarea : tareas) {
+                tarea.get(5, TimeUnit.SECONDS);
+            }
+            ejecutor.shutdown();
+            assertEquals(aceptados.get(), destino.detalles.size());
+        }
+    }
+
+    @Test
+    void losTiposYDetallesNulosNoDeberianDetenerAlConsumidor() throws Exception {
+        // Arrange: un anillo pequeño, para que se llene si el consumidor muere
+        DestinoRegistrador destino = new DestinoRegistrador();
+        AuditoriaServiceAnillo anillo = new AuditoriaServiceAnillo(destino, 4, EstrategiaEspera.CEDER);
+
+        // Act
+        anillo.registrarOperacion("CREAR_USUARIO", "primero");
+        anillo.registrarOperacion(null, "sin tipo");
+        anillo.registrarOperacion("CREAR_USUARIO", null);
+        anillo.registrarOperaciones("CREAR_USUARIO", Arrays.asList("lote", null));
+        anillo.registrarEvento(null, 1L, "Ana", "ana@ejemplo.com");
+        for (int i = 0; i < 20; i++) {
+            anillo.registrarOperacion("ERROR", "e" + i);
+        }
+        assertTrue(anillo.cerrar(5, TimeUnit.SECONDS));
+
+        // Assert: todo llega en orden, nulos incluidos
+        assertEquals(List.of("CREAR_USUARIO:primero", "null:sin tipo", "CREAR_USUARIO:null",
+            "CREAR_USUARIO:lote", "CREAR_USUARIO:null"), destino.detalles.subList(0, 5));
+        assertEquals(25, destino.detalles.size());
+        assertEquals(List.of("null:1:ana@ejemplo.com"), destino.eventos);
+        assertEquals(0, anillo.getFallidos());
+    }
+
+    @Test
+    void noDeberiaAceptarRegistrosTrasCerrar() throws Exception {
+        AuditoriaServiceAnillo anillo =
+            new AuditoriaServiceAnillo(new DestinoRegistrador(), 16, EstrategiaEspera.ESTACIONAR);
+        assertTrue(anillo.cerrar(5, TimeUnit.SECONDS));
+
+        assertThrows(IllegalStateException.class, () -> anillo.registrarOperacion("CREAR_USUARIO", "x"));
+    }
+}
@@ -0,0 +1,380 @@
+package com.miempresa.auditoria;
+
+import com.miempresa.service.TipoOperacion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditoriaServiceMapeadaTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void deberiaLeerLoQueSeEscribio() {
+        // Arrange
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 64 * 1024, ModoDurabilidad.POR_REGISTRO)) {
+
+            // Act
+            auditoria.registrarOperacion("CREAR_USUARIO", "Usuario creado: Elena Martínez (elena@ejemplo.com)");
+            auditoria.registrarOperaciones("DESACTIVAR_USUARIO", List.of("Usuario 1", "Usuario 2"));
+
+            // Assert
+            List<RegistroAuditoria> registros = auditoria.leerTodos();
+            assertEquals(3, registros.size());
+            assertEquals("CREAR_USUARIO", registros.get(0).tipoOperacion());
+            assertEquals("Usuario creado: Elena Martínez (elena@ejemplo.com)", registros.get(0).detalles());
+            assertEquals("Usuario 2", registros.get(2).detalles());
+            assertEquals(3, auditoria.getSincronizaciones());
+        }
+    }
+
+    @Test
+    void deberiaRotarSegmentosAlLlenarse() {
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.PERIODICO)) {
+            for (int i = 0; i < 1_000; i++) {
+                auditoria.registrarOperacion("CREAR_USUARIO", "Usuario " + i);
+            }
+
+            List<RegistroAuditoria> registros = auditoria.leerTodos();
+            assertEquals(1_000, registros.size());
+            assertEquals("Usuario 999", registros.get(999).detalles());
+            assertTrue(auditoria.getSegmentos() > 1, "Segmentos: " + auditoria.getSegmentos());
+        }
+    }
+
+    @Test
+    void deberiaContinuarDetrasDelUltimoRegistroAlReabrir() {
+        // Arrange
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+            for (int i = 0; i < 300; i++) {
+                auditoria.registrarOperacion("CREAR_USUARIO", "Antes " + i);
+            }
+        }
+
+        // Act
+        try (AuditoriaServiceMapeada reabierta =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+            reabierta.registrarOperacion("CREAR_USUARIO", "Después");
+
+            // Assert
+            List<RegistroAuditoria> registros = reabierta.leerTodos();
+            assertEquals(301, registros.size());
+            assertEquals("Antes 299", registros.get(299).detalles());
+            assertEquals("Después", registros.get(300).detalles());
+        }
+    }
+
+    @Test
+    void losEscritoresConcurrentesDeberianCompartirSincronizaciones() throws Exception {
+        // Arrange
+        int hilos = 16;
+        int porHilo = 2_000;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 1024 * 1024, ModoDurabilidad.POR_LOTE)) {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                int hilo = h;
+                tareas.add(ejecutor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < porHilo; i++) {
+                        auditoria.registrarOperacion("CREAR_USUARIO", "Hilo " + hilo + " registro " + i);
+                    }
+                    return null;
+                }));
+            }
+
+            // Act
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get(60, TimeUnit.SECONDS);
+            }
+
+            // Assert: cada llamada vuelve con su registro en disco, pero con muchas menos sincronizaciones
+            long total = (long) hilos * porHilo;
+            assertEquals(total, auditoria.getRegistros());
+            assertEquals(total, auditoria.leerTodos().size());
+            assertTrue(auditoria.getSincronizaciones() < total,
+                "Sincronizaciones: " + auditoria.getSincronizaciones());
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void elModoPeriodicoDeberiaSincronizarEnSegundoPlano() throws Exception {
+        try (AuditoriaServiceMapeada auditoria = new AuditoriaServiceMapeada(
+                 directorio, 64 * 1024, ModoDurabilidad.PERIODICO, Duration.ofMillis(10))) {
+            auditoria.registrarOperacion("CREAR_USUARIO", "Usuario 1");
+
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (auditoria.getSincronizaciones() == 0 && System.nanoTime() < limite) {
+                Thread.sleep(5);
+            }
+
+            assertTrue(auditoria.getSincronizaciones() > 0);
+        }
+    }
+
+    @Test
+    void deberiaBuscarPorTipoYRangoDeTiempo() throws Exception {
+        // Arrange: tres tandas separadas en el tiempo, repartidas en varios segmentos
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.PERIODICO)) {
+            registrarAltas(auditoria, 0, 100);
+            Thread.sleep(5);
+            long desde = System.currentTimeMillis();
+            registrarAltas(auditoria, 100, 100);
+            for (int i = 0; i < 100; i++) {
+                auditoria.registrarOperacion("ERROR", "Fallo " + i);
+            }
+            long hasta = System.currentTimeMillis();
+            Thread.sleep(5);
+            registrarAltas(auditoria, 200, 100);
+
+            // Act
+            List<RegistroAuditoria> altas = auditoria.buscar("CREAR_USUARIO", desde, hasta);
+            List<RegistroAuditoria> todos = auditoria.buscar(null, desde, hasta);
+
+            // Assert
+            assertTrue(auditoria.getSegmentos() > 2, "Segmentos: " + auditoria.getSegmentos());
+            assertEquals(100, altas.size());
+            assertEquals(100L, altas.get(0).idUsuario());
+            assertEquals("Usuario creado: U100 (u100@ejemplo.com)", altas.get(0).detalles());
+            assertEquals(200, todos.size());
+            assertEquals("Fallo 99", todos.get(199).detalles());
+        }
+    }
+
+    @Test
+    void deberiaBuscarPorEmailSinDistinguirMayusculas() {
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.PERIODICO)) {
+            registrarAltas(auditoria, 0, 200);
+            auditoria.registrarEvento(TipoOperacion.DESACTIVAR_USUARIO, 7L, "U7", "U7@Ejemplo.com");
+
+            List<RegistroAuditoria> delEmail = auditoria.buscarPorEmail("u7@ejemplo.com", null);
+            List<RegistroAuditoria> bajas = auditoria.buscarPorEmail("U7@EJEMPLO.COM", "DESACTIVAR_USUARIO");
+
+            assertEquals(2, delEmail.size());
+            assertEquals("CREAR_USUARIO", delEmail.get(0).tipoOperacion());
+            assertEquals(1, bajas.size());
+            assertEquals("Usuario desactivado: U7 (U7@Ejemplo.com)", bajas.get(0).detalles());
+            assertTrue(auditoria.buscarPorEmail("nadie@ejemplo.com", null).isEmpty());
+        }
+    }
+
+    @Test
+    void compactarDeberiaFusionarSegmentosSinPerderRegistros() {
+        // Arrange
+        List<RegistroAuditoria> antes;
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.PERIODICO)) {
+            registrarAltas(auditoria, 0, 500);
+            antes = auditoria.leerTodos();
+            int segmentos = auditoria.getSegmentos();
+
+            // Act
+            ResultadoCompactacion resultado = auditoria.compactar(0, 1024 * 1024);
+
+            // Assert: los sellados quedan en uno solo y las consultas siguen funcionando
+            assertEquals(segmentos - 1, resultado.segmentosAntes());
+            assertEquals(1, resultado.segmentosDespues());
+            assertEquals(2, auditoria.getSegmentos());
+            assertEquals(antes, auditoria.leerTodos());
+            assertEquals(1, auditoria.buscarPorEmail("u42@ejemplo.com", "CREAR_USUARIO").size());
+        }
+
+        // Y el resultado sobrevive a una reapertura
+        try (AuditoriaServiceMapeada reabierta =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.PERIODICO)) {
+            assertEquals(antes, reabierta.leerTodos());
+        }
+    }
+
+    @Test
+    void compactarDeberiaDescartarLosRegistrosAntiguos() throws Exception {
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.PERIODICO)) {
+            registrarAltas(auditoria, 0, 300);
+            Thread.sleep(5);
+            long corte = System.currentTimeMillis();
+            registrarAltas(auditoria, 300, 300);
+
+            ResultadoCompactacion resultado = auditoria.compactar(corte, 4 * 1024);
+
+            assertEquals(300, resultado.registrosDescartados());
+            List<RegistroAuditoria> restantes = auditoria.leerTodos();
+            assertEquals(300, restantes.size());
+            assertEquals(300L, restantes.get(0).idUsuario());
+        }
+    }
+
+    @Test
+    void unaListaDePasosIncompletaNoDeberiaAplicarseAlReabrir() throws Exception {
+        // Arrange: segmentos sellados y una lista de pasos cortada antes del final
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+            registrarAltas(auditoria, 0, 200);
+        }
+        List<String> pasos = new ArrayList<>();
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            ficheros.map(ruta -> ruta.getFileName().toString())
+                .filter(nombre -> nombre.endsWith(".log"))
+                .sorted()
+                .limit(2)
+                .forEach(nombre -> pasos.add("B " + nombre));
+        }
+        Files.write(directorio.resolve("compactacion.pendiente"), pasos);
+
+        // Act
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+
+            // Assert: no se ha borrado nada
+            assertEquals(200, auditoria.leerTodos().size());
+        }
+        assertFalse(Files.exists(directorio.resolve("compactacion.pendiente")));
+    }
+
+    @Test
+    void repetirLosPasosTrasUnRenombradoParcialNoDeberiaPerderRegistros() throws Exception {
+        // Arrange: compactación en dos segmentos como si el proceso cayera después de
+        // renombrar el primero y antes de renombrar el segundo
+        List<RegistroAuditoria> antes;
+        List<String> originales;
+        int compactados;
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+            registrarAltas(auditoria, 0, 500);
+            antes = auditoria.leerTodos();
+            try (Stream<Path> ficheros = Files.list(directorio)) {
+                originales = ficheros.map(ruta -> ruta.getFileName().toString())
+                    .filter(nombre -> nombre.endsWith(".log"))
+                    .sorted()
+                    .toList();
+            }
+            originales = originales.subList(0, originales.size() - 1);
+            compactados = auditoria.compactar(0, 2 * originales.size() * 1024).segmentosDespues();
+        }
+        assertTrue(compactados >= 2, "Segmentos compactados: " + compactados);
+        Path segundo = directorio.resolve(originales.get(1));
+        Files.move(segundo, directorio.resolve(originales.get(1) + ".tmp"));
+        Files.move(directorio.resolve(originales.get(1) + ".idx"), directorio.resolve(originales.get(1) + ".tmp.idx"));
+        List<String> pasos = new ArrayList<>();
+        for (String original : originales) {
+            pasos.add("B " + original);
+        }
+        for (int i = 0; i < compactados; i++) {
+            pasos.add("R " + originales.get(i) + ".tmp " + originales.get(i));
+        }
+        pasos.add("FIN");
+        Files.write(directorio.resolve("compactacion.pendiente"), pasos);
+
+        // Act
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+
+            // Assert: el segmento ya renombrado no se borra y el pendiente se termina de renombrar
+            assertEquals(antes, auditoria.leerTodos());
+        }
+        assertFalse(Files.exists(directorio.resolve("compactacion.pendiente")));
+    }
+
+    @Test
+    void unIndiceTruncadoDeberiaReconstruirseAlReabrir() throws Exception {
+        // Arrange: se cortan los índices de los segmentos sellados
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+            registrarAltas(auditoria, 0, 200);
+        }
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            for (Path indice : ficheros.filter(ruta -> ruta.toString().endsWith(".idx")).toList()) {
+                byte[] contenido = Files.readAllBytes(indice);
+                Files.write(indice, Arrays.copyOf(contenido, contenido.length / 2));
+            }
+        }
+
+        // Act
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 4 * 1024, ModoDurabilidad.POR_LOTE)) {
+
+            // Assert
+            assertEquals(200, auditoria.leerTodos().size());
+            assertEquals(1, auditoria.buscarPorEmail("U7@ejemplo.com", null).size());
+        }
+    }
+
+    @Test
+    void unRegistroConElCuerpoDanadoDeberiaMarcarElFinalAlReabrir() throws Exception {
+        // Arrange: el último registro del segmento activo conserva su longitud pero
+        // no su cuerpo, como tras una caída con páginas del mapa sin llevar a disco
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 64 * 1024, ModoDurabilidad.POR_LOTE)) {
+            registrarAltas(auditoria, 0, 20);
+        }
+        Path activo;
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            activo = ficheros.filter(ruta -> ruta.toString().endsWith(".log")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        byte[] contenido = Files.readAllBytes(activo);
+        int ultimo = contenido.length - 1;
+        while (contenido[ultimo] == 0) {
+            ultimo--;
+        }
+        contenido[ultimo] ^= 0x01;
+        Files.write(activo, contenido);
+
+        // Act
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 64 * 1024, ModoDurabilidad.POR_LOTE)) {
+
+            // Assert: se pierde solo el registro dañado y se sigue escribiendo detrás del anterior
+            List<RegistroAuditoria> registros = auditoria.leerTodos();
+            assertEquals(19, registros.size());
+            assertEquals(18L, registros.get(18).idUsuario());
+            registrarAltas(auditoria, 100, 1);
+        }
+        try (AuditoriaServiceMapeada auditoria =
+                 new AuditoriaServiceMapeada(directorio, 64 * 1024, ModoDurabilidad.POR_LOTE)) {
+            List<RegistroAuditoria> registros = auditoria.leerTodos();
+            assertEquals(20, registros.size());
+            assertEquals(100L, registros.get(19).idUsuario());
+        }
+    }
+
+    @Test
+    void deberiaRechazarRegistrosTrasCerrar() {
+        AuditoriaServiceMapeada auditoria =
+            new AuditoriaServiceMapeada(directorio, 64 * 1024, ModoDurabilidad.POR_LOTE);
+        auditoria.close();
+
+        assertThrows(IllegalStateException.class,
+            () -> auditoria.registrarOperacion("CREAR_USUARIO", "Usuario 1"));
+    }
+
+    private static void registrarAltas(AuditoriaServiceMapeada auditoria, int desde, int cuantos) {
+        for (int i = desde; i < desde + cuantos; i++) {
+            auditoria.registrarEvento(TipoOperacion.CREAR_USUARIO, (long) i, "U" + i, "u" + i + "@ejemplo.com");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.miempresa.cli;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.UsuarioRepository;
+import com.miempresa.repository.UsuarioRepositoryEnMemoria;
+import com.miempresa.service.AuditoriaService;
+import com.miempresa.service.NotificacionService;
+import com.miempresa.service.UsuarioService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.context.ApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportacionUsuariosCliTest {
+
+    @Mock
+    private NotificacionService notificacionService;
+
+    @Mock
+    private AuditoriaService auditoriaService;
+
+    @Mock
+    private ApplicationContext contexto;
+
+    @TempDir
+    Path directorio;
+
+    private ExportacionUsuariosCli cli;
+
+    @BeforeEach
+    void setUp() {
+        UsuarioRepository repositorio = new UsuarioRepositoryEnMemoria();
+        for (long id = 1; id <= 3; id++) {
+            repositorio.save(new Usuario(id, "Usuario " + id, "usuario" + id + "@ejemplo.com"));
+        }
+        cli = new ExportacionUsuariosCli(new UsuarioService(repositorio, notificacionService, auditoriaService),
+            contexto);
+    }
+
+    @Test
+    void deberiaExportarAUnFicheroComprimidoSiAcabaEnGz() throws IOException {
+        // Arrange
+        Path destino = directorio.resolve("usuarios.ndjson.gz");
+
+        // Act
+        long exportados = cli.exportar(destino.toString());
+
+        // Assert
+        assertEquals(3, exportados);
+        try (GZIPInputStream entrada = new GZIPInputStream(Files.newInputStream(destino))) {
+            List<String> lineas = new String(entrada.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            assertEquals(3, lineas.size());
+            assertTrue(lineas.stream().allMatch(l -> l.startsWith("{\"id\":")));
+        }
+    }
+
+    @Test
+    void deberiaExportarSinComprimirAUnFicheroNormal() throws IOException {
+        Path destino = directorio.resolve("usuarios.ndjson");
+
+        cli.exportar(destino.toString());
+
+        assertEquals(3, Files.readAllLines(destino).size());
+    }
+
+    @Test
+    void conGuionLaSalidaEstandarDeberiaQuedarSoloParaLosDatos() throws IOException {
+        // Arrange
+        PrintStream original = System.out;
+        ByteArrayOutputStream datos = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(datos, true, StandardCharsets.UTF_8));
+        try {
+            ExportacionUsuariosCli.reservarSalidaEstandar(new String[] {"--exportar-usuarios=-"});
+
+            // Act: lo que el log o el banner escriban ya no va a la salida de los datos
+            System.out.println("Started MockitoTutorialApplication");
+            long exportados = cli.exportar("-");
+
+            // Assert
+            assertEquals(3, exportados);
+            List<String> lineas = datos.toString(StandardCharsets.UTF_8).lines().toList();
+            assertEquals(3, lineas.size());
+            assertTrue(lineas.stream().allMatch(l -> l.startsWith("{\"id\":")));
+        } finally {
+            ExportacionUsuariosCli.salidaDatos = null;
+            System.setOut(original);
+        }
+    }
+
+    @Test
+    void sinLaOpcionNoDeberiaHacerNada() throws IOException {
+        cli.run(new DefaultApplicationArguments("--otra-opcion=1"));
+
+        verifyNoInteractions(contexto);
+    }
+}
@@ -0,0 +1,94 @@
+package com.miempresa.metricas;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramaLatenciaTest {
+
+    @Test
+    void losPercentilesDeberianTenerErrorRelativoPequeno() {
+        // Arrange: 1..100000 µs, uniforme
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histograma.registrar(micros * 1000);
+        }
+
+        // Act & Assert
+        assertEquals(100_000, histograma.getCuenta());
+        assertCerca(50_000_000, histograma.percentil(50));
+        assertCerca(99_000_000, histograma.percentil(99));
+        assertCerca(99_900_000, histograma.percentil(99.9));
+        assertEquals(100_000_000, histograma.getMaximo());
+        assertEquals(100_000_000, histograma.percentil(100));
+        assertCerca(50_000_500, (long) histograma.getMedia());
+    }
+
+    @Test
+    void losValoresPequenosDeberianSerExactos() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        for (int i = 0; i < 10; i++) {
+            histograma.registrar(42);
+        }
+        histograma.registrar(-5);   // un reloj que retrocede cuenta como 0
+
+        assertEquals(42, histograma.percentil(50));
+        assertEquals(0, histograma.percentil(0));
+        assertEquals(11, histograma.getCuenta());
+    }
+
+    @Test
+    void cadaCubetaDeberiaContenerSuPuntoMedio() {
+        for (long valor = 1; valor < 1L << 46; valor = valor * 3 + 1) {
+            int indice = HistogramaLatencia.indice(valor);
+            assertEquals(indice, HistogramaLatencia.indice(HistogramaLatencia.puntoMedio(indice)), "valor " + valor);
+        }
+    }
+
+    @Test
+    void unHistogramaVacioDeberiaDevolverCeros() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+
+        HistogramaLatencia.Resumen resumen = histograma.resumen();
+
+        assertEquals(0, resumen.cuenta());
+        assertEquals(0.0, resumen.p99Micros());
+        assertThrows(IllegalArgumentException.class, () -> histograma.percentil(101));
+    }
+
+    @Test
+    void deberiaContarTodoConVariosHilos() throws Exception {
+        // Arrange
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Act
+        for (int h = 0; h < 8; h++) {
+            tareas.add(ejecutor.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histograma.registrar(i);
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        ejecutor.shutdown();
+
+        // Assert
+        assertEquals(800_000, histograma.getCuenta());
+        assertEquals(99_999, histograma.getMaximo());
+        assertCerca(50_000, histograma.percentil(50));
+    }
+
+    private static void assertCerca(long esperado, long real) {
+        assertTrue(Math.abs(real - esperado) <= esperado / 100, () -> "esperado ~" + esperado + ", real " + real);
+    }
+}
@@ -0,0 +1,71 @@
+package com.miempresa.metricas;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistroMetricasTest {
+
+    private final RegistroMetricas registro = new RegistroMetricas();
+
+    @Test
+    void elMismoNombreDeberiaDarLaMismaMetrica() {
+        assertSame(registro.operacion("UsuarioRepository.save"), registro.operacion("UsuarioRepository.save"));
+        assertNotSame(registro.operacion("UsuarioRepository.save"), registro.operacion("UsuarioRepository.delete"));
+    }
+
+    @Test
+    void elResumenDeberiaIrOrdenadoConLlamadasErroresYRitmo() throws InterruptedException {
+        // Arrange
+        MetricaOperacion crear = registro.operacion("UsuarioService.crearUsuario");
+        MetricaOperacion obtener = registro.operacion("UsuarioService.obtenerUsuario");
+        for (int i = 0; i < 10; i++) {
+            crear.registrarDesde(System.nanoTime() - 2_000_000);
+        }
+        crear.anotarError();
+        Thread.sleep(10);
+
+        // Act
+        Map<String, MetricaOperacion.Resumen> resumen = registro.resumen();
+
+        // Assert
+        assertEquals(List.of("UsuarioService.crearUsuario", "UsuarioService.obtenerUsuario"),
+            List.copyOf(resumen.keySet()));
+        MetricaOperacion.Resumen deCrear = resumen.get("UsuarioService.crearUsuario");
+        assertEquals(10, deCrear.llamadas());
+        assertEquals(1, deCrear.errores());
+        assertTrue(deCrear.porSegundo() > 0 && deCrear.porSegundo() < 1_000, () -> "ritmo " + deCrear.porSegundo());
+        assertTrue(deCrear.latencia().p50Micros() >= 1_900, () -> "p50 " + deCrear.latencia().p50Micros());
+        assertEquals(0, resumen.get("UsuarioService.obtenerUsuario").llamadas());
+        assertEquals(0, obtener.getErrores());
+    }
+
+    @Test
+    void registrarNoDeberiaReservarMemoria() {
+        // Arrange: calentar para que el JIT compile el camino de registro
+        MetricaOperacion metrica = registro.operacion("UsuarioRepository.findById");
+        for (int i = 0; i < 200_000; i++) {
+            metrica.registrarDesde(System.nanoTime());
+        }
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // Act
+        long antes = hilos.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            long inicio = System.nanoTime();
+            metrica.registrarDesde(inicio);
+            if ((i & 1023) == 0) {
+                metrica.anotarError();
+            }
+        }
+        long reservados = hilos.getCurrentThreadAllocatedBytes() - antes;
+
+        // Assert: nada por llamada (se deja margen para la propia medición)
+        assertEquals(1_200_000, metrica.getLlamadas());
+        assertTrue(reservados < 64 * 1024, () -> "reservados " + reservados + " bytes en 1M registros");
+    }
+}
@@ -0,0 +1,94 @@
+package com.miempresa.model;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsuarioCompactoTest {
+
+    private static final String[] DOMINIOS = {"ejemplo.com", "gmail.com", "miempresa.es"};
+
+    @Test
+    void deberiaConvertirseDesdeYHaciaUsuarioSinPerderDatos() {
+        // Arrange
+        Usuario usuario = new Usuario(42L, "Elena Martínez", "Elena.M@Ejemplo.com");
+        usuario.setActivo(false);
+
+        // Act
+        UsuarioCompacto compacto = UsuarioCompacto.de(usuario);
+        Usuario copia = compacto.aUsuario();
+
+        // Assert
+        assertEquals(42L, compacto.getId());
+        assertEquals("Elena Martínez", compacto.getNombre());
+        assertEquals("Elena.M@Ejemplo.com", compacto.getEmail());
+        assertEquals("Ejemplo.com", compacto.getDominioEmail());
+        assertEquals("elena.m@ejemplo.com", compacto.getEmailNormalizado());
+        assertFalse(compacto.isActivo());
+        assertEquals(42L, copia.getId());
+        assertEquals(usuario.getNombre(), copia.getNombre());
+        assertEquals(usuario.getEmail(), copia.getEmail());
+        assertEquals(usuario.getEmailNormalizado(), copia.getEmailNormalizado());
+        assertFalse(copia.isActivo());
+    }
+
+    @Test
+    void deberiaConservarEmailsSinArrobaONulos() {
+        assertEquals("sin-arroba", new UsuarioCompacto(1, "A", "sin-arroba", true).getEmail());
+        assertEquals("a@b@c.com", new UsuarioCompacto(2, "B", "a@b@c.com", true).getEmail());
+        assertEquals("vacio@", new UsuarioCompacto(3, "C", "vacio@", true).getEmail());
+        UsuarioCompacto nulo = new UsuarioCompacto(4, null, null, true);
+        assertNull(nulo.getNombre());
+        assertNull(nulo.getEmail());
+        assertNull(nulo.getEmailNormalizado());
+    }
+
+    @Test
+    void deberiaCompartirElDominioEntreUsuarios() {
+        UsuarioCompacto ana = new UsuarioCompacto(1, "Ana", "ana@" + new String("gmail.com"), true);
+        UsuarioCompacto luis = new UsuarioCompacto(2, "Luis", "luis@" + new String("gmail.com"), true);
+
+        assertSame(ana.getDominioEmail(), luis.getDominioEmail());
+    }
+
+    @Test
+    void losCambiosDeberianDevolverOtraInstancia() {
+        // Arrange
+        UsuarioCompacto original = new UsuarioCompacto(7, "Mario", "mario@ejemplo.com", true);
+
+        // Act
+        UsuarioCompacto desactivado = original.conActivo(false);
+        UsuarioCompacto renombrado = original.conNombre("Mario Ros").conEmail("mario.ros@gmail.com");
+
+        // Assert
+        assertTrue(original.isActivo());
+        assertEquals("Mario", original.getNombre());
+        assertFalse(desactivado.isActivo());
+        assertEquals("Mario Ros", renombrado.getNombre());
+        assertEquals("mario.ros@gmail.com", renombrado.getEmail());
+        assertSame(original, original.conActivo(true));
+        assertEquals(original, new UsuarioCompacto(7, "Mario", "mario@ejemplo.com", true));
+        assertNotEquals(original, desactivado);
+    }
+
+    @Test
+    void deberiaOcuparMenosBytesPorUsuarioQueUsuario() {
+        // Arrange: los dominios se repiten, como en los datos reales
+        int n = 20_000;
+        Usuario[] usuarios = new Usuario[n];
+        UsuarioCompacto[] compactos = new UsuarioCompacto[n];
+        for (int i = 0; i < n; i++) {
+            usuarios[i] = new Usuario(1_000_000L + i, "Usuario " + i,
+                "usuario" + i + "@" + new String(DOMINIOS[i % DOMINIOS.length]));
+            compactos[i] = UsuarioCompacto.de(usuarios[i]);
+        }
+
+        // Act: huella del grafo completo (objetos, Strings, arrays y Long) con JOL
+        double antes = GraphLayout.parseInstance((Object) usuarios).totalSize() / (double) n;
+        double despues = GraphLayout.parseInstance((Object) compactos).totalSize() / (double) n;
+
+        // Assert
+        assertTrue(despues < antes * 0.7, () -> "antes " + antes + ", después " + despues);
+    }
+}
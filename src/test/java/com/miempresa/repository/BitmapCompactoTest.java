@@ -0,0 +1,225 @@
+package com.miempresa.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitmapCompactoTest {
+
+    @Test
+    void deberiaAgregarQuitarYContarEnOrden() {
+        // Arrange
+        BitmapCompacto bitmap = new BitmapCompacto();
+
+        // Act
+        assertTrue(bitmap.agregar(70_000L));
+        assertTrue(bitmap.agregar(3L));
+        assertTrue(bitmap.agregar(65_536L));
+        assertFalse(bitmap.agregar(3L));
+        assertTrue(bitmap.quitar(65_536L));
+        assertFalse(bitmap.quitar(65_536L));
+
+        // Assert
+        assertEquals(2L, bitmap.cardinalidad());
+        assertTrue(bitmap.contiene(3L));
+        assertFalse(bitmap.contiene(4L));
+        assertArrayEquals(new long[] {3L, 70_000L}, bitmap.aArray());
+    }
+
+    @Test
+    void deberiaPasarAMapaDeBitsYVolverAArraySegunLaDensidad() {
+        // Arrange: un contenedor denso ocupa 8 KB fijos en lugar de 2 bytes por id
+        BitmapCompacto bitmap = new BitmapCompacto();
+        for (long id = 0; id <= BitmapCompacto.LIMITE_ARRAY; id++) {
+            bitmap.agregar(id);
+        }
+        long comoMapa = bitmap.tamanoEnBytes();
+
+        // Act
+        for (long id = 0; id < 3500; id++) {
+            bitmap.quitar(id);
+        }
+
+        // Assert
+        assertEquals(BitmapCompacto.LIMITE_ARRAY + 1L - 3500, bitmap.cardinalidad());
+        assertTrue(bitmap.tamanoEnBytes() < comoMapa, "debería haber vuelto a array");
+        assertEquals(3500L, bitmap.iterador().nextLong());
+    }
+
+    @Test
+    void deberiaComprimirIdsDensos() {
+        // Arrange
+        BitmapCompacto bitmap = new BitmapCompacto();
+
+        // Act
+        for (long id = 1; id <= 1_000_000; id++) {
+            bitmap.agregar(id);
+        }
+
+        // Assert: 16 contenedores de 8 KB frente a 8 MB de un long[]
+        assertEquals(1_000_000L, bitmap.cardinalidad());
+        assertTrue(bitmap.tamanoEnBytes() < 200_000, () -> "ocupa " + bitmap.tamanoEnBytes());
+    }
+
+    @Test
+    void losIdsDelGeneradorAPocoRitmoDeberianOcuparPocoPorId() {
+        // Arrange: un alta por milisegundo, así que cada id cae en una clave distinta
+        long[] reloj = {GeneradorIds.EPOCA + 1_000_000L};
+        GeneradorIds generador = new GeneradorIds(3, () -> reloj[0]++);
+        BitmapCompacto bitmap = new BitmapCompacto();
+        int total = 100_000;
+
+        // Act
+        for (int i = 0; i < total; i++) {
+            bitmap.agregar(generador.siguiente());
+        }
+
+        // Assert: en línea con su clave, sin un contenedor por id
+        double bytesPorId = (double) bitmap.tamanoEnBytes() / total;
+        assertEquals((long) total, bitmap.cardinalidad());
+        assertTrue(bytesPorId < 20, () -> "ocupa " + bytesPorId + " bytes por id");
+    }
+
+    @Test
+    void lasOperacionesConClavesDeUnSoloValorDeberianCoincidirConUnTreeSet() {
+        // Arrange: mezcla de claves en línea, arrays y mapas
+        Random aleatorio = new Random(7);
+        TreeSet<Long> a = new TreeSet<>();
+        TreeSet<Long> b = new TreeSet<>();
+        for (int i = 0; i < 3_000; i++) {
+            a.add((long) aleatorio.nextInt(400) << 16 | aleatorio.nextInt(3));
+            b.add((long) aleatorio.nextInt(400) << 16 | aleatorio.nextInt(3));
+        }
+        for (long bajo = 0; bajo < 5_000; bajo++) {
+            a.add(401L << 16 | bajo);
+        }
+        b.add(401L << 16 | 17);
+        BitmapCompacto x = BitmapCompacto.de(aArray(a));
+        BitmapCompacto y = BitmapCompacto.de(aArray(b));
+
+        // Act & Assert
+        TreeSet<Long> interseccion = new TreeSet<>(a);
+        interseccion.retainAll(b);
+        comprobar(interseccion, x.and(y));
+        TreeSet<Long> union = new TreeSet<>(a);
+        union.addAll(b);
+        comprobar(union, x.or(y));
+        comprobar(union, y.or(x));
+        TreeSet<Long> diferencia = new TreeSet<>(a);
+        diferencia.removeAll(b);
+        comprobar(diferencia, x.andNot(y));
+        TreeSet<Long> inversa = new TreeSet<>(b);
+        inversa.removeAll(a);
+        comprobar(inversa, y.andNot(x));
+        for (long id : b) {
+            x.quitar(id);
+        }
+        comprobar(diferencia, x);
+    }
+
+    @Test
+    void lasOperacionesDeConjuntoDeberianCoincidirConUnTreeSet() {
+        Random aleatorio = new Random(17);
+        for (int ronda = 0; ronda < 20; ronda++) {
+            // Arrange: mezcla de contenedores dispersos y densos
+            TreeSet<Long> a = new TreeSet<>();
+            TreeSet<Long> b = new TreeSet<>();
+            int limite = ronda % 2 == 0 ? 300_000 : 20_000;
+            for (int i = 0; i < 15_000; i++) {
+                a.add((long) aleatorio.nextInt(limite));
+                b.add((long) aleatorio.nextInt(limite));
+            }
+            BitmapCompacto x = BitmapCompacto.de(aArray(a));
+            BitmapCompacto y = BitmapCompacto.de(aArray(b));
+
+            TreeSet<Long> interseccion = new TreeSet<>(a);
+            interseccion.retainAll(b);
+            TreeSet<Long> union = new TreeSet<>(a);
+            union.addAll(b);
+            TreeSet<Long> diferencia = new TreeSet<>(a);
+            diferencia.removeAll(b);
+
+            // Act + Assert
+            comprobar(interseccion, x.and(y));
+            comprobar(union, x.or(y));
+            comprobar(diferencia, x.andNot(y));
+            comprobar(a, x);
+        }
+    }
+
+    @Test
+    void laUnionDeMuchosDeberiaIgualarALaUnionSucesiva() {
+        // Arrange
+        List<BitmapCompacto> partes = new ArrayList<>();
+        TreeSet<Long> esperado = new TreeSet<>();
+        for (int parte = 0; parte < 7; parte++) {
+            BitmapCompacto bitmap = new BitmapCompacto();
+            for (long id = parte; id < 200_000; id += 7 + parte) {
+                bitmap.agregar(id);
+                esperado.add(id);
+            }
+            partes.add(bitmap);
+        }
+
+        // Act
+        BitmapCompacto union = BitmapCompacto.unionDe(partes);
+
+        // Assert
+        comprobar(esperado, union);
+        assertTrue(BitmapCompacto.unionDe(List.of()).estaVacio());
+    }
+
+    @Test
+    void deberiaIterarIdsNegativosYGrandesEnOrden() {
+        // Arrange
+        long[] ids = {Long.MIN_VALUE, -70_000L, -1L, 0L, 1L << 40, Long.MAX_VALUE};
+        BitmapCompacto bitmap = BitmapCompacto.de(ids[3], ids[5], ids[0], ids[2], ids[4], ids[1]);
+
+        // Act
+        PrimitiveIterator.OfLong iterador = bitmap.iterador();
+        List<Long> vistos = new ArrayList<>();
+        while (iterador.hasNext()) {
+            vistos.add(iterador.nextLong());
+        }
+
+        // Assert
+        assertEquals(List.of(Long.MIN_VALUE, -70_000L, -1L, 0L, 1L << 40, Long.MAX_VALUE), vistos);
+        assertArrayEquals(ids, bitmap.aArray());
+    }
+
+    @Test
+    void laCopiaDeberiaSerIndependiente() {
+        // Arrange
+        BitmapCompacto original = BitmapCompacto.de(1L, 2L, 3L);
+
+        // Act
+        BitmapCompacto copia = original.copia();
+        copia.quitar(2L);
+        original.agregar(4L);
+
+        // Assert
+        assertArrayEquals(new long[] {1L, 2L, 3L, 4L}, original.aArray());
+        assertArrayEquals(new long[] {1L, 3L}, copia.aArray());
+    }
+
+    private static void comprobar(TreeSet<Long> esperado, BitmapCompacto bitmap) {
+        assertEquals((long) esperado.size(), bitmap.cardinalidad());
+        assertArrayEquals(aArray(esperado), bitmap.aArray());
+        PrimitiveIterator.OfLong iterador = bitmap.iterador();
+        for (long id : esperado) {
+            assertTrue(iterador.hasNext());
+            assertEquals(id, iterador.nextLong());
+        }
+        assertFalse(iterador.hasNext());
+    }
+
+    private static long[] aArray(TreeSet<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,144 @@
+package com.miempresa.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneradorIdsTest {
+
+    private static final long INSTANTE = GeneradorIds.EPOCA + 1_000_000L;
+
+    @Test
+    void deberiaCodificarTiempoNodoYSecuencia() {
+        // Arrange
+        GeneradorIds generador = new GeneradorIds(37, () -> INSTANTE);
+
+        // Act
+        long primero = generador.siguiente();
+        long segundo = generador.siguiente();
+
+        // Assert
+        assertEquals(INSTANTE, GeneradorIds.marcaTiempo(primero));
+        assertEquals(37, GeneradorIds.nodo(primero));
+        assertEquals(0, GeneradorIds.secuencia(primero));
+        assertEquals(1, GeneradorIds.secuencia(segundo));
+    }
+
+    @Test
+    void deberiaRechazarNodosFueraDeRango() {
+        assertThrows(IllegalArgumentException.class, () -> new GeneradorIds(-1));
+        assertThrows(IllegalArgumentException.class, () -> new GeneradorIds(GeneradorIds.NODO_MAXIMO + 1));
+    }
+
+    @Test
+    void siElRelojRetrocedeNoDeberiaRepetirNiDecrecer() {
+        // Arrange: el reloj salta 5 segundos hacia atrás a mitad de la prueba
+        AtomicLong reloj = new AtomicLong(INSTANTE);
+        GeneradorIds generador = new GeneradorIds(1, reloj::get);
+        long antes = generador.siguiente();
+
+        // Act
+        reloj.set(INSTANTE - 5_000);
+        long[] durante = LongStream.generate(generador::siguiente).limit(10_000).toArray();
+        reloj.set(INSTANTE + 10_000);
+        long despues = generador.siguiente();
+
+        // Assert: se sigue contando desde el último id hasta que el reloj se recupera
+        long previo = antes;
+        for (long id : durante) {
+            assertTrue(id > previo);
+            assertEquals(1, GeneradorIds.nodo(id));
+            previo = id;
+        }
+        assertTrue(despues > previo);
+        assertEquals(INSTANTE + 10_000, GeneradorIds.marcaTiempo(despues));
+    }
+
+    @Test
+    void alAgotarLaSecuenciaDeberiaPasarAlMilisegundoSiguiente() {
+        GeneradorIds generador = new GeneradorIds(3, () -> INSTANTE);
+
+        long ultimoDelMilisegundo = 0;
+        for (int i = 0; i < 4096; i++) {
+            ultimoDelMilisegundo = generador.siguiente();
+        }
+        long siguiente = generador.siguiente();
+
+        assertEquals(4095, GeneradorIds.secuencia(ultimoDelMilisegundo));
+        assertEquals(INSTANTE + 1, GeneradorIds.marcaTiempo(siguiente));
+        assertEquals(0, GeneradorIds.secuencia(siguiente));
+        assertEquals(3, GeneradorIds.nodo(siguiente));
+    }
+
+    @Test
+    void nodosDistintosNoDeberianColisionarConElMismoReloj() {
+        GeneradorIds nodoA = new GeneradorIds(1, () -> INSTANTE);
+        GeneradorIds nodoB = new GeneradorIds(2, () -> INSTANTE);
+
+        long[] deA = LongStream.generate(nodoA::siguiente).limit(10_000).toArray();
+        long[] deB = LongStream.generate(nodoB::siguiente).limit(10_000).toArray();
+
+        assertEquals(20_000, LongStream.concat(LongStream.of(deA), LongStream.of(deB)).distinct().count());
+    }
+
+    @Test
+    void avanzarHastaDeberiaDejarLosIdsSiguientesPorEncima() {
+        GeneradorIds generador = new GeneradorIds(1, () -> INSTANTE);
+        long externo = new GeneradorIds(5, () -> INSTANTE + 100).siguiente();   // otro nodo, más adelante
+
+        generador.avanzarHasta(externo);
+        long siguiente = generador.siguiente();
+
+        assertTrue(siguiente > externo);
+        assertEquals(1, GeneradorIds.nodo(siguiente));
+    }
+
+    @Test
+    void deberiaGenerarIdsUnicosYCrecientesDesdeMuchosHilos() throws Exception {
+        // Arrange
+        GeneradorIds generador = new GeneradorIds(7);
+        int hilos = 8;
+        int porHilo = 250_000;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<long[]>> futuros = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            futuros.add(executor.submit(() -> {
+                salida.await();
+                long[] ids = new long[porHilo];
+                for (int i = 0; i < porHilo; i++) {
+                    ids[i] = generador.siguiente();
+                }
+                return ids;
+            }));
+        }
+
+        // Act
+        salida.countDown();
+        List<long[]> resultados = new ArrayList<>();
+        for (Future<long[]> futuro : futuros) {
+            resultados.add(futuro.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // Assert: crecientes dentro de cada hilo y sin repetidos entre todos
+        for (long[] ids : resultados) {
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1]);
+            }
+        }
+        long total = (long) hilos * porHilo;
+        long distintos = resultados.stream().flatMapToLong(LongStream::of).distinct().count();
+        assertEquals(total, distintos);
+    }
+}
@@ -0,0 +1,217 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsuarioRepositoryConCacheTest {
+
+    @Mock
+    private UsuarioRepository delegado;
+
+    @Test
+    void deberiaServirLecturasRepetidasDesdeLaCache() {
+        // Arrange
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(delegado, 100);
+        Usuario usuario = new Usuario(1L, "Elena Martínez", "elena@ejemplo.com");
+        when(delegado.findById(1L)).thenReturn(Optional.of(usuario));
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            assertSame(usuario, repositorio.findById(1L).get());
+            assertTrue(repositorio.existsById(1L));
+        }
+
+        // Assert: solo el primer acceso llega al almacén
+        verify(delegado, times(1)).findById(1L);
+        verify(delegado, never()).existsById(anyLong());
+        assertEquals(1, repositorio.getFallos());
+        assertEquals(99, repositorio.getAciertos());
+    }
+
+    @Test
+    void deberiaCachearLosIdsInexistentes() {
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(delegado, 100);
+        when(delegado.findById(99L)).thenReturn(Optional.empty());
+
+        assertFalse(repositorio.findById(99L).isPresent());
+        assertFalse(repositorio.existsById(99L));
+        assertFalse(repositorio.findById(99L).isPresent());
+
+        verify(delegado, times(1)).findById(99L);
+    }
+
+    @Test
+    void saveDeberiaActualizarLaEntradaCacheada() {
+        // Arrange: el id empieza como inexistente
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(delegado, 100);
+        when(delegado.findById(5L)).thenReturn(Optional.empty());
+        assertFalse(repositorio.existsById(5L));
+
+        // Act
+        Usuario usuario = new Usuario(5L, "Mario Ros", "mario@ejemplo.com");
+        when(delegado.save(usuario)).thenReturn(usuario);
+        repositorio.save(usuario);
+
+        // Assert: la respuesta negativa se sustituye sin volver al almacén
+        assertSame(usuario, repositorio.findById(5L).get());
+        verify(delegado, times(1)).findById(5L);
+    }
+
+    @Test
+    void deleteDeberiaDejarElIdComoInexistente() {
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(delegado, 100);
+        Usuario usuario = new Usuario(3L, "Ana Gil", "ana@ejemplo.com");
+        when(delegado.findById(3L)).thenReturn(Optional.of(usuario));
+        assertTrue(repositorio.existsById(3L));
+
+        repositorio.delete(3L);
+
+        verify(delegado).delete(3L);
+        assertFalse(repositorio.existsById(3L));
+        verify(delegado, times(1)).findById(3L);
+    }
+
+    @Test
+    void deleteFallidoDeberiaInvalidarLaEntrada() {
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(delegado, 100);
+        Usuario usuario = new Usuario(3L, "Ana Gil", "ana@ejemplo.com");
+        when(delegado.findById(3L)).thenReturn(Optional.of(usuario));
+        repositorio.findById(3L);
+        doThrow(new RuntimeException("Error de base de datos")).when(delegado).delete(3L);
+
+        assertThrows(RuntimeException.class, () -> repositorio.delete(3L));
+
+        // La siguiente lectura vuelve al almacén
+        repositorio.findById(3L);
+        verify(delegado, times(2)).findById(3L);
+    }
+
+    @Test
+    void unaLecturaSolapadaConUnaEscrituraNoDeberiaCachearElValorAnterior() {
+        // Arrange: mientras la lectura va al almacén, otro hilo guarda un cambio
+        // y su entrada desaparece de la caché (aquí, por un borrado fallido)
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(delegado, 100);
+        Usuario anterior = new Usuario(3L, "Ana Gil", "ana@ejemplo.com");
+        Usuario actual = new Usuario(3L, "Ana Gil Ruiz", "ana@ejemplo.com");
+        when(delegado.save(actual)).thenReturn(actual);
+        doThrow(new RuntimeException("Error de base de datos")).when(delegado).delete(3L);
+        when(delegado.findById(3L))
+            .thenAnswer(invocacion -> {
+                repositorio.save(actual);
+                assertThrows(RuntimeException.class, () -> repositorio.delete(3L));
+                return Optional.of(anterior);
+            })
+            .thenReturn(Optional.of(actual));
+
+        // Act
+        repositorio.findById(3L);
+        Optional<Usuario> despues = repositorio.findById(3L);
+
+        // Assert: la segunda lectura vuelve al almacén en lugar de servir el valor anterior
+        assertEquals("Ana Gil Ruiz", despues.orElseThrow().getNombre());
+        verify(delegado, times(2)).findById(3L);
+    }
+
+    @Test
+    void saveAllFallidoDeberiaInvalidarLosIdsDelLote() {
+        // Arrange
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(delegado, 100);
+        Usuario usuario = new Usuario(3L, "Ana Gil", "ana@ejemplo.com");
+        when(delegado.findById(3L)).thenReturn(Optional.of(usuario));
+        repositorio.findById(3L);
+        List<Usuario> lote = List.of(new Usuario(3L, "Ana Gil Ruiz", "ana@ejemplo.com"),
+            new Usuario(null, "Luis Ruiz", "luis@ejemplo.com"));
+        when(delegado.saveAll(lote)).thenThrow(new RuntimeException("Error de base de datos"));
+
+        // Act
+        assertThrows(RuntimeException.class, () -> repositorio.saveAll(lote));
+
+        // Assert: la siguiente lectura vuelve al almacén
+        repositorio.findById(3L);
+        verify(delegado, times(2)).findById(3L);
+    }
+
+    @Test
+    void unRecorridoDeIdsUnicosNoDeberiaExpulsarALosUsuariosFrecuentes() {
+        // Arrange: almacén real con 10.000 usuarios y una caché de 100 entradas
+        UsuarioRepositoryEnMemoria almacen = new UsuarioRepositoryEnMemoria();
+        for (long id = 1; id <= 10_000; id++) {
+            almacen.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(almacen, 100);
+
+        // Los 50 primeros ids se leen muchas veces
+        for (int vuelta = 0; vuelta < 10; vuelta++) {
+            for (long id = 1; id <= 50; id++) {
+                repositorio.findById(id);
+            }
+        }
+
+        // Act: un recorrido completo que lee cada id una sola vez, mientras
+        // los usuarios frecuentes se siguen consultando de vez en cuando
+        long fallosAntes = repositorio.getFallos();
+        for (long id = 51; id <= 10_000; id++) {
+            repositorio.findById(id);
+            if (id % 1_000 == 0) {
+                for (long frecuente = 1; frecuente <= 50; frecuente++) {
+                    repositorio.findById(frecuente);
+                }
+            }
+        }
+
+        // Assert: solo fallan los ids del recorrido, nunca los frecuentes
+        assertEquals(fallosAntes + 9_950, repositorio.getFallos(),
+            "Los usuarios frecuentes deberían seguir en caché");
+        assertTrue(repositorio.getDesalojos() > 0);
+        assertTrue(repositorio.getTamanoCache() <= 100);
+    }
+
+    @Test
+    void lecturasConcurrentesDeberianDevolverSiempreElUsuarioDeSuId() throws Exception {
+        // Arrange: más ids que capacidad, para que haya admisiones y desalojos mientras se lee
+        UsuarioRepositoryConcurrente almacen = new UsuarioRepositoryConcurrente();
+        for (long id = 1; id <= 2_000; id++) {
+            almacen.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+        UsuarioRepositoryConCache repositorio = new UsuarioRepositoryConCache(almacen, 500);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Act
+        for (int h = 0; h < 8; h++) {
+            int hilo = h;
+            tareas.add(ejecutor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    // Sesgo hacia los ids bajos, como un conjunto de usuarios frecuentes
+                    long id = i % 3 == 0 ? 1 + (i * 31L + hilo) % 2_000 : 1 + (i + hilo) % 100;
+                    assertEquals(id, repositorio.findById(id).orElseThrow().getId());
+                }
+                return null;
+            }));
+        }
+
+        // Assert
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        ejecutor.shutdown();
+        assertTrue(repositorio.getTamanoCache() <= 500);
+        assertTrue(repositorio.getAciertos() > repositorio.getFallos());
+    }
+}
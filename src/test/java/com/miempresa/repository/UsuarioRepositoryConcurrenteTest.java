@@ -0,0 +1,246 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsuarioRepositoryConcurrenteTest {
+
+    @Test
+    void deberiaRedondearLosSegmentosAPotenciaDeDos() {
+        assertEquals(8, new UsuarioRepositoryConcurrente(5).getNumeroSegmentos());
+        assertEquals(1, new UsuarioRepositoryConcurrente(1).getNumeroSegmentos());
+        assertThrows(IllegalArgumentException.class, () -> new UsuarioRepositoryConcurrente(0));
+    }
+
+    @Test
+    void deberiaGuardarBorrarYVolverAGuardar() {
+        UsuarioRepositoryConcurrente repositorio = new UsuarioRepositoryConcurrente(4);
+
+        repositorio.save(new Usuario(10L, "Lucía Gómez", "lucia@ejemplo.com"));
+        repositorio.delete(10L);
+        assertFalse(repositorio.existsById(10L));
+        assertEquals(0, repositorio.size());
+
+        repositorio.save(new Usuario(10L, "Lucía Gómez", "lucia@ejemplo.com"));
+        assertTrue(repositorio.existsById(10L));
+        assertEquals(1, repositorio.size());
+    }
+
+    @Test
+    void laVersionDeberiaContarCadaEscrituraConcurrente() throws Exception {
+        // Arrange
+        UsuarioRepositoryConcurrente repositorio = new UsuarioRepositoryConcurrente(8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // Act: cada hilo guarda 1.000 usuarios y borra 100 de ellos
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < 4; h++) {
+            long base = h * 10_000L;
+            tareas.add(executor.submit(() -> {
+                for (long id = base; id < base + 1_000; id++) {
+                    repositorio.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+                    if (id % 10 == 0) {
+                        repositorio.delete(id);
+                    }
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert: un cambio por escritura, sin perder ninguno entre segmentos
+        assertEquals(4 * 1_100L, repositorio.version());
+        repositorio.delete(0L);
+        assertEquals(4 * 1_100L, repositorio.version());
+    }
+
+    @Test
+    void losRecuentosPorEstadoDeberianCuadrarTrasEscriturasConcurrentes() throws Exception {
+        // Arrange
+        UsuarioRepositoryConcurrente repositorio = new UsuarioRepositoryConcurrente(8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // Act: cada hilo da de alta 2.000 usuarios, desactiva los pares y borra los múltiplos de 5
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < 4; h++) {
+            long base = h * 10_000L;
+            tareas.add(executor.submit(() -> {
+                for (long id = base; id < base + 2_000; id++) {
+                    Usuario usuario = new Usuario(id, "U" + id, "u" + id + "@ejemplo.com");
+                    repositorio.save(usuario);
+                    if (id % 2 == 0) {
+                        usuario.setActivo(false);
+                        repositorio.save(usuario);
+                    }
+                    if (id % 5 == 0) {
+                        repositorio.delete(id);
+                    }
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert: de cada 10 ids quedan 4 activos (1, 3, 7, 9) y 4 inactivos (2, 4, 6, 8)
+        assertEquals(3_200L, repositorio.countActivos());
+        assertEquals(3_200L, repositorio.countInactivos());
+        BitmapCompacto activos = repositorio.idsActivos();
+        assertEquals(3_200L, activos.cardinalidad());
+        assertTrue(activos.contiene(10_001L));
+        assertFalse(activos.contiene(10_002L));
+        assertFalse(activos.contiene(10_005L));
+    }
+
+    @Test
+    void unAltaRechazadaPorEmailNoDeberiaRecibirId() {
+        UsuarioRepositoryConcurrente repositorio = new UsuarioRepositoryConcurrente(4);
+        repositorio.save(new Usuario(null, "Ana Gil", "ana@ejemplo.com"));
+        Usuario repetido = new Usuario(null, "Otra Ana", "ANA@ejemplo.com");
+
+        assertThrows(IllegalArgumentException.class, () -> repositorio.save(repetido));
+
+        assertNull(repetido.getId());
+        assertEquals(1, repositorio.size());
+    }
+
+    @Test
+    void soloUnaDeVariasAltasConcurrentesConElMismoEmailDeberiaGuardarse() throws Exception {
+        // Arrange
+        UsuarioRepositoryConcurrente repositorio = new UsuarioRepositoryConcurrente(16);
+        int hilos = 8;
+        int porHilo = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<Integer>> futuros = new ArrayList<>();
+
+        // Act: cada hilo intenta dar de alta los mismos emails con ids propios
+        for (int h = 0; h < hilos; h++) {
+            long base = 1_000_000L * h;
+            futuros.add(executor.submit(() -> {
+                salida.await();
+                int guardados = 0;
+                for (int i = 0; i < porHilo; i++) {
+                    try {
+                        repositorio.save(new Usuario(base + i, "U", "compartido" + i + "@ejemplo.com"));
+                        guardados++;
+                    } catch (IllegalArgumentException duplicado) {
+                        // Otro hilo ganó ese email
+                    }
+                }
+                return guardados;
+            }));
+        }
+        salida.countDown();
+        int total = 0;
+        for (Future<Integer> futuro : futuros) {
+            total += futuro.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(porHilo, total);
+        assertEquals(porHilo, repositorio.size());
+        for (int i = 0; i < porHilo; i++) {
+            assertTrue(repositorio.existsByEmail("COMPARTIDO" + i + "@ejemplo.com"));
+        }
+    }
+
+    @Test
+    void deberiaAsignarIdsUnicosDesdeMuchosHilos() throws Exception {
+        // Arrange
+        UsuarioRepositoryConcurrente repositorio = new UsuarioRepositoryConcurrente(16);
+        int hilos = 8;
+        int porHilo = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<List<Long>>> futuros = new ArrayList<>();
+
+        // Act: todos los hilos crean usuarios sin id a la vez
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            futuros.add(executor.submit(() -> {
+                salida.await();
+                List<Long> ids = new ArrayList<>(porHilo);
+                for (int i = 0; i < porHilo; i++) {
+                    String email = "u" + hilo + "-" + i + "@ejemplo.com";
+                    ids.add(repositorio.save(new Usuario(null, "U", email)).getId());
+                }
+                return ids;
+            }));
+        }
+        salida.countDown();
+        Set<Long> todos = new HashSet<>();
+        for (Future<List<Long>> futuro : futuros) {
+            todos.addAll(futuro.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(hilos * porHilo, todos.size());
+        assertEquals(hilos * porHilo, repositorio.size());
+        for (Long id : todos) {
+            assertTrue(repositorio.existsById(id));
+        }
+    }
+
+    @Test
+    void losLectoresNoDeberianPerderUsuariosEstablesMientrasOtrosEscriben() throws Exception {
+        // Arrange: ids estables que nunca se borran
+        UsuarioRepositoryConcurrente repositorio = new UsuarioRepositoryConcurrente(4);
+        for (long id = 0; id < 1_000; id++) {
+            repositorio.save(new Usuario(id, "Estable", "estable" + id + "@ejemplo.com"));
+        }
+        AtomicBoolean parar = new AtomicBoolean();
+        AtomicBoolean fallo = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // Act: dos escritores fuerzan altas, bajas y redimensiones en otros ids
+        for (int e = 0; e < 2; e++) {
+            long base = 1_000_000L * (e + 1);
+            executor.submit(() -> {
+                for (long i = 0; !parar.get(); i++) {
+                    long id = base + (i % 50_000);
+                    repositorio.save(new Usuario(id, "Temporal", "temporal" + id + "@ejemplo.com"));
+                    if (i % 3 == 0) {
+                        repositorio.delete(id);
+                    }
+                }
+            });
+        }
+        for (int l = 0; l < 2; l++) {
+            executor.submit(() -> {
+                while (!parar.get()) {
+                    for (long id = 0; id < 1_000; id++) {
+                        if (repositorio.buscar(id) == null) {
+                            fallo.set(true);
+                        }
+                    }
+                }
+            });
+        }
+        Thread.sleep(500);
+        parar.set(true);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Assert
+        assertFalse(fallo.get(), "Un lector no encontró un usuario que nunca se borró");
+    }
+}
@@ -0,0 +1,274 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsuarioRepositoryEnMemoriaTest {
+
+    private final UsuarioRepositoryEnMemoria repositorio = new UsuarioRepositoryEnMemoria();
+
+    @Test
+    void deberiaGuardarYRecuperarPorId() {
+        // Arrange
+        Usuario usuario = new Usuario(1000L, "Elena Martínez", "elena@ejemplo.com");
+
+        // Act
+        repositorio.save(usuario);
+
+        // Assert
+        assertTrue(repositorio.existsById(1000L));
+        assertSame(usuario, repositorio.findById(1000L).get());
+        assertFalse(repositorio.findById(1001L).isPresent());
+        assertEquals(1, repositorio.size());
+    }
+
+    @Test
+    void laVersionDeberiaCrecerSoloConLosCambios() {
+        // Arrange
+        long inicial = repositorio.version();
+        repositorio.save(new Usuario(1L, "Ana Gil", "ana@ejemplo.com"));
+        long trasAlta = repositorio.version();
+
+        // Act: lecturas, un alta rechazada y un borrado de un id que no existe
+        repositorio.findById(1L);
+        repositorio.findPage(null, 10);
+        assertThrows(IllegalArgumentException.class,
+            () -> repositorio.save(new Usuario(2L, "Otra Ana", "ana@ejemplo.com")));
+        repositorio.delete(99L);
+
+        // Assert
+        assertTrue(trasAlta > inicial);
+        assertEquals(trasAlta, repositorio.version());
+        repositorio.delete(1L);
+        assertTrue(repositorio.version() > trasAlta);
+    }
+
+    @Test
+    void deberiaAsignarIdCuandoEsNulo() {
+        Usuario existente = new Usuario(41L, "Ana Gil", "ana@ejemplo.com");
+        Usuario nuevo = new Usuario(null, "Mario Ros", "mario@ejemplo.com");
+
+        repositorio.save(existente);
+        repositorio.save(nuevo);
+
+        // El id asignado no debe chocar con los ya guardados
+        assertTrue(nuevo.getId() > 41L);
+    }
+
+    @Test
+    void deberiaSobrescribirAlGuardarElMismoId() {
+        repositorio.save(new Usuario(7L, "Original", "original@ejemplo.com"));
+        repositorio.save(new Usuario(7L, "Actualizado", "actualizado@ejemplo.com"));
+
+        assertEquals(1, repositorio.size());
+        assertEquals("Actualizado", repositorio.findById(7L).get().getNombre());
+    }
+
+    @Test
+    void deberiaBuscarPorEmailSinDistinguirMayusculas() {
+        // Arrange
+        Usuario usuario = new Usuario(5L, "Elena Martínez", "Elena@Ejemplo.com");
+        repositorio.save(usuario);
+
+        // Act & Assert
+        assertSame(usuario, repositorio.findByEmail(" elena@ejemplo.COM ").get());
+        assertTrue(repositorio.existsByEmail("ELENA@EJEMPLO.COM"));
+        assertFalse(repositorio.existsByEmail("otra@ejemplo.com"));
+        assertFalse(repositorio.existsByEmail(null));
+    }
+
+    @Test
+    void elIndicePorEmailDeberiaSeguirAGuardadosYBorrados() {
+        // Arrange
+        repositorio.save(new Usuario(7L, "Original", "original@ejemplo.com"));
+
+        // Act: cambio de email guardando otro objeto con el mismo id, y después baja
+        repositorio.save(new Usuario(7L, "Actualizado", "actualizado@ejemplo.com"));
+        boolean trasCambio = repositorio.existsByEmail("original@ejemplo.com");
+        repositorio.delete(7L);
+
+        // Assert
+        assertFalse(trasCambio);
+        assertFalse(repositorio.existsByEmail("actualizado@ejemplo.com"));
+        // El email liberado se puede volver a usar
+        repositorio.save(new Usuario(8L, "Nuevo", "original@ejemplo.com"));
+        assertEquals(8L, repositorio.findByEmail("original@ejemplo.com").get().getId());
+    }
+
+    @Test
+    void deberiaRechazarUnEmailQueYaTieneOtroUsuario() {
+        // Arrange
+        repositorio.save(new Usuario(1L, "Ana Gil", "ana@ejemplo.com"));
+        Usuario duplicado = new Usuario(null, "Ana Gil", "ANA@ejemplo.com");
+
+        // Act & Assert: se rechaza sin consumir id ni tocar la tabla
+        assertThrows(IllegalArgumentException.class, () -> repositorio.save(duplicado));
+        assertNull(duplicado.getId());
+        assertEquals(1, repositorio.size());
+        assertEquals(1L, repositorio.findByEmail("ana@ejemplo.com").get().getId());
+    }
+
+    @Test
+    void unCambioDeEmailEnElSitioNoDeberiaBloquearElEmailAnterior() {
+        // Arrange
+        Usuario usuario = new Usuario(3L, "Mario Ros", "mario@ejemplo.com");
+        repositorio.save(usuario);
+
+        // Act: el mismo objeto cambia de email y se vuelve a guardar
+        usuario.setEmail("mario.ros@ejemplo.com");
+        repositorio.save(usuario);
+
+        // Assert: la entrada antigua ya no cuenta, aunque el índice no la viera cambiar
+        assertFalse(repositorio.existsByEmail("mario@ejemplo.com"));
+        assertTrue(repositorio.existsByEmail("mario.ros@ejemplo.com"));
+        repositorio.save(new Usuario(4L, "Otro Mario", "mario@ejemplo.com"));
+        assertEquals(4L, repositorio.findByEmail("mario@ejemplo.com").get().getId());
+    }
+
+    @Test
+    void deberiaMantenerseConsistenteTrasMuchasAltasYBajas() {
+        // Comparamos contra un HashMap de referencia, incluyendo redimensiones
+        // y borrados que obligan a recolocar entradas
+        Map<Long, Usuario> referencia = new HashMap<>();
+        java.util.Random aleatorio = new java.util.Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            long id = aleatorio.nextInt(5_000);
+            if (aleatorio.nextInt(3) == 0) {
+                repositorio.delete(id);
+                referencia.remove(id);
+            } else {
+                Usuario u = new Usuario(id, "U" + id, "u" + id + "@ejemplo.com");
+                repositorio.save(u);
+                referencia.put(id, u);
+            }
+        }
+
+        assertEquals(referencia.size(), repositorio.size());
+        assertEquals(referencia.size(), repositorio.findAll().size());
+        for (long id = 0; id < 5_000; id++) {
+            assertSame(referencia.get(id), repositorio.buscar(id));
+            assertSame(referencia.get(id), repositorio.findByEmail("u" + id + "@ejemplo.com").orElse(null));
+        }
+    }
+
+    @Test
+    void elBitmapDeActivosDeberiaSeguirAGuardadosYBorrados() {
+        // Arrange
+        for (long id = 1; id <= 5; id++) {
+            repositorio.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+        Usuario desactivado = repositorio.buscar(2L);
+        desactivado.setActivo(false);
+
+        // Act
+        repositorio.save(desactivado);
+        repositorio.delete(4L);
+
+        // Assert
+        assertEquals(3L, repositorio.countActivos());
+        assertEquals(1L, repositorio.countInactivos());
+        assertArrayEquals(new long[] {1L, 3L, 5L}, repositorio.idsActivos().aArray());
+        // Es una copia: modificarla no cambia el repositorio
+        repositorio.idsActivos().quitar(1L);
+        assertEquals(3L, repositorio.countActivos());
+    }
+
+    @Test
+    void deberiaPaginarPorCursorEnOrdenDeId() {
+        // Arrange: ids desordenados y con huecos
+        long[] ids = {50, 3, 41, 7, 12, 99, 1, 23};
+        for (long id : ids) {
+            repositorio.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+
+        // Act
+        List<Usuario> primera = repositorio.findPage(null, 3);
+        List<Usuario> segunda = repositorio.findPage(primera.get(2).getId(), 3);
+        List<Usuario> tercera = repositorio.findPage(segunda.get(2).getId(), 3);
+
+        // Assert
+        assertEquals(List.of(1L, 3L, 7L), idsDe(primera));
+        assertEquals(List.of(12L, 23L, 41L), idsDe(segunda));
+        assertEquals(List.of(50L, 99L), idsDe(tercera));
+        assertTrue(repositorio.findPage(99L, 3).isEmpty());
+    }
+
+    @Test
+    void streamAllDeberiaRecorrerTodosLosUsuarios() {
+        for (long id = 1; id <= 1_000; id++) {
+            repositorio.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+
+        try (Stream<Usuario> usuarios = repositorio.streamAll(100)) {
+            assertEquals(500_500L, usuarios.mapToLong(Usuario::getId).sum());
+        }
+    }
+
+    @Test
+    void lasBusquedasPrimitivasNoDeberianReservarMemoria() {
+        // Arrange
+        for (long id = 1; id <= 10_000; id++) {
+            repositorio.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+        com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().threadId();
+
+        // Act: ids por encima de la caché de Long.valueOf (-128..127)
+        long antes = hilos.getThreadAllocatedBytes(hilo);
+        int encontrados = 0;
+        for (int vuelta = 0; vuelta < 10; vuelta++) {
+            for (long id = 1_000; id <= 10_000; id++) {
+                if (repositorio.contiene(id)) {
+                    encontrados++;
+                }
+            }
+        }
+        long reservados = hilos.getThreadAllocatedBytes(hilo) - antes;
+
+        // Assert: 90.000 búsquedas con un HashMap<Long, ...> reservarían ~1,4 MB de Long
+        assertEquals(90_010, encontrados);
+        assertTrue(reservados < 16 * 1024, "Bytes reservados: " + reservados);
+    }
+
+    @Test
+    void volverAGuardarUsuariosExistentesNoDeberiaReservarMemoria() {
+        // Arrange
+        List<Usuario> usuarios = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            Usuario usuario = new Usuario(id, "U" + id, "u" + id + "@ejemplo.com");
+            repositorio.save(usuario);
+            usuarios.add(usuario);
+        }
+        com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().threadId();
+
+        // Act
+        long antes = hilos.getThreadAllocatedBytes(hilo);
+        for (int vuelta = 0; vuelta < 10; vuelta++) {
+            for (int i = 0; i < usuarios.size(); i++) {
+                repositorio.save(usuarios.get(i));
+            }
+        }
+        long reservados = hilos.getThreadAllocatedBytes(hilo) - antes;
+
+        // Assert: ni el índice por email ni la tabla crean objetos por guardado
+        assertEquals(10_000, repositorio.size());
+        assertTrue(reservados < 16 * 1024, "Bytes reservados: " + reservados);
+    }
+
+    private static List<Long> idsDe(List<Usuario> usuarios) {
+        return usuarios.stream().map(Usuario::getId).collect(Collectors.toList());
+    }
+}
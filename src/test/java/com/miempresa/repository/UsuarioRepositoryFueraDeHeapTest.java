@@ -0,0 +1,200 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsuarioRepositoryFueraDeHeapTest {
+
+    private final UsuarioRepositoryFueraDeHeap repositorio = new UsuarioRepositoryFueraDeHeap(4);
+
+    @Test
+    void deberiaGuardarYRecuperarUnaVistaDelUsuario() {
+        // Arrange
+        Usuario usuario = new Usuario(1000L, "Elena Martínez", "Elena@Ejemplo.com");
+        usuario.setActivo(false);
+
+        // Act
+        repositorio.save(usuario);
+        Usuario vista = repositorio.findById(1000L).get();
+
+        // Assert: la vista lee de las columnas, no es el objeto guardado
+        assertNotSame(usuario, vista);
+        assertEquals(1000L, vista.getId());
+        assertEquals("Elena Martínez", vista.getNombre());
+        assertEquals("Elena@Ejemplo.com", vista.getEmail());
+        assertEquals("elena@ejemplo.com", vista.getEmailNormalizado());
+        assertFalse(vista.isActivo());
+        assertFalse(repositorio.existsById(1001L));
+    }
+
+    @Test
+    void deberiaAsignarIdCuandoEsNuloYGuardarTextosNulos() {
+        Usuario nuevo = new Usuario(null, null, null);
+
+        repositorio.save(nuevo);
+
+        assertNotNull(nuevo.getId());
+        Usuario vista = repositorio.findById(nuevo.getId()).get();
+        assertNull(vista.getNombre());
+        assertNull(vista.getEmail());
+    }
+
+    @Test
+    void guardarUnaVistaSinModificarNoDeberiaCambiarLaVersion() {
+        // Arrange
+        repositorio.save(new Usuario(1L, "Ana Gil", "ana@ejemplo.com"));
+        long version = repositorio.version();
+
+        // Act
+        repositorio.save(repositorio.findById(1L).get());
+
+        // Assert
+        assertEquals(version, repositorio.version());
+        Usuario vista = repositorio.findById(1L).get();
+        vista.setActivo(false);
+        repositorio.save(vista);
+        assertTrue(repositorio.version() > version);
+    }
+
+    @Test
+    void modificarUnaVistaNoDeberiaCambiarElAlmacenHastaGuardarla() {
+        // Arrange
+        repositorio.save(new Usuario(1L, "Ana Gil", "ana@ejemplo.com"));
+        Usuario vista = repositorio.findById(1L).get();
+
+        // Act
+        vista.setActivo(false);
+        vista.setNombre("Ana Gil Ros");
+
+        // Assert
+        assertTrue(repositorio.findById(1L).get().isActivo());
+        assertEquals("Ana Gil", repositorio.findById(1L).get().getNombre());
+        assertEquals("ana@ejemplo.com", vista.getEmail());
+
+        repositorio.save(vista);
+        Usuario guardado = repositorio.findById(1L).get();
+        assertFalse(guardado.isActivo());
+        assertEquals("Ana Gil Ros", guardado.getNombre());
+        assertEquals(0L, repositorio.countActivos());
+        assertEquals(1L, repositorio.countInactivos());
+        assertTrue(repositorio.getBytesTextoMuertos() > 0);
+    }
+
+    @Test
+    void deberiaBuscarPorEmailYRechazarDuplicados() {
+        // Arrange
+        repositorio.save(new Usuario(1L, "Mario", "mario@ejemplo.com"));
+
+        // Act + Assert
+        assertEquals(1L, repositorio.findByEmail("  MARIO@ejemplo.com ").get().getId());
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> repositorio.save(new Usuario(2L, "Otro", "Mario@Ejemplo.com")));
+        assertTrue(error.getMessage().contains("Email ya registrado"));
+        assertFalse(repositorio.existsById(2L));
+
+        // Al cambiar de email, el anterior queda libre
+        repositorio.save(new Usuario(1L, "Mario", "mario.ros@ejemplo.com"));
+        repositorio.save(new Usuario(2L, "Otro", "mario@ejemplo.com"));
+        assertEquals(2L, repositorio.findByEmail("mario@ejemplo.com").get().getId());
+        repositorio.delete(2L);
+        assertFalse(repositorio.existsByEmail("mario@ejemplo.com"));
+    }
+
+    @Test
+    void deberiaMantenerseConsistenteTrasMuchasAltasYBajas() {
+        // Comparamos contra un HashMap de referencia, con crecimiento de columnas,
+        // tablas y arena, y borrados que obligan a recolocar entradas
+        Map<Long, String> referencia = new HashMap<>();
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            long id = aleatorio.nextInt(5_000);
+            if (aleatorio.nextInt(3) == 0) {
+                repositorio.delete(id);
+                referencia.remove(id);
+            } else {
+                String nombre = "Usuario ñ " + id + "-" + i;
+                repositorio.save(new Usuario(id, nombre, "u" + id + "@ejemplo.com"));
+                referencia.put(id, nombre);
+            }
+        }
+
+        assertEquals(referencia.size(), repositorio.size());
+        assertEquals(referencia.size(), repositorio.findAll().size());
+        for (long id = 0; id < 5_000; id++) {
+            String esperado = referencia.get(id);
+            assertEquals(esperado, repositorio.findById(id).map(Usuario::getNombre).orElse(null));
+            assertEquals(esperado == null ? null : id,
+                repositorio.findByEmail("u" + id + "@ejemplo.com").map(Usuario::getId).orElse(null));
+        }
+        assertEquals((long) referencia.size(), repositorio.idsActivos().cardinalidad());
+    }
+
+    @Test
+    void deberiaPaginarYRecorrerComoLosDemasRepositorios() {
+        for (long id : new long[] {50, 3, 41, 7, 12, 99, 1, 23}) {
+            repositorio.save(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+
+        List<Long> primera = idsDe(repositorio.findPage(null, 3));
+        List<Long> segunda = idsDe(repositorio.findPage(7L, 3));
+
+        assertEquals(List.of(1L, 3L, 7L), primera);
+        assertEquals(List.of(12L, 23L, 41L), segunda);
+        try (Stream<Usuario> usuarios = repositorio.streamAll(2)) {
+            assertEquals(236L, usuarios.mapToLong(Usuario::getId).sum());
+        }
+    }
+
+    @Test
+    void deberiaOcuparMenosBytesPorUsuarioQueElRepositorioEnElHeap() {
+        // Arrange
+        int usuarios = 200_000;
+        long antes = heapUsado();
+        UsuarioRepositoryEnMemoria enHeap = new UsuarioRepositoryEnMemoria(usuarios);
+        llenar(enHeap, usuarios);
+        long bytesHeap = heapUsado() - antes;
+
+        antes = heapUsado();
+        UsuarioRepositoryFueraDeHeap fueraDeHeap = new UsuarioRepositoryFueraDeHeap(usuarios);
+        llenar(fueraDeHeap, usuarios);
+        long bytesHeapFuera = heapUsado() - antes;
+
+        // Act
+        double porUsuarioHeap = bytesHeap / (double) usuarios;
+        double porUsuarioFuera = fueraDeHeap.getBytesPorUsuario();
+
+        // Assert
+        assertEquals(usuarios, enHeap.size());
+        assertEquals(usuarios, fueraDeHeap.size());
+        assertTrue(porUsuarioFuera * 2 < porUsuarioHeap,
+            () -> "fuera del heap " + porUsuarioFuera + " frente a " + porUsuarioHeap);
+        assertTrue(bytesHeapFuera < usuarios, "el repositorio fuera del heap no debería retener objetos por usuario");
+    }
+
+    private static void llenar(UsuarioRepository repositorio, int usuarios) {
+        for (long id = 1; id <= usuarios; id++) {
+            repositorio.save(new Usuario(id, "Usuario " + id, "usuario" + id + "@ejemplo.com"));
+        }
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<Long> idsDe(List<Usuario> usuarios) {
+        return usuarios.stream().map(Usuario::getId).collect(Collectors.toList());
+    }
+}
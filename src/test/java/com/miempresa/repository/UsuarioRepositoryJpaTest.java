@@ -0,0 +1,128 @@
+package com.miempresa.repository;
+
+import com.miempresa.model.Usuario;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Sin transacción envolvente: cada llamada al repositorio hace su propio commit,
+// igual que en producción, para que la comparación de rendimiento sea honesta
+@DataJpaTest
+@Import({UsuarioRepositoryJpa.class, GeneradorIds.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UsuarioRepositoryJpaTest {
+
+    @Autowired
+    private UsuarioRepositoryJpa usuarioRepository;
+
+    @Test
+    void deberiaGuardarYRecuperarConIdGenerado() {
+        // Act
+        Usuario guardado = usuarioRepository.save(new Usuario(null, "Elena Martínez", "elena@ejemplo.com"));
+
+        // Assert
+        assertNotNull(guardado.getId());
+        assertTrue(usuarioRepository.existsById(guardado.getId()));
+        assertEquals("Elena Martínez", usuarioRepository.findById(guardado.getId()).get().getNombre());
+
+        usuarioRepository.delete(guardado.getId());
+        assertFalse(usuarioRepository.existsById(guardado.getId()));
+    }
+
+    @Test
+    void deberiaActualizarUnUsuarioExistente() {
+        Usuario guardado = usuarioRepository.save(new Usuario(null, "Lucía Gómez", "lucia@ejemplo.com"));
+
+        guardado.setActivo(false);
+        usuarioRepository.save(guardado);
+
+        assertFalse(usuarioRepository.findById(guardado.getId()).get().isActivo());
+    }
+
+    @Test
+    void elIndiceUnicoDeberiaRechazarUnEmailRepetido() {
+        // Arrange: sin pasar por existsByEmail, como dos altas concurrentes
+        usuarioRepository.save(new Usuario(null, "Mario Ros", "mario@ejemplo.com"));
+
+        // Act & Assert
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> usuarioRepository.save(new Usuario(null, "Mario Bis", "MARIO@ejemplo.com")));
+        assertEquals("Email ya registrado", error.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> usuarioRepository.saveAll(List.of(
+            new Usuario(null, "Nuevo", "nuevo@ejemplo.com"), new Usuario(null, "Mario Tris", "mario@ejemplo.com"))));
+        // El lote se deshace entero
+        assertFalse(usuarioRepository.existsByEmail("nuevo@ejemplo.com"));
+    }
+
+    @Test
+    void saveAllDeberiaAsignarIdsUnicosATodoElLote() {
+        // Arrange: más filas que el tamaño de lote para forzar varios volcados
+        List<Usuario> lote = crearLote("lote", usuarioRepository.getTamanoLote() * 3 + 7);
+
+        // Act
+        List<Usuario> guardados = usuarioRepository.saveAll(lote);
+
+        // Assert
+        Set<Long> ids = new HashSet<>();
+        for (Usuario u : guardados) {
+            assertNotNull(u.getId());
+            ids.add(u.getId());
+        }
+        assertEquals(lote.size(), ids.size());
+        for (Long id : ids) {
+            assertTrue(usuarioRepository.existsById(id));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void comparativaDeRendimientoSaveFrenteASaveAll() {
+        int filas = 5_000;
+
+        // Calentamiento para no medir la carga de clases de Hibernate
+        usuarioRepository.saveAll(crearLote("calentamiento", 500));
+        for (Usuario u : crearLote("calentamiento-individual", 200)) {
+            usuarioRepository.save(u);
+        }
+
+        // Una transacción y un insert por fila
+        List<Usuario> individuales = crearLote("individual", filas);
+        long inicio = System.nanoTime();
+        for (Usuario u : individuales) {
+            usuarioRepository.save(u);
+        }
+        long nanosIndividual = System.nanoTime() - inicio;
+
+        // Una transacción con inserts en lotes JDBC
+        List<Usuario> agrupados = crearLote("agrupado", filas);
+        inicio = System.nanoTime();
+        usuarioRepository.saveAll(agrupados);
+        long nanosAgrupado = System.nanoTime() - inicio;
+
+        System.out.printf("save():    %,d filas/s%n", filas * 1_000_000_000L / nanosIndividual);
+        System.out.printf("saveAll(): %,d filas/s (lote de %d)%n",
+            filas * 1_000_000_000L / nanosAgrupado, usuarioRepository.getTamanoLote());
+
+        assertTrue(agrupados.stream().allMatch(u -> u.getId() != null));
+        assertTrue(individuales.stream().allMatch(u -> u.getId() != null));
+    }
+
+    private static List<Usuario> crearLote(String prefijo, int cantidad) {
+        List<Usuario> usuarios = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            usuarios.add(new Usuario(null, prefijo + " " + i, prefijo + i + "@ejemplo.com"));
+        }
+        return usuarios;
+    }
+}
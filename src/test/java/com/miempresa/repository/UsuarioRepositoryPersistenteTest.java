@@ -0,0 +1,266 @@
+package com.miempresa.repository;
+
+import com.miempresa.auditoria.ModoDurabilidad;
+import com.miempresa.model.Usuario;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsuarioRepositoryPersistenteTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void deberiaRecuperarLosCambiosAlReabrir() {
+        // Arrange
+        Long idElena;
+        Long idMario;
+        try (UsuarioRepositoryPersistente repositorio = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            idElena = repositorio.save(new Usuario(null, "Elena Martínez", "elena@ejemplo.com")).getId();
+            idMario = repositorio.save(new Usuario(null, "Mario Ros", "mario@ejemplo.com")).getId();
+            Usuario elena = repositorio.findById(idElena).get();
+            elena.setActivo(false);
+            repositorio.save(elena);
+            repositorio.delete(idMario);
+        }
+
+        // Act
+        try (UsuarioRepositoryPersistente reabierto = abrir(ModoDurabilidad.POR_REGISTRO)) {
+
+            // Assert
+            Usuario elena = reabierto.findById(idElena).get();
+            assertEquals("Elena Martínez", elena.getNombre());
+            assertFalse(elena.isActivo());
+            assertFalse(reabierto.existsById(idMario));
+            assertEquals(4, reabierto.getSecuencia());
+            assertEquals(4, reabierto.getRegistrosReproducidos());
+            assertTrue(reabierto.findByEmail("ELENA@ejemplo.com").isPresent());
+        }
+    }
+
+    @Test
+    void lasLecturasDeberianDevolverCopias() {
+        try (UsuarioRepositoryPersistente repositorio = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            Usuario usuario = repositorio.save(new Usuario(null, "Ana", "ana@ejemplo.com"));
+
+            // Cambiar el objeto sin save no cambia lo guardado ni el registro
+            usuario.setNombre("Otra");
+            repositorio.findById(usuario.getId()).get().setActivo(false);
+
+            Usuario leido = repositorio.findById(usuario.getId()).get();
+            assertEquals("Ana", leido.getNombre());
+            assertTrue(leido.isActivo());
+        }
+    }
+
+    @Test
+    void trasUnaInstantaneaSoloDeberiaReproducirLosCambiosPosteriores() throws IOException {
+        // Arrange
+        try (UsuarioRepositoryPersistente repositorio = abrir(ModoDurabilidad.POR_LOTE)) {
+            for (int i = 0; i < 100; i++) {
+                repositorio.save(new Usuario(null, "Usuario " + i, "usuario" + i + "@ejemplo.com"));
+            }
+            repositorio.tomarInstantanea();
+            for (int i = 100; i < 110; i++) {
+                repositorio.save(new Usuario(null, "Usuario " + i, "usuario" + i + "@ejemplo.com"));
+            }
+        }
+
+        // Act
+        try (UsuarioRepositoryPersistente reabierto = abrir(ModoDurabilidad.POR_LOTE)) {
+
+            // Assert
+            assertEquals(110, reabierto.findAll().size());
+            assertEquals(10, reabierto.getRegistrosReproducidos());
+            assertEquals(100, reabierto.getSecuenciaInstantanea());
+        }
+        // La instantánea deja obsoleto el registro que cubre; el de 111 es el de la
+        // segunda apertura, vacío
+        assertEquals(List.of("cambios-00000000000000000101.wal", "cambios-00000000000000000111.wal",
+            "instantanea-00000000000000000100.snap"), nombres());
+    }
+
+    @Test
+    void deberiaTomarInstantaneasEnSegundoPlano() throws InterruptedException {
+        try (UsuarioRepositoryPersistente repositorio = new UsuarioRepositoryPersistente(directorio,
+                ModoDurabilidad.PERIODICO, 50, UsuarioRepositoryEnMemoria::new)) {
+            for (int i = 0; i < 120; i++) {
+                repositorio.save(new Usuario(null, "Usuario " + i, "usuario" + i + "@ejemplo.com"));
+            }
+            for (int intentos = 0; repositorio.getInstantaneas() == 0 && intentos < 100; intentos++) {
+                Thread.sleep(20);
+            }
+
+            assertTrue(repositorio.getInstantaneas() > 0);
+            assertEquals(0, repositorio.getFallosInstantanea());
+        }
+        try (UsuarioRepositoryPersistente reabierto = abrir(ModoDurabilidad.PERIODICO)) {
+            assertEquals(120, reabierto.findAll().size());
+            assertTrue(reabierto.getRegistrosReproducidos() < 120);
+        }
+    }
+
+    @Test
+    void deberiaIgnorarUnRegistroCortadoAlFinal() throws IOException {
+        // Arrange: una escritura interrumpida deja medio registro al final del fichero
+        try (UsuarioRepositoryPersistente repositorio = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            repositorio.save(new Usuario(null, "Elena", "elena@ejemplo.com"));
+            repositorio.save(new Usuario(null, "Mario", "mario@ejemplo.com"));
+        }
+        Path diario = directorio.resolve("cambios-00000000000000000001.wal");
+        long completo = Files.size(diario);
+        try (FileChannel canal = FileChannel.open(diario, StandardOpenOption.WRITE)) {
+            canal.truncate(completo - 5);
+        }
+
+        // Act
+        try (UsuarioRepositoryPersistente reabierto = abrir(ModoDurabilidad.POR_REGISTRO)) {
+
+            // Assert
+            assertEquals(1, reabierto.findAll().size());
+            assertEquals(1, reabierto.getSecuencia());
+            assertTrue(reabierto.findByEmail("elena@ejemplo.com").isPresent());
+            // El siguiente cambio sigue la numeración sin hueco
+            reabierto.save(new Usuario(null, "Luis", "luis@ejemplo.com"));
+            assertEquals(2, reabierto.getSecuencia());
+        }
+        try (UsuarioRepositoryPersistente otraVez = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            assertEquals(2, otraVez.findAll().size());
+        }
+    }
+
+    @Test
+    void losIdsNuevosDeberianSeguirDespuesDeReabrir() {
+        Long ultimo;
+        try (UsuarioRepositoryPersistente repositorio = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            repositorio.save(new Usuario(null, "Ana", "ana@ejemplo.com"));
+            ultimo = repositorio.save(new Usuario(null, "Luis", "luis@ejemplo.com")).getId();
+        }
+
+        try (UsuarioRepositoryPersistente reabierto = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            Long nuevo = reabierto.save(new Usuario(null, "Sara", "sara@ejemplo.com")).getId();
+
+            assertTrue(nuevo > ultimo);
+        }
+    }
+
+    @Test
+    void unEmailRepetidoNoDeberiaLlegarAlRegistroDeCambios() {
+        // Arrange
+        Usuario repetido = new Usuario(null, "Otra Ana", "ANA@ejemplo.com");
+        try (UsuarioRepositoryPersistente repositorio = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            repositorio.save(new Usuario(null, "Ana", "ana@ejemplo.com"));
+
+            // Act
+            assertThrows(IllegalArgumentException.class, () -> repositorio.save(repetido));
+
+            // Assert: ni se anota ni deja el repositorio averiado
+            assertEquals(1, repositorio.getSecuencia());
+            assertNull(repetido.getId());
+            repositorio.save(new Usuario(null, "Luis", "luis@ejemplo.com"));
+        }
+        try (UsuarioRepositoryPersistente reabierto = abrir(ModoDurabilidad.POR_REGISTRO)) {
+            assertEquals(2, reabierto.getRegistrosReproducidos());
+            assertEquals("Ana", reabierto.findByEmail("ana@ejemplo.com").orElseThrow().getNombre());
+        }
+    }
+
+    @Test
+    void elCommitEnGrupoDeberiaCompartirSincronizaciones() throws Exception {
+        // Arrange
+        int hilos = 8;
+        int porHilo = 200;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try (UsuarioRepositoryPersistente repositorio = abrir(ModoDurabilidad.POR_LOTE)) {
+
+            // Act
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                int hilo = h;
+                tareas.add(ejecutor.submit(() -> {
+                    for (int i = 0; i < porHilo; i++) {
+                        repositorio.save(new Usuario(null, "U", "u" + hilo + "-" + i + "@ejemplo.com"));
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+
+            // Assert
+            assertEquals(hilos * porHilo, repositorio.getSecuencia());
+            assertTrue(repositorio.getSincronizaciones() <= hilos * porHilo);
+        } finally {
+            ejecutor.shutdown();
+        }
+        try (UsuarioRepositoryPersistente reabierto = abrir(ModoDurabilidad.POR_LOTE)) {
+            assertEquals(hilos * porHilo, reabierto.findAll().size());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void elTiempoDeRecuperacionDeberiaCrecerConLosUsuariosYNoConLaHistoria() {
+        // Mide el arranque desde una instantánea más una cola de cambios del 1%
+        double[] microsPorUsuario = new double[3];
+        int[] tamanos = {50_000, 100_000, 200_000};
+        for (int t = 0; t < tamanos.length; t++) {
+            Path subdirectorio = directorio.resolve("n" + tamanos[t]);
+            int n = tamanos[t];
+            try (UsuarioRepositoryPersistente repositorio = new UsuarioRepositoryPersistente(subdirectorio,
+                    ModoDurabilidad.PERIODICO, Long.MAX_VALUE, UsuarioRepositoryEnMemoria::new)) {
+                List<Usuario> lote = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    lote.add(new Usuario(null, "Usuario " + i, "usuario" + i + "@ejemplo.com"));
+                }
+                repositorio.saveAll(lote);
+                repositorio.tomarInstantanea();
+                for (int i = 0; i < n / 100; i++) {
+                    Usuario usuario = lote.get(i);
+                    usuario.setActivo(false);
+                    repositorio.save(usuario);
+                }
+            }
+
+            try (UsuarioRepositoryPersistente reabierto = new UsuarioRepositoryPersistente(subdirectorio,
+                    ModoDurabilidad.PERIODICO, Long.MAX_VALUE, UsuarioRepositoryEnMemoria::new)) {
+                assertEquals(n, reabierto.findAll().size());
+                assertEquals(n / 100, reabierto.countInactivos());
+                assertEquals(n / 100, reabierto.getRegistrosReproducidos());
+                long micros = reabierto.getTiempoRecuperacion().toNanos() / 1000;
+                microsPorUsuario[t] = micros / (double) n;
+                System.out.printf("Recuperación de %,d usuarios: %,d ms (%.2f µs/usuario, ~%.1f s para 10M)%n",
+                    n, micros / 1000, microsPorUsuario[t], microsPorUsuario[t] * 10);
+            }
+        }
+
+        // Lineal en el número de usuarios (con margen para el calentamiento de la JIT)
+        assertTrue(microsPorUsuario[2] < microsPorUsuario[0] * 3,
+            () -> "µs/usuario: " + microsPorUsuario[0] + " con 50k, " + microsPorUsuario[2] + " con 200k");
+    }
+
+    private UsuarioRepositoryPersistente abrir(ModoDurabilidad modo) {
+        return new UsuarioRepositoryPersistente(directorio, modo);
+    }
+
+    private List<String> nombres() throws IOException {
+        try (Stream<Path> rutas = Files.list(directorio)) {
+            return rutas.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportacionNdjsonTest {
+
+    @Test
+    void deberiaEscribirUnObjetoJsonPorLinea() throws IOException {
+        // Arrange
+        Usuario elena = new Usuario(1L, "Elena Martínez", "elena@ejemplo.com");
+        Usuario sinNombre = new Usuario(2L, null, "x@ejemplo.com");
+        sinNombre.setActivo(false);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        // Act
+        long escritos = ExportacionNdjson.escribir(Stream.of(elena, sinNombre), salida);
+
+        // Assert
+        assertEquals(2, escritos);
+        assertEquals("{\"id\":1,\"nombre\":\"Elena Martínez\",\"email\":\"elena@ejemplo.com\",\"activo\":true}\n"
+                + "{\"id\":2,\"nombre\":null,\"email\":\"x@ejemplo.com\",\"activo\":false}\n",
+            salida.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void deberiaEscaparComillasBarrasYSaltosDeLinea() throws IOException {
+        Usuario raro = new Usuario(3L, "Ana \"la\" \\ de\nMadrid\u0001\u2028", "ana@ejemplo.com");
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        ExportacionNdjson.escribir(Stream.of(raro), salida);
+
+        String linea = salida.toString(StandardCharsets.UTF_8);
+        assertTrue(linea.contains("\"nombre\":\"Ana \\\"la\\\" \\\\ de\\nMadrid\\u0001\\u2028\""), linea);
+        assertEquals(1, linea.split("\n").length);
+    }
+
+    @Test
+    void deberiaVolcarLaSalidaPocoAPocoSinAcumularUsuarios() throws IOException {
+        // Arrange: los usuarios se generan a medida que se piden
+        int total = 200_000;
+        Stream<Usuario> usuarios = LongStream.rangeClosed(1, total)
+            .mapToObj(id -> new Usuario(id, "Usuario " + id, "usuario" + id + "@ejemplo.com"));
+        SalidaContada salida = new SalidaContada();
+
+        // Act
+        long escritos = ExportacionNdjson.escribir(usuarios, salida);
+
+        // Assert: un volcado cada USUARIOS_POR_VOLCADO usuarios, más el final
+        assertEquals(total, escritos);
+        assertEquals(total, salida.lineas);
+        assertTrue(salida.volcados >= total / ExportacionNdjson.USUARIOS_POR_VOLCADO);
+        // El primer volcado llega mucho antes del final
+        assertTrue(salida.bytesEnPrimerVolcado > 0 && salida.bytesEnPrimerVolcado < salida.bytes / 100);
+    }
+
+    @Test
+    void conGzipSincronizadoCadaVolcadoDeberiaPoderDescomprimirse() throws IOException {
+        // Arrange
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes, 8192, true);
+        List<Usuario> usuarios = LongStream.rangeClosed(1, 2500)
+            .mapToObj(id -> new Usuario(id, "U" + id, "u" + id + "@ejemplo.com")).toList();
+
+        // Act: sin cerrar el gzip, lo volcado ya se puede leer
+        ExportacionNdjson.escribir(usuarios.stream(), gzip);
+        byte[] parcial = bytes.toByteArray();
+        gzip.close();
+
+        // Assert
+        assertEquals(2500, descomprimir(parcial).lines().count());
+        assertEquals(2500, descomprimir(bytes.toByteArray()).lines().count());
+    }
+
+    // Lee todo lo que se pueda de un gzip, aunque le falte el final
+    private static String descomprimir(byte[] gzip) throws IOException {
+        ByteArrayOutputStream texto = new ByteArrayOutputStream();
+        try (GZIPInputStream entrada = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            byte[] buffer = new byte[8192];
+            for (int leidos; (leidos = entrada.read(buffer)) > 0; ) {
+                texto.write(buffer, 0, leidos);
+            }
+        } catch (EOFException e) {
+            // gzip sin terminar: lo leído hasta aquí es lo volcado
+        }
+        return texto.toString(StandardCharsets.UTF_8);
+    }
+
+    // Cuenta bytes, líneas y volcados sin guardar lo escrito
+    private static final class SalidaContada extends OutputStream {
+        long bytes;
+        long lineas;
+        long volcados;
+        long bytesEnPrimerVolcado;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lineas++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int desde, int longitud) {
+            for (int i = desde; i < desde + longitud; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (volcados++ == 0) {
+                bytesEnPrimerVolcado = bytes;
+            }
+        }
+    }
+}
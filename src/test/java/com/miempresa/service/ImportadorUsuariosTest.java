@@ -0,0 +1,182 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.UsuarioRepositoryEnMemoria;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportadorUsuariosTest {
+
+    @TempDir
+    Path directorio;
+
+    private final UsuarioRepositoryEnMemoria repositorio = new UsuarioRepositoryEnMemoria();
+    private final NotificacionesContadas notificaciones = new NotificacionesContadas();
+    private final AtomicInteger operacionesAuditadas = new AtomicInteger();
+    private final UsuarioService usuarioService = new UsuarioService(repositorio, notificaciones,
+        (tipo, detalles) -> operacionesAuditadas.incrementAndGet());
+
+    @Test
+    void deberiaImportarUnCsvYRechazarLasFilasInvalidas() throws IOException {
+        // Arrange: columnas en otro orden, comillas y una fila repetida
+        String csv = """
+            email,nombre,activo
+            ana@ejemplo.com,Ana,true
+            luis@ejemplo.com,"Ruiz, Luis",false
+
+            no-es-un-email,Sin email,true
+            ana@ejemplo.com,Ana otra vez,true
+            "mal cerrada@ejemplo.com,X,true
+            eva@ejemplo.com,Eva,quizas
+            """;
+        StringWriter rechazos = new StringWriter();
+        ImportadorUsuarios importador = new ImportadorUsuarios(usuarioService, ForkJoinPool.commonPool(), 2);
+
+        // Act
+        ProgresoImportacion resultado = importador.importar(new BufferedReader(new StringReader(csv)),
+            FormatoImportacion.CSV, rechazos, progreso -> { });
+
+        // Assert
+        assertEquals(6, resultado.filas());
+        assertEquals(2, resultado.importadas());
+        assertEquals(4, resultado.rechazadas());
+        Usuario luis = repositorio.findByEmail("luis@ejemplo.com").orElseThrow();
+        assertEquals("Ruiz, Luis", luis.getNombre());
+        assertFalse(luis.isActivo());
+        // Los números de línea cuentan la cabecera y las líneas vacías
+        assertEquals(List.of(
+            "linea,motivo,fila",
+            "5,\"Email inválido\",\"no-es-un-email,Sin email,true\"",
+            "6,\"Email ya registrado\",\"ana@ejemplo.com,Ana otra vez,true\"",
+            "7,\"Comillas sin cerrar\",\"\"\"mal cerrada@ejemplo.com,X,true\"",
+            "8,\"Valor de activo no válido: quizas\",\"eva@ejemplo.com,Eva,quizas\""),
+            rechazos.toString().lines().toList());
+    }
+
+    @Test
+    void deberiaImportarLaExportacionNdjsonConNuevosIds() throws IOException {
+        // Arrange
+        Usuario elena = new Usuario(100L, "Elena \"Nena\" Martínez", "elena@ejemplo.com");
+        Usuario baja = new Usuario(200L, null, "baja@ejemplo.com");
+        baja.setActivo(false);
+        Path fichero = directorio.resolve("usuarios.ndjson.gz");
+        try (OutputStream salida = new GZIPOutputStream(Files.newOutputStream(fichero))) {
+            ExportacionNdjson.escribir(List.of(elena, baja).stream(), salida);
+            salida.write("{\"email\":\"roto@ejemplo.com\"\n".getBytes(StandardCharsets.UTF_8));
+        }
+        Path rechazos = directorio.resolve("rechazos.csv");
+
+        // Act
+        ProgresoImportacion resultado = new ImportadorUsuarios(usuarioService)
+            .importar(fichero, rechazos, progreso -> { });
+
+        // Assert
+        assertEquals(2, resultado.importadas());
+        Usuario importada = repositorio.findByEmail("elena@ejemplo.com").orElseThrow();
+        assertEquals("Elena \"Nena\" Martínez", importada.getNombre());
+        assertNotEquals(Long.valueOf(100L), importada.getId());
+        assertFalse(repositorio.findByEmail("baja@ejemplo.com").orElseThrow().isActivo());
+        List<String> lineasRechazos = Files.readAllLines(rechazos);
+        assertEquals(2, lineasRechazos.size());
+        assertTrue(lineasRechazos.get(1).startsWith("3,\"JSON no válido"), lineasRechazos.get(1));
+    }
+
+    @Test
+    void deberiaAgruparNotificacionesYAuditoriaPorTrozo() throws IOException {
+        // Arrange
+        Path fichero = escribirCsv(2_500);
+
+        // Act
+        List<ProgresoImportacion> avances = new ArrayList<>();
+        ProgresoImportacion resultado = new ImportadorUsuarios(usuarioService, ForkJoinPool.commonPool(), 1_000)
+            .importar(fichero, directorio.resolve("rechazos.csv"), avances::add);
+
+        // Assert: tres trozos, cada uno con su envío agrupado y su progreso
+        assertEquals(2_500, resultado.importadas());
+        assertEquals(3, notificaciones.lotes);
+        assertEquals(2_500, notificaciones.usuarios);
+        assertEquals(2_500, operacionesAuditadas.get());
+        assertEquals(3, avances.size());
+        assertEquals(1_000, avances.get(0).filas());
+        assertEquals(2_500, avances.get(2).filas());
+    }
+
+    @Test
+    void unaCabeceraSinEmailDeberiaRechazarseAntesDeImportar() {
+        ImportadorUsuarios importador = new ImportadorUsuarios(usuarioService);
+
+        assertThrows(IllegalArgumentException.class, () -> importador.importar(
+            new BufferedReader(new StringReader("nombre,correo\nAna,ana@ejemplo.com\n")),
+            FormatoImportacion.CSV, new StringWriter(), progreso -> { }));
+        assertTrue(repositorio.findAll().isEmpty());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void rendimientoConUnMillonDeFilas() throws IOException {
+        // Arrange
+        int total = 1_000_000;
+        Path fichero = escribirCsv(total);
+
+        // Act
+        ProgresoImportacion resultado = new ImportadorUsuarios(usuarioService)
+            .importar(fichero, directorio.resolve("rechazos.csv"), progreso -> { });
+
+        // Assert
+        assertEquals(total, resultado.importadas());
+        assertEquals(0, resultado.rechazadas());
+        assertEquals(total, repositorio.countActivos());
+        System.out.printf("Importación de %,d filas con %d hilos: %,d ms (%,.0f filas/s)%n", total,
+            ForkJoinPool.commonPool().getParallelism(), resultado.transcurrido().toMillis(),
+            resultado.filasPorSegundo());
+    }
+
+    private Path escribirCsv(int filas) throws IOException {
+        Path fichero = directorio.resolve("usuarios.csv");
+        try (BufferedWriter salida = Files.newBufferedWriter(fichero)) {
+            salida.write("nombre,email\n");
+            for (int i = 1; i <= filas; i++) {
+                salida.write("Usuario " + i + ",usuario" + i + "@ejemplo.com\n");
+            }
+        }
+        return fichero;
+    }
+
+    private static final class NotificacionesContadas implements NotificacionService {
+        int lotes;
+        int usuarios;
+
+        @Override
+        public void enviarNotificacionRegistro(Usuario usuario) {
+            usuarios++;
+        }
+
+        @Override
+        public void enviarNotificacionDesactivacion(Usuario usuario) {
+        }
+
+        @Override
+        public void enviarNotificacionesRegistro(List<Usuario> lote) {
+            lotes++;
+            usuarios += lote.size();
+        }
+    }
+}
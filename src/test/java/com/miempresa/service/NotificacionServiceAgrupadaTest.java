@@ -0,0 +1,96 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.NotificacionServiceAgrupada.Agrupacion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificacionServiceAgrupadaTest {
+
+    @Mock
+    private NotificacionService backend;
+
+    @Test
+    void deberiaEnviarUnLotePorDominioAlAlcanzarElTamanoMaximo() {
+        // Arrange: ventana larga para que solo actúe el tamaño
+        try (NotificacionServiceAgrupada servicio = new NotificacionServiceAgrupada(
+                backend, Agrupacion.POR_DOMINIO, 3, Duration.ofMinutes(1))) {
+
+            // Act
+            servicio.enviarNotificacionRegistro(new Usuario(1L, "Ana", "ana@ejemplo.com"));
+            servicio.enviarNotificacionRegistro(new Usuario(2L, "Mario", "mario@otro.com"));
+            servicio.enviarNotificacionRegistro(new Usuario(3L, "Lucía", "lucia@EJEMPLO.com"));
+            verifyNoInteractions(backend);
+            servicio.enviarNotificacionRegistro(new Usuario(4L, "Pedro", "pedro@ejemplo.com"));
+
+            // Assert: un único lote con los tres de ejemplo.com
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<Usuario>> lote = ArgumentCaptor.forClass(List.class);
+            verify(backend).enviarNotificacionesRegistro(lote.capture());
+            assertEquals(List.of(1L, 3L, 4L), lote.getValue().stream().map(Usuario::getId).toList());
+            assertEquals(1, servicio.getPendientes());
+            assertEquals(1, servicio.getLotesEnviados());
+            assertEquals(3, servicio.getNotificacionesEnviadas());
+        }
+        // Al cerrar se entrega el lote pendiente de otro.com
+        verify(backend, times(2)).enviarNotificacionesRegistro(anyList());
+        verify(backend, never()).enviarNotificacionRegistro(any());
+    }
+
+    @Test
+    void deberiaEnviarElLoteAlVencerLaVentana() {
+        try (NotificacionServiceAgrupada servicio = new NotificacionServiceAgrupada(
+                backend, Agrupacion.POR_DOMINIO, 100, Duration.ofMillis(50))) {
+
+            servicio.enviarNotificacionDesactivacion(new Usuario(1L, "Ana", "ana@ejemplo.com"));
+            servicio.enviarNotificacionDesactivacion(new Usuario(2L, "Lucía", "lucia@ejemplo.com"));
+
+            // El temporizador entrega el lote sin que nadie llame a vaciar()
+            verify(backend, timeout(2_000)).enviarNotificacionesDesactivacion(argThat(l -> l.size() == 2));
+            assertEquals(0, servicio.getPendientes());
+        }
+    }
+
+    @Test
+    void noDeberiaMezclarRegistrosYDesactivaciones() {
+        try (NotificacionServiceAgrupada servicio = new NotificacionServiceAgrupada(
+                backend, Agrupacion.POR_DESTINATARIO, 100, Duration.ofMinutes(1))) {
+            Usuario ana = new Usuario(1L, "Ana", "ana@ejemplo.com");
+
+            servicio.enviarNotificacionRegistro(ana);
+            servicio.enviarNotificacionDesactivacion(ana);
+            servicio.enviarNotificacionesRegistro(List.of(new Usuario(2L, "Mario", "mario@ejemplo.com")));
+            servicio.vaciar();
+
+            // Por destinatario: ana y mario van en lotes distintos aunque compartan dominio
+            verify(backend, times(2)).enviarNotificacionesRegistro(argThat(l -> l.size() == 1));
+            verify(backend).enviarNotificacionesDesactivacion(List.of(ana));
+        }
+    }
+
+    @Test
+    void unFalloDelBackendSeCuentaYNoSePropaga() {
+        doThrow(new RuntimeException("Límite de envío superado"))
+            .when(backend).enviarNotificacionesRegistro(anyList());
+        try (NotificacionServiceAgrupada servicio = new NotificacionServiceAgrupada(
+                backend, Agrupacion.POR_DOMINIO, 1, Duration.ofMinutes(1))) {
+
+            assertDoesNotThrow(() ->
+                servicio.enviarNotificacionRegistro(new Usuario(1L, "Ana", "ana@ejemplo.com")));
+
+            assertEquals(1, servicio.getLotesFallidos());
+            assertEquals(0, servicio.getLotesEnviados());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.NotificacionServiceAsincrona.PoliticaSaturacion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificacionServiceAsincronaTest {
+
+    @Mock
+    private NotificacionService backend;
+
+    private final Usuario usuario = new Usuario(1L, "Elena Martínez", "elena@ejemplo.com");
+
+    @Test
+    void deberiaVolverSinEsperarAlBackend() throws Exception {
+        // Arrange: el backend tarda hasta que lo liberamos
+        CountDownLatch liberar = new CountDownLatch(1);
+        doAnswer(invocacion -> {
+            liberar.await();
+            return null;
+        }).when(backend).enviarNotificacionRegistro(any());
+        NotificacionServiceAsincrona servicio =
+            new NotificacionServiceAsincrona(backend, 10, 2, PoliticaSaturacion.BLOQUEAR);
+
+        // Act
+        long inicio = System.nanoTime();
+        servicio.enviarNotificacionRegistro(usuario);
+        long nanos = System.nanoTime() - inicio;
+
+        // Assert
+        assertTrue(nanos < TimeUnit.SECONDS.toNanos(1), "El llamador no debería esperar al backend");
+        liberar.countDown();
+        assertTrue(servicio.cerrar(5, TimeUnit.SECONDS));
+        verify(backend).enviarNotificacionRegistro(usuario);
+        assertEquals(1, servicio.getEnviadas());
+    }
+
+    @Test
+    void conPoliticaDescartarDeberiaContarLasNotificacionesPerdidas() throws Exception {
+        // Arrange: un solo consumidor bloqueado y una cola de 2 huecos
+        CountDownLatch ocupado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        doAnswer(invocacion -> {
+            ocupado.countDown();
+            liberar.await();
+            return null;
+        }).when(backend).enviarNotificacionRegistro(any());
+        NotificacionServiceAsincrona servicio =
+            new NotificacionServiceAsincrona(backend, 2, 1, PoliticaSaturacion.DESCARTAR);
+        servicio.enviarNotificacionRegistro(usuario);
+        assertTrue(ocupado.await(5, TimeUnit.SECONDS));
+
+        // Act: 2 caben en la cola, 3 se descartan
+        for (int i = 0; i < 5; i++) {
+            servicio.enviarNotificacionRegistro(usuario);
+        }
+
+        // Assert
+        assertEquals(2, servicio.getProfundidadCola());
+        assertEquals(3, servicio.getDescartadas());
+        liberar.countDown();
+        assertTrue(servicio.cerrar(5, TimeUnit.SECONDS));
+        verify(backend, times(3)).enviarNotificacionRegistro(usuario);
+        assertEquals(2, servicio.getProfundidadMaxima());
+    }
+
+    @Test
+    void conPoliticaEjecutarEnLlamadorElLlamadorHaceElEnvio() throws Exception {
+        CountDownLatch ocupado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Thread llamador = Thread.currentThread();
+        doAnswer(invocacion -> {
+            if (Thread.currentThread() != llamador) {
+                ocupado.countDown();
+                liberar.await();
+            }
+            return null;
+        }).when(backend).enviarNotificacionDesactivacion(any());
+        NotificacionServiceAsincrona servicio =
+            new NotificacionServiceAsincrona(backend, 1, 1, PoliticaSaturacion.EJECUTAR_EN_LLAMADOR);
+        servicio.enviarNotificacionDesactivacion(usuario);
+        assertTrue(ocupado.await(5, TimeUnit.SECONDS));
+
+        // Act: la primera cabe en la cola, la segunda la ejecuta el llamador
+        servicio.enviarNotificacionDesactivacion(usuario);
+        servicio.enviarNotificacionDesactivacion(usuario);
+
+        // Assert
+        assertEquals(1, servicio.getEjecutadasEnLlamador());
+        liberar.countDown();
+        assertTrue(servicio.cerrar(5, TimeUnit.SECONDS));
+        verify(backend, times(3)).enviarNotificacionDesactivacion(usuario);
+    }
+
+    @Test
+    void unFalloDelBackendNoDeberiaLlegarAlLlamador() throws Exception {
+        doThrow(new RuntimeException("Servidor de correo caído"))
+            .when(backend).enviarNotificacionRegistro(any());
+        NotificacionServiceAsincrona servicio =
+            new NotificacionServiceAsincrona(backend, 10, 1, PoliticaSaturacion.BLOQUEAR);
+
+        assertDoesNotThrow(() -> servicio.enviarNotificacionRegistro(usuario));
+
+        assertTrue(servicio.cerrar(5, TimeUnit.SECONDS));
+        assertEquals(1, servicio.getFallidas());
+        assertEquals(0, servicio.getEnviadas());
+    }
+
+    @Test
+    void noDeberiaAceptarEnviosTrasCerrar() throws Exception {
+        NotificacionServiceAsincrona servicio =
+            new NotificacionServiceAsincrona(backend, 10, 1, PoliticaSaturacion.BLOQUEAR);
+        assertTrue(servicio.cerrar(5, TimeUnit.SECONDS));
+
+        assertThrows(IllegalStateException.class, () -> servicio.enviarNotificacionRegistro(usuario));
+        verifyNoInteractions(backend);
+    }
+
+    @Test
+    void cadaEnvioConcurrenteConElCierreDeberiaEnviarseORechazarse() throws Exception {
+        for (int vuelta = 0; vuelta < 20; vuelta++) {
+            // Arrange: cola pequeña para que los productores esperen hueco durante el cierre
+            NotificacionServiceAsincrona servicio =
+                new NotificacionServiceAsincrona(backend, 2, 1, PoliticaSaturacion.BLOQUEAR);
+            ExecutorService ejecutor = Executors.newFixedThreadPool(4);
+            AtomicLong aceptados = new AtomicLong();
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < 4; h++) {
+                tareas.add(ejecutor.submit(() -> {
+                    try {
+                        while (true) {
+                            servicio.enviarNotificacionRegistro(usuario);
+                            aceptados.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        return null;
+                    }
+                }));
+            }
+
+            // Act
+            Thread.sleep(1);
+            assertTrue(servicio.cerrar(5, TimeUnit.SECONDS));
+
+            // Assert: ningún productor se queda esperando y todo lo aceptado se envía
+            for (Future<?> tarea : tareas) {
+                tarea.get(5, TimeUnit.SECONDS);
+            }
+            ejecutor.shutdown();
+            assertEquals(aceptados.get(), servicio.getEnviadas() + servicio.getFallidas());
+        }
+    }
+}
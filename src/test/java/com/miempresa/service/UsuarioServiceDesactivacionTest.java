@@ -0,0 +1,231 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.BitmapCompacto;
+import com.miempresa.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsuarioServiceDesactivacionTest {
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private NotificacionService notificacionService;
+
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private AuditoriaService auditoriaService;
+
+    @InjectMocks
+    private UsuarioService usuarioService;
+
+    private final Map<Long, Usuario> almacen = new HashMap<>();
+
+    @Test
+    void deberiaDesactivarPorTramosConEscriturasYNotificacionesAgrupadas() {
+        // Arrange
+        simularAlmacen(1, 5);
+
+        // Act
+        DesactivacionMasiva desactivacion = usuarioService.desactivarUsuarios(new long[] {1, 2, 3, 4, 5}, 2);
+        ProgresoDesactivacion progreso = desactivacion.procesarTodo();
+
+        // Assert
+        assertTrue(progreso.terminada());
+        assertEquals(5, progreso.desactivados());
+        assertTrue(almacen.values().stream().noneMatch(Usuario::isActivo));
+
+        // Verify: una lectura, un saveAll, un envío y una auditoría por tramo (2 + 2 + 1)
+        verify(usuarioRepository, times(3)).findAllById(anyList());
+        verify(usuarioRepository, times(3)).saveAll(anyList());
+        verify(usuarioRepository, never()).save(any());
+        verify(notificacionService, times(3)).enviarNotificacionesDesactivacion(anyList());
+        verify(auditoriaService, times(3)).registrarOperaciones(eq("DESACTIVAR_USUARIO"), anyList());
+    }
+
+    @Test
+    void deberiaInformarDeInactivosYNoEncontradosSinNotificarlos() {
+        // Arrange
+        simularAlmacen(1, 3);
+        almacen.get(2L).setActivo(false);
+
+        // Act
+        ProgresoDesactivacion progreso =
+            usuarioService.desactivarUsuarios(new long[] {1, 2, 3, 99}, 10).procesarTodo();
+
+        // Assert
+        assertEquals(new ProgresoDesactivacion(4, 4, 2, 1, 1), progreso);
+        verify(notificacionService).enviarNotificacionesDesactivacion(
+            argThat(usuarios -> usuarios.size() == 2 && !usuarios.contains(almacen.get(2L))));
+    }
+
+    @Test
+    void deberiaPoderReanudarseDesdeElProgresoGuardado() {
+        // Arrange: la primera ejecución se detiene tras un tramo
+        simularAlmacen(1, 6);
+        long[] ids = {1, 2, 3, 4, 5, 6};
+        DesactivacionMasiva primera = usuarioService.desactivarUsuarios(ids, 2);
+        primera.procesarTramo();
+        int posicion = primera.getProgreso().procesados();
+
+        // Act
+        ProgresoDesactivacion progreso = usuarioService.reanudarDesactivacion(ids, posicion, 2).procesarTodo();
+
+        // Assert
+        assertEquals(2, posicion);
+        assertEquals(6, progreso.procesados());
+        assertEquals(4, progreso.desactivados());
+        assertTrue(almacen.values().stream().noneMatch(Usuario::isActivo));
+        verify(usuarioRepository, times(3)).findAllById(anyList());
+    }
+
+    @Test
+    void unFalloDeNotificacionNoDeberiaDetenerLaDesactivacion() {
+        // Arrange
+        simularAlmacen(1, 4);
+        doThrow(new RuntimeException("Servidor de correo caído"))
+            .when(notificacionService).enviarNotificacionesDesactivacion(anyList());
+
+        // Act
+        ProgresoDesactivacion progreso =
+            usuarioService.desactivarUsuarios(new long[] {1, 2, 3, 4}, 2).procesarTodo();
+
+        // Assert
+        assertEquals(4, progreso.desactivados());
+        verify(auditoriaService, times(2)).registrarOperacion(eq("ERROR"), contains("Servidor de correo caído"));
+    }
+
+    @Test
+    void unFalloAlGuardarElTramoDeberiaDejarLosUsuariosActivos() {
+        // Arrange
+        simularAlmacen(1, 3);
+        when(usuarioRepository.saveAll(anyList())).thenThrow(new RuntimeException("Error de base de datos"));
+        DesactivacionMasiva desactivacion = usuarioService.desactivarUsuarios(new long[] {1, 2, 3}, 10);
+
+        // Act
+        assertThrows(RuntimeException.class, desactivacion::procesarTramo);
+
+        // Assert
+        assertTrue(almacen.values().stream().allMatch(Usuario::isActivo));
+        verify(notificacionService, never()).enviarNotificacionesDesactivacion(anyList());
+    }
+
+    @Test
+    void unFalloAlGuardarDeberiaDejarAlUsuarioActivo() {
+        // Arrange
+        Usuario usuario = new Usuario(1L, "Ana López", "ana@ejemplo.com");
+        when(usuarioRepository.findById(1L)).thenReturn(Optional.of(usuario));
+        when(usuarioRepository.save(usuario)).thenThrow(new RuntimeException("Error de base de datos"));
+
+        // Act
+        assertThrows(RuntimeException.class, () -> usuarioService.desactivarUsuario(1L));
+
+        // Assert
+        assertTrue(usuario.isActivo());
+        verify(notificacionService, never()).enviarNotificacionDesactivacion(any());
+    }
+
+    @Test
+    void deberiaProcesarseEnSegundoPlanoInformandoDelProgreso() throws Exception {
+        // Arrange
+        simularAlmacen(1, 10);
+        long[] ids = new long[10];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i + 1;
+        }
+        List<Integer> avances = new ArrayList<>();
+        ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+
+        // Act
+        ProgresoDesactivacion progreso;
+        try {
+            progreso = usuarioService.desactivarUsuarios(ids, 3)
+                .ejecutar(ejecutor, p -> avances.add(p.procesados()))
+                .get(10, TimeUnit.SECONDS);
+        } finally {
+            ejecutor.shutdown();
+        }
+
+        // Assert
+        assertTrue(progreso.terminada());
+        assertEquals(List.of(3, 6, 9, 10), avances);
+        assertEquals(100.0, progreso.porcentaje(), 0.001);
+    }
+
+    @Test
+    void conUnBitmapDeCandidatosSoloDeberiaProcesarLosQueSiguenActivos() {
+        // Arrange: de los candidatos, el 2 ya está inactivo y el 99 no existe
+        simularAlmacen(1, 4);
+        almacen.get(2L).setActivo(false);
+        when(usuarioRepository.idsActivos()).thenReturn(BitmapCompacto.de(1L, 3L, 4L));
+
+        // Act
+        ProgresoDesactivacion progreso = usuarioService
+            .desactivarUsuarios(BitmapCompacto.de(1L, 2L, 3L, 99L), 10)
+            .procesarTodo();
+
+        // Assert
+        assertEquals(new ProgresoDesactivacion(2, 2, 2, 0, 0), progreso);
+        verify(usuarioRepository).findAllById(List.of(1L, 3L));
+        assertTrue(almacen.get(4L).isActivo());
+    }
+
+    @Test
+    void losRecuentosDeberianVenirDelRepositorioSinCargarUsuarios() {
+        // Arrange
+        when(usuarioRepository.countActivos()).thenReturn(7L);
+        when(usuarioRepository.countInactivos()).thenReturn(3L);
+
+        // Act + Assert
+        assertEquals(7L, usuarioService.contarUsuariosActivos());
+        assertEquals(3L, usuarioService.contarUsuariosInactivos());
+        verify(usuarioRepository, never()).findAll();
+    }
+
+    @Test
+    void desactivarUsuarioDeberiaGuardarNotificarYAuditar() {
+        // Arrange
+        Usuario usuario = new Usuario(7L, "Irene Pardo", "irene@ejemplo.com");
+        when(usuarioRepository.findById(7L)).thenReturn(Optional.of(usuario));
+
+        // Act
+        usuarioService.desactivarUsuario(7L);
+
+        // Assert
+        assertFalse(usuario.isActivo());
+        verify(usuarioRepository).save(usuario);
+        verify(notificacionService).enviarNotificacionDesactivacion(usuario);
+        verify(auditoriaService).registrarOperacion("DESACTIVAR_USUARIO",
+            "Usuario desactivado: Irene Pardo (irene@ejemplo.com)");
+    }
+
+    private void simularAlmacen(long desde, long hasta) {
+        for (long id = desde; id <= hasta; id++) {
+            almacen.put(id, new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+        }
+        when(usuarioRepository.findAllById(anyList())).thenAnswer(invocacion -> {
+            List<Long> ids = invocacion.getArgument(0);
+            return ids.stream().map(almacen::get).filter(u -> u != null).toList();
+        });
+        lenient().when(usuarioRepository.saveAll(anyList())).thenAnswer(invocacion -> invocacion.getArgument(0));
+    }
+}
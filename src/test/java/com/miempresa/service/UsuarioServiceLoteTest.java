@@ -0,0 +1,120 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsuarioServiceLoteTest {
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private NotificacionService notificacionService;
+
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private AuditoriaService auditoriaService;
+
+    @InjectMocks
+    private UsuarioService usuarioService;
+
+    @Test
+    void deberiaRechazarEmailsDuplicadosDentroDelLote() {
+        // Arrange
+        when(usuarioRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        List<Usuario> lote = Arrays.asList(
+            new Usuario(null, "Ana Gil", "ana@ejemplo.com"),
+            new Usuario(null, "Ana Bis", "ANA@ejemplo.com"),
+            null);
+
+        // Act
+        ResultadoLote resultado = usuarioService.crearUsuariosEnLote(lote);
+
+        // Assert
+        assertEquals(1, resultado.procesados().size());
+        assertEquals(2, resultado.fallos().size());
+        assertEquals("Email duplicado en el lote", resultado.fallos().get(0).motivo());
+        assertEquals(1, resultado.fallos().get(0).indice());
+        assertEquals("Email inválido", resultado.fallos().get(1).motivo());
+    }
+
+    @Test
+    void deberiaRechazarEmailsYaRegistradosSinAbortarElLote() {
+        // Arrange
+        when(usuarioRepository.existsByEmail(anyString())).thenReturn(false);
+        when(usuarioRepository.existsByEmail("mario@ejemplo.com")).thenReturn(true);
+        when(usuarioRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        Usuario ana = new Usuario(null, "Ana Gil", "ana@ejemplo.com");
+        Usuario mario = new Usuario(null, "Mario Ros", "mario@ejemplo.com");
+
+        // Act
+        ResultadoLote resultado = usuarioService.crearUsuariosEnLote(List.of(ana, mario));
+
+        // Assert
+        assertEquals(List.of(ana), resultado.procesados());
+        assertEquals(1, resultado.fallos().size());
+        assertEquals("Email ya registrado", resultado.fallos().get(0).motivo());
+        verify(usuarioRepository).saveAll(List.of(ana));
+    }
+
+    @Test
+    void unLoteSinUsuariosValidosNoDeberiaTocarLosColaboradores() {
+        ResultadoLote resultado = usuarioService.crearUsuariosEnLote(List.of(
+            new Usuario(null, "Sin arroba", "sinarroba.com")));
+
+        assertTrue(resultado.procesados().isEmpty());
+        assertTrue(resultado.tieneFallos());
+        verifyNoInteractions(usuarioRepository, notificacionService, auditoriaService);
+    }
+
+    @Test
+    void siSaveAllFallaDeberiaAislarAlUsuarioProblematico() {
+        // Arrange: el lote completo falla, pero solo por culpa de un usuario
+        Usuario ana = new Usuario(null, "Ana Gil", "ana@ejemplo.com");
+        Usuario mario = new Usuario(null, "Mario Ros", "mario@ejemplo.com");
+        Usuario lucia = new Usuario(null, "Lucía Gómez", "lucia@ejemplo.com");
+        when(usuarioRepository.saveAll(anyList())).thenThrow(new RuntimeException("Violación de restricción"));
+        when(usuarioRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(usuarioRepository.save(mario)).thenThrow(new RuntimeException("Email ya registrado"));
+
+        // Act
+        ResultadoLote resultado = usuarioService.crearUsuariosEnLote(List.of(ana, mario, lucia));
+
+        // Assert
+        assertEquals(List.of(ana, lucia), resultado.procesados());
+        assertEquals(1, resultado.fallos().size());
+        assertEquals(1, resultado.fallos().get(0).indice());
+        assertEquals("Email ya registrado", resultado.fallos().get(0).motivo());
+        verify(notificacionService).enviarNotificacionesRegistro(List.of(ana, lucia));
+    }
+
+    @Test
+    void unFalloDeNotificacionNoDeberiaDeshacerElLote() {
+        // Arrange
+        when(usuarioRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        doThrow(new RuntimeException("Servidor de correo caído"))
+            .when(notificacionService).enviarNotificacionesRegistro(anyList());
+
+        // Act
+        ResultadoLote resultado = usuarioService.crearUsuariosEnLote(List.of(
+            new Usuario(null, "Ana Gil", "ana@ejemplo.com")));
+
+        // Assert: el alta se mantiene y el error queda auditado
+        assertEquals(1, resultado.procesados().size());
+        verify(auditoriaService).registrarOperacion(eq("ERROR"), contains("Servidor de correo caído"));
+        verify(auditoriaService).registrarOperaciones(eq("CREAR_USUARIO"), anyList());
+    }
+}
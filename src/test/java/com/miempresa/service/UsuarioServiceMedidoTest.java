@@ -0,0 +1,104 @@
+package com.miempresa.service;
+
+import com.miempresa.metricas.MetricaOperacion;
+import com.miempresa.metricas.RegistroMetricas;
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.UsuarioRepositoryEnMemoria;
+import com.miempresa.repository.UsuarioRepositoryMedido;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsuarioServiceMedidoTest {
+
+    private final RegistroMetricas metricas = new RegistroMetricas();
+    private final UsuarioRepositoryEnMemoria repositorio = new UsuarioRepositoryEnMemoria();
+    private final NotificacionFallida notificaciones = new NotificacionFallida();
+    private final UsuarioService usuarioService = new UsuarioServiceMedido(
+        new UsuarioRepositoryMedido(repositorio, metricas),
+        new NotificacionServiceMedida(notificaciones, metricas),
+        new AuditoriaServiceMedida((tipo, detalles) -> { }, metricas),
+        metricas);
+
+    @Test
+    void deberiaMedirCadaOperacionYCadaColaborador() {
+        // Act
+        Usuario ana = usuarioService.crearUsuario(new Usuario(null, "Ana Gil", "ana@ejemplo.com"));
+        usuarioService.obtenerUsuario(ana.getId());
+        usuarioService.obtenerUsuario(12345L);
+        usuarioService.desactivarUsuario(ana.getId());
+        usuarioService.obtenerTodosLosUsuarios();
+
+        // Assert
+        Map<String, MetricaOperacion.Resumen> resumen = metricas.resumen();
+        assertEquals(1, llamadas(resumen, "UsuarioService.crearUsuario"));
+        assertEquals(2, llamadas(resumen, "UsuarioService.obtenerUsuario"));
+        assertEquals(1, llamadas(resumen, "UsuarioService.desactivarUsuario"));
+        assertEquals(1, llamadas(resumen, "UsuarioService.obtenerTodosLosUsuarios"));
+        // Repositorio: findById de las dos lecturas y de la desactivación; save del alta y de la desactivación
+        assertEquals(3, llamadas(resumen, "UsuarioRepository.findById"));
+        assertEquals(2, llamadas(resumen, "UsuarioRepository.save"));
+        assertEquals(1, llamadas(resumen, "UsuarioRepository.existsByEmail"));
+        assertEquals(1, llamadas(resumen, "UsuarioRepository.findAll"));
+        assertEquals(1, llamadas(resumen, "NotificacionService.enviarNotificacionRegistro"));
+        assertEquals(1, llamadas(resumen, "NotificacionService.enviarNotificacionDesactivacion"));
+        assertEquals(2, llamadas(resumen, "AuditoriaService.registrarEvento"));
+    }
+
+    @Test
+    void losMetodosPorDefectoDeberianLlegarAlRepositorioDecorado() {
+        usuarioService.crearUsuariosEnLote(List.of(
+            new Usuario(null, "Ana Gil", "ana@ejemplo.com"), new Usuario(null, "Luis Ruiz", "luis@ejemplo.com")));
+
+        Map<String, MetricaOperacion.Resumen> resumen = metricas.resumen();
+        assertEquals(1, llamadas(resumen, "UsuarioService.crearUsuariosEnLote"));
+        assertEquals(1, llamadas(resumen, "UsuarioRepository.saveAll"));
+        assertEquals(0, llamadas(resumen, "UsuarioRepository.save"));
+        assertEquals(2, llamadas(resumen, "UsuarioRepository.existsByEmail"));
+        assertEquals(0, llamadas(resumen, "UsuarioRepository.findByEmail"));
+        assertEquals(1, llamadas(resumen, "NotificacionService.enviarNotificacionesRegistro"));
+        assertEquals(1, llamadas(resumen, "AuditoriaService.registrarEventos"));
+    }
+
+    @Test
+    void losErroresDeberianContarseDondeOcurren() {
+        // Arrange
+        usuarioService.crearUsuario(new Usuario(null, "Ana Gil", "ana@ejemplo.com"));
+        notificaciones.fallar = true;
+
+        // Act
+        assertThrows(IllegalArgumentException.class,
+            () -> usuarioService.crearUsuario(new Usuario(null, "Otra Ana", "ana@ejemplo.com")));
+        assertThrows(IllegalStateException.class,
+            () -> usuarioService.crearUsuario(new Usuario(null, "Luis Ruiz", "luis@ejemplo.com")));
+
+        // Assert: el email repetido falla en el servicio; el envío, en la notificación y en el servicio
+        Map<String, MetricaOperacion.Resumen> resumen = metricas.resumen();
+        assertEquals(3, llamadas(resumen, "UsuarioService.crearUsuario"));
+        assertEquals(2, resumen.get("UsuarioService.crearUsuario").errores());
+        assertEquals(1, resumen.get("NotificacionService.enviarNotificacionRegistro").errores());
+        assertEquals(0, resumen.get("UsuarioRepository.save").errores());
+    }
+
+    private static long llamadas(Map<String, MetricaOperacion.Resumen> resumen, String operacion) {
+        return resumen.get(operacion).llamadas();
+    }
+
+    private static final class NotificacionFallida implements NotificacionService {
+        boolean fallar;
+
+        @Override
+        public void enviarNotificacionRegistro(Usuario usuario) {
+            if (fallar) {
+                throw new IllegalStateException("Servidor de correo caído");
+            }
+        }
+
+        @Override
+        public void enviarNotificacionDesactivacion(Usuario usuario) {
+        }
+    }
+}
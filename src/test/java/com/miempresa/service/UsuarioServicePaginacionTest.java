@@ -0,0 +1,112 @@
+package com.miempresa.service;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsuarioServicePaginacionTest {
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private NotificacionService notificacionService;
+
+    @Mock
+    private AuditoriaService auditoriaService;
+
+    @InjectMocks
+    private UsuarioService usuarioService;
+
+    @Test
+    void deberiaDelegarLaPaginaEnElRepositorio() {
+        // Arrange
+        List<Usuario> pagina = List.of(
+            new Usuario(11L, "Ana Gil", "ana@ejemplo.com"),
+            new Usuario(12L, "Mario Ros", "mario@ejemplo.com"));
+        when(usuarioRepository.findPage(10L, 2)).thenReturn(pagina);
+
+        // Act
+        List<Usuario> resultado = usuarioService.obtenerUsuariosPaginados(10L, 2);
+
+        // Assert
+        assertSame(pagina, resultado);
+        verify(usuarioRepository, never()).findAll();
+    }
+
+    @Test
+    void deberiaRechazarLimitesFueraDeRango() {
+        assertThrows(IllegalArgumentException.class, () -> usuarioService.obtenerUsuariosPaginados(null, 0));
+        assertThrows(IllegalArgumentException.class,
+            () -> usuarioService.obtenerUsuariosPaginados(null, UsuarioService.LIMITE_MAXIMO_PAGINA + 1));
+
+        verifyNoInteractions(usuarioRepository);
+    }
+
+    @Test
+    void elRecorridoDeberiaPedirBloquesSoloCuandoHacenFalta() {
+        // Arrange: el repositorio simulado tiene 2.500 usuarios y usa la
+        // implementación por defecto de streamAll sobre findPage
+        when(usuarioRepository.streamAll(anyInt())).thenCallRealMethod();
+        when(usuarioRepository.findPage(any(), anyInt())).thenAnswer(invocacion -> {
+            Long cursor = invocacion.getArgument(0);
+            int limite = invocacion.getArgument(1);
+            long desde = cursor == null ? 1 : cursor + 1;
+            List<Usuario> pagina = new ArrayList<>();
+            for (long id = desde; id < desde + limite && id <= 2_500; id++) {
+                pagina.add(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+            }
+            return pagina;
+        });
+
+        // Act: solo consumimos los primeros 1.500
+        List<Long> ids;
+        try (Stream<Usuario> usuarios = usuarioService.recorrerUsuarios()) {
+            ids = usuarios.limit(1_500).map(Usuario::getId).collect(Collectors.toList());
+        }
+
+        // Assert: dos bloques de 1.000, nunca la lista completa
+        assertEquals(1_500, ids.size());
+        assertEquals(1L, ids.get(0));
+        assertEquals(1_500L, ids.get(1_499));
+        verify(usuarioRepository).findPage(null, 1_000);
+        verify(usuarioRepository).findPage(1_000L, 1_000);
+        verify(usuarioRepository, times(2)).findPage(any(), anyInt());
+        verify(usuarioRepository, never()).findAll();
+    }
+
+    @Test
+    void elRecorridoCompletoDeberiaTerminarConElUltimoBloqueIncompleto() {
+        when(usuarioRepository.streamAll(anyInt())).thenCallRealMethod();
+        when(usuarioRepository.findPage(any(), anyInt())).thenAnswer(invocacion -> {
+            Long cursor = invocacion.getArgument(0);
+            long desde = cursor == null ? 1 : cursor + 1;
+            List<Usuario> pagina = new ArrayList<>();
+            for (long id = desde; id < desde + 1_000 && id <= 2_500; id++) {
+                pagina.add(new Usuario(id, "U" + id, "u" + id + "@ejemplo.com"));
+            }
+            return pagina;
+        });
+
+        try (Stream<Usuario> usuarios = usuarioService.recorrerUsuarios()) {
+            assertEquals(2_500, usuarios.count());
+        }
+
+        // El tercer bloque (500) es incompleto, así que no hace falta pedir un cuarto
+        verify(usuarioRepository, times(3)).findPage(any(), anyInt());
+    }
+}
@@ -17,6 +17,7 @@ import com.miempresa.model.Usuario;
 import com.miempresa.repository.UsuarioRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Captor;
 import org.mockito.InOrder;
@@ -48,7 +49,9 @@ class UsuarioServiceTest {
     @Mock
     private NotificacionService notificacionService;
 
-    @Mock
+    // Los métodos por defecto (registrarEvento, registrarEventos) se ejecutan de verdad
+    // para que las verificaciones sobre registrarOperacion sigan viendo el texto final
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private AuditoriaService auditoriaService;  // ← tercer mock
 
     @InjectMocks
@@ -109,6 +112,22 @@ class UsuarioServiceTest {
         inOrder.verify(auditoriaService).registrarOperacion(anyString(), anyString());
     }
     
+    @Test
+    void deberiaAuditarConCamposEstructurados() {
+        // Arrange
+        Usuario usuario = new Usuario(5L, "Irene Soto", "irene@ejemplo.com");
+        when(usuarioRepository.save(any())).thenReturn(usuario);
+
+        // Act
+        usuarioService.crearUsuario(usuario);
+
+        // Verify: el servicio entrega los campos y el adaptador compone el texto de siempre
+        verify(auditoriaService).registrarEvento(
+            TipoOperacion.CREAR_USUARIO, 5L, "Irene Soto", "irene@ejemplo.com");
+        verify(auditoriaService).registrarOperacion(
+            "CREAR_USUARIO", "Usuario creado: Irene Soto (irene@ejemplo.com)");
+    }
+
     //ARGUMENT MATCHERS: FLEXIBILIDAD EN TESTS
     
     @Test
@@ -278,6 +297,7 @@ class UsuarioServiceTest {
         usuarioService.crearUsuario(usuario);
         
         // Verify: comprobamos las interacciones esperadas
+        verify(usuarioRepository).existsByEmail("teresa@ejemplo.com");
         verify(usuarioRepository).save(usuario);
         verify(notificacionService).enviarNotificacionRegistro(usuario);
         verify(auditoriaService).registrarOperacion(anyString(), anyString());
@@ -286,6 +306,23 @@ class UsuarioServiceTest {
         verifyNoMoreInteractions(usuarioRepository, notificacionService);
     }
 
+    @Test
+    void deberiaRechazarEmailYaRegistrado() {
+        // Arrange
+        Usuario usuario = new Usuario(null, "Teresa Blanco", "teresa@ejemplo.com");
+        when(usuarioRepository.existsByEmail("teresa@ejemplo.com")).thenReturn(true);
+
+        // Act & Assert
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> usuarioService.crearUsuario(usuario));
+        assertEquals("Email ya registrado", error.getMessage());
+
+        // Verify: la comprobación usa el índice, sin listar usuarios ni guardar
+        verify(usuarioRepository, never()).findAll();
+        verify(usuarioRepository, never()).save(any());
+        verifyNoInteractions(notificacionService, auditoriaService);
+    }
+
     @Test
     void verificacionConArgumentCaptor() {
         // Arrange
@@ -940,35 +977,10 @@ class UsuarioServiceTest {
 
     @Test
     void verificacionesAvanzadasConCaptura() {
-        // Simulamos una implementación adicional
-        class UsuarioServiceExtendido extends UsuarioService {
-            public UsuarioServiceExtendido(UsuarioRepository repo,
-                                           NotificacionService notif,
-                                           AuditoriaService audit) {
-                super(repo, notif, audit);
-            }
-
-            public List<Usuario> crearUsuariosEnLote(List<Usuario> usuarios) {
-                List<Usuario> resultado = new ArrayList<>();
-                for (Usuario u : usuarios) {
-                    if (u.getEmail() != null && u.getEmail().contains("@")) {
-                        Usuario guardado = usuarioRepository.save(u);
-                        notificacionService.enviarNotificacionRegistro(guardado);
-                        resultado.add(guardado);
-                    }
-                }
-                auditoriaService.registrarOperacion("CREAR_LOTE",
-                    "Creados " + resultado.size() + " usuarios en lote");
-                return resultado;
-            }
-        }
-
-        // Creamos una instancia del servicio extendido
-        UsuarioServiceExtendido servicioExtendido = new UsuarioServiceExtendido(
-            usuarioRepository, notificacionService, auditoriaService);
-
-        // Preparamos datos y captores
-        ArgumentCaptor<Usuario> usuarioCaptor = ArgumentCaptor.forClass(Usuario.class);
+        // crearUsuariosEnLote ya es parte del servicio: guarda con una sola
+        // llamada a saveAll y agrupa notificaciones y auditoría
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Usuario>> loteCaptor = ArgumentCaptor.forClass(List.class);
 
         List<Usuario> loteUsuarios = Arrays.asList(
             new Usuario(1L, "User1", "user1@ejemplo.com"),
@@ -977,41 +989,47 @@ class UsuarioServiceTest {
             new Usuario(4L, "User4", "user4@ejemplo.com")
         );
 
-        // Configuramos el mock para devolver el mismo usuario que recibe
-        when(usuarioRepository.save(any()))
+        // Configuramos el mock para devolver la misma lista que recibe
+        when(usuarioRepository.saveAll(anyList()))
             .thenAnswer(i -> i.getArgument(0));
 
         // Act
-        List<Usuario> resultado = servicioExtendido.crearUsuariosEnLote(loteUsuarios);
+        ResultadoLote resultado = usuarioService.crearUsuariosEnLote(loteUsuarios);
 
-        // Verify: capturamos todos los usuarios guardados
-        verify(usuarioRepository, times(3)).save(usuarioCaptor.capture());
+        // Verify: capturamos el lote guardado
+        verify(usuarioRepository).saveAll(loteCaptor.capture());
+        verify(usuarioRepository, never()).save(any());
 
         // Obtenemos los valores capturados
-        List<Usuario> usuariosGuardados = usuarioCaptor.getAllValues();
+        List<Usuario> usuariosGuardados = loteCaptor.getValue();
 
         // Verificaciones avanzadas
         assertEquals(3, usuariosGuardados.size());
-        assertEquals(3, resultado.size());
+        assertEquals(3, resultado.procesados().size());
 
         // Verificamos que no se guardó el usuario con email inválido
         boolean encontradoInvalido = usuariosGuardados.stream()
             .anyMatch(u -> "User3".equals(u.getNombre()));
         assertFalse(encontradoInvalido, "No debería guardarse el usuario con email inválido");
 
-        // Verificamos que se enviaron las notificaciones correctas
-        verify(notificacionService, times(3)).enviarNotificacionRegistro(any());
+        // Y que el fallo se informa con su posición en el lote
+        assertEquals(1, resultado.fallos().size());
+        assertEquals(2, resultado.fallos().get(0).indice());
+
+        // Verificamos que se enviaron las notificaciones en una sola llamada
+        verify(notificacionService).enviarNotificacionesRegistro(usuariosGuardados);
+        verify(notificacionService, never()).enviarNotificacionRegistro(any());
 
-        // Y verificamos la auditoría
+        // Y verificamos la auditoría agrupada
         verify(auditoriaService)
-            .registrarOperacion(eq("CREAR_LOTE"), contains("3 usuarios"));
+            .registrarOperaciones(eq("CREAR_USUARIO"), argThat(detalles -> detalles.size() == 3));
     }
 
     @ExtendWith(MockitoExtension.class)
     class ArgumentCaptorAnotacionesTest {
         @Mock private UsuarioRepository usuarioRepository;
         @Mock private NotificacionService notificacionService;
-        @Mock private AuditoriaService auditoriaService;
+        @Mock(answer = Answers.CALLS_REAL_METHODS) private AuditoriaService auditoriaService;
         @InjectMocks private UsuarioService usuarioService;
         @Captor private ArgumentCaptor<Usuario> usuarioCaptor;
         @Captor private ArgumentCaptor<String> stringCaptor;
@@ -0,0 +1,132 @@
+package com.miempresa.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidadorEmailTest {
+
+    // Las mismas reglas escritas como expresión regular, para comparar resultados y coste
+    private static final Pattern PATRON = Pattern.compile(
+        "(?=.{1,254}$)(?=.{1,64}@)"
+            + "[A-Za-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[A-Za-z0-9!#$%&'*+/=?^_`{|}~-]+)*"
+            + "@(?:[A-Za-z0-9](?:[A-Za-z0-9-]{0,61}[A-Za-z0-9])?\\.)+[A-Za-z]{2,63}");
+
+    private static final String[] MUESTRA = {
+        "elena@ejemplo.com", "lucia@EJEMPLO.com", "nombre.apellido+etiqueta@correo.ejemplo.es",
+        "o'brien@ejemplo.ie", "a@b.co", "u_1@sub-dominio.ejemplo.org",
+        "emailinvalido", "sinarroba.com", "@ejemplo.com", "ana@", "ana@ejemplo", "ana@ejemplo.c",
+        ".ana@ejemplo.com", "ana.@ejemplo.com", "an..a@ejemplo.com", "ana@@ejemplo.com",
+        "ana@-ejemplo.com", "ana@ejemplo-.com", "ana@ejemplo..com", "ana@ejemplo.com.",
+        "ana@ejemplo.c0m", "ana gil@ejemplo.com", "añá@ejemplo.com", "ana@ejemplo.com ", ""
+    };
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "elena@ejemplo.com",
+        "lucia@EJEMPLO.com",
+        "nombre.apellido+etiqueta@correo.ejemplo.es",
+        "o'brien@ejemplo.ie",
+        "a@b.co",
+        "u_1@sub-dominio.ejemplo.org"
+    })
+    void deberiaAceptarEmailsValidos(String email) {
+        assertTrue(ValidadorEmail.esValido(email));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "", "emailinvalido", "sinarroba.com", "@ejemplo.com", "ana@", "ana@ejemplo",
+        "ana@ejemplo.c", ".ana@ejemplo.com", "ana.@ejemplo.com", "an..a@ejemplo.com",
+        "ana@@ejemplo.com", "ana@-ejemplo.com", "ana@ejemplo-.com", "ana@ejemplo..com",
+        "ana@ejemplo.com.", "ana@ejemplo.c0m", "ana gil@ejemplo.com", "añá@ejemplo.com",
+        "ana@ejemplo.com "
+    })
+    void deberiaRechazarEmailsInvalidos(String email) {
+        assertFalse(ValidadorEmail.esValido(email));
+    }
+
+    @Test
+    void deberiaRechazarNuloYLongitudesExcesivas() {
+        String local64 = "a".repeat(64);
+        String etiqueta63 = "b".repeat(63);
+
+        assertFalse(ValidadorEmail.esValido(null));
+        assertTrue(ValidadorEmail.esValido(local64 + "@ejemplo.com"));
+        assertFalse(ValidadorEmail.esValido(local64 + "a@ejemplo.com"));
+        assertTrue(ValidadorEmail.esValido("ana@" + etiqueta63 + ".com"));
+        assertFalse(ValidadorEmail.esValido("ana@" + etiqueta63 + "b.com"));
+        String largo = "ana@" + (etiqueta63 + ".").repeat(4) + "com";
+        assertTrue(largo.length() > ValidadorEmail.LONGITUD_MAXIMA);
+        assertFalse(ValidadorEmail.esValido(largo));
+    }
+
+    @Test
+    void deberiaCoincidirConLaExpresionRegular() {
+        for (String email : MUESTRA) {
+            assertEquals(PATRON.matcher(email).matches(), ValidadorEmail.esValido(email), email);
+        }
+    }
+
+    @Test
+    void validarNoDeberiaReservarMemoria() {
+        // Arrange: calentamiento para que el JIT compile el método
+        for (int i = 0; i < 100_000; i++) {
+            ValidadorEmail.esValido(MUESTRA[i % MUESTRA.length]);
+        }
+        com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().threadId();
+
+        // Act
+        long antes = hilos.getThreadAllocatedBytes(hilo);
+        int validos = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (ValidadorEmail.esValido(MUESTRA[i % MUESTRA.length])) {
+                validos++;
+            }
+        }
+        long reservados = hilos.getThreadAllocatedBytes(hilo) - antes;
+
+        // Assert: un Matcher por llamada reservaría varios MB en 100.000 validaciones
+        assertTrue(validos > 0);
+        assertTrue(reservados < 16 * 1024, "Bytes reservados: " + reservados);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void comparativaConExpresionRegular() {
+        int vueltas = 200_000;
+        // Calentamiento de ambos caminos
+        medir(vueltas, true);
+        medir(vueltas, false);
+
+        long nanosValidador = medir(vueltas, true);
+        long nanosRegex = medir(vueltas, false);
+
+        System.out.printf("Validación de email: %.1f ns/op sin regex, %.1f ns/op con java.util.regex%n",
+            nanosValidador / (double) vueltas, nanosRegex / (double) vueltas);
+        assertTrue(nanosValidador > 0 && nanosRegex > 0);
+    }
+
+    private static long medir(int vueltas, boolean sinRegex) {
+        int validos = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < vueltas; i++) {
+            String email = MUESTRA[i % MUESTRA.length];
+            if (sinRegex ? ValidadorEmail.esValido(email) : PATRON.matcher(email).matches()) {
+                validos++;
+            }
+        }
+        long nanos = System.nanoTime() - inicio;
+        // Se usa el resultado para que el JIT no elimine el bucle
+        assertTrue(validos > 0);
+        return nanos;
+    }
+}
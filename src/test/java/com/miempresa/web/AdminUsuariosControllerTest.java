@@ -0,0 +1,53 @@
+package com.miempresa.web;
+
+import com.miempresa.service.UsuarioService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminUsuariosControllerTest {
+
+    @Mock
+    private CachePaginasUsuarios paginas;
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(new AdminUsuariosController(paginas)).build();
+    }
+
+    @Test
+    void deberiaMostrarLaTablaDeLaPaginaPedida() throws Exception {
+        // Arrange
+        when(paginas.tabla(10L, 20)).thenReturn("<table></table>");
+
+        // Act & Assert
+        mvc.perform(get("/admin/usuarios").param("despuesDeId", "10").param("limite", "20"))
+            .andExpect(status().isOk())
+            .andExpect(view().name("usuarios/lista"))
+            .andExpect(model().attribute("tabla", "<table></table>"));
+    }
+
+    @Test
+    void deberiaAjustarElLimiteAlRangoPermitido() throws Exception {
+        when(paginas.tabla(any(), anyInt())).thenReturn("");
+
+        mvc.perform(get("/admin/usuarios")).andExpect(status().isOk());
+        mvc.perform(get("/admin/usuarios").param("limite", "0")).andExpect(status().isOk());
+        mvc.perform(get("/admin/usuarios").param("limite", "1000000")).andExpect(status().isOk());
+
+        verify(paginas).tabla(null, AdminUsuariosController.TAMANO_PAGINA_POR_DEFECTO);
+        verify(paginas).tabla(null, 1);
+        verify(paginas).tabla(null, UsuarioService.LIMITE_MAXIMO_PAGINA);
+    }
+}
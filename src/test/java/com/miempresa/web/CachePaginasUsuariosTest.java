@@ -0,0 +1,118 @@
+package com.miempresa.web;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.repository.UsuarioRepositoryEnMemoria;
+import com.miempresa.service.AuditoriaService;
+import com.miempresa.service.NotificacionService;
+import com.miempresa.service.UsuarioService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachePaginasUsuariosTest {
+
+    @Mock
+    private NotificacionService notificacionService;
+
+    @Mock
+    private AuditoriaService auditoriaService;
+
+    private final UsuarioRepositoryEnMemoria repositorio = new UsuarioRepositoryEnMemoria();
+    private UsuarioService usuarioService;
+    private CachePaginasUsuarios paginas;
+
+    @BeforeEach
+    void setUp() {
+        // El mismo motor y las mismas plantillas que en la aplicación
+        ClassLoaderTemplateResolver plantillas = new ClassLoaderTemplateResolver();
+        plantillas.setPrefix("templates/");
+        plantillas.setSuffix(".html");
+        SpringTemplateEngine motor = new SpringTemplateEngine();
+        motor.setTemplateResolver(plantillas);
+
+        usuarioService = new UsuarioService(repositorio, notificacionService, auditoriaService);
+        paginas = new CachePaginasUsuarios(usuarioService, motor, 2);
+        for (long id = 1; id <= 5; id++) {
+            repositorio.save(new Usuario(id, "Usuario " + id, "usuario" + id + "@ejemplo.com"));
+        }
+    }
+
+    @Test
+    void deberiaRenderizarLaPaginaConElCursorSiguiente() {
+        // Act
+        String html = paginas.tabla(2L, 2);
+
+        // Assert
+        assertTrue(html.contains("usuario3@ejemplo.com") && html.contains("usuario4@ejemplo.com"), html);
+        assertFalse(html.contains("usuario2@ejemplo.com"), html);
+        assertTrue(html.contains("?despuesDeId=4&amp;limite=2"), html);
+        assertTrue(html.contains("Primera página"), html);
+    }
+
+    @Test
+    void laUltimaPaginaNoDeberiaEnlazarConLaSiguiente() {
+        String html = paginas.tabla(4L, 2);
+
+        assertTrue(html.contains("usuario5@ejemplo.com"), html);
+        assertFalse(html.contains("Siguiente"), html);
+    }
+
+    @Test
+    void deberiaEscaparLosDatosDeLosUsuarios() {
+        repositorio.save(new Usuario(6L, "<script>alert(1)</script>", "x@ejemplo.com"));
+
+        String html = paginas.tabla(5L, 10);
+
+        assertFalse(html.contains("<script>"), html);
+        assertTrue(html.contains("&lt;script&gt;"), html);
+    }
+
+    @Test
+    void mientrasNoCambieElRepositorioDeberiaServirLaMismaTabla() {
+        // Act
+        String primera = paginas.tabla(null, 2);
+        String segunda = paginas.tabla(null, 2);
+
+        // Assert: la segunda petición no vuelve a leer ni a renderizar
+        assertSame(primera, segunda);
+        assertEquals(1, paginas.getAciertos());
+        assertEquals(1, paginas.getFallos());
+    }
+
+    @Test
+    void cualquierCambioEnElRepositorioDeberiaInvalidarLaTabla() {
+        // Arrange
+        String antes = paginas.tabla(null, 10);
+
+        // Act
+        usuarioService.desactivarUsuario(3L);
+        String despues = paginas.tabla(null, 10);
+
+        // Assert
+        assertNotEquals(antes, despues);
+        assertTrue(despues.contains("Inactivo"), despues);
+        assertEquals(2, paginas.getFallos());
+        assertSame(despues, paginas.tabla(null, 10));
+    }
+
+    @Test
+    void deberiaGuardarComoMuchoLaCapacidadDePaginas() {
+        paginas.tabla(null, 1);
+        paginas.tabla(1L, 1);
+        paginas.tabla(2L, 1);
+        paginas.tabla(2L, 1);
+
+        assertEquals(2, paginas.getTamano());
+        assertEquals(1, paginas.getAciertos());
+        // La primera página fue la menos usada: se desalojó
+        paginas.tabla(null, 1);
+        assertEquals(1, paginas.getAciertos());
+    }
+}
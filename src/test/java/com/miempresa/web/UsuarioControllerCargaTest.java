@@ -0,0 +1,150 @@
+package com.miempresa.web;
+
+import com.miempresa.MockitoTutorialApplication;
+import com.miempresa.metricas.HistogramaLatencia;
+import com.miempresa.model.Usuario;
+import com.miempresa.service.NotificacionService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga local: la misma aplicación con las peticiones en hilos de
+ * plataforma (un pool de Tomcat de 50) y en hilos virtuales. Cada alta espera
+ * 20 ms en la notificación, como si hablara con un servidor de correo, así que
+ * con hilos de plataforma el pool se agota y las peticiones hacen cola.
+ *
+ * Tarda más de un minuto y sus cifras dependen de la máquina, así que solo
+ * informa de ellas y queda fuera de la ejecución normal: {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class UsuarioControllerCargaTest {
+
+    private static final int CLIENTES = 200;
+    private static final int PETICIONES_POR_CLIENTE = 20;
+    private static final Duration LATENCIA_NOTIFICACION = Duration.ofMillis(20);
+
+    // Resultado de una ronda de carga
+    private record Medicion(String configuracion, double peticionesPorSegundo, HistogramaLatencia latencias,
+                            int rechazadas) {
+    }
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void comparativaDeHilosDePlataformaYVirtuales() throws Exception {
+        // Act
+        Medicion plataforma = medir("plataforma", false);
+        Medicion virtuales = medir("virtuales", true);
+
+        // Assert: solo que se atendieron todas; la comparación se lee en la salida
+        for (Medicion medicion : List.of(plataforma, virtuales)) {
+            HistogramaLatencia.Resumen resumen = medicion.latencias().resumen();
+            assertEquals((long) CLIENTES * PETICIONES_POR_CLIENTE, resumen.cuenta());
+            System.out.printf("Hilos %s: %.0f peticiones/s, p50 %.1f ms, p99 %.1f ms, rechazadas %d%n",
+                medicion.configuracion(), medicion.peticionesPorSegundo(), resumen.p50Micros() / 1000,
+                resumen.p99Micros() / 1000, medicion.rechazadas());
+        }
+    }
+
+    private Medicion medir(String nombre, boolean hilosVirtuales) throws Exception {
+        ApplicationContextInitializer<GenericApplicationContext> notificacionLenta = contexto ->
+            contexto.registerBean("notificacionLenta", NotificacionService.class, NotificacionLenta::new,
+                definicion -> definicion.setPrimary(true));
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(MockitoTutorialApplication.class)
+                .initializers(notificacionLenta)
+                .properties(
+                    "server.port=0",
+                    "spring.threads.virtual.enabled=" + hilosVirtuales,
+                    "server.tomcat.threads.max=50",
+                    "usuarios.web.max-concurrentes=" + CLIENTES,
+                    "usuarios.web.espera-maxima=1s",
+                    "spring.datasource.url=jdbc:h2:mem:carga-" + nombre,
+                    "usuarios.auditoria.directorio=" + directorio.resolve(nombre))
+                .run()) {
+            int puerto = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+            return cargar(nombre, puerto);
+        }
+    }
+
+    // Cada cliente da de alta usuarios uno tras otro, esperando cada respuesta
+    private Medicion cargar(String nombre, int puerto) throws Exception {
+        HistogramaLatencia latencias = new HistogramaLatencia();
+        AtomicInteger rechazadas = new AtomicInteger();
+        HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<Future<?>> tareas = new ArrayList<>();
+        long inicio = System.nanoTime();
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTES; c++) {
+                int numeroCliente = c;
+                tareas.add(clientes.submit(() -> {
+                    for (int i = 0; i < PETICIONES_POR_CLIENTE; i++) {
+                        String cuerpo = "{\"nombre\":\"Carga\",\"email\":\"" + nombre + "-" + numeroCliente
+                            + "-" + i + "@ejemplo.com\"}";
+                        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/usuarios"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                            .build();
+                        long antes = System.nanoTime();
+                        HttpResponse<Void> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.discarding());
+                        latencias.registrar(System.nanoTime() - antes);
+                        if (respuesta.statusCode() == 503) {
+                            rechazadas.incrementAndGet();
+                        } else {
+                            assertEquals(201, respuesta.statusCode());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        return new Medicion(nombre, CLIENTES * PETICIONES_POR_CLIENTE / segundos, latencias, rechazadas.get());
+    }
+
+    // Notificación que bloquea como una llamada a un servidor externo
+    static class NotificacionLenta implements NotificacionService {
+
+        @Override
+        public void enviarNotificacionRegistro(Usuario usuario) {
+            esperar();
+        }
+
+        @Override
+        public void enviarNotificacionDesactivacion(Usuario usuario) {
+            esperar();
+        }
+
+        private static void esperar() {
+            try {
+                Thread.sleep(LATENCIA_NOTIFICACION);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
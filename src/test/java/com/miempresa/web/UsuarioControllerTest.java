@@ -0,0 +1,161 @@
+package com.miempresa.web;
+
+import com.miempresa.model.Usuario;
+import com.miempresa.service.UsuarioService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsuarioControllerTest {
+
+    @Mock
+    private UsuarioService usuarioService;
+
+    private final LatenciasPorEndpoint latencias = new LatenciasPorEndpoint();
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(new UsuarioController(usuarioService))
+            .addInterceptors(latencias)
+            .build();
+    }
+
+    @Test
+    void deberiaCrearUnUsuarioYDevolverSuUbicacion() throws Exception {
+        // Arrange
+        when(usuarioService.crearUsuario(any())).thenAnswer(invocation -> {
+            Usuario usuario = invocation.getArgument(0);
+            usuario.setId(42L);
+            return usuario;
+        });
+
+        // Act & Assert
+        mvc.perform(post("/usuarios").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\":\"Elena Martínez\",\"email\":\"elena@ejemplo.com\"}"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string("Location", "/usuarios/42"))
+            .andExpect(jsonPath("$.id").value(42))
+            .andExpect(jsonPath("$.activo").value(true));
+
+        // Verify: el id no lo elige el cliente
+        verify(usuarioService).crearUsuario(argThat(u -> "elena@ejemplo.com".equals(u.getEmail())));
+    }
+
+    @Test
+    void unEmailInvalidoDeberiaResponder400() throws Exception {
+        when(usuarioService.crearUsuario(any())).thenThrow(new IllegalArgumentException("Email inválido"));
+
+        mvc.perform(post("/usuarios").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"nombre\":\"Sin email\",\"email\":\"no-es-un-email\"}"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.detail").value("Email inválido"));
+    }
+
+    @Test
+    void deberiaObtenerUnUsuarioO404() throws Exception {
+        when(usuarioService.obtenerUsuario(1L)).thenReturn(Optional.of(new Usuario(1L, "Ana", "ana@ejemplo.com")));
+        when(usuarioService.obtenerUsuario(2L)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/usuarios/1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.nombre").value("Ana"));
+        mvc.perform(get("/usuarios/2"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deberiaDesactivarSoloUsuariosExistentes() throws Exception {
+        when(usuarioService.obtenerUsuario(1L)).thenReturn(Optional.of(new Usuario(1L, "Ana", "ana@ejemplo.com")));
+        when(usuarioService.obtenerUsuario(2L)).thenReturn(Optional.empty());
+
+        mvc.perform(post("/usuarios/1/desactivar")).andExpect(status().isNoContent());
+        mvc.perform(post("/usuarios/2/desactivar")).andExpect(status().isNotFound());
+
+        verify(usuarioService).desactivarUsuario(1L);
+        verify(usuarioService, never()).desactivarUsuario(2L);
+    }
+
+    @Test
+    void deberiaListarPorCursor() throws Exception {
+        when(usuarioService.obtenerUsuariosPaginados(10L, 2)).thenReturn(List.of(
+            new Usuario(11L, "Ana", "ana@ejemplo.com"), new Usuario(12L, "Luis", "luis@ejemplo.com")));
+        when(usuarioService.obtenerUsuariosPaginados(null, UsuarioController.LIMITE_POR_DEFECTO)).thenReturn(List.of());
+        when(usuarioService.obtenerUsuariosPaginados(null, 5000))
+            .thenThrow(new IllegalArgumentException("El límite debe estar entre 1 y 1000"));
+
+        mvc.perform(get("/usuarios").param("despuesDeId", "10").param("limite", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[1].id").value(12));
+        mvc.perform(get("/usuarios")).andExpect(status().isOk());
+        mvc.perform(get("/usuarios").param("limite", "5000")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void deberiaExportarEnNdjson() throws Exception {
+        // Arrange
+        simularExportacion("{\"id\":1}\n{\"id\":2}\n");
+
+        // Act & Assert
+        mvc.perform(get("/usuarios/exportacion"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+    }
+
+    @Test
+    void deberiaExportarComprimidoSiSePideGzip() throws Exception {
+        // Arrange
+        simularExportacion("{\"id\":1}\n");
+
+        // Act
+        byte[] cuerpo = mvc.perform(get("/usuarios/exportacion").param("gzip", "true"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andReturn().getResponse().getContentAsByteArray();
+
+        // Assert
+        byte[] texto = new GZIPInputStream(new ByteArrayInputStream(cuerpo)).readAllBytes();
+        assertEquals("{\"id\":1}\n", new String(texto, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void deberiaMedirLaLatenciaPorEndpoint() throws Exception {
+        when(usuarioService.obtenerUsuario(anyLong())).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 3; i++) {
+            mvc.perform(get("/usuarios/" + i));
+        }
+
+        assertEquals(3, latencias.resumen().get("GET /usuarios/{id}").cuenta());
+    }
+
+    private void simularExportacion(String ndjson) throws Exception {
+        when(usuarioService.exportarUsuarios(any())).thenAnswer(invocation -> {
+            OutputStream salida = invocation.getArgument(0);
+            salida.write(ndjson.getBytes(StandardCharsets.UTF_8));
+            return ndjson.lines().count();
+        });
+    }
+}